@@ -0,0 +1,184 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.connections.ConnectionStrategy;
+import org.simbrain.network.connections.RadialGaussian;
+import org.simbrain.network.connections.Sparse;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.layouts.GridLayout;
+import org.simbrain.network.neuron_update_rules.AdExIFRule;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+import org.simbrain.network.update_actions.BufferedUpdate;
+import org.simbrain.network.update_actions.ConcurrentBufferedUpdate;
+import org.simbrain.network.update_actions.PriorityUpdate;
+import org.simbrain.util.math.SimbrainRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Network#update()} for combinations of update action,
+ * topology, and neuron update rule. Besides update calls per second, the
+ * results report neuron updates and synapse updates per second (the
+ * {@code neuronUpdates} and {@code synapseUpdates} secondary results), which
+ * can be compared across network sizes.
+ * <p>
+ * Networks are built from a fixed seed, so every run benchmarks the same
+ * network. Run with {@code gradle jmh}; see build.gradle for passing JMH
+ * options.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class NetworkUpdateBenchmark {
+
+    @Param({"buffered", "priority", "concurrent"})
+    public String updateAction;
+
+    @Param({"sparse", "allToAll", "radialGaussian"})
+    public String topology;
+
+    @Param({"linear", "sigmoidal", "izhikevich", "adex"})
+    public String rule;
+
+    @Param({"500"})
+    public int numNeurons;
+
+    /**
+     * Fraction of possible connections made by the sparse topology.
+     */
+    @Param({"0.1"})
+    public double density;
+
+    private Network network;
+
+    private long synapseCount;
+
+    /**
+     * Counts of updated elements, reported by JMH as rates.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counts {
+
+        public long neuronUpdates;
+
+        public long synapseUpdates;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            neuronUpdates = 0;
+            synapseUpdates = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void buildNetwork() {
+        network = new Network();
+        network.setRandomSeed(42);
+        network.setTimeStep(.1);
+        List<Neuron> neurons = new ArrayList<>(numNeurons);
+        for (int i = 0; i < numNeurons; i++) {
+            Neuron neuron = new Neuron(network, createRule());
+            network.addLooseNeuron(neuron);
+            neurons.add(neuron);
+        }
+        new GridLayout().layoutNeurons(neurons);
+
+        List<Synapse> synapses = createConnections().connectNeurons(network, neurons, neurons);
+        synapseCount = network.getLooseSynapses().size();
+
+        // Random weights scaled by fan-in, so activity neither dies out nor saturates at once
+        SimbrainRandom random = new SimbrainRandom(7);
+        double scale = 2 / Math.sqrt(Math.max(1.0, (double) synapseCount / numNeurons));
+        for (Synapse synapse : synapses) {
+            synapse.forceSetStrength(scale * (2 * random.nextDouble() - 1));
+        }
+        for (Neuron neuron : neurons) {
+            neuron.forceSetActivation(random.nextDouble());
+        }
+
+        network.getUpdateManager().clear();
+        network.getUpdateManager().addAction(createUpdateAction());
+    }
+
+    private NeuronUpdateRule createRule() {
+        switch (rule) {
+            case "linear":
+                return new LinearRule();
+            case "sigmoidal":
+                return new SigmoidalRule();
+            case "izhikevich":
+                return new IzhikevichRule();
+            case "adex":
+                AdExIFRule adex = new AdExIFRule();
+                adex.setI_bg(1);
+                return adex;
+            default:
+                throw new IllegalArgumentException("Unknown rule " + rule);
+        }
+    }
+
+    private ConnectionStrategy createConnections() {
+        switch (topology) {
+            case "sparse":
+                return new Sparse(density, false, false);
+            case "allToAll":
+                return new AllToAll(false);
+            case "radialGaussian":
+                return new RadialGaussian();
+            default:
+                throw new IllegalArgumentException("Unknown topology " + topology);
+        }
+    }
+
+    private NetworkUpdateAction createUpdateAction() {
+        switch (updateAction) {
+            case "buffered":
+                return new BufferedUpdate(network);
+            case "priority":
+                return new PriorityUpdate(network);
+            case "concurrent":
+                return ConcurrentBufferedUpdate.createConcurrentBufferedUpdate(network);
+            default:
+                throw new IllegalArgumentException("Unknown update action " + updateAction);
+        }
+    }
+
+    @Benchmark
+    public double update(Counts counts) {
+        network.update();
+        counts.neuronUpdates += numNeurons;
+        counts.synapseUpdates += synapseCount;
+        return network.getLooseNeurons().get(0).getActivation();
+    }
+}
@@ -47,7 +47,7 @@ public class AlvarezSquire extends CompetitiveGroup {
         // For this simulation we can assume that if one neuron is clamped, they
         // all are
         boolean clamped = getNeuronList().get(0).isClamped();
-        Neuron winner = WinnerTakeAll.getWinner(getNeuronList(), clamped);
+        Neuron winner = WinnerTakeAll.getWinner(getNeuronList(), clamped, getRandom());
 
         // Update weights on winning neuron
         for (int i = 0; i < getNeuronList().size(); i++) {
@@ -21,15 +21,20 @@ import com.thoughtworks.xstream.XStream;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.events.NetworkEvents;
 import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.util.io_utilities.BinaryNetworkFormat;
 import org.simbrain.util.Utils;
 import org.simbrain.util.nd4j.Nd4jConverter;
 import org.simbrain.workspace.Attribute;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.WorkspaceComponent;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -42,6 +47,12 @@ public final class NetworkComponent extends WorkspaceComponent {
      */
     private Network network = new Network();
 
+    /**
+     * Format used when no format is specified, e.g. in workspace files: "xml",
+     * or {@link BinaryNetworkFormat#FORMAT} for large networks.
+     */
+    private String format = "xml";
+
     /**
      * Create a new network component.
      *
@@ -125,18 +136,84 @@ public final class NetworkComponent extends WorkspaceComponent {
         return retList;
     }
 
+    /**
+     * Open a network saved by {@link #save}.
+     *
+     * @param input  the saved network
+     * @param name   name of the new component
+     * @param format the format it was saved in, a file extension without the
+     *               period; anything but {@link BinaryNetworkFormat#FORMAT},
+     *               including null, is read as xml
+     * @return the new component, whose default format is the one it was read
+     * in
+     */
     public static NetworkComponent open(final InputStream input, final String name, final String format) {
+        if (BinaryNetworkFormat.FORMAT.equals(format)) {
+            try {
+                NetworkComponent component = new NetworkComponent(name, BinaryNetworkFormat.read(input));
+                component.setFormat(format);
+                return component;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
         Network newNetwork = (Network) getNetworkXStream().fromXML(input);
         return new NetworkComponent(name, newNetwork);
     }
 
     @Override
     public void save(final OutputStream output, final String format) {
+        if (BinaryNetworkFormat.FORMAT.equals(format == null ? this.format : format)) {
+            try {
+                BinaryNetworkFormat.write(network, output);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
         network.preSaveInit();
         getNetworkXStream().toXML(network, output);
         network.postSaveReInit();
     }
 
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        network.writeState(out);
+    }
+
+    @Override
+    public void readState(DataInput in) throws IOException {
+        network.readState(in);
+    }
+
+    @Override
+    public void checkState(DataInput in) throws IOException {
+        network.checkState(in);
+    }
+
+    @Override
+    public List<? extends String> getFormats() {
+        return Arrays.asList("xml", BinaryNetworkFormat.FORMAT);
+    }
+
+    @Override
+    public String getDefaultFormat() {
+        return format;
+    }
+
+    /**
+     * Set the format used when no format is specified, including in workspace
+     * files.
+     *
+     * @param format "xml" or {@link BinaryNetworkFormat#FORMAT}
+     */
+    public void setFormat(String format) {
+        if (!getFormats().contains(format)) {
+            throw new IllegalArgumentException("Unknown network format " + format);
+        }
+        this.format = format;
+    }
+
     /**
      * Get Xstream with custom converters
      */
@@ -153,6 +230,7 @@ public final class NetworkComponent extends WorkspaceComponent {
      */
     public NetworkComponent copy() {
         NetworkComponent ret = new NetworkComponent("Copy of " + network.getName(), network.copy());
+        ret.format = format;
         return ret;
     }
 
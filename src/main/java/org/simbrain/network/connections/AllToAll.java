@@ -143,13 +143,8 @@ public class AllToAll extends ConnectionStrategy implements EditableObject {
      *                 connection class will be added.
      */
     public void connectNeurons(SynapseGroup synGroup) {
-        List<Synapse> syns = connectAllToAll(synGroup.getSourceNeurons(), synGroup.getTargetNeurons(), synGroup.isRecurrent(), selfConnectionAllowed, false);
-        // Set the capacity of the synapse group's list to accommodate the
-        // synapses this group will add.
-        synGroup.preAllocateSynapses(synGroup.getSourceNeuronGroup().size() * synGroup.getTargetNeuronGroup().size());
-        for (Synapse s : syns) {
-            synGroup.addNewSynapse(s);
-        }
+        synGroup.addConnections(EdgeList.allToAll(synGroup.getSourceNeurons().size(),
+                synGroup.getTargetNeurons().size(), synGroup.isRecurrent() && !selfConnectionAllowed));
     }
 
     @Override
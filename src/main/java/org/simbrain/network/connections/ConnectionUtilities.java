@@ -91,12 +91,12 @@ public class ConnectionUtilities {
                 excitatory = shouldBeExcitatory(excitatoryRatio, exciteCount, inhibCount, s);
                 // Set the strength based on the polarity.
                 if (excitatory) {
-                    s.setStrength(exciteRand != null ? exciteRand.getRandom() : DEFAULT_EXCITATORY_STRENGTH);
+                    s.setStrength(exciteRand != null ? exciteRand.getRandom(s.getSource().getRandom()) : DEFAULT_EXCITATORY_STRENGTH);
                     exciteCount--;
                     // Change the excitatoryRatio to maintain balance
                     excitatoryRatio = exciteCount / (double) remaining;
                 } else {
-                    s.setStrength(inhibRand != null ? inhibRand.getRandom() : DEFAULT_INHIBITORY_STRENGTH);
+                    s.setStrength(inhibRand != null ? inhibRand.getRandom(s.getSource().getRandom()) : DEFAULT_INHIBITORY_STRENGTH);
                     inhibCount--;
                     // Change the excitatoryRatio to maintain balance.
                     excitatoryRatio = (remaining - inhibCount) / (double) remaining;
@@ -146,9 +146,9 @@ public class ConnectionUtilities {
                 excitatory = s.getStrength() > 0;
                 // Set the strength based on the polarity.
                 if (excitatory) {
-                    s.setStrength(exciteRand != null ? exciteRand.getRandom() : DEFAULT_EXCITATORY_STRENGTH);
+                    s.setStrength(exciteRand != null ? exciteRand.getRandom(s.getSource().getRandom()) : DEFAULT_EXCITATORY_STRENGTH);
                 } else {
-                    s.setStrength(inhibRand != null ? inhibRand.getRandom() : DEFAULT_INHIBITORY_STRENGTH);
+                    s.setStrength(inhibRand != null ? inhibRand.getRandom(s.getSource().getRandom()) : DEFAULT_INHIBITORY_STRENGTH);
                 }
             }
         }
@@ -166,7 +166,7 @@ public class ConnectionUtilities {
         checkPolarityMatches(exciteRand, Polarity.EXCITATORY);
         for (Synapse s : synapses) {
             if (Polarity.EXCITATORY.equals(s.getSource().getPolarity()) || s.getStrength() > 0) {
-                s.setStrength(exciteRand != null ? exciteRand.getRandom() : DEFAULT_EXCITATORY_STRENGTH);
+                s.setStrength(exciteRand != null ? exciteRand.getRandom(s.getSource().getRandom()) : DEFAULT_EXCITATORY_STRENGTH);
             }
         }
     }
@@ -184,7 +184,7 @@ public class ConnectionUtilities {
     public static void randomizeExcitatorySynapsesUnsafe(Collection<Synapse> synapses, ProbabilityDistribution exciteRand) {
         checkPolarityMatches(exciteRand, Polarity.EXCITATORY);
         for (Synapse s : synapses) {
-            s.setStrength(exciteRand != null ? exciteRand.getRandom() : DEFAULT_EXCITATORY_STRENGTH);
+            s.setStrength(exciteRand != null ? exciteRand.getRandom(s.getSource().getRandom()) : DEFAULT_EXCITATORY_STRENGTH);
         }
     }
 
@@ -200,7 +200,7 @@ public class ConnectionUtilities {
         checkPolarityMatches(inhibRand, Polarity.INHIBITORY);
         for (Synapse s : synapses) {
             if (Polarity.INHIBITORY.equals(s.getSource().getPolarity()) || s.getStrength() < 0) {
-                s.setStrength(inhibRand != null ? inhibRand.getRandom() : DEFAULT_INHIBITORY_STRENGTH);
+                s.setStrength(inhibRand != null ? inhibRand.getRandom(s.getSource().getRandom()) : DEFAULT_INHIBITORY_STRENGTH);
             }
         }
     }
@@ -218,7 +218,7 @@ public class ConnectionUtilities {
     public static void randomizeInhibitorySynapsesUnsafe(Collection<Synapse> synapses, ProbabilityDistribution inhibRand) {
         checkPolarityMatches(inhibRand, Polarity.INHIBITORY);
         for (Synapse s : synapses) {
-            s.setStrength(inhibRand != null ? inhibRand.getRandom() : DEFAULT_INHIBITORY_STRENGTH);
+            s.setStrength(inhibRand != null ? inhibRand.getRandom(s.getSource().getRandom()) : DEFAULT_INHIBITORY_STRENGTH);
         }
     }
 
@@ -384,7 +384,7 @@ public class ConnectionUtilities {
                     excitatory = true;
                 }
             } else {
-                double exciteOrInhib = Math.random();
+                double exciteOrInhib = s.getSource().getRandom().nextDouble();
                 if (exciteOrInhib < excitatoryRatio) {
                     excitatory = true;
                 } else {
@@ -448,7 +448,8 @@ public class ConnectionUtilities {
         double i = 0;
         for (Synapse s : n.getFanIn()) {
             double psr = s.calcPSR();
-            if (psr > 0) {
+            // Delayed synapses return 0 and deliver through the neuron, so count them by their sign
+            if (s.getDelay() != 0 ? s.getStrength() > 0 : psr > 0) {
                 ei[0] += psr;
                 e++;
             } else {
@@ -456,6 +457,7 @@ public class ConnectionUtilities {
                 i++;
             }
         }
+        n.getDelayedInput(ei);
         if (e > 1) {
             ei[0] /= e;
         }
@@ -484,6 +486,7 @@ public class ConnectionUtilities {
                 ei[1] += psr;
             }
         }
+        n.getDelayedInput(ei);
         return ei;
     }
 }
@@ -0,0 +1,311 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.connections;
+
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.util.math.SimbrainRandom;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Connections between numbered source and target neurons, stored compactly:
+ * the targets of each source in increasing order, one source after another,
+ * with the offset at which each source's targets start. Large connection
+ * patterns are sampled into an edge list in parallel and then given to {@link
+ * SynapseGroup#addConnections(EdgeList)}, which wires them in one pass,
+ * instead of creating synapses one at a time.
+ * <p>
+ * Sources are sampled in blocks of {@link #BLOCK_SIZE}, in parallel. Each
+ * block draws from its own stream, forked from the given stream by block
+ * number, so the connections depend only on the stream's seed and not on how
+ * many threads were used.
+ */
+public final class EdgeList {
+
+    /**
+     * Number of sources sampled together, from one stream.
+     */
+    public static final int BLOCK_SIZE = 1024;
+
+    private final int numSources;
+
+    private final int numTargets;
+
+    /**
+     * Start of each source's targets in {@link #targets}, with the number of
+     * connections at the end.
+     */
+    private final int[] offsets;
+
+    private final int[] targets;
+
+    /**
+     * Create an edge list from arrays, which are used as they are.
+     *
+     * @param numSources number of source neurons
+     * @param numTargets number of target neurons
+     * @param offsets    start of each source's targets, with the number of
+     *                   connections at the end
+     * @param targets    the targets of each source in increasing order, one
+     *                   source after another
+     */
+    public EdgeList(int numSources, int numTargets, int[] offsets, int[] targets) {
+        if (offsets.length != numSources + 1 || offsets[numSources] != targets.length) {
+            throw new IllegalArgumentException("Offsets do not match " + numSources + " sources and "
+                    + targets.length + " connections");
+        }
+        this.numSources = numSources;
+        this.numTargets = numTargets;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Connect every source to every target.
+     *
+     * @param numSources  number of source neurons
+     * @param numTargets  number of target neurons
+     * @param excludeSelf if true, source i is not connected to target i, as
+     *                    for recurrent groups without self connections
+     * @return the edge list
+     */
+    public static EdgeList allToAll(int numSources, int numTargets, boolean excludeSelf) {
+        int[] offsets = new int[numSources + 1];
+        for (int s = 0; s < numSources; s++) {
+            offsets[s + 1] = checkedSum(offsets[s], slots(s, numTargets, excludeSelf));
+        }
+        int[] targets = new int[offsets[numSources]];
+        forEachBlock(numSources, block -> {
+            for (int s = block * BLOCK_SIZE, end = blockEnd(block, numSources); s < end; s++) {
+                int k = offsets[s];
+                for (int t = 0; t < numTargets; t++) {
+                    if (!excludeSelf || t != s) {
+                        targets[k++] = t;
+                    }
+                }
+            }
+        });
+        return new EdgeList(numSources, numTargets, offsets, targets);
+    }
+
+    /**
+     * Connect each source to each target with a given probability,
+     * independently. The targets of each source are found by drawing the gaps
+     * between them from a geometric distribution, so sampling takes time in
+     * proportion to the number of connections rather than the number of
+     * possible connections.
+     *
+     * @param numSources  number of source neurons
+     * @param numTargets  number of target neurons
+     * @param density     probability of each connection
+     * @param excludeSelf if true, source i is not connected to target i
+     * @param random      stream to fork the streams of the blocks from
+     * @return the edge list
+     */
+    public static EdgeList random(int numSources, int numTargets, double density, boolean excludeSelf,
+                                  SimbrainRandom random) {
+        if (density >= 1) {
+            return allToAll(numSources, numTargets, excludeSelf);
+        }
+        if (density <= 0) {
+            return new EdgeList(numSources, numTargets, new int[numSources + 1], new int[0]);
+        }
+        double logQ = Math.log1p(-density);
+
+        // Count first, then sample again from the same streams into the list
+        int[] counts = new int[numSources];
+        forEachBlock(numSources, block -> {
+            SimbrainRandom blockRandom = random.fork(block);
+            for (int s = block * BLOCK_SIZE, end = blockEnd(block, numSources); s < end; s++) {
+                counts[s] = sampleIndependent(s, numTargets, excludeSelf, logQ, blockRandom, null, 0);
+            }
+        });
+        int[] offsets = new int[numSources + 1];
+        for (int s = 0; s < numSources; s++) {
+            offsets[s + 1] = checkedSum(offsets[s], counts[s]);
+        }
+        int[] targets = new int[offsets[numSources]];
+        forEachBlock(numSources, block -> {
+            SimbrainRandom blockRandom = random.fork(block);
+            for (int s = block * BLOCK_SIZE, end = blockEnd(block, numSources); s < end; s++) {
+                sampleIndependent(s, numTargets, excludeSelf, logQ, blockRandom, targets, offsets[s]);
+            }
+        });
+        return new EdgeList(numSources, numTargets, offsets, targets);
+    }
+
+    /**
+     * Connect each source to the same number of targets, chosen uniformly at
+     * random.
+     *
+     * @param numSources  number of source neurons
+     * @param numTargets  number of target neurons
+     * @param perSource   number of targets of each source
+     * @param excludeSelf if true, source i is not connected to target i
+     * @param random      stream to fork the streams of the blocks from
+     * @return the edge list
+     */
+    public static EdgeList equalized(int numSources, int numTargets, int perSource, boolean excludeSelf,
+                                     SimbrainRandom random) {
+        int[] offsets = new int[numSources + 1];
+        for (int s = 0; s < numSources; s++) {
+            if (perSource > slots(s, numTargets, excludeSelf)) {
+                throw new IllegalArgumentException("Cannot connect each source to " + perSource + " of "
+                        + numTargets + " targets");
+            }
+            offsets[s + 1] = checkedSum(offsets[s], perSource);
+        }
+        int[] targets = new int[offsets[numSources]];
+        forEachBlock(numSources, block -> {
+            SimbrainRandom blockRandom = random.fork(block);
+            boolean[] taken = new boolean[numTargets];
+            for (int s = block * BLOCK_SIZE, end = blockEnd(block, numSources); s < end; s++) {
+                sampleSubset(s, numTargets, excludeSelf, perSource, blockRandom, taken, targets, offsets[s]);
+            }
+        });
+        return new EdgeList(numSources, numTargets, offsets, targets);
+    }
+
+    /**
+     * Run a task for each block of {@link #BLOCK_SIZE} sources, in parallel.
+     *
+     * @param numSources number of sources
+     * @param task       receives the block number
+     */
+    public static void forEachBlock(int numSources, IntConsumer task) {
+        int blocks = (numSources + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blocks == 1) {
+            task.accept(0);
+        } else {
+            IntStream.range(0, blocks).parallel().forEach(task);
+        }
+    }
+
+    /**
+     * @param block      a block number
+     * @param numSources number of sources
+     * @return the end of the block's sources, exclusive
+     */
+    public static int blockEnd(int block, int numSources) {
+        return (int) Math.min((long) (block + 1) * BLOCK_SIZE, numSources);
+    }
+
+    /**
+     * @return number of targets a source can connect to
+     */
+    private static int slots(int source, int numTargets, boolean excludeSelf) {
+        return excludeSelf && source < numTargets ? numTargets - 1 : numTargets;
+    }
+
+    private static int checkedSum(int offset, int count) {
+        long sum = (long) offset + count;
+        if (sum > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many connections for one edge list");
+        }
+        return (int) sum;
+    }
+
+    /**
+     * Choose each target of a source with probability 1 - exp(logQ), and
+     * write the targets from a position, or only count them if out is null.
+     * The same numbers are drawn either way.
+     *
+     * @return the number of targets
+     */
+    private static int sampleIndependent(int source, int numTargets, boolean excludeSelf, double logQ,
+                                         SimbrainRandom random, int[] out, int position) {
+        boolean skipSelf = excludeSelf && source < numTargets;
+        int slots = skipSelf ? numTargets - 1 : numTargets;
+        int count = 0;
+        int slot = -1;
+        while (true) {
+            // Number of slots passed over before the next target
+            double gap = Math.floor(Math.log(1 - random.nextDouble()) / logQ);
+            if (gap >= slots - 1 - slot) {
+                return count;
+            }
+            slot += (int) gap + 1;
+            if (out != null) {
+                out[position + count] = skipSelf && slot >= source ? slot + 1 : slot;
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Choose k targets of a source uniformly at random (Floyd's algorithm) and
+     * write them in increasing order from a position.
+     *
+     * @param taken all false, and left that way
+     */
+    private static void sampleSubset(int source, int numTargets, boolean excludeSelf, int k, SimbrainRandom random,
+                                     boolean[] taken, int[] out, int position) {
+        boolean skipSelf = excludeSelf && source < numTargets;
+        int slots = skipSelf ? numTargets - 1 : numTargets;
+        int count = 0;
+        for (int j = slots - k; j < slots; j++) {
+            int slot = random.nextInt(j + 1);
+            if (taken[slot]) {
+                slot = j;
+            }
+            taken[slot] = true;
+            out[position + count++] = slot;
+        }
+        Arrays.sort(out, position, position + k);
+        for (int i = position; i < position + k; i++) {
+            taken[out[i]] = false;
+            if (skipSelf && out[i] >= source) {
+                out[i]++;
+            }
+        }
+    }
+
+    public int getNumSources() {
+        return numSources;
+    }
+
+    public int getNumTargets() {
+        return numTargets;
+    }
+
+    /**
+     * @return number of connections
+     */
+    public int size() {
+        return targets.length;
+    }
+
+    /**
+     * @return start of each source's targets in {@link #getTargets()}, with the
+     * number of connections at the end. Not copied, so should not be changed.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the targets of each source in increasing order, one source after
+     * another. Not copied, so should not be changed.
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+}
@@ -24,6 +24,7 @@ import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.EditableObject;
 
 import java.util.*;
@@ -157,7 +158,7 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
         List<Synapse> synapses = new ArrayList<Synapse>(source.size() * target.size() / 4);
         for (Neuron src : source) {
             for (Neuron tar : target) {
-                double randVal = Math.random();
+                double randVal = src.getRandom().nextDouble();
                 double probability;
                 if (src.getPolarity() == Polarity.EXCITATORY) {
                     if (tar.getPolarity() == Polarity.EXCITATORY) {
@@ -211,7 +212,7 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
         List<Synapse> synapses = new ArrayList<Synapse>(source.size() * target.size() / 4);
         for (Neuron src : source) {
             for (Neuron tar : target) {
-                double randVal = Math.random();
+                double randVal = src.getRandom().nextDouble();
                 double probability = calcConnectProb(src, tar, distConst, lambda);
                 if (randVal < probability) {
                     Synapse s = new Synapse(src, tar);
@@ -483,7 +484,7 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
             List<Synapse> synapses = new ArrayList<Synapse>((int) Math.ceil(srcColl.size() * targColl.size() * 0.2 * 0.75));
             for (Neuron src : srcColl) {
                 for (Neuron tar : targColl) {
-                    double randVal = rand.nextRand();
+                    double randVal = rand.nextRand(src.getRandom());
                     double probability;
                     if (src.getPolarity() == Polarity.EXCITATORY) {
                         if (tar.getPolarity() == Polarity.EXCITATORY) {
@@ -524,10 +525,11 @@ public class RadialGaussian extends ConnectionStrategy implements EditableObject
 
         @Override
         public void run() {
+            SimbrainRandom random = SimbrainRandom.current();
             int count = 0;
             for (Neuron src : synapseGroup.getSourceNeurons()) {
                 for (Neuron tar : synapseGroup.getTargetNeurons()) {
-                    double randVal = Math.random();
+                    double randVal = random.nextDouble();
                     double probability;
                     if (src.getPolarity() == Polarity.EXCITATORY) {
                         if (tar.getPolarity() == Polarity.EXCITATORY) {
@@ -26,6 +26,7 @@ import org.simbrain.network.util.SimnetUtils;
 import org.simbrain.util.SimbrainConstants;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.EditableObject;
 
 import java.util.ArrayList;
@@ -242,11 +243,12 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
      * @param neuron
      */
     private void makeInhibitory(final Neuron neuron, List<Synapse> syns, boolean looseSynapses) {
+        SimbrainRandom random = neuron.getRandom();
         int degreeCounter = 0;
         List<Neuron> neusInRadius = SimnetUtils.getNeuronsInRadius(neuron, inhNeurons, inhibitoryRadius);
         neusInRadius.addAll(SimnetUtils.getNeuronsInRadius(neuron, nonPolarNeurons, inhibitoryRadius));
         if (conMethod == ConnectStyle.DETERMINISTIC) {
-            Collections.shuffle(neusInRadius);
+            Collections.shuffle(neusInRadius, random);
         }
         for (Neuron otherNeu : neusInRadius) {
             // Don't add a connection if there is already one present
@@ -259,11 +261,11 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
                 }
             }
             if (conMethod == ConnectStyle.PROBABILISTIC) {
-                if (Math.random() < inhibitoryProbability) {
+                if (random.nextDouble() < inhibitoryProbability) {
                     Synapse synapse;
                     if (selectMethod == SelectionStyle.IN) {
                         synapse = new Synapse(otherNeu, neuron);
-                        synapse.setStrength(Math.random());
+                        synapse.setStrength(random.nextDouble());
                     } else {
                         synapse = new Synapse(neuron, otherNeu);
                     }
@@ -282,7 +284,7 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
                 else {
                     synapse = new Synapse(neuron, otherNeu);
                 }
-                synapse.setStrength(-Math.random());
+                synapse.setStrength(-random.nextDouble());
                 if (looseSynapses) {
                     network.addLooseSynapse(synapse);
                 } else {
@@ -308,11 +310,12 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
      * @param neuron neuron neuron
      */
     private void makeExcitatory(final Neuron neuron, List<Synapse> syns, boolean looseSynapses) {
+        SimbrainRandom random = neuron.getRandom();
         int degreeCounter = 0;
         List<Neuron> neusInRadius = SimnetUtils.getNeuronsInRadius(neuron, excNeurons, excitatoryRadius);
         neusInRadius.addAll(SimnetUtils.getNeuronsInRadius(neuron, nonPolarNeurons, excitatoryRadius));
         if (conMethod == ConnectStyle.DETERMINISTIC) {
-            Collections.shuffle(neusInRadius);
+            Collections.shuffle(neusInRadius, random);
         }
         for (Neuron otherNeu : neusInRadius) {
             // Don't add a connection if there is already one present
@@ -325,14 +328,14 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
                 }
             }
             if (conMethod == ConnectStyle.PROBABILISTIC) {
-                if (Math.random() < excitatoryProbability) {
+                if (random.nextDouble() < excitatoryProbability) {
                     Synapse synapse;
                     if (selectMethod == SelectionStyle.IN)
                         synapse = new Synapse(otherNeu, neuron);
                     else {
                         synapse = new Synapse(neuron, otherNeu);
                     }
-                    synapse.setStrength(Math.random());
+                    synapse.setStrength(random.nextDouble());
                     if (looseSynapses) {
                         network.addLooseSynapse(synapse);
                     } else {
@@ -347,7 +350,7 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
                 else {
                     synapse = new Synapse(neuron, otherNeu);
                 }
-                synapse.setStrength(Math.random());
+                synapse.setStrength(random.nextDouble());
                 if (looseSynapses) {
                     network.addLooseSynapse(synapse);
                 } else {
@@ -428,12 +431,13 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
     private static List<Synapse> connectProb(Neuron n, List<Neuron> others,
                                      List<Synapse> retList,
                                      SelectionStyle selectionStyle, double p) {
+        SimbrainRandom random = n.getRandom();
         for(Neuron o : others) {
-            if(Math.random() < p) {
+            if(random.nextDouble() < p) {
                 if(selectionStyle == SelectionStyle.IN) {
-                    retList.add(new Synapse(o, n, o.getPolarity().value(Math.random())));
+                    retList.add(new Synapse(o, n, o.getPolarity().value(random.nextDouble())));
                 } else {
-                    retList.add(new Synapse(n, o, n.getPolarity().value(Math.random())));
+                    retList.add(new Synapse(n, o, n.getPolarity().value(random.nextDouble())));
                 }
             }
         }
@@ -455,17 +459,18 @@ public class RadialSimple extends ConnectionStrategy implements EditableObject {
     private static List<Synapse> connectDet(Neuron n, List<Neuron> others,
                                      List<Synapse> retList,
                                      SelectionStyle selectionStyle, int N) {
+        SimbrainRandom random = n.getRandom();
         if(N > others.size()) {
             N = others.size();
         } else {
-            Collections.shuffle(others);
+            Collections.shuffle(others, random);
         }
         for(int ii=0; ii<N; ++ii) {
             Neuron o = others.get(ii);
             if (selectionStyle == SelectionStyle.IN) {
-                retList.add(new Synapse(o, n, o.getPolarity().value(Math.random())));
+                retList.add(new Synapse(o, n, o.getPolarity().value(random.nextDouble())));
             } else {
-                retList.add(new Synapse(n, o, n.getPolarity().value(Math.random())));
+                retList.add(new Synapse(n, o, n.getPolarity().value(random.nextDouble())));
             }
         }
         return retList;
@@ -22,10 +22,12 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.util.math.SimbrainMath;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.EditableObject;
 import umontreal.ssj.randvar.BinomialGen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -176,7 +178,6 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
         Neuron target;
         Synapse synapse;
         ArrayList<Synapse> syns = new ArrayList<Synapse>();
-        Random rand = new Random(System.nanoTime());
         if (equalizeEfferents) {
             ArrayList<Integer> targetList = new ArrayList<Integer>();
             ArrayList<Integer> tListCopy;
@@ -208,9 +209,9 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
                         }
                         tListCopy.add(targetList.get(k));
                     }
-                    randShuffleK(tListCopy, synsPerSource, rand);
+                    randShuffleK(tListCopy, synsPerSource, source.getRandom());
                 } else {
-                    randShuffleK(targetList, synsPerSource, rand);
+                    randShuffleK(targetList, synsPerSource, source.getRandom());
                     tListCopy = targetList;
                 }
 
@@ -229,7 +230,7 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
                     if (!selfConnectionAllowed && recurrent && i == j) {
                         continue;
                     } else {
-                        if (Math.random() < sparsity) {
+                        if (sourceNeurons.get(i).getRandom().nextDouble() < sparsity) {
                             source = sourceNeurons.get(i);
                             target = targetNeurons.get(j);
                             synapse = new Synapse(source, target);
@@ -258,7 +259,7 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
         boolean recurrent = synapseGroup.isRecurrent();
         int numSrc = synapseGroup.getSourceNeurons().size();
         int numTar = synapseGroup.getTargetNeurons().size();
-        setPermitDensityEditing(numSrc * numTar < 10E8);
+        setPermitDensityEditing((long) numSrc * numTar < 10E8);
         sourceNeurons = synapseGroup.getSourceNeurons().toArray(new Neuron[numSrc]);
         targetNeurons = recurrent ? sourceNeurons : synapseGroup.getTargetNeurons().toArray(new Neuron[numTar]);
         // Are you initializing with the intention of editing later on?
@@ -270,10 +271,17 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
                 connectRandom(synapseGroup);
             }
         } else {
-            List<Synapse> syns = this.connectSparse(synapseGroup.getSourceNeurons(), synapseGroup.getTargetNeurons());
-            for (Synapse s : syns) {
-                synapseGroup.addNewSynapse(s);
+            // Too large to keep orderings for editing, so sample the connections in bulk
+            boolean excludeSelf = recurrent && !selfConnectionAllowed;
+            SimbrainRandom random = synapseGroup.getSourceNeuronGroup().getRandom().split();
+            EdgeList edges;
+            if (equalizeEfferents) {
+                int numConnectsPerSrc = (int) (connectionDensity * (excludeSelf ? numTar - 1 : numTar));
+                edges = EdgeList.equalized(numSrc, numTar, numConnectsPerSrc, excludeSelf, random);
+            } else {
+                edges = EdgeList.random(numSrc, numTar, connectionDensity, excludeSelf, random);
             }
+            synapseGroup.addConnections(edges);
         }
 
     }
@@ -297,24 +305,13 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
     private void connectEqualized(SynapseGroup synapseGroup) {
         currentOrderingIndices = new int[sourceNeurons.length];
         int numConnectsPerSrc;
-        int expectedNumSyns;
         if (synapseGroup.isRecurrent() && !selfConnectionAllowed) {
             numConnectsPerSrc = (int) (connectionDensity * (sourceNeurons.length - 1));
         } else {
             numConnectsPerSrc = (int) (connectionDensity * targetNeurons.length);
         }
-        expectedNumSyns = numConnectsPerSrc * sourceNeurons.length;
-        synapseGroup.preAllocateSynapses(expectedNumSyns);
-        for (int i = 0, n = sourceNeurons.length; i < n; i++) {
-            currentOrderingIndices[i] = numConnectsPerSrc;
-            Neuron src = sourceNeurons[i];
-            Neuron tar;
-            for (int j = 0; j < numConnectsPerSrc; j++) {
-                tar = targetNeurons[sparseOrdering[i][j]];
-                Synapse s = new Synapse(src, tar);
-                synapseGroup.addNewSynapse(s);
-            }
-        }
+        Arrays.fill(currentOrderingIndices, numConnectsPerSrc);
+        connectOrderingPrefixes(synapseGroup);
     }
 
     /**
@@ -336,25 +333,32 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
         currentOrderingIndices = new int[sourceNeurons.length];
         int numTars = synapseGroup.isRecurrent() && !selfConnectionAllowed ? (sourceNeurons.length - 1) : targetNeurons.length;
         synapseGroup.clear(); // TODO: Zoe? Make
-        synapseGroup.preAllocateSynapses((int) (sourceNeurons.length * numTars * connectionDensity));
         for (int i = 0, n = sourceNeurons.length; i < n; i++) {
-            currentOrderingIndices[i] = BinomialGen.nextInt(SimbrainMath.DEFAULT_RANDOM_STREAM, numTars, connectionDensity);
             Neuron src = sourceNeurons[i];
-            Neuron tar;
-            int tarLen = targetNeurons.length - 1;
-            int[] o = null;
-            if (sourceNeurons == targetNeurons && !selfConnectionAllowed) {
-                o = SimbrainMath.randPermuteWithExclusion(0, tarLen + 1, i);
-            } else {
-                o = SimbrainMath.randPermute(0, tarLen + 1);
-            }
-            for (int j = 0; j < currentOrderingIndices[i]; j++) {
-                tar = targetNeurons[o[j]];
-                Synapse s = new Synapse(src, tar);
-                synapseGroup.addNewSynapse(s);
-            }
+            currentOrderingIndices[i] = BinomialGen.nextInt(src.getRandom().asRandomStream(), numTars, connectionDensity);
         }
+        connectOrderingPrefixes(synapseGroup);
+    }
 
+    /**
+     * Connects each source neuron to the first {@link #currentOrderingIndices}
+     * targets of its {@link #sparseOrdering}, all at once, so that the
+     * orderings say which connections to add or remove when the density is
+     * edited.
+     *
+     * @param synapseGroup the synapse group to add the connections to
+     */
+    private void connectOrderingPrefixes(SynapseGroup synapseGroup) {
+        int[] offsets = new int[sourceNeurons.length + 1];
+        for (int i = 0; i < sourceNeurons.length; i++) {
+            offsets[i + 1] = offsets[i] + currentOrderingIndices[i];
+        }
+        int[] targets = new int[offsets[sourceNeurons.length]];
+        for (int i = 0; i < sourceNeurons.length; i++) {
+            System.arraycopy(sparseOrdering[i], 0, targets, offsets[i], currentOrderingIndices[i]);
+            Arrays.sort(targets, offsets[i], offsets[i + 1]);
+        }
+        synapseGroup.addConnections(new EdgeList(sourceNeurons.length, targetNeurons.length, offsets, targets));
     }
 
     /**
@@ -366,13 +370,13 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
             int tarLen = targetNeurons.length - 1;
             sparseOrdering = new int[sourceNeurons.length][tarLen];
             for (int i = 0; i < srcLen; i++) {
-                sparseOrdering[i] = SimbrainMath.randPermuteWithExclusion(0, tarLen + 1, i);
+                sparseOrdering[i] = SimbrainMath.randPermuteWithExclusion(0, tarLen + 1, i, sourceNeurons[i].getRandom());
             }
         } else {
             int tarLen = targetNeurons.length;
             sparseOrdering = new int[sourceNeurons.length][tarLen];
             for (int i = 0; i < srcLen; i++) {
-                sparseOrdering[i] = SimbrainMath.randPermute(0, tarLen);
+                sparseOrdering[i] = SimbrainMath.randPermute(0, tarLen, sourceNeurons[i].getRandom());
             }
         }
     }
@@ -401,6 +405,8 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
         if (newSparsity >= connectionDensity) {
             throw new IllegalArgumentException("Cannot 'removeToSparsity' to" + " a higher connectivity density.");
         }
+        // Editing finds and adds synapse objects
+        synapseGroup.setMatrixMode(false);
         Network net = sourceNeurons[0].getNetwork();
         int removeTotal = (synapseGroup.size() - (int) (newSparsity * getMaxPossibleConnections()));
         if (equalizeEfferents) {
@@ -416,7 +422,7 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
             }
         } else {
             for (int i = 0, n = sourceNeurons.length; i < n; i++) {
-                int numToRemove = BinomialGen.nextInt(SimbrainMath.DEFAULT_RANDOM_STREAM, synapseGroup.getTargetNeuronGroup().size(), newSparsity);
+                int numToRemove = BinomialGen.nextInt(sourceNeurons[i].getRandom().asRandomStream(), synapseGroup.getTargetNeuronGroup().size(), newSparsity);
                 if (numToRemove < currentOrderingIndices[i]) {
                     List<Synapse> remove = decreaseDensity(i, numToRemove);
                     for (Synapse s : remove) {
@@ -441,6 +447,7 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
         if (newSparsity <= connectionDensity) {
             throw new IllegalArgumentException("Cannot 'addToSparsity' to" + " a lower connectivity density.");
         }
+        synapseGroup.setMatrixMode(false);
         int addTotal = ((int) (newSparsity * getMaxPossibleConnections()) - synapseGroup.size());
         List<Synapse> addList = new ArrayList<Synapse>(addTotal);
         if (equalizeEfferents) {
@@ -459,7 +466,7 @@ public class Sparse extends ConnectionStrategy implements EditableObject {
             }
         } else {
             for (int i = 0, n = sourceNeurons.length; i < n; i++) {
-                int numToAdd = BinomialGen.nextInt(SimbrainMath.DEFAULT_RANDOM_STREAM, synapseGroup.getTargetNeuronGroup().size(), newSparsity);
+                int numToAdd = BinomialGen.nextInt(sourceNeurons[i].getRandom().asRandomStream(), synapseGroup.getTargetNeuronGroup().size(), newSparsity);
                 int finalNumConPerSource = numToAdd >= currentOrderingIndices[i] ? numToAdd : currentOrderingIndices[i];
                 if (finalNumConPerSource > sparseOrdering[i].length) {
                     finalNumConPerSource = sparseOrdering[i].length;
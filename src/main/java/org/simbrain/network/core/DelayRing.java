@@ -0,0 +1,184 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Input that is on its way to a neuron through delayed synapses. A delayed
+ * synapse adds its response to the slot that will be current the given number
+ * of steps from now. The current slot can be read any number of times; the
+ * neuron clears it and advances one slot once per update. All delayed synapses onto a neuron share one ring,
+ * so the cost of a delay is one add per synapse rather than a queue per
+ * synapse.
+ * <p>
+ * Positive and negative contributions are kept in separate lanes so that
+ * models which separate excitatory from inhibitory input can still do so.
+ * <p>
+ * The ring grows (to a power of two) when a longer delay is first seen, and
+ * is never shrunk.
+ */
+final class DelayRing {
+
+    /**
+     * Slots, two per step: excitatory at even indices and inhibitory at odd
+     * indices.
+     */
+    private double[] slots;
+
+    /**
+     * Index of the step read next.
+     */
+    private int position;
+
+    private DelayRing() {
+    }
+
+    /**
+     * Create a ring that can hold the given delay without growing.
+     *
+     * @param delay longest expected delay
+     */
+    DelayRing(int delay) {
+        slots = new double[2 * capacityFor(delay)];
+    }
+
+    /**
+     * Add a value that should be read after the given number of steps. A
+     * delay of 0 means the current step.
+     *
+     * @param delay number of steps to wait
+     * @param value value to add
+     */
+    void add(int delay, double value) {
+        if (delay >= length()) {
+            grow(delay);
+        }
+        int slot = 2 * ((position + delay) & (length() - 1));
+        if (value > 0) {
+            slots[slot] += value;
+        } else {
+            slots[slot + 1] += value;
+        }
+    }
+
+    /**
+     * Read the current step without clearing it.
+     *
+     * @return the summed input arriving now
+     */
+    double peek() {
+        int slot = 2 * position;
+        return slots[slot] + slots[slot + 1];
+    }
+
+    /**
+     * Like {@link #peek()}, but adds the excitatory and inhibitory parts
+     * separately to the first and second elements of the given array.
+     *
+     * @param ei array to add to
+     */
+    void peek(double[] ei) {
+        int slot = 2 * position;
+        ei[0] += slots[slot];
+        ei[1] += slots[slot + 1];
+    }
+
+    /**
+     * Clear the current step and advance to the next.
+     */
+    void advance() {
+        int slot = 2 * position;
+        slots[slot] = 0;
+        slots[slot + 1] = 0;
+        position = (position + 1) & (length() - 1);
+    }
+
+    /**
+     * Discard everything in flight.
+     */
+    void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    /**
+     * Write the input in flight, oldest first.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    void write(DataOutput out) throws IOException {
+        int length = length();
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            int slot = 2 * ((position + i) & (length - 1));
+            out.writeDouble(slots[slot]);
+            out.writeDouble(slots[slot + 1]);
+        }
+    }
+
+    /**
+     * Read a ring written by {@link #write}.
+     *
+     * @param in the input
+     * @return the ring
+     * @throws IOException if reading fails
+     */
+    static DelayRing read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || Integer.bitCount(length) != 1) {
+            throw new IOException("Bad delay ring length " + length);
+        }
+        DelayRing ring = new DelayRing();
+        ring.slots = new double[2 * length];
+        for (int i = 0; i < ring.slots.length; i++) {
+            ring.slots[i] = in.readDouble();
+        }
+        return ring;
+    }
+
+    /**
+     * @return number of steps the ring holds
+     */
+    int length() {
+        return slots.length / 2;
+    }
+
+    private void grow(int delay) {
+        int oldLength = length();
+        double[] grown = new double[2 * capacityFor(delay)];
+        for (int i = 0; i < oldLength; i++) {
+            int from = 2 * ((position + i) & (oldLength - 1));
+            grown[2 * i] = slots[from];
+            grown[2 * i + 1] = slots[from + 1];
+        }
+        slots = grown;
+        position = 0;
+    }
+
+    /**
+     * Smallest power of two greater than the delay.
+     */
+    private static int capacityFor(int delay) {
+        return Integer.highestOneBit(Math.max(1, delay)) << 1;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import java.util.*;
+
+/**
+ * Map from target neuron to synapse used for a neuron's fan-out. Entries are
+ * kept in two parallel arrays that are allocated on the first put and grow as
+ * needed, so a neuron with no efferent synapses costs only this object. Small
+ * maps are searched linearly; once a map grows past {@link #HASH_THRESHOLD}
+ * entries a hash index from target to array position is built and kept up to
+ * date.
+ * <p>
+ * Iteration follows the arrays. Removing an entry moves the last entry into
+ * its place, so iteration order is insertion order until something is
+ * removed. Not thread safe.
+ */
+final class FanOutMap extends AbstractMap<Neuron, Synapse> {
+
+    /**
+     * Size above which lookups go through a hash index.
+     */
+    static final int HASH_THRESHOLD = 16;
+
+    /**
+     * Capacity of the arrays when first allocated.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final Neuron[] NO_TARGETS = new Neuron[0];
+
+    private static final Synapse[] NO_SYNAPSES = new Synapse[0];
+
+    private Neuron[] targets = NO_TARGETS;
+
+    private Synapse[] synapses = NO_SYNAPSES;
+
+    private int size;
+
+    /**
+     * Position of each target in the arrays. Null for small maps.
+     */
+    private HashMap<Neuron, Integer> index;
+
+    /**
+     * Incremented on structural changes, so iterators can fail fast.
+     */
+    private int modCount;
+
+    private Set<Entry<Neuron, Synapse>> entrySet;
+
+    private Collection<Synapse> values;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return position of the given target, or -1 if absent
+     */
+    private int indexOf(Object target) {
+        if (index != null) {
+            Integer i = index.get(target);
+            return i == null ? -1 : i;
+        }
+        for (int i = 0; i < size; i++) {
+            if (Objects.equals(targets[i], target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Synapse get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : synapses[i];
+    }
+
+    @Override
+    public Synapse put(Neuron key, Synapse value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            Synapse old = synapses[i];
+            synapses[i] = value;
+            return old;
+        }
+        if (size == targets.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            targets = Arrays.copyOf(targets, capacity);
+            synapses = Arrays.copyOf(synapses, capacity);
+        }
+        targets[size] = key;
+        synapses[size] = value;
+        if (index != null) {
+            index.put(key, size);
+        }
+        size++;
+        modCount++;
+        if (index == null && size > HASH_THRESHOLD) {
+            buildIndex();
+        }
+        return null;
+    }
+
+    @Override
+    public Synapse remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        Synapse old = synapses[i];
+        removeAt(i);
+        return old;
+    }
+
+    private void removeAt(int i) {
+        int last = size - 1;
+        if (index != null) {
+            index.remove(targets[i]);
+        }
+        if (i != last) {
+            targets[i] = targets[last];
+            synapses[i] = synapses[last];
+            if (index != null) {
+                index.put(targets[i], i);
+            }
+        }
+        targets[last] = null;
+        synapses[last] = null;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        targets = NO_TARGETS;
+        synapses = NO_SYNAPSES;
+        size = 0;
+        index = null;
+        modCount++;
+    }
+
+    private void buildIndex() {
+        index = new HashMap<>((int) (size / .75f) + 1);
+        for (int i = 0; i < size; i++) {
+            index.put(targets[i], i);
+        }
+    }
+
+    /**
+     * Release unused capacity.
+     */
+    void trimToSize() {
+        if (size < targets.length) {
+            targets = size == 0 ? NO_TARGETS : Arrays.copyOf(targets, size);
+            synapses = size == 0 ? NO_SYNAPSES : Arrays.copyOf(synapses, size);
+        }
+    }
+
+    @Override
+    public Collection<Synapse> values() {
+        if (values == null) {
+            values = new AbstractCollection<Synapse>() {
+                @Override
+                public Iterator<Synapse> iterator() {
+                    return new ArrayIterator<Synapse>() {
+                        @Override
+                        Synapse get(int i) {
+                            return synapses[i];
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    FanOutMap.this.clear();
+                }
+            };
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Entry<Neuron, Synapse>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<Neuron, Synapse>>() {
+                @Override
+                public Iterator<Entry<Neuron, Synapse>> iterator() {
+                    return new ArrayIterator<Entry<Neuron, Synapse>>() {
+                        @Override
+                        Entry<Neuron, Synapse> get(int i) {
+                            return new SimpleImmutableEntry<>(targets[i], synapses[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    FanOutMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Iterates over the arrays and supports removal.
+     */
+    private abstract class ArrayIterator<T> implements Iterator<T> {
+
+        private int next;
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        abstract T get(int i);
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return get(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // The last entry moves into the removed slot, so visit that slot again
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -26,13 +26,20 @@ import org.simbrain.network.dl4j.NeuronArray;
 import org.simbrain.network.dl4j.WeightMatrix;
 import org.simbrain.network.events.NetworkEvents;
 import org.simbrain.network.groups.*;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
+import org.simbrain.util.DeepCopier;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.SimbrainPreferences;
 import org.simbrain.util.SimpleIdManager;
 import org.simbrain.util.Utils;
 import org.simbrain.util.math.SimbrainMath;
+import org.simbrain.util.math.SimbrainRandom;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -82,6 +89,11 @@ public class Network {
      */
     private transient NetworkEvents events = new NetworkEvents(this);
 
+    /**
+     * Cached flat lists and lookup tables for neurons and synapses. See {@link NetworkModelIndex}.
+     */
+    private transient NetworkModelIndex modelIndex = new NetworkModelIndex(this);
+
     /**
      * List of "loose neurons" (as opposed to neurons in neuron groups)
      */
@@ -180,6 +192,11 @@ public class Network {
      */
     private int iterCount = 0;
 
+    /**
+     * Version of the format written by {@link #writeState}.
+     */
+    private static final int STATE_VERSION = 2;
+
     /**
      * How frequently this network should fire events.
      */
@@ -190,12 +207,53 @@ public class Network {
      */
     private boolean oneOffRun = false;
 
+    /**
+     * If true, neurons fire activation change events as soon as their activation changes, even during an update.
+     * By default these events are deferred during {@link #update()} and fired once per neuron when the update
+     * completes, along with a single {@link NetworkEvents#fireActivationsChanged} event for the whole network.
+     */
+    private boolean immediateActivationEvents = false;
+
+    /**
+     * True while an update is running and activation change events are being deferred.
+     */
+    private transient volatile boolean deferringActivationEvents;
+
+    /**
+     * Whether anything listens for the network-level activations changed event. Sampled at the start of each update
+     * so neurons don't have to query the listener map.
+     */
+    private transient boolean activationBatchHandlers;
+
+    /**
+     * Set by neurons when they defer an activation change event during the current update.
+     */
+    private transient volatile boolean activationsChanged;
+
+    /**
+     * Indices into the flat neuron list of neurons whose activation changed in the last update. Reused between
+     * updates.
+     */
+    private transient BitSet changedActivations;
+
+    /**
+     * Seed from which all random numbers drawn by the network's neurons, groups, and update rules are derived. Saved
+     * with the network, so that a saved simulation can be re-run exactly.
+     */
+    private long randomSeed;
+
+    /**
+     * Root random stream, created from {@link #randomSeed} on demand.
+     */
+    private transient SimbrainRandom random;
+
     /**
      * Used to create an instance of network (Default constructor).
      */
     public Network() {
         name = "Network" + current_id;
         current_id++;
+        randomSeed = SimbrainRandom.current().nextLong();
         updateManager = new NetworkUpdateManager(this);
         prioritySortedNeuronList = new ArrayList<>();
         initIdManager();
@@ -208,7 +266,16 @@ public class Network {
     public void update() {
 
         // Main update
-        updateManager.invokeAllUpdates();
+        deferringActivationEvents = !immediateActivationEvents;
+        activationBatchHandlers = events.hasActivationsChangedHandlers();
+        SimbrainRandom previousRandom = SimbrainRandom.bind(getRandom());
+        try {
+            updateManager.invokeAllUpdates();
+        } finally {
+            SimbrainRandom.bind(previousRandom);
+            deferringActivationEvents = false;
+        }
+        fireDeferredActivationEvents();
 
         //clearInputs();
         updateTime();
@@ -220,11 +287,71 @@ public class Network {
 
     }
 
+    /**
+     * Fire the activation change events deferred during the last update: one per changed neuron, then a single
+     * network-level event with all changed indices. Costs nothing if no neuron changed while being observed.
+     */
+    private void fireDeferredActivationEvents() {
+        if (!activationsChanged) {
+            return;
+        }
+        activationsChanged = false;
+        List<Neuron> neurons = getFlatNeuronList();
+        if (changedActivations == null) {
+            changedActivations = new BitSet(neurons.size());
+        }
+        changedActivations.clear();
+        for (int i = 0, n = neurons.size(); i < n; i++) {
+            if (neurons.get(i).isActivationChanged()) {
+                changedActivations.set(i);
+            }
+        }
+        for (int i = changedActivations.nextSetBit(0); i >= 0; i = changedActivations.nextSetBit(i + 1)) {
+            neurons.get(i).fireDeferredActivationChange();
+        }
+        if (activationBatchHandlers) {
+            events.fireActivationsChanged(changedActivations);
+        }
+    }
+
+    /**
+     * @return true if neurons should defer activation change events until the current update completes
+     */
+    public boolean isDeferringActivationEvents() {
+        return deferringActivationEvents;
+    }
+
+    /**
+     * @return true if a network-level activations changed handler was registered when the current update started
+     */
+    boolean hasActivationBatchHandlers() {
+        return activationBatchHandlers;
+    }
+
+    /**
+     * Called by a neuron when it defers an activation change event.
+     */
+    void markActivationsChanged() {
+        activationsChanged = true;
+    }
+
+    public boolean isImmediateActivationEvents() {
+        return immediateActivationEvents;
+    }
+
+    /**
+     * @param immediateActivationEvents if true, fire activation change events as they happen rather than once at the
+     *                                  end of each update
+     */
+    public void setImmediateActivationEvents(boolean immediateActivationEvents) {
+        this.immediateActivationEvents = immediateActivationEvents;
+    }
+
     /**
      * Update the priority list used for priority based update.
      */
     void updatePriorityList() {
-        prioritySortedNeuronList = this.getFlatNeuronList();
+        prioritySortedNeuronList = new ArrayList<>(this.getFlatNeuronList());
         resortPriorities();
     }
 
@@ -242,7 +369,16 @@ public class Network {
      * value elements.
      */
     public void updateNeuronsByPriority() {
+        // Input through synapse groups in matrix mode is not in the fan-ins, so it is added first, as in
+        // NeuronGroup#update()
+        for (NeuronGroup group : getFlatNeuronGroupList()) {
+            group.addMatrixInputs();
+        }
         for (Neuron neuron : prioritySortedNeuronList) {
+            NeuronGroup group = neuron.getParentGroup();
+            if (group != null && !group.isUpdateDue()) {
+                continue;
+            }
             neuron.update();
             neuron.setToBufferVals();
         }
@@ -274,7 +410,8 @@ public class Network {
     }
 
     /**
-     * Clears out input values of network nodes, which otherwise linger and cause problems.
+     * Clears out input values of network nodes, which otherwise linger and cause problems. Neurons in groups that
+     * were not due to update this time keep their input, which is delivered when the group next updates.
      */
     public void clearInputs() {
 
@@ -282,6 +419,10 @@ public class Network {
         // i.e. a way to get a list of neurons that (1) are coupled or better,
         // (2) have input values which consume.
         for (Neuron neuron : this.getFlatNeuronList()) {
+            NeuronGroup group = neuron.getParentGroup();
+            if (group != null && !group.isUpdateDue()) {
+                continue;
+            }
             neuron.setInputValue(0);
         }
     }
@@ -318,12 +459,7 @@ public class Network {
      * @return neuron with that id, null otherwise
      */
     public Neuron getLooseNeuron(String id) {
-        for (Neuron n : getFlatNeuronList()) {
-            if (n.getId().equalsIgnoreCase(id)) {
-                return n;
-            }
-        }
-        return null;
+        return modelIndex.getNeuronById(id);
     }
 
     /**
@@ -363,12 +499,7 @@ public class Network {
      * @return synapse with that id, null otherwise
      */
     public Synapse getLooseSynapse(String id) {
-        for (Synapse s : getFlatSynapseList()) {
-            if (s.getId().equalsIgnoreCase(id)) {
-                return s;
-            }
-        }
-        return null;
+        return modelIndex.getSynapseById(id);
     }
 
     /**
@@ -379,12 +510,14 @@ public class Network {
     public void addLooseNeuron(Neuron neuron) {
         looseNeurons.add(neuron);
         updatePriorityList();
+        modelIndex.invalidate();
         events.fireModelAdded(neuron);
     }
 
     public void addLooseNeurons(Collection<Neuron> neurons) {
         looseNeurons.addAll(neurons);
         updatePriorityList();
+        modelIndex.invalidate();
         neurons.forEach(events::fireModelAdded);
     }
 
@@ -393,11 +526,13 @@ public class Network {
      */
     public void addNeuronArray(NeuronArray na) {
         naList.add(na);
+        modelIndex.invalidate();
         events.fireModelAdded(na);
     }
 
     public void addDL4JMultiLayerNetwork(MultiLayerNet network) {
         multiLayerNetworks.add(network);
+        modelIndex.invalidate();
         events.fireModelAdded(network);
     }
 
@@ -410,9 +545,21 @@ public class Network {
         synapse.initSpikeResponder();
         looseSynapses.add(synapse);
         synapse.setId(idManager.getId(Synapse.class));
+        modelIndex.invalidate();
         events.fireModelAdded(synapse);
     }
 
+    /**
+     * Add loose synapses read from a file. Unlike {@link #addLooseSynapse(Synapse)} the synapses keep their ids and
+     * no events are fired. The synapses should already be in the fan-in and fan-out of their neurons.
+     *
+     * @param synapses the synapses to add
+     */
+    public void restoreLooseSynapses(Collection<Synapse> synapses) {
+        looseSynapses.addAll(synapses);
+        modelIndex.invalidate();
+    }
+
     /**
      * Calls {@link Synapse#update} for each weight.
      */
@@ -446,6 +593,7 @@ public class Network {
             SynapseGroup parentGroup = toDelete.getParentGroup();
             parentGroup.removeSynapse(toDelete);
             if (parentGroup.isDisplaySynapses()) {
+                modelIndex.invalidate();
                 events.fireModelRemoved(toDelete);
             }
             // TODO
@@ -455,6 +603,7 @@ public class Network {
         } else {
             looseSynapses.remove(toDelete);
             // Notify listeners that this synapse has been deleted
+            modelIndex.invalidate();
             events.fireModelRemoved(toDelete);
             toDelete.getEvents().fireDeleted();
         }
@@ -487,6 +636,7 @@ public class Network {
 
         // Notify listeners that this neuron has been deleted
         if (fireEvent) {
+            modelIndex.invalidate();
             events.fireModelRemoved(toDelete);
             toDelete.getEvents().fireDeleted();
         }
@@ -495,35 +645,41 @@ public class Network {
     public void delete(NeuronGroup ng) {
         neuronGroups.remove(ng);
         ng.delete();
+        modelIndex.invalidate();
         events.fireModelRemoved(ng);
     }
 
     public void delete(SynapseGroup sg) {
         synapseGroups.remove(sg);
         sg.delete();
+        modelIndex.invalidate();
         events.fireModelRemoved(sg);
     }
 
     public void delete(NeuronCollection nc) {
         neuronCollectionSet.remove(nc);
         nc.delete();
+        modelIndex.invalidate();
         events.fireModelRemoved(nc);
     }
 
     public void delete(NeuronArray na) {
         naList.remove(na);
         na.getEvents().fireDeleted();
+        modelIndex.invalidate();
         events.fireModelRemoved(na);
     }
 
     public void delete(MultiLayerNet mln) {
         multiLayerNetworks.remove(mln);
+        modelIndex.invalidate();
         events.fireModelRemoved(mln);
     }
 
     public void delete(Subnetwork subnet) {
         subnetworks.remove(subnet);
         subnet.delete();
+        modelIndex.invalidate();
         events.fireModelRemoved(subnet);
     }
 
@@ -532,6 +688,7 @@ public class Network {
             return;
         }
         weightMatrices.remove(wm);
+        modelIndex.invalidate();
         events.fireModelRemoved(wm);
     }
 
@@ -578,6 +735,7 @@ public class Network {
             }
         }
         neuronCollectionSet.add(nc);
+        modelIndex.invalidate();
         events.fireModelAdded(nc);
     }
 
@@ -734,16 +892,20 @@ public class Network {
 
     public void addSynapseGroup(final SynapseGroup sg) {
         synapseGroups.add(sg);
+        modelIndex.invalidate();
         events.fireModelAdded(sg);
     }
 
     public void addNeuronGroup(final NeuronGroup ng) {
         neuronGroups.add(ng);
+        modelIndex.invalidate();
+        updatePriorityList();
         events.fireModelAdded(ng);
     }
 
     public void addSubnetwork(Subnetwork net) {
         subnetworks.add(net);
+        modelIndex.invalidate();
         events.fireModelAdded(net);
     }
 
@@ -762,12 +924,43 @@ public class Network {
     }
 
     /**
-     * Create "flat" list of neurons, which includes the top-level neurons plus all group neurons.
+     * Returns a "flat" list of neurons, which includes the top-level neurons plus all group neurons. The list is cached
+     * and read-only; it is rebuilt only after the structure of the network changes.
      *
      * @return the flat list
      */
     public List<Neuron> getFlatNeuronList() {
-        List<Neuron> ret = new ArrayList<Neuron>();
+        return modelIndex.getNeurons();
+    }
+
+    /**
+     * Returns a "flat" list of synapses, which includes the top-level synapses plus all subnet synapses. The list is
+     * cached and read-only; it is rebuilt only after the structure of the network changes. Synapse groups in matrix
+     * mode have no synapse objects and are left out (see {@link SynapseGroup#setMatrixMode(boolean)}).
+     *
+     * @return the flat list
+     */
+    public List<Synapse> getFlatSynapseList() {
+        return modelIndex.getSynapses();
+    }
+
+    /**
+     * Returns a number that changes whenever neurons or synapses are added to or removed from the network. Useful for
+     * callers that cache their own views of the network.
+     *
+     * @return the current structural version
+     */
+    public long getModelVersion() {
+        return modelIndex.getVersion();
+    }
+
+    /**
+     * Create "flat" list of neurons, which includes the top-level neurons plus all group neurons.
+     *
+     * @return the flat list
+     */
+    List<Neuron> buildFlatNeuronList() {
+        List<Neuron> ret = new ArrayList<Neuron>(looseNeurons.size());
         ret.addAll(looseNeurons);
         neuronGroups.forEach(ng -> ret.addAll(ng.getNeuronList()));
         neuronCollectionSet.forEach(nc -> ret.addAll(nc.getNeuronList()));
@@ -781,15 +974,53 @@ public class Network {
      *
      * @return the flat list
      */
-    public List<Synapse> getFlatSynapseList() {
-        List<Synapse> ret = new ArrayList<Synapse>(10000);
+    List<Synapse> buildFlatSynapseList() {
+        int count = looseSynapses.size();
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            count += sg.size();
+        }
+        List<Synapse> ret = new ArrayList<Synapse>(count);
         ret.addAll(looseSynapses);
-        synapseGroups.forEach(sg -> ret.addAll(sg.getAllSynapses()));
-        subnetworks.forEach(s -> s.getSynapseGroupList().forEach(
-                sg -> ret.addAll(sg.getAllSynapses())));
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            if (!sg.isMatrixMode()) {
+                ret.addAll(sg.getAllSynapses());
+            }
+        }
         return ret;
     }
 
+    /**
+     * A hash of the number of neurons in each container, used by {@link NetworkModelIndex} to notice neurons added
+     * to or removed from groups directly. Cost is proportional to the number of groups.
+     */
+    long getNeuronStructureSignature() {
+        long sig = looseNeurons.size();
+        for (NeuronGroup ng : neuronGroups) {
+            sig = sig * 31 + ng.size();
+        }
+        for (NeuronCollection nc : neuronCollectionSet) {
+            sig = sig * 31 + nc.size();
+        }
+        for (Subnetwork subnet : subnetworks) {
+            for (NeuronGroup ng : subnet.getNeuronGroupList()) {
+                sig = sig * 31 + ng.size();
+            }
+        }
+        return sig;
+    }
+
+    /**
+     * A hash of the number of synapses in each container. See {@link #getNeuronStructureSignature()}.
+     */
+    long getSynapseStructureSignature() {
+        long sig = looseSynapses.size();
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            // Entering or leaving matrix mode adds or removes synapse objects without changing the size
+            sig = sig * 31 + (sg.isMatrixMode() ? ~sg.size() : sg.size());
+        }
+        return sig;
+    }
+
     /**
      * Returns the precision of the current time step.
      *
@@ -804,6 +1035,185 @@ public class Network {
         }
     }
 
+    /**
+     * Returns the network's root random stream. Neurons and groups derive their own streams from it (see {@link
+     * Neuron#getRandom()}), and it is bound as {@link SimbrainRandom#current()} while the network updates.
+     *
+     * @return the random stream
+     */
+    public SimbrainRandom getRandom() {
+        if (random == null) {
+            random = new SimbrainRandom(randomSeed);
+        }
+        return random;
+    }
+
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    /**
+     * Set the seed all random numbers in the network are derived from, and restart every random stream in the
+     * network from it. Setting the current seed again restarts the streams, so that a run can be repeated.
+     *
+     * @param randomSeed the new seed
+     */
+    public void setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+        random = null;
+    }
+
+    /**
+     * Write the network's dynamic state: time, random streams, the activations, buffers, spikes, rule state, and
+     * delayed input of every neuron, the strength, post-synaptic response, and rule state of every synapse, and the
+     * weights of synapse groups in matrix mode. Structure and parameters are not written, so the state can only be read
+     * back into this network or an identical one, e.g. the same file opened again. Call it between updates.
+     * <p>
+     * Synapses in groups are written by source and then target (see {@link SynapseGroup#getSortedSynapses()}), since
+     * the order of the groups' synapse sets changes from session to session.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+        List<Neuron> neurons = getFlatNeuronList();
+        List<Synapse> synapses = getStateSynapseList();
+        out.writeInt(STATE_VERSION);
+        out.writeInt(neurons.size());
+        out.writeInt(synapses.size());
+        out.writeInt(getMatrixWeightCount());
+        out.writeDouble(time);
+        out.writeInt(iterCount);
+        out.writeLong(randomSeed);
+        getRandom().writeState(out);
+        Set<Object> rules = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Neuron neuron : neurons) {
+            neuron.writeState(out);
+            if (rules.add(neuron.getUpdateRule())) {
+                RuleFields.write(neuron.getUpdateRule(), out);
+            }
+        }
+        for (Synapse synapse : synapses) {
+            out.writeDouble(synapse.getStrength());
+            out.writeDouble(synapse.getPsr());
+            if (rules.add(synapse.getLearningRule())) {
+                RuleFields.write(synapse.getLearningRule(), out);
+            }
+            SpikeResponder responder = synapse.getSpikeResponder();
+            if (responder != null && rules.add(responder)) {
+                RuleFields.write(responder, out);
+            }
+        }
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            sg.writeMatrixWeights(out);
+        }
+    }
+
+    /**
+     * Restore state written by {@link #writeState}, continuing the simulation from where it was written.
+     *
+     * @param in the input
+     * @throws IOException if reading fails, or the state was written from a network with different structure
+     */
+    public void readState(DataInput in) throws IOException {
+        List<Neuron> neurons = getFlatNeuronList();
+        List<Synapse> synapses = getStateSynapseList();
+        checkStateHeader(in, neurons, synapses);
+        time = in.readDouble();
+        iterCount = in.readInt();
+        long seed = in.readLong();
+        if (seed != randomSeed) {
+            setRandomSeed(seed);
+        }
+        getRandom().readState(in);
+
+        // Neurons report their changed activations together, as at the end of an update
+        deferringActivationEvents = true;
+        activationBatchHandlers = events.hasActivationsChangedHandlers();
+        Set<Object> rules = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            for (Neuron neuron : neurons) {
+                neuron.readState(in);
+                if (rules.add(neuron.getUpdateRule())) {
+                    RuleFields.read(neuron.getUpdateRule(), in);
+                }
+            }
+        } finally {
+            deferringActivationEvents = false;
+        }
+        fireDeferredActivationEvents();
+        for (Synapse synapse : synapses) {
+            double strength = in.readDouble();
+            if (strength != synapse.getStrength()) {
+                synapse.forceSetStrength(strength);
+            }
+            synapse.setPsr(in.readDouble());
+            if (rules.add(synapse.getLearningRule())) {
+                RuleFields.read(synapse.getLearningRule(), in);
+            }
+            SpikeResponder responder = synapse.getSpikeResponder();
+            if (responder != null && rules.add(responder)) {
+                RuleFields.read(responder, in);
+            }
+        }
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            sg.readMatrixWeights(in);
+        }
+        events.fireUpdateTimeDisplay(false);
+    }
+
+    /**
+     * Check that state written by {@link #writeState} fits this network, without changing anything, so that a bad
+     * state can be rejected before any other state is restored.
+     *
+     * @param in the input, of which only the start is read
+     * @throws IOException if reading fails, or the state was written from a network with different structure
+     */
+    public void checkState(DataInput in) throws IOException {
+        checkStateHeader(in, getFlatNeuronList(), getStateSynapseList());
+    }
+
+    private void checkStateHeader(DataInput in, List<Neuron> neurons, List<Synapse> synapses) throws IOException {
+        int version = in.readInt();
+        if (version != STATE_VERSION) {
+            throw new IOException("Unsupported network state version " + version);
+        }
+        int numNeurons = in.readInt();
+        int numSynapses = in.readInt();
+        int numMatrixWeights = in.readInt();
+        int matrixWeights = getMatrixWeightCount();
+        if (numNeurons != neurons.size() || numSynapses != synapses.size() || numMatrixWeights != matrixWeights) {
+            throw new IOException("State has " + numNeurons + " neurons, " + numSynapses + " synapses and "
+                    + numMatrixWeights + " matrix weights, but network " + name + " has " + neurons.size() + ", "
+                    + synapses.size() + " and " + matrixWeights);
+        }
+    }
+
+    /**
+     * The synapses in the order their state is written: loose synapses in the order they were added, then the
+     * synapses of each group sorted by source and target.
+     */
+    private List<Synapse> getStateSynapseList() {
+        List<Synapse> ret = new ArrayList<>(looseSynapses);
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            ret.addAll(sg.getSortedSynapses());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of weights held by synapse groups in matrix mode
+     */
+    private int getMatrixWeightCount() {
+        int count = 0;
+        for (SynapseGroup sg : getFlatSynapseGroupList()) {
+            if (sg.isMatrixMode()) {
+                count += sg.size();
+            }
+        }
+        return count;
+    }
+
     /**
      * @return Returns the timeStep.
      */
@@ -846,11 +1256,35 @@ public class Network {
     }
 
     /**
-     * Returns a copy of this network based on its xml rep.
+     * Returns a copy of this network. The copy is made directly with a {@link DeepCopier}, which gives the same
+     * network as saving and reopening this one (fan-ins and fan-outs are rebuilt in {@link #readResolve()}), but
+     * without building and parsing xml. If the network holds something the copier cannot handle, the copy is made
+     * from the xml rep instead.
      *
      * @return the copied network.
      */
     public Network copy() {
+        int size = looseNeurons.size() + looseSynapses.size();
+        for (NeuronGroup group : neuronGroups) {
+            size += group.size();
+        }
+        for (SynapseGroup group : synapseGroups) {
+            size += group.size();
+        }
+        try {
+            // Neurons and synapses each hold a few other objects (rules, spike responders)
+            return new DeepCopier(4 * size).copy(this);
+        } catch (UnsupportedOperationException e) {
+            return copyFromXml();
+        }
+    }
+
+    /**
+     * Returns a copy of this network based on its xml rep.
+     *
+     * @return the copied network.
+     */
+    public Network copyFromXml() {
         preSaveInit();
         String xml_rep = Utils.getSimbrainXStream().toXML(this);
         postSaveReInit();
@@ -866,12 +1300,14 @@ public class Network {
     private Object readResolve() {
 
         events = new NetworkEvents(this);
+        modelIndex = new NetworkModelIndex(this);
         updateCompleted = new AtomicBoolean(false);
 
         // Initialize update manager
         updateManager.postUnmarshallingInit();
 
         getFlatNeuronList().forEach(Neuron::postUnmarshallingInit);
+        IzhikevichRule.migrateLegacyRecovery(getFlatNeuronList());
         textList.forEach(NetworkTextObject::postUnmarshallingInit);
         synapseGroups.forEach(SynapseGroup::postUnmarshallingInit);
         neuronGroups.forEach(AbstractNeuronCollection::postUnmarshallingInit);
@@ -883,6 +1319,9 @@ public class Network {
         // Re-populate fan-in / fan-out for loose synapses
         getLooseSynapses().forEach(Synapse::postUnmarshallingInit);
 
+        // Fan-ins and fan-outs are complete, so drop the slack left from growing them
+        getFlatNeuronList().forEach(Neuron::trimFanInOut);
+
         return this;
     }
 
@@ -936,6 +1375,14 @@ public class Network {
         return time;
     }
 
+    /**
+     * @return the number of times {@link #update()} has completed; used to
+     * schedule groups that update less often than the network
+     */
+    public int getUpdateCount() {
+        return iterCount;
+    }
+
     /**
      * Returns the current number of iterations.
      *
@@ -956,8 +1403,8 @@ public class Network {
                 NeuronUpdateRule nur = n.getUpdateRule();
                 if (nur.isSpikingNeuron()) {
                     SpikingNeuronUpdateRule snur = (SpikingNeuronUpdateRule) nur;
-                    double diff = i - (time - snur.getLastSpikeTime());
-                    snur.setLastSpikeTime(diff < 0 ? 0 : diff);
+                    double diff = i - (time - snur.getLastSpikeTime(n));
+                    snur.setLastSpikeTime(n, diff < 0 ? 0 : diff);
                 }
             }
         }
@@ -1072,6 +1519,21 @@ public class Network {
         return ret.toString();
     }
 
+    /**
+     * Called by neuron collections when neurons are added to or removed from them directly, so that the flat lists
+     * and lookup tables are rebuilt.
+     */
+    public void neuronsChanged() {
+        modelIndex.invalidate();
+    }
+
+    /**
+     * Called by {@link Neuron#setLabel(String)}, so that {@link #getNeuronByLabel(String)} sees the new label.
+     */
+    void neuronLabelChanged() {
+        modelIndex.labelChanged();
+    }
+
     /**
      * Returns a neuron with a matching label.  If more than one
      * neuron has a matching label, the first found is returned.
@@ -1081,9 +1543,11 @@ public class Network {
      * @return matched Neuron, if any
      */
     public Neuron getNeuronByLabel(String label) {
-        return getFlatNeuronList().stream()
-                .filter(n -> n.getLabel().equalsIgnoreCase(label))
-                .findFirst().get();
+        Neuron neuron = modelIndex.getNeuronByLabel(label);
+        if (neuron == null) {
+            throw new NoSuchElementException("No neuron with label " + label);
+        }
+        return neuron;
     }
 
     /**
@@ -1115,6 +1579,7 @@ public class Network {
      */
     public void addWeightMatrix(final WeightMatrix wm) {
         weightMatrices.add(wm);
+        modelIndex.invalidate();
         events.fireModelAdded(wm);
     }
 
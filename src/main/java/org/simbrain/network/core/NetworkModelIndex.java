@@ -0,0 +1,208 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import java.util.*;
+
+/**
+ * Cached flat views of the neurons and synapses of a {@link Network}, along
+ * with id and label lookup tables. Each view is rebuilt lazily the first time
+ * it is asked for after the network's structure changed, so repeated calls to
+ * {@link Network#getFlatNeuronList()} and friends no longer allocate.
+ * <p>
+ * The index keeps a modification counter, which the network bumps in its add
+ * and delete methods and neuron collections bump when neurons are added to or
+ * removed from them. Synapses added directly to groups bypass those methods,
+ * so on each access the index also compares a cheap size signature of the
+ * network (proportional to the number of groups, not neurons) against the one
+ * it was built with. The label table has its own counter, bumped whenever a
+ * neuron's label is set.
+ * <p>
+ * Views are never modified after they are built; a change produces a new
+ * list, so iterating over a view while editing the network is safe.
+ */
+final class NetworkModelIndex {
+
+    /**
+     * The indexed network.
+     */
+    private final Network network;
+
+    /**
+     * Incremented whenever the network's structure changes.
+     */
+    private long version;
+
+    /**
+     * Incremented whenever a neuron's label is set.
+     */
+    private long labelChanges;
+
+    /**
+     * Size signatures seen on the last access.
+     */
+    private long neuronSignature = -1;
+    private long synapseSignature = -1;
+
+    /**
+     * Versions at which each view was built, or -1 if never built.
+     */
+    private long neuronListVersion = -1;
+    private long synapseListVersion = -1;
+    private long neuronIdVersion = -1;
+    private long synapseIdVersion = -1;
+    private long labelVersion = -1;
+    private long labelChangesSeen = -1;
+
+    private List<Neuron> neurons = Collections.emptyList();
+    private List<Synapse> synapses = Collections.emptyList();
+    private Map<String, Neuron> neuronsById = Collections.emptyMap();
+    private Map<String, Synapse> synapsesById = Collections.emptyMap();
+    private Map<String, Neuron> neuronsByLabel = Collections.emptyMap();
+
+    NetworkModelIndex(Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Mark every view as out of date.
+     */
+    synchronized void invalidate() {
+        version++;
+    }
+
+    /**
+     * Mark the label table as out of date.
+     */
+    synchronized void labelChanged() {
+        labelChanges++;
+    }
+
+    /**
+     * @return a number that changes whenever neurons or synapses are added or
+     * removed
+     */
+    synchronized long getVersion() {
+        checkSignatures();
+        return version;
+    }
+
+    private void checkSignatures() {
+        long neuronSig = network.getNeuronStructureSignature();
+        long synapseSig = network.getSynapseStructureSignature();
+        if (neuronSig != neuronSignature || synapseSig != synapseSignature) {
+            neuronSignature = neuronSig;
+            synapseSignature = synapseSig;
+            version++;
+        }
+    }
+
+    /**
+     * @return read-only flat list of neurons, in the order documented in
+     * {@link Network#getFlatNeuronList()}
+     */
+    synchronized List<Neuron> getNeurons() {
+        checkSignatures();
+        if (neuronListVersion != version) {
+            neurons = Collections.unmodifiableList(network.buildFlatNeuronList());
+            neuronListVersion = version;
+        }
+        return neurons;
+    }
+
+    /**
+     * @return read-only flat list of synapses
+     */
+    synchronized List<Synapse> getSynapses() {
+        checkSignatures();
+        if (synapseListVersion != version) {
+            synapses = Collections.unmodifiableList(network.buildFlatSynapseList());
+            synapseListVersion = version;
+        }
+        return synapses;
+    }
+
+    /**
+     * Find a neuron by id, ignoring case. If several neurons share an id the
+     * first in the flat list wins.
+     */
+    synchronized Neuron getNeuronById(String id) {
+        List<Neuron> list = getNeurons();
+        if (neuronIdVersion != version) {
+            Map<String, Neuron> map = new HashMap<>((int) (list.size() / .75f) + 1);
+            for (Neuron n : list) {
+                if (n.getId() != null) {
+                    map.putIfAbsent(key(n.getId()), n);
+                }
+            }
+            neuronsById = map;
+            neuronIdVersion = version;
+        }
+        return id == null ? null : neuronsById.get(key(id));
+    }
+
+    /**
+     * Find a synapse by id, ignoring case. The map is only built the first
+     * time a synapse is looked up, since it can be large.
+     */
+    synchronized Synapse getSynapseById(String id) {
+        List<Synapse> list = getSynapses();
+        if (synapseIdVersion != version) {
+            Map<String, Synapse> map = new HashMap<>((int) (list.size() / .75f) + 1);
+            for (Synapse s : list) {
+                if (s.getId() != null) {
+                    map.putIfAbsent(key(s.getId()), s);
+                }
+            }
+            synapsesById = map;
+            synapseIdVersion = version;
+        }
+        return id == null ? null : synapsesById.get(key(id));
+    }
+
+    /**
+     * Find a neuron by label, ignoring case. The label table is rebuilt after
+     * the structure or any label changed. If several neurons share a label
+     * the first in the flat list wins.
+     *
+     * @return the neuron, or null if none has that label
+     */
+    synchronized Neuron getNeuronByLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        List<Neuron> list = getNeurons();
+        if (labelVersion != version || labelChangesSeen != labelChanges) {
+            Map<String, Neuron> map = new HashMap<>((int) (list.size() / .75f) + 1);
+            for (Neuron n : list) {
+                if (n.getLabel() != null) {
+                    map.putIfAbsent(key(n.getLabel()), n);
+                }
+            }
+            neuronsByLabel = map;
+            labelVersion = version;
+            labelChangesSeen = labelChanges;
+        }
+        return neuronsByLabel.get(key(label));
+    }
+
+    private static String key(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+}
@@ -19,6 +19,9 @@
 package org.simbrain.network.core;
 
 import org.simbrain.network.NetworkModel;
+import org.simbrain.network.groups.NeuronCollection;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.network.update_actions.*;
 
 import java.util.*;
@@ -64,6 +67,92 @@ public class NetworkUpdateManager {
         actionList.forEach(NetworkUpdateAction::invoke);
     }
 
+    /**
+     * Whether a model that updates once every {@code period} network updates
+     * is due in the current update. Models are due on the first network
+     * update and every {@code period} updates after that.
+     *
+     * @param period number of network updates per update of the model; 1 or
+     *               less means every update
+     * @return true if the model should update now
+     */
+    public boolean isDue(int period) {
+        return period <= 1 || network.getUpdateCount() % period == 0;
+    }
+
+    /**
+     * Returns true if some neuron group updates less often than the network.
+     * Update actions that lay out all neurons together, rather than updating
+     * through {@link NeuronGroup#update()}, fall back to a buffered update
+     * while this is the case.
+     *
+     * @return true if any neuron group has an update period above 1
+     */
+    public boolean hasMultiRateGroups() {
+        for (NeuronGroup group : network.getFlatNeuronGroupList()) {
+            if (group.getUpdatePeriod() > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if some synapse group keeps its weights in a matrix. Its
+     * target group receives the input through {@link NeuronGroup#update()}.
+     *
+     * @return true if any synapse group is in matrix mode
+     */
+    public boolean hasMatrixSynapseGroups() {
+        for (SynapseGroup group : network.getFlatSynapseGroupList()) {
+            if (group.isMatrixMode()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the network has models whose update does more than
+     * update their neurons one by one: neuron arrays, weight matrices,
+     * subnetworks (which also update their synapse groups), neuron groups
+     * that override the update of {@link NeuronGroup} (winner take all, SOM,
+     * competitive, etc.), and neuron collections in input mode or recording.
+     * Update actions that update neurons directly fall back to a buffered
+     * update while this is the case.
+     *
+     * @return true if some model must be updated by its own update method
+     */
+    public boolean hasCustomModelUpdates() {
+        if (!network.getNeuronArrays().isEmpty() || !network.getWeightMatrices().isEmpty()
+                || !network.getSubnetworks().isEmpty()) {
+            return true;
+        }
+        for (NeuronGroup group : network.getNeuronGroups()) {
+            if (group.getClass() != NeuronGroup.class) {
+                return true;
+            }
+        }
+        for (NeuronCollection collection : network.getNeuronCollectionSet()) {
+            if (collection.isInputMode() || collection.getActivationRecorder().isRecording()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if update actions that lay out all neurons together should
+     * fall back to a buffered update, which updates through {@link
+     * NeuronGroup#update()}: see {@link #hasMultiRateGroups()} and {@link
+     * #hasMatrixSynapseGroups()}.
+     *
+     * @return true if neuron groups must be updated by their update method
+     */
+    public boolean requiresGroupUpdates() {
+        return hasMultiRateGroups() || hasMatrixSynapseGroups();
+    }
+
     /**
      * Perform any initialization required after opening a network from xml.
      * UpdateManager will have been created from a default no argument
@@ -84,6 +173,12 @@ public class NetworkUpdateManager {
         for (NetworkUpdateAction action : getActionList()) {
             if (action instanceof CustomUpdate) {
                 ((CustomUpdate) action).init();
+            } else if (action instanceof CompiledBufferedUpdate) {
+                ((CompiledBufferedUpdate) action).init();
+            } else if (action instanceof ForkJoinBufferedUpdate) {
+                ((ForkJoinBufferedUpdate) action).init();
+            } else if (action instanceof EventDrivenSpikeUpdate) {
+                ((EventDrivenSpikeUpdate) action).init();
             }
         }
     }
@@ -98,6 +193,9 @@ public class NetworkUpdateManager {
         availableActionList.add(new BufferedUpdate(network));
         availableActionList.add(new PriorityUpdate(network));
         availableActionList.add(ConcurrentBufferedUpdate.createConcurrentBufferedUpdate(network));
+        availableActionList.add(new CompiledBufferedUpdate(network));
+        availableActionList.add(new ForkJoinBufferedUpdate(network));
+        availableActionList.add(new EventDrivenSpikeUpdate(network));
 
         // TODO: If added, these should be removed when any corresponding object is removed
 
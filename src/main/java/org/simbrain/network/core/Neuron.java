@@ -29,6 +29,7 @@ import org.simbrain.network.neuron_update_rules.interfaces.BoundedUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.ClippableUpdateRule;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.EditableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Consumable;
@@ -37,8 +38,13 @@ import org.simbrain.workspace.Producible;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 import static org.simbrain.util.GeomKt.plus;
@@ -135,20 +141,16 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
     private final Network parent;
 
     /**
-     * Pre-allocates the number of bins in this neuron's fanIn/Out for
-     * efficiency.
+     * Synapses this neuron attaches to, keyed by target. Storage is allocated
+     * on the first synapse and grows with the fan-out (see {@link FanOutMap}).
      */
-    public static final int PRE_ALLOCATED_NUM_SYNAPSES = (int) Math.ceil(500 / 0.75);
+    private transient FanOutMap fanOut = new FanOutMap();
 
     /**
-     * List of synapses this neuron attaches to.
+     * List of synapses attaching to this neuron. Starts empty and grows as
+     * synapses are added, so unconnected neurons cost almost nothing.
      */
-    private transient Map<Neuron, Synapse> fanOut = new HashMap<Neuron, Synapse>(PRE_ALLOCATED_NUM_SYNAPSES);
-
-    /**
-     * List of synapses attaching to this neuron.
-     */
-    private transient ArrayList<Synapse> fanIn = new ArrayList<Synapse>(PRE_ALLOCATED_NUM_SYNAPSES);
+    private transient ArrayList<Synapse> fanIn = new ArrayList<Synapse>();
 
     /**
      * x-coordinate of this neuron in 2-space.
@@ -222,6 +224,43 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
      */
     private transient NeuronEvents events = new NeuronEvents(this);
 
+    /**
+     * Set when the activation changed during a network update and the
+     * change event has been deferred to the end of the update. See
+     * {@link Network#isDeferringActivationEvents()}.
+     */
+    private transient volatile boolean activationChanged;
+
+    /**
+     * When set, supplies the synaptic part of {@link #getInput()} in place of
+     * the per-step sum over the fan-in. Used by event-driven updates, which
+     * keep synaptic input up to date themselves.
+     */
+    private transient ToDoubleFunction<Neuron> synapticInputSource;
+
+    /**
+     * State of the update rule that belongs to this neuron, for rules that can
+     * be shared between neurons. See {@link NeuronUpdateRule#getStateSize()}.
+     */
+    private double[] ruleState;
+
+    /**
+     * Input in flight through delayed afferent synapses. Null until a delayed
+     * synapse first sends something.
+     */
+    private DelayRing delayRing;
+
+    /**
+     * This neuron's random stream, derived from the network's on demand.
+     */
+    private transient SimbrainRandom random;
+
+    /**
+     * The network stream {@link #random} was derived from. When the network's
+     * seed is changed its stream is replaced, and this neuron's follows.
+     */
+    private transient SimbrainRandom randomRoot;
+
     /**
      * Construct a specific type of neuron.
      *
@@ -300,7 +339,7 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
      */
     public void postUnmarshallingInit() {
         events = new NeuronEvents(this);
-        fanOut = new HashMap<>();
+        fanOut = new FanOutMap();
         fanIn = new ArrayList<>();
         if (polarity == null) {
             polarity = Polarity.BOTH;
@@ -354,13 +393,40 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
 
     /**
      * Set a new update rule. Essentially like changing the type of the network.
+     * The neuron gets a copy of the rule, and its {@link #getRuleState() rule
+     * state} starts over.
      *
      * @param updateRule the neuronUpdateRule to set
      */
     public void setUpdateRule(final NeuronUpdateRule updateRule) {
+        installUpdateRule(updateRule.deepCopy(), updateRule);
+    }
+
+    /**
+     * Use the given rule object itself, rather than a copy, as this neuron's
+     * update rule, so that several neurons can share one set of parameters.
+     * Changing a parameter on the rule then changes it for every neuron using
+     * it. Only rules that keep their per-neuron state in {@link
+     * #getRuleState()} can be shared.
+     *
+     * @param updateRule the rule to share
+     * @throws IllegalArgumentException if the rule cannot be shared
+     */
+    public void setSharedUpdateRule(final NeuronUpdateRule updateRule) {
+        if (!updateRule.isShareable()) {
+            throw new IllegalArgumentException(updateRule.getName() + " keeps per-neuron state and cannot be shared");
+        }
+        installUpdateRule(updateRule, updateRule);
+    }
+
+    private void installUpdateRule(final NeuronUpdateRule newRule, final NeuronUpdateRule updateRule) {
 
         NeuronUpdateRule oldRule = this.updateRule;
-        this.updateRule = updateRule.deepCopy();
+        this.updateRule = newRule;
+        // The state belongs to the old rule, even if the new one is of the same class
+        if (oldRule != newRule) {
+            ruleState = null;
+        }
 
         // TODO: No need to change if the neuron is not new, or has not changed from spiking to non-spiking
         // But this check caused problems so commented out for null
@@ -376,9 +442,39 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
     }
 
     /**
-     * Updates neuron buffers.
+     * Returns the per-neuron state of this neuron's update rule, allocated (as
+     * zeros) the first time it is needed. Rules that are shared between
+     * neurons keep values like recovery variables and spike times here rather
+     * than in their own fields.
+     *
+     * @return the state array, of length {@link NeuronUpdateRule#getStateSize()}
+     */
+    public double[] getRuleState() {
+        int size = updateRule.getStateSize();
+        if (ruleState == null || ruleState.length != size) {
+            double[] state = new double[size];
+            if (ruleState != null) {
+                System.arraycopy(ruleState, 0, state, 0, Math.min(size, ruleState.length));
+            }
+            ruleState = state;
+        }
+        return ruleState;
+    }
+
+    /**
+     * Updates neuron buffers and advances input in flight through delayed
+     * synapses by one step.
      */
     public void update() {
+        applyUpdateRule();
+        advanceDelayedInput();
+    }
+
+    /**
+     * Updates neuron buffers without advancing delayed input. Used by batch
+     * updates, which advance the whole batch once afterwards.
+     */
+    void applyUpdateRule() {
         if (isClamped()) {
             return;
         }
@@ -417,7 +513,7 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
                 activation = act;
             }
         }
-        events.fireActivationChange(lastActivation, act);
+        activationChanged(act);
     }
 
     /**
@@ -443,7 +539,46 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
     public void forceSetActivation(final double act) {
         lastActivation = getActivation();
         activation = act;
-        events.fireActivationChange(lastActivation, act);
+        activationChanged(act);
+    }
+
+    /**
+     * Notify listeners of an activation change. During a network update the
+     * event is deferred and fired once when the update completes; otherwise
+     * it is fired right away. Nothing is done if nobody is listening.
+     *
+     * @param act the value the activation was set to
+     */
+    private void activationChanged(double act) {
+        if (parent != null && parent.isDeferringActivationEvents()) {
+            if (!activationChanged && lastActivation != activation
+                    && (parent.hasActivationBatchHandlers() || events.hasActivationChangeHandlers())) {
+                activationChanged = true;
+                parent.markActivationsChanged();
+            }
+        } else if (events.hasActivationChangeHandlers()) {
+            events.fireActivationChange(lastActivation, act);
+        }
+    }
+
+    /**
+     * @return true if an activation change event has been deferred and not yet fired
+     */
+    boolean isActivationChanged() {
+        return activationChanged;
+    }
+
+    /**
+     * Fire the deferred activation change event, if there is one. Called by
+     * the network at the end of an update.
+     */
+    void fireDeferredActivationChange() {
+        if (activationChanged) {
+            activationChanged = false;
+            if (events.hasActivationChangeHandlers()) {
+                events.fireActivationChange(lastActivation, activation);
+            }
+        }
     }
 
     @Producible()
@@ -488,6 +623,15 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
      */
     public List<Synapse> getFanInUnsafe() { return fanIn; }
 
+    /**
+     * Release capacity in the fan-in and fan-out beyond what the current
+     * synapses need. Useful after building or loading a large network.
+     */
+    public void trimFanInOut() {
+        fanIn.trimToSize();
+        fanOut.trimToSize();
+    }
+
     /**
      * Adds an efferent synapse to this neuron, i.e. adds a synapse to
      * {@link #fanOut}. Does <b>NOT</b> add this synapse to the network or any
@@ -548,6 +692,19 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
         }
     }
 
+    /**
+     * Remove the afferent synapses that pass a test, in one pass over the
+     * fan-in. Faster than calling {@link #removeAfferent(Synapse)} for each
+     * when many synapses are removed at once.
+     *
+     * @param filter returns true for synapses to remove
+     */
+    public void removeAfferentsIf(Predicate<? super Synapse> filter) {
+        if (fanIn != null) {
+            fanIn.removeIf(filter);
+        }
+    }
+
     /**
      * Sums the weighted signals that are sent to this node. This sums all the
      * weighted inputs to a neuron in a connectionist sense. No spike responders
@@ -561,7 +718,7 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
         for (int i = 0, n = fanIn.size(); i < n; i++) {
             wtdSum += fanIn.get(i).calcWeightedSum();
         }
-        return wtdSum;
+        return wtdSum + getDelayedInput();
     }
 
     /**
@@ -576,10 +733,90 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
      */
     public double getInput() {
         double wtdSum = inputValue;
-        for (int i = 0, n = fanIn.size(); i < n; i++) {
-            wtdSum += fanIn.get(i).calcPSR();
+        if (synapticInputSource != null) {
+            wtdSum += synapticInputSource.applyAsDouble(this);
+        } else {
+            for (int i = 0, n = fanIn.size(); i < n; i++) {
+                wtdSum += fanIn.get(i).calcPSR();
+            }
         }
-        return wtdSum;
+        return wtdSum + getDelayedInput();
+    }
+
+    /**
+     * Queue input from a delayed synapse. It is returned by {@link
+     * #getDelayedInput()} after the delay line has advanced the given number
+     * of times, so input queued while the neuron sums its inputs arrives delay
+     * updates later.
+     *
+     * @param delay number of updates to wait
+     * @param value the value to deliver
+     */
+    void addDelayedInput(int delay, double value) {
+        if (delayRing == null) {
+            if (value == 0) {
+                return;
+            }
+            delayRing = new DelayRing(delay);
+        }
+        delayRing.add(delay, value);
+    }
+
+    /**
+     * Returns the input arriving now through delayed synapses. This has no
+     * side effects; the delay line advances once per update, in {@link
+     * #update()}. {@link #getInput()} and {@link #getWeightedInputs()} include
+     * it; update rules that iterate the fan-in themselves should add it after
+     * calling {@link Synapse#calcPSR()} on each synapse, since delayed
+     * synapses return 0 from that method.
+     *
+     * @return summed delayed input arriving now
+     */
+    public double getDelayedInput() {
+        return delayRing == null ? 0 : delayRing.peek();
+    }
+
+    /**
+     * Like {@link #getDelayedInput()}, but adds excitatory (positive) input to
+     * ei[0] and inhibitory (negative) input to ei[1].
+     *
+     * @param ei excitatory and inhibitory totals to add to
+     */
+    public void getDelayedInput(double[] ei) {
+        if (delayRing != null) {
+            delayRing.peek(ei);
+        }
+    }
+
+    /**
+     * Discard the input arriving now through delayed synapses and move the
+     * delay line one step on. {@link #update()} calls this once per update;
+     * code that updates neurons without calling that method should call this
+     * once per neuron per update.
+     */
+    public void advanceDelayedInput() {
+        if (delayRing != null) {
+            delayRing.advance();
+        }
+    }
+
+    /**
+     * Discard any input in flight through delayed synapses.
+     */
+    public void clearDelayedInput() {
+        if (delayRing != null) {
+            delayRing.clear();
+        }
+    }
+
+    /**
+     * Replace the per-step sum over the fan-in used by {@link #getInput()}.
+     *
+     * @param synapticInputSource function returning this neuron's synaptic
+     *                            input, or null to sum the fan-in as usual
+     */
+    public void setSynapticInputSource(ToDoubleFunction<Neuron> synapticInputSource) {
+        this.synapticInputSource = synapticInputSource;
     }
 
     /**
@@ -666,14 +903,14 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
      * Randomize this neuron to a value between upperBound and lowerBound.
      */
     public void randomize() {
-        forceSetActivation(this.getUpdateRule().getRandomValue());
+        forceSetActivation(this.getUpdateRule().getRandomValue(this));
     }
 
     /**
      * Randomize this neuron to a value between upperBound and lowerBound.
      */
     public void randomizeBuffer() {
-        setBuffer(getUpdateRule().getRandomValue());
+        setBuffer(getUpdateRule().getRandomValue(this));
     }
 
     /**
@@ -705,6 +942,97 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
         return parent;
     }
 
+    /**
+     * Returns the random stream update rules should use for this neuron. It is
+     * derived from the network's seed and this neuron's id, so it gives the
+     * same numbers however the network's update is divided among threads.
+     * Neurons not yet in a network use {@link SimbrainRandom#current()}.
+     *
+     * @return the random stream
+     */
+    public SimbrainRandom getRandom() {
+        if (parent == null || id == null) {
+            return SimbrainRandom.current();
+        }
+        SimbrainRandom root = parent.getRandom();
+        if (randomRoot != root) {
+            random = root.fork(id.hashCode());
+            randomRoot = root;
+        }
+        return random;
+    }
+
+    /**
+     * Write this neuron's dynamic state: activation, buffers, spikes, the
+     * per-neuron rule state, input in flight through delayed synapses, and
+     * the position of its random stream. See {@link Network#writeState}.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeDouble(activation);
+        out.writeDouble(lastActivation);
+        out.writeDouble(buffer);
+        out.writeDouble(inputValue);
+        out.writeDouble(auxValue);
+        out.writeByte((spike ? 1 : 0) | (spkBuffer ? 2 : 0));
+        if (ruleState == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(ruleState.length);
+            for (double value : ruleState) {
+                out.writeDouble(value);
+            }
+        }
+        out.writeBoolean(delayRing != null);
+        if (delayRing != null) {
+            delayRing.write(out);
+        }
+        boolean hasRandom = random != null && parent != null && randomRoot == parent.getRandom();
+        out.writeBoolean(hasRandom);
+        if (hasRandom) {
+            random.writeState(out);
+        }
+    }
+
+    /**
+     * Restore state written by {@link #writeState}.
+     *
+     * @param in the input
+     * @throws IOException if reading fails
+     */
+    void readState(DataInput in) throws IOException {
+        double lastAct = activation;
+        activation = in.readDouble();
+        lastActivation = in.readDouble();
+        buffer = in.readDouble();
+        inputValue = in.readDouble();
+        auxValue = in.readDouble();
+        int spikes = in.readByte();
+        spike = (spikes & 1) != 0;
+        spkBuffer = (spikes & 2) != 0;
+        int stateSize = in.readInt();
+        if (stateSize < 0) {
+            ruleState = null;
+        } else {
+            ruleState = new double[stateSize];
+            for (int i = 0; i < stateSize; i++) {
+                ruleState[i] = in.readDouble();
+            }
+        }
+        delayRing = in.readBoolean() ? DelayRing.read(in) : null;
+        if (in.readBoolean()) {
+            getRandom().readState(in);
+        } else {
+            random = null;
+            randomRoot = null;
+        }
+        if (lastAct != activation) {
+            activationChanged(activation);
+        }
+    }
+
     /**
      * Temporary buffer which can be used for algorithms which should not depend
      * on the order in which neurons are updated.
@@ -967,6 +1295,9 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
     @Consumable(defaultVisibility = false)
     public void setLabel(final String label) {
         this.label = label;
+        if (parent != null) {
+            parent.neuronLabelChanged();
+        }
         events.fireLabelChange();
     }
 
@@ -979,7 +1310,7 @@ public class Neuron implements EditableObject, AttributeContainer, LocatableMode
      */
     public void randomizeBias(double lower, double upper) {
         if (this.getUpdateRule() instanceof BiasedUpdateRule) {
-            ((BiasedUpdateRule) this.getUpdateRule()).setBias((upper - lower) * Math.random() + lower);
+            ((BiasedUpdateRule) this.getUpdateRule()).setBias((upper - lower) * getRandom().nextDouble() + lower);
         }
     }
 
@@ -0,0 +1,245 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed list of neurons whose update rules are all of the same class,
+ * together with primitive arrays that {@link NeuronUpdateRule#updateBatch}
+ * kernels use to update them in tight loops.
+ * <p>
+ * A kernel typically gathers inputs, state, and parameters from the neurons
+ * into the arrays, computes the new values in a loop over the arrays alone
+ * (which the JIT can unroll and vectorize), and then writes the results back
+ * with {@link #applyBuffers} and {@link #applySpikes}. Arrays are allocated
+ * once, sized to the batch, and reused on every update.
+ * <p>
+ * Neurons that are clamped when an update starts are flagged as inactive. Rules
+ * must not read their inputs or change their state, just as {@link
+ * Neuron#update()} leaves clamped neurons alone.
+ */
+public final class NeuronBatch {
+
+    /**
+     * The neurons.
+     */
+    private final Neuron[] neurons;
+
+    /**
+     * Class shared by the update rules of all the neurons.
+     */
+    private final Class<? extends NeuronUpdateRule> ruleClass;
+
+    /**
+     * False for neurons that are clamped in the current update.
+     */
+    private final boolean[] active;
+
+    /**
+     * Activations at the start of the current update.
+     */
+    private final double[] activations;
+
+    /**
+     * Inputs, filled by {@link #gatherInputs}.
+     */
+    private final double[] inputs;
+
+    /**
+     * New values, written to the neurons' buffers by {@link #applyBuffers}.
+     */
+    private final double[] values;
+
+    /**
+     * Spike flags, written to the neurons by {@link #applySpikes}.
+     */
+    private final boolean[] spikes;
+
+    /**
+     * Extra arrays for rule parameters and state, created on demand.
+     */
+    private final List<double[]> scratch = new ArrayList<>();
+
+    private NeuronBatch(Neuron[] neurons, Class<? extends NeuronUpdateRule> ruleClass) {
+        this.neurons = neurons;
+        this.ruleClass = ruleClass;
+        active = new boolean[neurons.length];
+        activations = new double[neurons.length];
+        inputs = new double[neurons.length];
+        values = new double[neurons.length];
+        spikes = new boolean[neurons.length];
+    }
+
+    /**
+     * Create a batch for the given neurons.
+     *
+     * @param neuronList the neurons
+     * @return the batch, or null if the list is empty or the neurons' update
+     * rules are not all of the same class
+     */
+    public static NeuronBatch create(List<Neuron> neuronList) {
+        if (neuronList.isEmpty()) {
+            return null;
+        }
+        Class<? extends NeuronUpdateRule> ruleClass = neuronList.get(0).getUpdateRule().getClass();
+        for (int i = 1, n = neuronList.size(); i < n; i++) {
+            if (neuronList.get(i).getUpdateRule().getClass() != ruleClass) {
+                return null;
+            }
+        }
+        return new NeuronBatch(neuronList.toArray(new Neuron[0]), ruleClass);
+    }
+
+    /**
+     * Check that the batch still describes the given neurons: the same neurons
+     * in the same order, all still using a rule of the batch's class.
+     *
+     * @param neuronList the neurons to check against
+     * @return true if the batch can be used to update the neurons
+     */
+    public boolean matches(List<Neuron> neuronList) {
+        if (neuronList.size() != neurons.length) {
+            return false;
+        }
+        for (int i = 0; i < neurons.length; i++) {
+            Neuron n = neuronList.get(i);
+            if (n != neurons[i] || n.getUpdateRule().getClass() != ruleClass) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Update all neurons in the batch and then apply their buffers, like
+     * {@link Network#updateNeurons(List)}.
+     */
+    public void update() {
+        for (int i = 0; i < neurons.length; i++) {
+            active[i] = !neurons[i].isClamped();
+            activations[i] = neurons[i].getActivation();
+        }
+        neurons[0].getUpdateRule().updateBatch(this, 0, neurons.length);
+        for (Neuron neuron : neurons) {
+            neuron.advanceDelayedInput();
+            neuron.setToBufferVals();
+        }
+    }
+
+    /**
+     * Set the input of each active neuron in the range to {@link
+     * Neuron#getInput()}, and of each inactive neuron to 0.
+     *
+     * @param start first index, inclusive
+     * @param end   last index, exclusive
+     */
+    public void gatherInputs(int start, int end) {
+        for (int i = start; i < end; i++) {
+            inputs[i] = active[i] ? neurons[i].getInput() : 0;
+        }
+    }
+
+    /**
+     * Write values to the buffers of the active neurons in the range.
+     *
+     * @param start first index, inclusive
+     * @param end   last index, exclusive
+     */
+    public void applyBuffers(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (active[i]) {
+                neurons[i].setBuffer(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Write spike flags to the spike buffers of the active neurons in the
+     * range and record spike times on their (spiking) rules.
+     *
+     * @param start first index, inclusive
+     * @param end   last index, exclusive
+     */
+    public void applySpikes(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (active[i]) {
+                neurons[i].setSpkBuffer(spikes[i]);
+                ((SpikingNeuronUpdateRule) neurons[i].getUpdateRule()).setHasSpiked(spikes[i], neurons[i]);
+            }
+        }
+    }
+
+    /**
+     * Get a scratch array of the batch's size. Each index names a separate
+     * array, which keeps its contents between updates.
+     *
+     * @param index which array
+     * @return the array
+     */
+    public double[] getScratch(int index) {
+        while (scratch.size() <= index) {
+            scratch.add(new double[neurons.length]);
+        }
+        return scratch.get(index);
+    }
+
+    public Neuron[] getNeurons() {
+        return neurons;
+    }
+
+    public int size() {
+        return neurons.length;
+    }
+
+    public boolean[] getActive() {
+        return active;
+    }
+
+    public double[] getActivations() {
+        return activations;
+    }
+
+    public double[] getInputs() {
+        return inputs;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public boolean[] getSpikes() {
+        return spikes;
+    }
+
+    /**
+     * @return the time step of the network the neurons belong to
+     */
+    public double getTimeStep() {
+        return neurons[0].getNetwork().getTimeStep();
+    }
+
+    /**
+     * @return the current time of the network the neurons belong to
+     */
+    public double getTime() {
+        return neurons[0].getNetwork().getTime();
+    }
+}
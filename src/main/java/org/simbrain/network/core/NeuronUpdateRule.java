@@ -26,6 +26,7 @@ import org.simbrain.network.neuron_update_rules.UpdateRuleEnum;
 import org.simbrain.network.neuron_update_rules.interfaces.BoundedUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.CopyableObject;
 
 import java.util.Arrays;
@@ -85,6 +86,25 @@ public abstract class NeuronUpdateRule implements CopyableObject {
      */
     public abstract void update(Neuron neuron);
 
+    /**
+     * Update a contiguous range of a batch of neurons whose rules are all of
+     * this rule's class, with the same effect as calling {@link
+     * Neuron#update()} on each. Parameters are read from each neuron's own
+     * rule. Rules that are commonly used in large homogeneous groups override
+     * this to do the arithmetic in primitive loops over the batch's arrays;
+     * by default each neuron is updated in turn.
+     *
+     * @param batch the neurons and their working arrays
+     * @param start first index, inclusive
+     * @param end   last index, exclusive
+     */
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        Neuron[] neurons = batch.getNeurons();
+        for (int i = start; i < end; i++) {
+            neurons[i].applyUpdateRule();
+        }
+    }
+
     /**
      * Returns a deep copy of the update rule.
      *
@@ -135,14 +155,31 @@ public abstract class NeuronUpdateRule implements CopyableObject {
      * @return the random value.
      */
     public double getRandomValue() {
+        double rand = SimbrainRandom.current().nextDouble();
         if (this instanceof BoundedUpdateRule) {
-            return (((BoundedUpdateRule) this).getUpperBound() - ((BoundedUpdateRule) this).getLowerBound()) * Math.random() + ((BoundedUpdateRule) this).getLowerBound();
+            return (((BoundedUpdateRule) this).getUpperBound() - ((BoundedUpdateRule) this).getLowerBound()) * rand + ((BoundedUpdateRule) this).getLowerBound();
         } else {
-            return 2 * Math.random() - 1;
+            return 2 * rand - 1;
         }
 
     }
 
+    /**
+     * Returns a random value for the given neuron, as {@link #getRandomValue()} does, but drawn from the neuron's own
+     * stream (see {@link Neuron#getRandom()}).
+     *
+     * @param neuron the neuron to randomize
+     * @return the random value.
+     */
+    public double getRandomValue(Neuron neuron) {
+        SimbrainRandom previous = SimbrainRandom.bind(neuron.getRandom());
+        try {
+            return getRandomValue();
+        } finally {
+            SimbrainRandom.bind(previous);
+        }
+    }
+
     /**
      * Returns a value for lower bound to be used in computing the saturation of neuron nodes. Override this to produce
      * nicer graphics, and fine tune based on display of neurons in common use cases for a given neuron type.
@@ -202,6 +239,40 @@ public abstract class NeuronUpdateRule implements CopyableObject {
         return false;
     }
 
+    /**
+     * Whether one instance of this rule can be used by many neurons at once
+     * (see {@link Neuron#setSharedUpdateRule(NeuronUpdateRule)}). True for
+     * rules whose fields are all parameters, with any per-neuron state kept in
+     * {@link Neuron#getRuleState()}.
+     *
+     * @return true if the rule can be shared
+     */
+    public boolean isShareable() {
+        return false;
+    }
+
+    /**
+     * Whether this rule reads its neuron's incoming synapses directly, rather
+     * than only the summed input. Such a neuron gets no input from synapse
+     * groups in matrix mode, whose weights are not in its fan-in (see {@link
+     * org.simbrain.network.groups.SynapseGroup#setMatrixMode(boolean)}).
+     *
+     * @return true if the rule iterates the neuron's fan-in
+     */
+    public boolean readsFanIn() {
+        return false;
+    }
+
+    /**
+     * Number of per-neuron state values this rule keeps in {@link
+     * Neuron#getRuleState()}.
+     *
+     * @return the size of the state array
+     */
+    public int getStateSize() {
+        return 0;
+    }
+
     @Override
     public NeuronUpdateRule copy() {
         return deepCopy();
@@ -0,0 +1,171 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import org.simbrain.util.UserParameter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the state kept in the fields of update rules, learning
+ * rules, and spike responders, for {@link Network#writeState}. Rules that
+ * cannot be shared keep per-neuron variables like membrane potentials and
+ * recovery variables in their own fields, next to their parameters. Parameter
+ * fields are annotated with {@link UserParameter}, so the state is taken to be
+ * every other instance field of primitive or double array type. This also
+ * picks up a few unannotated parameters, which are written back unchanged.
+ */
+final class RuleFields {
+
+    /**
+     * State fields by class, found once.
+     */
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            return findFields(type);
+        }
+    };
+
+    private RuleFields() {
+    }
+
+    /**
+     * Write the state fields of a rule.
+     *
+     * @param rule the rule
+     * @param out  the output
+     * @throws IOException if writing fails
+     */
+    static void write(Object rule, DataOutput out) throws IOException {
+        Field[] fields = FIELDS.get(rule.getClass());
+        out.writeShort(fields.length);
+        try {
+            for (Field field : fields) {
+                Class<?> type = field.getType();
+                if (type == double.class) {
+                    out.writeDouble(field.getDouble(rule));
+                } else if (type == float.class) {
+                    out.writeFloat(field.getFloat(rule));
+                } else if (type == long.class) {
+                    out.writeLong(field.getLong(rule));
+                } else if (type == int.class) {
+                    out.writeInt(field.getInt(rule));
+                } else if (type == short.class) {
+                    out.writeShort(field.getShort(rule));
+                } else if (type == char.class) {
+                    out.writeChar(field.getChar(rule));
+                } else if (type == byte.class) {
+                    out.writeByte(field.getByte(rule));
+                } else if (type == boolean.class) {
+                    out.writeBoolean(field.getBoolean(rule));
+                } else {
+                    double[] values = (double[]) field.get(rule);
+                    if (values == null) {
+                        out.writeInt(-1);
+                    } else {
+                        out.writeInt(values.length);
+                        for (double value : values) {
+                            out.writeDouble(value);
+                        }
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Restore state fields written by {@link #write} into a rule of the same
+     * class.
+     *
+     * @param rule the rule
+     * @param in   the input
+     * @throws IOException if reading fails, or the state was written from a
+     *                     rule of another class
+     */
+    static void read(Object rule, DataInput in) throws IOException {
+        Field[] fields = FIELDS.get(rule.getClass());
+        int count = in.readUnsignedShort();
+        if (count != fields.length) {
+            throw new IOException("State does not match " + rule.getClass().getSimpleName());
+        }
+        try {
+            for (Field field : fields) {
+                Class<?> type = field.getType();
+                if (type == double.class) {
+                    field.setDouble(rule, in.readDouble());
+                } else if (type == float.class) {
+                    field.setFloat(rule, in.readFloat());
+                } else if (type == long.class) {
+                    field.setLong(rule, in.readLong());
+                } else if (type == int.class) {
+                    field.setInt(rule, in.readInt());
+                } else if (type == short.class) {
+                    field.setShort(rule, in.readShort());
+                } else if (type == char.class) {
+                    field.setChar(rule, in.readChar());
+                } else if (type == byte.class) {
+                    field.setByte(rule, in.readByte());
+                } else if (type == boolean.class) {
+                    field.setBoolean(rule, in.readBoolean());
+                } else {
+                    int length = in.readInt();
+                    double[] values = (double[]) field.get(rule);
+                    if (length < 0) {
+                        values = null;
+                    } else if (values == null || values.length != length) {
+                        values = new double[length];
+                    }
+                    for (int i = 0; i < length; i++) {
+                        values[i] = in.readDouble();
+                    }
+                    field.set(rule, values);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field[] findFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers)
+                        || field.isSynthetic() || field.isAnnotationPresent(UserParameter.class)) {
+                    continue;
+                }
+                if (field.getType().isPrimitive() || field.getType() == double[].class) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+        }
+        return fields.toArray(new Field[0]);
+    }
+}
@@ -32,7 +32,16 @@ import org.simbrain.network.core.Network.TimeType;
 public abstract class SpikingNeuronUpdateRule extends NeuronUpdateRule {
 
     /**
-     * Time of last spike.
+     * Index of the last spike time in {@link Neuron#getRuleState()}, for rules
+     * that can be shared. Subclasses that keep more state there start after
+     * it.
+     */
+    protected static final int LAST_SPIKE_TIME = 0;
+
+    /**
+     * Time of last spike. Shareable rules keep each neuron's last spike time
+     * on the neuron, and this is then the last spike of any neuron using the
+     * rule.
      */
     private double lastSpikeTime;
 
@@ -48,6 +57,7 @@ public abstract class SpikingNeuronUpdateRule extends NeuronUpdateRule {
         for(Synapse s :neuron.getFanIn()) {
             s.clear();
         }
+        neuron.clearDelayedInput();
     }
 
     @Override
@@ -64,12 +74,19 @@ public abstract class SpikingNeuronUpdateRule extends NeuronUpdateRule {
      */
     public void setHasSpiked(final boolean hasSpiked, final Neuron neuron) {
         if (hasSpiked) {
-            lastSpikeTime = neuron.getNetwork().getTime();
+            setLastSpikeTime(neuron, neuron.getNetwork().getTime());
         }
     }
 
+    @Override
+    public int getStateSize() {
+        return isShareable() ? 1 : 0;
+    }
+
     /**
-     * @return the lastSpikeTime
+     * @return the time of the last spike of a neuron using this rule. If the
+     * rule is shared by several neurons this is the last spike of any of them;
+     * use {@link #getLastSpikeTime(Neuron)} for a particular neuron.
      */
     public double getLastSpikeTime() {
         return lastSpikeTime;
@@ -82,6 +99,30 @@ public abstract class SpikingNeuronUpdateRule extends NeuronUpdateRule {
         this.lastSpikeTime = lastSpikeTime;
     }
 
+    /**
+     * Returns when the given neuron, which uses this rule, last spiked. Works
+     * for shared and unshared rules.
+     *
+     * @param neuron the neuron
+     * @return time of its last spike
+     */
+    public double getLastSpikeTime(Neuron neuron) {
+        return isShareable() ? neuron.getRuleState()[LAST_SPIKE_TIME] : lastSpikeTime;
+    }
+
+    /**
+     * Set when the given neuron, which uses this rule, last spiked.
+     *
+     * @param neuron        the neuron
+     * @param lastSpikeTime time of its last spike
+     */
+    public void setLastSpikeTime(Neuron neuron, double lastSpikeTime) {
+        if (isShareable()) {
+            neuron.getRuleState()[LAST_SPIKE_TIME] = lastSpikeTime;
+        }
+        this.lastSpikeTime = lastSpikeTime;
+    }
+
     /**
      * A helper method which identifies this and all subclasses as variations of
      * spiking neurons. While instanceof is often bad practice this is a faster
@@ -170,21 +170,6 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
     @UserParameter(label = "Frozen", description = "Synapse is frozen (no learning) or not", order = 6)
     private boolean frozen;
 
-    /**
-     * Manages synaptic delay
-     */
-    private double[] delayManager;
-
-    /**
-     * Points to the location in the delay manager that corresponds to the current time.
-     */
-    private int dlyPtr = 0;
-
-    /**
-     * The value {@link #dlyPtr} points to in the delay manager.
-     */
-    private double dlyVal = 0;
-
     /**
      * This special tag denotes that the synapse is a template to other synapses. That is, it exists solely to store
      * parameter values for a large group of synapses. Normally synapses must have a source and target neuron. Template
@@ -398,9 +383,8 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
             if (delay == 0) {
                 return psr;
             } else {
-                dlyVal = dequeu();
-                enqueu(psr);
-                return dlyVal;
+                target.addDelayedInput(delay, psr);
+                return 0;
             }
         }
     }
@@ -417,9 +401,8 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
         } else {
             psr = source.getActivation() * strength;
             if (delay != 0) {
-                dlyVal = dequeu();
-                enqueu(psr);
-                return dlyVal;
+                target.addDelayedInput(delay, psr);
+                return 0;
             } else {
                 return psr;
             }
@@ -635,7 +618,7 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
      * Randomize this weight to a value between its upper and lower bounds.
      */
     public void randomize() {
-        double newStrength = (getUpperBound() - getLowerBound()) * Math.random() + getLowerBound();
+        double newStrength = (getUpperBound() - getLowerBound()) * getSource().getRandom().nextDouble() + getLowerBound();
         forceSetStrength(newStrength);
     }
 
@@ -694,7 +677,10 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
     }
 
     /**
-     * Delay manager.
+     * Set the number of updates it takes for this synapse's response to reach
+     * its target. Delayed responses are queued on the target neuron (see
+     * {@link Neuron#getDelayedInput()}), so the synapse itself stores nothing
+     * extra.
      *
      * @param dly Amount of delay
      */
@@ -703,46 +689,8 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
             return;
         }
         delay = dly;
-
-        if (delay <= 0) {
-            delayManager = null;
-
-            return;
-        }
-
-        delayManager = new double[delay];
-
-        for (int i = 0; i < delay; i++) {
-            delayManager[i] = 0;
-        }
-        dlyPtr = 0;
     }
 
-    //
-    // /**
-    // *
-    // * @param dly
-    // */
-    // public void setDelayTimeDialate(final int dly) {
-    // if (dly < 0) {
-    // delay = 0;
-    // }
-    // int delayDiff = dly - delay;
-    // delay = dly;
-    // if (delay == 0) {
-    // delayManager = null;
-    //
-    // return;
-    // }
-    // if (delayDiff > 0) {
-    // for (int i = 0; i < delayDiff; i++) {
-    // delayManager.addFirst(0.0);
-    // }
-    // } else {
-    // Iterator<Double> delayIter = delayManager.iterator();
-    // }
-    // }
-
     /**
      * @return Current amount of delay.
      */
@@ -750,29 +698,6 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
         return delay;
     }
 
-    /**
-     * @return the deque.
-     */
-    private double dequeu() {
-        if (dlyPtr == delay) {
-            dlyPtr = 0;
-        }
-        return delayManager[dlyPtr++];
-    }
-
-    /**
-     * Enqueeu.
-     *
-     * @param val Value to enqueu
-     */
-    private void enqueu(final double val) {
-        if (dlyPtr == 0) {
-            delayManager[delay - 1] = val;
-        } else {
-            delayManager[dlyPtr - 1] = val;
-        }
-    }
-
     @Override
     public String toString() {
         String ret = new String();
@@ -987,16 +912,18 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
         }
         // [numDoubleValues<byte>, fieldValues <double>, delayValues<double>,
         // enabled&frozen]
+        // Delayed values now live on the target neuron, which is saved with it, so the
+        // delay slots are written as zeros to keep the format readable by older versions.
         ByteBuffer bBuf = ByteBuffer.allocate(numBytes);
         bBuf.putInt(delay);
         bBuf.putDouble(strength);
         bBuf.putDouble(psr);
         if (delay > 0) {
-            for (double d : delayManager) {
-                bBuf.putDouble(d);
+            for (int i = 0; i < delay; i++) {
+                bBuf.putDouble(0);
             }
         }
-        bBuf.putInt(dlyPtr);
+        bBuf.putInt(0);
         byte enFr = 0x0;
         byte en = (byte) (enabled ? 2 : 0);
         byte fr = (byte) (frozen ? 1 : 0);
@@ -1009,12 +936,20 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
         setDelay(byteValues.getInt());
         setStrength(byteValues.getDouble());
         setPsr(byteValues.getDouble());
-        if (delay > 0) {
-            for (int i = 0; i < delay; i++) {
-                delayManager[i] = byteValues.getDouble();
+        double[] queued = new double[Math.max(delay, 0)];
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = byteValues.getDouble();
+        }
+        int next = byteValues.getInt();
+        // Older files store the queue on the synapse; move whatever is in flight to the target
+        if (target != null) {
+            for (int i = 0; i < queued.length; i++) {
+                double val = queued[(next + i) % queued.length];
+                if (val != 0) {
+                    target.addDelayedInput(i, val);
+                }
             }
         }
-        dlyPtr = byteValues.getInt();
         byte enFr = byteValues.get();
         setEnabled(enFr >= 2);
         setFrozen(enFr == 1 || enFr == 3);
@@ -1049,14 +984,11 @@ public class Synapse implements EditableObject, AttributeContainer, NetworkModel
     }
 
     /**
-     * "Clear" the synapse in the sense of setting post synaptic result to 0 and removing all queued activations from
-     * the delay manager.
+     * "Clear" the synapse in the sense of setting post synaptic result to 0. Delayed activations are queued on the
+     * target neuron and are cleared with {@link Neuron#clearDelayedInput()}.
      */
     public void clear() {
         setPsr(0);
-        if (delayManager != null) {
-            Arrays.fill(delayManager, 0);
-        }
     }
 
     public SynapseEvents getEvents() {
@@ -18,6 +18,7 @@ import org.simbrain.util.RectangleOutlines;
 import org.simbrain.util.SimbrainConstants;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.CopyableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Consumable;
@@ -69,6 +70,16 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
      */
     protected transient NeuronCollectionEvents events = new NeuronCollectionEvents(this);
 
+    /**
+     * Random stream for group-level decisions, derived from the network's on demand.
+     */
+    private transient SimbrainRandom random;
+
+    /**
+     * The network stream {@link #random} was derived from.
+     */
+    private transient SimbrainRandom randomRoot;
+
     /**
      * References to neurons in this collection
      */
@@ -223,6 +234,7 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
     public void addNeuron(Neuron neuron) {
         neuronList.add(neuron);
         addListener(neuron);
+        neuronsChanged();
     }
 
     /**
@@ -231,6 +243,7 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
     public void addNeurons(Collection<Neuron> neurons) {
         neuronList.addAll(neurons);
         neurons.forEach(this::addListener);
+        neuronsChanged();
     }
 
     /**
@@ -247,6 +260,7 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
      */
     public void removeNeuron(Neuron neuron) {
         neuronList.remove(neuron);
+        neuronsChanged();
     }
 
     /**
@@ -254,6 +268,16 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
      */
     public void removeAllNeurons() {
         neuronList.clear();
+        neuronsChanged();
+    }
+
+    /**
+     * Tell the network its flat neuron list changed.
+     */
+    private void neuronsChanged() {
+        if (parentNetwork != null) {
+            parentNetwork.neuronsChanged();
+        }
     }
 
     /**
@@ -712,6 +736,10 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
         this.inputMode = inputMode;
         //fireLabelUpdated();
     }
+
+    public boolean isInputMode() {
+        return inputMode;
+    }
     public double getMinX() {
         return LocatableModelKt.getMinX(neuronList);
     }
@@ -790,6 +818,24 @@ public abstract class AbstractNeuronCollection implements CopyableObject, Attrib
         return parentNetwork;
     }
 
+    /**
+     * Returns the random stream for decisions made for the group as a whole, like picking a winner. It is derived from
+     * the network's seed and this group's id; neurons have their own streams (see {@link Neuron#getRandom()}).
+     *
+     * @return the random stream
+     */
+    public SimbrainRandom getRandom() {
+        if (parentNetwork == null || id == null) {
+            return SimbrainRandom.current();
+        }
+        SimbrainRandom root = parentNetwork.getRandom();
+        if (randomRoot != root) {
+            random = root.fork(id.hashCode());
+            randomRoot = root;
+        }
+        return random;
+    }
+
     @Override
     public AbstractNeuronCollection copy() {
         //TODO
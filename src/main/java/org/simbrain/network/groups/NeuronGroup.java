@@ -19,6 +19,7 @@ package org.simbrain.network.groups;
 
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.layouts.GridLayout;
@@ -63,6 +64,16 @@ public class NeuronGroup extends AbstractNeuronCollection {
     @UserParameter(label = "Group Update Rule", useSetter = true, order = 20)
     private UpdateRuleEnum groupUpdateRule = UpdateRuleEnum.LINEAR;
 
+    /**
+     * Number of network updates per update of this group. Slow processes can
+     * update less often than fast ones; see {@link #update()}.
+     */
+    @UserParameter(label = "Update Period",
+            description = "Update this group once every this many network updates. Input received in between is "
+                    + "summed and delivered at the next update.",
+            minimumValue = 1, order = 21)
+    private int updatePeriod = 1;
+
     /**
      * Default layout for neuron groups.
      */
@@ -94,6 +105,12 @@ public class NeuronGroup extends AbstractNeuronCollection {
      */
     private int betweenNeuronInterval = 50;
 
+    /**
+     * Working arrays for updating the neurons together when they all use the
+     * same type of rule. Rebuilt when the neurons or their rule types change.
+     */
+    private transient NeuronBatch batch;
+
     /**
      * Create a neuron group without any initial neurons.
      */
@@ -135,6 +152,11 @@ public class NeuronGroup extends AbstractNeuronCollection {
         setLabel(id); // Don't copy existing labels but reset them to id. Avoids many headaches.
         this.setLayout(toCopy.getLayout());
         this.setGroupUpdateRule(toCopy.groupUpdateRule);
+        this.updatePeriod = toCopy.updatePeriod;
+        NeuronUpdateRule shared = toCopy.getSharedUpdateRule();
+        if (shared != null) {
+            setSharedUpdateRule(shared.deepCopy());
+        }
     }
 
     /**
@@ -162,13 +184,64 @@ public class NeuronGroup extends AbstractNeuronCollection {
     /**
      * Updates all the neurons in the neuron group according to their NeuronUpdateRule(s). If the group is in input mode
      * reads in the next set of values from the input table and sets the neuron values accordingly.
+     * <p>
+     * If the group has an update period above 1 and is not due this time, its neurons keep their state and instead
+     * add their current net input to their input value, so that input (including spikes and delayed input) received
+     * between updates is summed and delivered at the next update rather than lost.
+     * <p>
+     * Input from incoming synapse groups in matrix mode is added to the input values first.
      */
     @Override
     public void update() {
+        addMatrixInputs();
+        if (!isUpdateDue()) {
+            if (!inputMode) {
+                for (Neuron neuron : getNeuronList()) {
+                    neuron.setInputValue(neuron.getInput());
+                    neuron.advanceDelayedInput();
+                }
+            }
+            return;
+        }
         super.update();
         if (!inputMode) {
-            Network.updateNeurons(getNeuronList());
+            List<Neuron> neurons = getNeuronList();
+            if (batch == null || !batch.matches(neurons)) {
+                batch = NeuronBatch.create(neurons);
+            }
+            if (batch != null) {
+                batch.update();
+            } else {
+                Network.updateNeurons(neurons);
+            }
+        }
+    }
+
+    /**
+     * Add the input from incoming synapse groups in matrix mode to the input values of the neurons. See {@link
+     * SynapseGroup#addMatrixInput()}.
+     */
+    public void addMatrixInputs() {
+        for (SynapseGroup sg : incomingSgs) {
+            sg.addMatrixInput();
+        }
+    }
+
+    /**
+     * Whether incoming synapse groups can be in matrix mode. Their weights are not in the neurons' fan-ins, so the
+     * group's update must add them with {@link #addMatrixInputs()}, and neither the group nor its neurons' update rules
+     * may read the fan-ins (see {@link NeuronUpdateRule#readsFanIn()}). Subclasses that update or learn through the
+     * fan-ins return false.
+     *
+     * @return true if incoming synapse groups can be in matrix mode
+     */
+    public boolean acceptsMatrixInput() {
+        for (Neuron neuron : getNeuronList()) {
+            if (neuron.getUpdateRule().readsFanIn()) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -182,6 +255,51 @@ public class NeuronGroup extends AbstractNeuronCollection {
         for (Neuron neuron : getNeuronList()) {
             neuron.setUpdateRule(base.deepCopy());
         }
+        for (SynapseGroup sg : incomingSgs) {
+            if (sg.isMatrixMode() && !sg.canUseMatrixMode()) {
+                sg.setMatrixMode(false);
+            }
+        }
+    }
+
+    /**
+     * Make every neuron in the group use the given rule object itself, rather
+     * than a copy of it. The group then holds one set of parameters, and
+     * editing the rule (for example through any neuron's {@link
+     * Neuron#getUpdateRule()}) changes all neurons at once. Per-neuron state is
+     * kept on the neurons.
+     *
+     * @param rule the rule to share
+     * @throws IllegalArgumentException if the rule keeps per-neuron state in
+     *                                  its own fields and cannot be shared
+     */
+    public void setSharedUpdateRule(NeuronUpdateRule rule) {
+        if (!rule.isShareable()) {
+            throw new IllegalArgumentException(rule.getName() + " keeps per-neuron state and cannot be shared");
+        }
+        inputManager.setInputSpikes(rule.isSpikingNeuron());
+        groupUpdateRule = UpdateRuleEnum.get(rule);
+        for (Neuron neuron : getNeuronList()) {
+            neuron.setSharedUpdateRule(rule);
+        }
+    }
+
+    /**
+     * @return the rule shared by all neurons in the group, or null if the
+     * neurons have their own rules or the group is empty
+     */
+    public NeuronUpdateRule getSharedUpdateRule() {
+        List<Neuron> neurons = getNeuronList();
+        if (neurons.isEmpty() || !neurons.get(0).getUpdateRule().isShareable()) {
+            return null;
+        }
+        NeuronUpdateRule rule = neurons.get(0).getUpdateRule();
+        for (Neuron neuron : neurons) {
+            if (neuron.getUpdateRule() != rule) {
+                return null;
+            }
+        }
+        return rule;
     }
 
     /**
@@ -348,6 +466,29 @@ public class NeuronGroup extends AbstractNeuronCollection {
         super.setLocation(new Point2D.Double(x, y));
     }
 
+    public int getUpdatePeriod() {
+        return updatePeriod;
+    }
+
+    /**
+     * Set how often this group updates.
+     *
+     * @param updatePeriod number of network updates per update of this group, at least 1
+     */
+    public void setUpdatePeriod(int updatePeriod) {
+        if (updatePeriod < 1) {
+            throw new IllegalArgumentException("Update period must be at least 1");
+        }
+        this.updatePeriod = updatePeriod;
+    }
+
+    /**
+     * @return true if this group should update in the current network update
+     */
+    public boolean isUpdateDue() {
+        return updatePeriod <= 1 || getParentNetwork().getUpdateManager().isDue(updatePeriod);
+    }
+
     /**
      * Apply any input values to the activations of the neurons in this group.
      */
@@ -460,10 +601,6 @@ public class NeuronGroup extends AbstractNeuronCollection {
         this.gridThreshold = gridThreshold;
     }
 
-    public boolean isInputMode() {
-        return inputMode;
-    }
-
     // TODO
     public boolean isSpikingNeuronGroup() {
         return inputManager.isInputSpikes();
@@ -458,14 +458,17 @@ public abstract class Subnetwork implements EditableObject, LocatableModel, Attr
     }
 
     /**
-     * Return a "flat" list containing every synapse in every synapse group in this subnetwork.
+     * Return a "flat" list containing every synapse in every synapse group in this subnetwork, other than groups in
+     * matrix mode.
      *
      * @return the flat synapse list.
      */
     public List<Synapse> getFlatSynapseList() {
         List<Synapse> ret = new ArrayList<Synapse>();
         for (SynapseGroup group : synapseGroupList) {
-            ret.addAll(group.getAllSynapses());
+            if (!group.isMatrixMode()) {
+                ret.addAll(group.getAllSynapses());
+            }
         }
         return Collections.unmodifiableList(ret);
     }
@@ -15,6 +15,7 @@ package org.simbrain.network.groups;
 import org.simbrain.network.NetworkModel;
 import org.simbrain.network.connections.ConnectionStrategy;
 import org.simbrain.network.connections.ConnectionUtilities;
+import org.simbrain.network.connections.EdgeList;
 import org.simbrain.network.connections.Sparse;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
@@ -33,18 +34,23 @@ import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import org.simbrain.util.propertyeditor.CopyableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Consumable;
 import org.simbrain.workspace.Producible;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * A group of synapses. Must connect a source and target neuron group.
@@ -71,6 +77,15 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
             order = 10)
     private String label;
 
+    /**
+     * Number of network updates per update of this group. Learning that
+     * changes slowly can be applied less often than the neurons update.
+     */
+    @UserParameter(label = "Update Period",
+            description = "Update (apply learning to) the synapses once every this many network updates.",
+            minimumValue = 1, order = 11)
+    private int updatePeriod = 1;
+
     /**
      * Event support
      */
@@ -272,6 +287,49 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      */
     private boolean useFullRepOnSave = false;
 
+    /**
+     * If true the weights are kept in {@link #matrix} rather than as synapse
+     * objects. See {@link #setMatrixMode(boolean)}.
+     */
+    private boolean matrixMode = false;
+
+    /**
+     * The weights in matrix mode, else null.
+     */
+    private MatrixWeights matrix;
+
+    /**
+     * Holds {@link #matrix} while the group is saved, since the weights are
+     * then saved in {@link #compressedMatrixRep}.
+     */
+    private transient MatrixWeights matrixTemp;
+
+    /**
+     * Source activations gathered by {@link #addMatrixInput()}.
+     */
+    private transient double[] sourceActivations;
+
+    /**
+     * Number of weights above which {@link #addMatrixInput()} splits the
+     * product across threads.
+     */
+    private static final int PARALLEL_MATRIX_SIZE = 1 << 16;
+
+    /**
+     * True while {@link #makeConnections(boolean)} builds a group in matrix
+     * mode, so that bulk connections go straight into a matrix.
+     */
+    private transient boolean connectAsMatrix;
+
+    /**
+     * Index numbers of the source and target neurons, and the synapses sorted
+     * by source and then target, used to export the weights. Kept while the
+     * neuron groups are unchanged; the sorted synapses are dropped when
+     * synapses are added or removed and sorted again when next needed. See
+     * {@link #getSynapseIndex()}.
+     */
+    private transient SynapseIndex synapseIndex;
+
     /**
      * Completely creates a synapse group between the two neuron groups with all
      * default parameters. This method creates the individual connections.
@@ -440,12 +498,37 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * parameters used to create new connections. This method adds the current
      * synapse group the the source neuron group's outgoing synapse set and the
      * target neuron group's incoming synapse set.
+     * <p>
+     * A group in matrix mode is rebuilt in matrix mode. See {@link
+     * #makeConnections(boolean)}.
      */
     public void makeConnections() {
+        makeConnections(matrixMode);
+    }
+
+    /**
+     * Make the group's connections as {@link #makeConnections()} does, and
+     * choose whether to keep the weights in a matrix. With asMatrix true, a
+     * group that can use matrix mode puts the weights of connection
+     * strategies that connect in bulk (see {@link
+     * #addConnections(EdgeList)}) straight into a matrix, without creating
+     * synapse objects at all, which is how very large groups should be made.
+     * Other strategies create synapses, which are then moved into a matrix.
+     * Matrix mode is never turned on otherwise, however large the group.
+     *
+     * @param asMatrix true to keep the weights in a matrix, if the group can
+     *                 use matrix mode (see {@link #setMatrixMode(boolean)})
+     */
+    public void makeConnections(boolean asMatrix) {
         clear();
         sourceNeuronGroup.addOutgoingSg(this);
         targetNeuronGroup.addIncomingSg(this);
-        connectionManager.connectNeurons(this);
+        connectAsMatrix = asMatrix;
+        try {
+            connectionManager.connectNeurons(this);
+        } finally {
+            connectAsMatrix = false;
+        }
         if (size() == 0) {
             String errMessage = "Synapse group creation failed because there are no synapses;";
             errMessage += "source neuron group = " + this.getSourceNeuronGroup().getLabel();
@@ -453,6 +536,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
             delete();
             throw new IllegalStateException(errMessage);
         }
+        if (asMatrix && canUseMatrixMode()) {
+            setMatrixMode(true);
+        }
         events.fireVisibilityChange();
     }
 
@@ -493,6 +579,11 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * be called to sort synapses into their appropriate sets.
      */
     public void revalidateSynapseSets() {
+        if (matrixMode) {
+            // Weights in a matrix are sorted by their sign
+            excitatoryRatio = getExcitatoryRatioPrecise();
+            return;
+        }
         Iterator<Synapse> exIterator = exSynapseSet.iterator();
         ArrayList<Synapse> exSwitches = new ArrayList<Synapse>(exSynapseSet.size());
         while (exIterator.hasNext()) {
@@ -519,9 +610,13 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
 
     /**
      * Update group. Override for special updating. Recommended that overrides
-     * call super.update() some time during the custom update.
+     * call super.update() some time during the custom update. Does nothing when
+     * the group is not due under its update period.
      */
     public void update() {
+        if (!isUpdateDue()) {
+            return;
+        }
         if (useGroupLevelSettings) {
             if (!exStatic) { // Only iterate if excitatory synapses aren't static
                 // Assuming they're not static, only iterate if they aren't frozen.
@@ -564,12 +659,265 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         }
     }
 
+    /**
+     * @return true if the weights are kept in a matrix rather than as synapse
+     * objects. See {@link #setMatrixMode(boolean)}.
+     */
+    public boolean isMatrixMode() {
+        return matrixMode;
+    }
+
+    /**
+     * Keep the weights of this group in a sparse matrix rather than as synapse
+     * objects, or go back to synapse objects. In matrix mode the group holds
+     * 12 bytes per connection, and the target group receives the group's input
+     * as one sparse matrix-vector product over the source activations (see
+     * {@link #addMatrixInput()}), which makes large groups, like the recurrent
+     * connections of a reservoir, much cheaper to hold and update.
+     * <p>
+     * Only a group whose synapses are fully described by its prototypes can
+     * use matrix mode: group level settings must be on, the synapses must not
+     * learn (static or frozen), must be enabled and have no delay, and the
+     * source neurons must not spike. The target group must add the group's
+     * input in its update, and must not read its neurons' incoming synapses,
+     * as self organizing maps, competitive groups, and some update rules do
+     * (see {@link NeuronGroup#acceptsMatrixInput()}). See {@link
+     * #canUseMatrixMode()}.
+     * <p>
+     * In matrix mode the synapses are not in their neurons' fan-ins or
+     * fan-outs, nor in the network's flat synapse list, and they have no ids.
+     * Weights can still be read and exported ({@link #getWeightVector()},
+     * {@link #getWeightMatrix()}, {@link #getNumericIndices()}, etc.),
+     * randomized, and set with {@link #setStrength(double, Polarity)}.
+     * Anything that needs the synapse objects, like {@link #getAllSynapses()},
+     * showing the synapses in the GUI, or adding synapses, first turns matrix
+     * mode off, which creates new synapses. Changing the prototypes so that the
+     * group can no longer use matrix mode turns it off as well.
+     *
+     * @param matrixMode true to keep the weights in a matrix
+     * @throws IllegalStateException if matrix mode is requested but the group
+     *                               cannot use it
+     */
+    public void setMatrixMode(boolean matrixMode) {
+        if (matrixMode == this.matrixMode) {
+            return;
+        }
+        if (matrixMode) {
+            String problem = getMatrixModeProblem();
+            if (problem != null) {
+                throw new IllegalStateException("Synapse group " + getLabel() + " cannot use matrix mode: " + problem);
+            }
+            synapsesToMatrix();
+            // Showing the synapses would create them again
+            displaySynapses = false;
+        } else {
+            matrixToSynapses();
+        }
+        events.fireVisibilityChange();
+    }
+
+    /**
+     * @return true if this group can keep its weights in a matrix. See {@link
+     * #setMatrixMode(boolean)}.
+     */
+    public boolean canUseMatrixMode() {
+        return getMatrixModeProblem() == null;
+    }
+
+    /**
+     * @return why this group cannot use matrix mode, or null if it can
+     */
+    private String getMatrixModeProblem() {
+        if (!useGroupLevelSettings) {
+            return "synapses do not use group level settings";
+        }
+        if (sourceNeuronGroup.isSpikingNeuronGroup()) {
+            return "source neurons spike";
+        }
+        if (!targetNeuronGroup.acceptsMatrixInput()) {
+            return "target group reads its incoming synapses";
+        }
+        for (Synapse prototype : new Synapse[]{excitatoryPrototype, inhibitoryPrototype}) {
+            if (!(prototype.getLearningRule() instanceof StaticSynapseRule) && !prototype.isFrozen()) {
+                return "synapses learn";
+            }
+            if (!prototype.isEnabled()) {
+                return "synapses are disabled";
+            }
+            if (prototype.getDelay() != 0) {
+                return "synapses have a delay";
+            }
+            if (!(prototype.getSpikeResponder() instanceof NonResponder)) {
+                return "synapses have a spike responder";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move the weights into a matrix, and disconnect and drop the synapses.
+     */
+    private void synapsesToMatrix() {
+        List<Neuron> sources = getSourceNeurons();
+        List<Neuron> targets = getTargetNeurons();
+        Map<Neuron, Integer> sourceIndex = indexNeurons(sources);
+        Map<Neuron, Integer> targetIndex = indexNeurons(targets);
+        int n = size();
+        int[] sourceOf = new int[n];
+        int[] targetOf = new int[n];
+        double[] strengths = new double[n];
+        int k = 0;
+        for (Set<Synapse> set : Arrays.asList(exSynapseSet, inSynapseSet)) {
+            for (Synapse synapse : set) {
+                sourceOf[k] = sourceIndex.get(synapse.getSource());
+                targetOf[k] = targetIndex.get(synapse.getTarget());
+                strengths[k] = synapse.getStrength();
+                k++;
+                synapse.getSource().removeEfferent(synapse);
+            }
+        }
+        for (Neuron target : targets) {
+            target.removeAfferentsIf(synapse -> synapse.getParentGroup() == this);
+        }
+        exSynapseSet = new HashSet<>();
+        inSynapseSet = new HashSet<>();
+        synapsesChanged();
+
+        matrix = MatrixWeights.fromConnections(sources.size(), targets.size(), sourceOf, targetOf, strengths,
+                countingSort(sourceOf, null, sources.size()));
+        matrixMode = true;
+    }
+
+    /**
+     * Create connected synapses for the weights in the matrix, with the
+     * settings of the prototypes.
+     */
+    private void matrixToSynapses() {
+        MatrixWeights m = matrix;
+        matrix = null;
+        sourceActivations = null;
+        matrixMode = false;
+        List<Neuron> sources = getSourceNeurons();
+        List<Neuron> targets = getTargetNeurons();
+        int excitatory = m.countExcitatory();
+        exSynapseSet = new HashSet<>((int) (excitatory / 0.75) + 1);
+        inSynapseSet = new HashSet<>((int) ((m.weights.length - excitatory) / 0.75) + 1);
+        for (int t = 0; t < targets.size(); t++) {
+            Neuron target = targets.get(t);
+            for (int k = m.rowOffsets[t]; k < m.rowOffsets[t + 1]; k++) {
+                Synapse synapse = new Synapse(sources.get(m.sources[k]), target);
+                if (m.weights[k] >= 0) {
+                    conformToPrototype(synapse, excitatoryPrototype);
+                    exSynapseSet.add(synapse);
+                } else {
+                    conformToPrototype(synapse, inhibitoryPrototype);
+                    inSynapseSet.add(synapse);
+                }
+                synapse.forceSetStrength(m.weights[k]);
+            }
+        }
+        synapsesChanged();
+    }
+
+    /**
+     * Give a new synapse an id, this group as its parent, and the settings of
+     * a prototype other than its strength.
+     */
+    private void conformToPrototype(Synapse synapse, Synapse prototype) {
+        synapse.setId(getParentNetwork().getIdManager().getId(Synapse.class));
+        synapse.setParentGroup(this);
+        synapse.setLearningRule(prototype.getLearningRule().deepCopy());
+        synapse.setFrozen(prototype.isFrozen());
+        synapse.setEnabled(prototype.isEnabled());
+        synapse.setDelay(prototype.getDelay());
+        synapse.setIncrement(prototype.getIncrement());
+        synapse.setUpperBound(prototype.getUpperBound());
+        synapse.setLowerBound(prototype.getLowerBound());
+        synapse.setSpikeResponder(prototype.getSpikeResponder());
+    }
+
+    private static Map<Neuron, Integer> indexNeurons(List<Neuron> neurons) {
+        Map<Neuron, Integer> index = new HashMap<>((int) (neurons.size() / 0.75) + 1);
+        for (int i = 0; i < neurons.size(); i++) {
+            index.put(neurons.get(i), i);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the items ordered by an integer key, keeping the given order
+     * among items with the same key.
+     *
+     * @param keys  key of each item, in [0, range)
+     * @param order order of the items to start from, or null for 0, 1, 2...
+     * @param range number of possible keys
+     * @return the items in key order
+     */
+    private static int[] countingSort(int[] keys, int[] order, int range) {
+        int[] starts = new int[range + 1];
+        for (int key : keys) {
+            starts[key + 1]++;
+        }
+        for (int i = 0; i < range; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] sorted = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int item = order == null ? i : order[i];
+            sorted[starts[keys[item]]++] = item;
+        }
+        return sorted;
+    }
+
+    /**
+     * In matrix mode, add this group's input to the input values of the target
+     * neurons: for each target neuron, the sum of its weights times the
+     * activations of their source neurons, as the synapses would provide. The
+     * target group calls this before its neurons update (see {@link
+     * NeuronGroup#update()}), and input values are cleared after each network
+     * update as usual. Does nothing if the group is not in matrix mode.
+     *
+     * @throws IllegalStateException if neurons were added to or removed from
+     *                               the source or target group in matrix mode
+     */
+    public void addMatrixInput() {
+        MatrixWeights m = matrix;
+        if (!matrixMode || m == null) {
+            return;
+        }
+        List<Neuron> sources = getSourceNeurons();
+        List<Neuron> targets = getTargetNeurons();
+        if (sources.size() != m.sourceCount || targets.size() != m.rowOffsets.length - 1) {
+            throw new IllegalStateException("The neuron groups of synapse group " + getLabel()
+                    + " changed size in matrix mode");
+        }
+        if (sourceActivations == null || sourceActivations.length != sources.size()) {
+            sourceActivations = new double[sources.size()];
+        }
+        double[] activations = sourceActivations;
+        for (int i = 0; i < activations.length; i++) {
+            activations[i] = sources.get(i).getActivation();
+        }
+        int rows = targets.size();
+        if (m.weights.length < PARALLEL_MATRIX_SIZE) {
+            m.addProducts(activations, targets, 0, rows);
+        } else {
+            // Each target neuron is in one part, so the parts don't share any neuron's input
+            int parts = Math.min(rows, 4 * ForkJoinPool.getCommonPoolParallelism());
+            IntStream.range(0, parts).parallel().forEach(p -> m.addProducts(activations, targets,
+                    (int) ((long) rows * p / parts), (int) ((long) rows * (p + 1) / parts)));
+        }
+    }
+
     public int size() {
+        if (matrixMode) {
+            return matrix == null ? 0 : matrix.weights.length;
+        }
         return exSynapseSet.size() + inSynapseSet.size();
     }
 
     public boolean isEmpty() {
-        return exSynapseSet.isEmpty() && inSynapseSet.isEmpty();
+        return size() == 0;
     }
 
     public void delete() {
@@ -621,6 +969,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
     public Synapse removeSynapse(Synapse toDelete) {
         exSynapseSet.remove(toDelete);
         inSynapseSet.remove(toDelete);
+        synapsesChanged();
         if (toDelete != null) {
             // TODO: Discuss np check with Zoë
             toDelete.getSource().removeEfferent(toDelete);
@@ -650,9 +999,14 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
 
     /**
      * Removes all synapses from this synapse group and the network. Deletes all
-     * synapses in this group.
+     * synapses in this group. A group in matrix mode leaves it.
      */
     public void clear() {
+        if (matrixMode) {
+            matrixMode = false;
+            matrix = null;
+            sourceActivations = null;
+        }
         for (Synapse toDelete : exSynapseSet) {
             // Remove references to this synapse from parent neurons
             toDelete.getSource().removeEfferent(toDelete);
@@ -671,6 +1025,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         }
         exSynapseSet.clear();
         inSynapseSet.clear();
+        synapsesChanged();
     }
 
     /**
@@ -683,6 +1038,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      *                based on the parameters of this group.
      */
     public void addNewSynapse(final Synapse synapse) {
+        setMatrixMode(false);
         if (synapse.getSource().isPolarized()) {
             if (Polarity.EXCITATORY.equals(synapse.getSource().getPolarity())) {
                 addNewExcitatorySynapse(synapse);
@@ -690,7 +1046,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
                 addNewInhibitorySynapse(synapse);
             }
         } else {
-            double rand = Math.random();
+            double rand = synapse.getSource().getRandom().nextDouble();
             double correctionTerm = size() == 0 ? 0 : excitatoryRatio - (exSynapseSet.size() / (double) size());
             if (rand < (excitatoryRatio + correctionTerm)) {
                 addNewExcitatorySynapse(synapse);
@@ -706,6 +1062,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      *                of this group.
      */
     public void addNewExcitatorySynapse(final Synapse synapse)  {
+        setMatrixMode(false);
         synapse.setId(getParentNetwork().getIdManager().getId(Synapse.class));
         synapse.setParentGroup(this);
         if (exciteRand != null) {
@@ -722,6 +1079,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         synapse.setLowerBound(excitatoryPrototype.getLowerBound());
         synapse.setSpikeResponder(excitatoryPrototype.getSpikeResponder());
         exSynapseSet.add(synapse);
+        synapsesChanged();
         fireSynapseAdded(synapse);
     }
 
@@ -731,6 +1089,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      *                of this group.
      */
     public void addNewInhibitorySynapse(final Synapse synapse) {
+        setMatrixMode(false);
         synapse.setId(getParentNetwork().getIdManager().getId(Synapse.class));
         synapse.setParentGroup(this);
         if (inhibRand != null) {
@@ -747,6 +1106,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         synapse.setLowerBound(inhibitoryPrototype.getLowerBound());
         synapse.setSpikeResponder(inhibitoryPrototype.getSpikeResponder());
         inSynapseSet.add(synapse);
+        synapsesChanged();
         fireSynapseAdded(synapse);
     }
 
@@ -784,7 +1144,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * @param synapse the synapse to add.
      */
     public void addExcitatorySynapseUnsafe(final Synapse synapse) {
+        setMatrixMode(false);
         exSynapseSet.add(synapse);
+        synapsesChanged();
         excitatoryRatio = exSynapseSet.size() / (double) size();
         if (getParentNetwork() != null) {
             synapse.setId(getParentNetwork().getIdManager().getId(Synapse.class));
@@ -801,7 +1163,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * @param synapse the synapse to add.
      */
     public void addInhibitorySynapseUnsafe(final Synapse synapse) {
+        setMatrixMode(false);
         inSynapseSet.add(synapse);
+        synapsesChanged();
         excitatoryRatio = exSynapseSet.size() / (double) size();
         if (getParentNetwork() != null) {
             synapse.setId(getParentNetwork().getIdManager().getId(Synapse.class));
@@ -810,6 +1174,157 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         fireSynapseAdded(synapse);
     }
 
+    /**
+     * Add synapses read from a file. Unlike {@link #addSynapseUnsafe(Synapse)}
+     * the synapses keep their ids, go into the set they were saved from, and
+     * no events are fired.
+     *
+     * @param excitatory synapses to add to the excitatory set
+     * @param inhibitory synapses to add to the inhibitory set
+     */
+    public void restoreSynapses(Collection<Synapse> excitatory, Collection<Synapse> inhibitory) {
+        setMatrixMode(false);
+        exSynapseSet.addAll(excitatory);
+        inSynapseSet.addAll(inhibitory);
+        synapsesChanged();
+        for (Synapse synapse : excitatory) {
+            synapse.setParentGroup(this);
+        }
+        for (Synapse synapse : inhibitory) {
+            synapse.setParentGroup(this);
+        }
+    }
+
+    /**
+     * Connect the neurons given by an edge list, all at once. Used by
+     * connection strategies to build large groups much faster than by adding
+     * synapses one at a time.
+     * <p>
+     * As with {@link #addNewSynapse(Synapse)}, each connection is excitatory or
+     * inhibitory according to its source's polarity, or else at random so that
+     * the connections from unpolarized sources meet the excitatory ratio. Each
+     * gets a strength from the randomizer for its polarity, and otherwise the
+     * settings of the matching prototype. Strengths are drawn
+     * in parallel, each block of sources from its own stream (see {@link
+     * EdgeList}). If the group is being built in matrix mode (see {@link
+     * #makeConnections(boolean)}) and can use it, the weights go straight into
+     * a matrix. Otherwise synapses are created, wired, and added in one pass,
+     * without an event for each.
+     *
+     * @param edges the connections, numbering the neurons by their positions
+     *              in the source and target groups
+     * @throws IllegalArgumentException if the edge list does not match the
+     *                                  sizes of the neuron groups
+     * @throws IllegalStateException    if the group already has synapses
+     */
+    public void addConnections(EdgeList edges) {
+        List<Neuron> sources = getSourceNeurons();
+        List<Neuron> targets = getTargetNeurons();
+        if (edges.getNumSources() != sources.size() || edges.getNumTargets() != targets.size()) {
+            throw new IllegalArgumentException("Edge list does not match the neuron groups of synapse group "
+                    + getLabel());
+        }
+        if (!isEmpty()) {
+            throw new IllegalStateException("Synapse group " + getLabel() + " already has synapses");
+        }
+        int[] offsets = edges.getOffsets();
+        int[] targetOf = edges.getTargets();
+        int n = edges.size();
+
+        // Connections from unpolarized sources before each block, so that the
+        // excitatory ones can be shared out to meet the ratio exactly
+        long[] unpolarizedBefore = new long[(sources.size() + EdgeList.BLOCK_SIZE - 1) / EdgeList.BLOCK_SIZE + 1];
+        for (int s = 0; s < sources.size(); s++) {
+            if (!sources.get(s).isPolarized()) {
+                unpolarizedBefore[s / EdgeList.BLOCK_SIZE + 1] += offsets[s + 1] - offsets[s];
+            }
+        }
+        for (int b = 1; b < unpolarizedBefore.length; b++) {
+            unpolarizedBefore[b] += unpolarizedBefore[b - 1];
+        }
+
+        boolean[] excitatory = new boolean[n];
+        double[] strengths = new double[n];
+        SimbrainRandom random = sourceNeuronGroup.getRandom().split();
+        EdgeList.forEachBlock(sources.size(), block -> {
+            SimbrainRandom blockRandom = random.fork(block);
+            long remaining = unpolarizedBefore[block + 1] - unpolarizedBefore[block];
+            long remainingExcitatory = Math.round(excitatoryRatio * unpolarizedBefore[block + 1])
+                    - Math.round(excitatoryRatio * unpolarizedBefore[block]);
+            for (int s = block * EdgeList.BLOCK_SIZE, end = EdgeList.blockEnd(block, sources.size()); s < end; s++) {
+                Neuron source = sources.get(s);
+                for (int k = offsets[s]; k < offsets[s + 1]; k++) {
+                    if (source.isPolarized()) {
+                        excitatory[k] = source.getPolarity() == Polarity.EXCITATORY;
+                    } else {
+                        excitatory[k] = blockRandom.nextDouble() * remaining < remainingExcitatory;
+                        if (excitatory[k]) {
+                            remainingExcitatory--;
+                        }
+                        remaining--;
+                    }
+                    strengths[k] = drawStrength(excitatory[k], source, blockRandom);
+                }
+            }
+        });
+
+        if (connectAsMatrix && canUseMatrixMode()) {
+            int[] sourceOf = new int[n];
+            for (int s = 0; s < sources.size(); s++) {
+                Arrays.fill(sourceOf, offsets[s], offsets[s + 1], s);
+            }
+            matrix = MatrixWeights.fromConnections(sources.size(), targets.size(), sourceOf, targetOf, strengths,
+                    null);
+            matrixMode = true;
+            displaySynapses = false;
+        } else {
+            int excitatoryCount = 0;
+            for (boolean isExcitatory : excitatory) {
+                if (isExcitatory) {
+                    excitatoryCount++;
+                }
+            }
+            exSynapseSet = new HashSet<>((int) (excitatoryCount / 0.75) + 1);
+            inSynapseSet = new HashSet<>((int) ((n - excitatoryCount) / 0.75) + 1);
+            for (int s = 0; s < sources.size(); s++) {
+                Neuron source = sources.get(s);
+                for (int k = offsets[s]; k < offsets[s + 1]; k++) {
+                    Synapse synapse = new Synapse(source, targets.get(targetOf[k]));
+                    if (excitatory[k]) {
+                        conformToPrototype(synapse, excitatoryPrototype);
+                        exSynapseSet.add(synapse);
+                    } else {
+                        conformToPrototype(synapse, inhibitoryPrototype);
+                        inSynapseSet.add(synapse);
+                    }
+                    synapse.forceSetStrength(strengths[k]);
+                }
+            }
+        }
+        synapsesChanged();
+    }
+
+    /**
+     * Returns a strength for a new connection from the randomizer for its
+     * polarity, or the default strength, within the prototype's bounds.
+     */
+    private double drawStrength(boolean excitatory, Neuron source, SimbrainRandom random) {
+        Synapse prototype = excitatory ? excitatoryPrototype : inhibitoryPrototype;
+        ProbabilityDistribution randomizer = excitatory ? exciteRand : inhibRand;
+        double strength = randomizer == null ? (excitatory ? ConnectionUtilities.DEFAULT_EXCITATORY_STRENGTH
+                : ConnectionUtilities.DEFAULT_INHIBITORY_STRENGTH) : randomizer.getRandom(random);
+        return prototype.clip(source.getPolarity().clip(strength));
+    }
+
+    /**
+     * @param synapse a synapse in this group
+     * @return true if the synapse is in the excitatory set, false if it is in
+     * the inhibitory set or not in this group
+     */
+    public boolean isInExcitatorySet(Synapse synapse) {
+        return exSynapseSet.contains(synapse);
+    }
+
     /**
      * Changes the ratio of synapses in this group that are excitatory subject
      * to two constraints: <b>1)</b> If neurons in the source neuron group have
@@ -838,6 +1353,8 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
             this.excitatoryRatio = excitatoryRatio;
             return;
         }
+        // Polarities are switched synapse by synapse
+        setMatrixMode(false);
 
         if (excitatoryRatio < getExcitatoryRatioPrecise()) {
             int numSwitch = (int) ((this.excitatoryRatio * size()) - (excitatoryRatio * size()));
@@ -906,14 +1423,25 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * excitatory synapses divided by the total.
      */
     public double getExcitatoryRatioPrecise() {
-        return exSynapseSet.size() / (double) size();
+        return getExcitatoryCount() / (double) size();
+    }
+
+    private int getExcitatoryCount() {
+        if (matrixMode) {
+            return matrix == null ? 0 : matrix.countExcitatory();
+        }
+        return exSynapseSet.size();
     }
 
     /**
+     * Returns all the synapses. A group in matrix mode leaves it, see {@link
+     * #setMatrixMode(boolean)}.
+     *
      * @return a flat list representation of all the synapses in this synapse
      * group. This list is a defensive copy.
      */
     public List<Synapse> getAllSynapses() {
+        setMatrixMode(false);
         ArrayList<Synapse> flatList = new ArrayList<Synapse>(size());
         flatList.addAll(getExcitatorySynapses());
         flatList.addAll(getInhibitorySynapses());
@@ -921,10 +1449,12 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
     }
 
     public Set<Synapse> getExcitatorySynapses() {
+        setMatrixMode(false);
         return new HashSet<Synapse>(exSynapseSet);
     }
 
     public Set<Synapse> getInhibitorySynapses() {
+        setMatrixMode(false);
         return new HashSet<Synapse>(inSynapseSet);
     }
 
@@ -935,6 +1465,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      */
     @Producible
     public double[] getWeightVector() {
+        if (matrixMode) {
+            return matrix.getStrengths(Polarity.BOTH);
+        }
         double[] retArray = new double[size()];
         int i = 0;
         for (Synapse synapse : exSynapseSet) {
@@ -951,6 +1484,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      */
     @Producible
     public double[] getInhibitoryStrengths() {
+        if (matrixMode) {
+            return matrix.getStrengths(Polarity.INHIBITORY);
+        }
         double[] retArray = new double[inSynapseSet.size()];
         int i = 0;
         for (Synapse synapse : inSynapseSet) {
@@ -964,6 +1500,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      */
     @Producible
     public double[] getExcitatoryStrengths() {
+        if (matrixMode) {
+            return matrix.getStrengths(Polarity.EXCITATORY);
+        }
         double[] retArray = new double[exSynapseSet.size()];
         int i = 0;
         for (Synapse synapse : exSynapseSet) {
@@ -984,36 +1523,125 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      */
     public double[][] getWeightMatrix() {
         double[][] weightMatrix = new double[getSourceNeurons().size()][getTargetNeurons().size()];
-        int i = 0;
-        int j = 0;
-        // Create numbers for neurons... less expensive than constant
-        // indexOf calls to array lists.
-        Map<Neuron, Integer> sourceMap = new HashMap<Neuron, Integer>();
-        Map<Neuron, Integer> targetMap = new HashMap<Neuron, Integer>();
-        for (Neuron n : getSourceNeurons()) {
-            sourceMap.put(n, i++);
-        }
-        for (Neuron n : getTargetNeurons()) {
-            targetMap.put(n, j++);
-        }
-        // Construct uncompressed matrix from weights
-        for (Synapse s : getExcitatorySynapses()) {
-            i = sourceMap.get(s.getSource());
-            j = targetMap.get(s.getTarget());
-            weightMatrix[i][j] = s.getStrength();
-        }
-        for (Synapse s : getInhibitorySynapses()) {
-            i = sourceMap.get(s.getSource());
-            j = targetMap.get(s.getTarget());
-            weightMatrix[i][j] = s.getStrength();
-        }
+        forEachWeight((source, target, strength) -> weightMatrix[source][target] = strength);
         return weightMatrix;
     }
 
+    /**
+     * Receives weights from {@link #forEachWeight(WeightVisitor)}.
+     */
+    @FunctionalInterface
+    private interface WeightVisitor {
+
+        /**
+         * @param source   index of the source neuron in the source group
+         * @param target   index of the target neuron in the target group
+         * @param strength the weight
+         */
+        void visit(int source, int target, double strength);
+    }
+
+    /**
+     * Pass each weight in the group to a visitor, ordered by source index and
+     * then target index. Used by the exports, so that they need neither a map
+     * lookup nor an array per weight.
+     */
+    private void forEachWeight(WeightVisitor visitor) {
+        if (matrixMode) {
+            matrix.forEachWeight(visitor);
+            return;
+        }
+        SynapseIndex index = getSynapseIndex();
+        for (int s = 0; s < index.sources.length; s++) {
+            for (int k = index.rowOffsets[s], end = index.rowOffsets[s + 1]; k < end; k++) {
+                visitor.visit(s, index.targetColumns[k], index.synapses[k].getStrength());
+            }
+        }
+    }
+
+    /**
+     * Returns {@link #synapseIndex}, first indexing the neurons again if the
+     * neuron groups changed, and sorting the synapses again if synapses were
+     * added or removed.
+     */
+    private SynapseIndex getSynapseIndex() {
+        List<Neuron> sources = getSourceNeurons();
+        List<Neuron> targets = getTargetNeurons();
+        if (synapseIndex == null || !synapseIndex.indexes(sources, targets)) {
+            synapseIndex = new SynapseIndex(sources, targets);
+        }
+        if (synapseIndex.synapses == null || synapseIndex.synapses.length != size()) {
+            synapseIndex.sortSynapses(exSynapseSet, inSynapseSet);
+        }
+        return synapseIndex;
+    }
+
+    /**
+     * Returns the synapses ordered by source index and then target index. The
+     * synapse sets are ordered by identity, so this is the order to use when
+     * synapses must be matched with data saved in an earlier session. Empty in
+     * matrix mode.
+     *
+     * @return the sorted synapses, read-only
+     */
+    public List<Synapse> getSortedSynapses() {
+        if (matrixMode) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(getSynapseIndex().synapses));
+    }
+
+    /**
+     * Write the weights kept in matrix mode, in matrix order. Nothing is
+     * written if the group is not in matrix mode.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeMatrixWeights(DataOutput out) throws IOException {
+        if (!matrixMode) {
+            return;
+        }
+        for (double weight : matrix.weights) {
+            out.writeDouble(weight);
+        }
+    }
+
+    /**
+     * Read weights written by {@link #writeMatrixWeights(DataOutput)} from a
+     * group with the same structure.
+     *
+     * @param in the input
+     * @throws IOException if reading fails
+     */
+    public void readMatrixWeights(DataInput in) throws IOException {
+        if (!matrixMode) {
+            return;
+        }
+        double[] weights = matrix.weights;
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = in.readDouble();
+        }
+    }
+
+    /**
+     * Called when synapses are added to or removed from the group, to drop
+     * the sorted synapses of {@link #synapseIndex}. Moving a synapse between
+     * the excitatory and inhibitory sets does not need this.
+     */
+    private void synapsesChanged() {
+        if (synapseIndex != null) {
+            synapseIndex.synapses = null;
+        }
+    }
+
     /**
      * A more compressed version of a weight matrix for cases where a weight
      * matrix is needed, but may cause memory issues if fully instantiated. Eg,
      * for very sparse synapse groups between very large neuron groups.
+     * <p>
+     * This makes an array per synapse; the other exports in this class read
+     * the weights without doing so.
      *
      * @return a 2D array with a number of rows equal to the total number of
      * synapses and a number of columns equal to 3. Each row contains the the
@@ -1022,50 +1650,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * 2 .9 0 3 5.3 0 1 -.1 Becomes: 0 1 -.1 0 3 5.3 1 2 .9
      */
     public double[][] getNumericIndices() {
-        double[][] pairs = new double[size()][3];
-        int i = 0;
-        int j = 0;
-        // Create numbers for neurons... less expensive than constant
-        // indexOf calls to array lists.
-        Map<Neuron, Integer> sourceMap = new HashMap<Neuron, Integer>((int) (sourceNeuronGroup.size() / 0.75));
-        Map<Neuron, Integer> targetMap = new HashMap<Neuron, Integer>((int) (targetNeuronGroup.size() / 0.75));
-        // Assign indices to each source and target neuron in a lookup table
-        // so that synapses can be identified by a source and target index
-        for (Neuron n : getSourceNeurons()) {
-            sourceMap.put(n, i++);
-        }
-        for (Neuron n : getTargetNeurons()) {
-            targetMap.put(n, j++);
-        }
-        // Put each synapse strength into a table [i, j, w], where i is the
-        // source neuron index in a weight matrix, j is the target index and
-        // w is the synapse strength.
-        int k = 0;
-        for (Synapse s : getAllSynapses()) {
-            pairs[k++] = new double[] {sourceMap.get(s.getSource()), targetMap.get(s.getTarget()), s.getStrength()};
-        }
-        // Create a comparator to sort synapse table entries by source, then
-        // by column.
-        Comparator<double[]> rowColOrderer = new Comparator<double[]>() {
-            @Override
-            public int compare(double[] o1, double[] o2) {
-                if (o1[0] < o2[0]) {
-                    return -1;
-                } else if (o1[0] > o2[0]) {
-                    return 1;
-                } else {
-                    if (o1[1] < o2[1]) {
-                        return -1;
-                    } else if (o1[1] > o2[1]) {
-                        return 1;
-                    } else {
-                        return 0;
-                    }
-                }
-            }
-        };
-        // And sort the table
-        Arrays.sort(pairs, rowColOrderer);
+        double[][] pairs = new double[size()][];
+        int[] k = {0};
+        forEachWeight((source, target, strength) -> pairs[k[0]++] = new double[]{source, target, strength});
         return pairs;
     }
 
@@ -1075,34 +1662,26 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * denoted by -1.
      */
     public long[] getRowCompressedMatrixRepresentation() {
-        double[][] pairs = getNumericIndices();
         int numSyns = size();
         int numSrc = sourceNeuronGroup.size();
         long[] compRowRep = new long[numSrc + (2 * numSyns)];
-        int currRow = 0;
-        int m = 0;
         compRowRep[0] = numSyns;
-        int l = 1;
-        for (int n = numSyns + numSrc; l < n; l++) {
-            if (m == numSyns) {
-                break;
-            }
-            if (pairs[m][0] != currRow) {
-                compRowRep[l] = -1L;
-                currRow++;
-            } else {
-                compRowRep[l] = (long) pairs[m][1];
-                compRowRep[numSyns + numSrc + m] = Double.doubleToLongBits(pairs[m][2]);
-                m++;
+        // Next free position, current row, and number of synapses written
+        int[] state = {1, 0, 0};
+        forEachWeight((source, target, strength) -> {
+            while (state[1] < source) {
+                compRowRep[state[0]++] = -1L;
+                state[1]++;
             }
-        }
+            compRowRep[state[0]++] = target;
+            compRowRep[numSyns + numSrc + state[2]++] = Double.doubleToLongBits(strength);
+        });
         // Adds trailing "new row" markers when the last synapse comes from a
         // source neuron other than the last one. This represents empty rows on the end.
-        while(currRow < numSrc-1) {
-            compRowRep[l++] = -1L;
-            currRow++;
+        while (state[1] < numSrc - 1) {
+            compRowRep[state[0]++] = -1L;
+            state[1]++;
         }
-
         return compRowRep;
     }
 
@@ -1120,51 +1699,56 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * @return
      */
     public ByteBuffer getSparseCode(Precision precision) {
-        double[][] pairs = getNumericIndices();
+        int numSyns = size();
+        double[] strengths = new double[numSyns];
+        int[] targets = new int[numSyns];
         // Can't use src group size because some neurons in the group may not have any synaptic connections to the target
+        int[] outDegrees = new int[sourceNeuronGroup.size()];
+        int[] k = {0};
+        forEachWeight((source, target, strength) -> {
+            outDegrees[source]++;
+            targets[k[0]] = target;
+            strengths[k[0]++] = strength;
+        });
         int numSrc = 0;
-        int curSrc = -1;
-        // keeps track of indices of the beginnings and ends of target neuron to each source
-        List<Integer> localOutInds = new ArrayList<>();
-        for(int ii=0; ii<pairs.length; ++ii) {
-            if (curSrc != pairs[ii][0]) {
-                localOutInds.add(ii);
-                curSrc = (int) pairs[ii][0];
+        for (int outDegree : outDegrees) {
+            if (outDegree > 0) {
                 numSrc++;
             }
         }
-        localOutInds.add(pairs.length);
         ByteBuffer buffer;
         if(precision == Precision.FLOAT_64) {
-             buffer = ByteBuffer.allocate(4 * (2*numSrc + 3*pairs.length) + 4 + 1 + 4 + 4);
+             buffer = ByteBuffer.allocate(4 * (2*numSrc + 3*numSyns) + 4 + 1 + 4 + 4);
         } else {
-             buffer = ByteBuffer.allocate(4 * (2*numSrc + 2*pairs.length) + 4 + 1 + 4 + 4);
+             buffer = ByteBuffer.allocate(4 * (2*numSrc + 2*numSyns) + 4 + 1 + 4 + 4);
         }
 
         buffer.putInt(-1); // Marker so what we know that the new serialization method is being used.
         // Meta encoding whether or not double precision is being used
         buffer.put((byte) (precision == Precision.FLOAT_64 ? 0x1 : 0x0));
         // Meta number of synapses
-        buffer.putInt(pairs.length);
+        buffer.putInt(numSyns);
         // Meta number of EFFECTIVE source neurons--ones with at least one outgoing connection in this group
         buffer.putInt(numSrc);
-        for(int ii=0; ii < numSrc; ++ii) {
-            int start = localOutInds.get(ii);
-            int end = localOutInds.get(ii+1);
-            buffer.putInt((int) pairs[start][0]); // SourceIndex
-            buffer.putInt(end-start); // number of targets
-            for(int jj = start; jj< end; ++jj) {
-                buffer.putInt((int) pairs[jj][1]);
+        for (int src = 0, start = 0; src < outDegrees.length; src++) {
+            if (outDegrees[src] == 0) {
+                continue;
             }
+            buffer.putInt(src); // SourceIndex
+            buffer.putInt(outDegrees[src]); // number of targets
+            for (int jj = start, end = start + outDegrees[src]; jj < end; ++jj) {
+                buffer.putInt(targets[jj]);
+            }
+            start += outDegrees[src];
         }
 
         if (precision == Precision.FLOAT_64) {
-            for(int ii=0, n=pairs.length; ii<n; ++ii) {
-                buffer.putLong(Double.doubleToLongBits(pairs[ii][2]));
+            for (double strength : strengths) {
+                buffer.putLong(Double.doubleToLongBits(strength));
             }
         } else {
-            for(int ii=0, n=pairs.length; ii<n; ++ii) {
-                buffer.putInt(Float.floatToIntBits((float) pairs[ii][2]));
+            for (double strength : strengths) {
+                buffer.putInt(Float.floatToIntBits((float) strength));
             }
         }
 
@@ -1187,15 +1771,14 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      */
     public void saveToFileAsLinkedList(String filename) {
         try (FileWriter fw = new FileWriter(filename + ".dat"); PrintWriter pw = new PrintWriter(fw);) {
-            double[][] pairs = getNumericIndices();
             int offset = this.isRecurrent() ? 0 : sourceNeuronGroup.size();
-            for (int i = 0, n = pairs.length; i < n; i++) {
-                pw.print((int) pairs[i][0]);
+            forEachWeight((source, target, strength) -> {
+                pw.print(source);
                 pw.print(" ");
-                pw.print((int) pairs[i][1] + offset);
+                pw.print(target + offset);
                 pw.print(" ");
-                pw.println(pairs[i][2]);
-            }
+                pw.println(strength);
+            });
         } catch (IOException ie) {
             ie.printStackTrace();
             System.out.println("Synapse group linked-list write failed.");
@@ -1283,6 +1866,10 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * #revalidateSynapseSets()} first.
      */
     public void randomizeExcitatoryConnections() {
+        if (matrixMode) {
+            randomizeMatrixWeights(Polarity.EXCITATORY);
+            return;
+        }
         ConnectionUtilities.randomizeExcitatorySynapsesUnsafe(exSynapseSet, exciteRand);
     }
 
@@ -1294,9 +1881,36 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * #revalidateSynapseSets()} first.
      */
     public void randomizeInhibitoryConnections() {
+        if (matrixMode) {
+            randomizeMatrixWeights(Polarity.INHIBITORY);
+            return;
+        }
         ConnectionUtilities.randomizeInhibitorySynapsesUnsafe(inSynapseSet, inhibRand);
     }
 
+    /**
+     * Randomize the weights of one polarity in matrix mode, as {@link
+     * Synapse#setStrength(double)} would for each synapse.
+     */
+    private void randomizeMatrixWeights(Polarity polarity) {
+        boolean excitatory = polarity == Polarity.EXCITATORY;
+        Synapse prototype = excitatory ? excitatoryPrototype : inhibitoryPrototype;
+        if (prototype.isFrozen()) {
+            return;
+        }
+        ProbabilityDistribution randomizer = excitatory ? exciteRand : inhibRand;
+        List<Neuron> sources = getSourceNeurons();
+        double[] weights = matrix.weights;
+        for (int k = 0; k < weights.length; k++) {
+            if ((weights[k] >= 0) == excitatory) {
+                Neuron source = sources.get(matrix.sources[k]);
+                double strength = randomizer == null ? (excitatory ? ConnectionUtilities.DEFAULT_EXCITATORY_STRENGTH
+                        : ConnectionUtilities.DEFAULT_INHIBITORY_STRENGTH) : randomizer.getRandom(source.getRandom());
+                weights[k] = prototype.clip(source.getPolarity().clip(strength));
+            }
+        }
+    }
+
     /**
      * Sets the connection manager for this synapse group.
      *
@@ -1356,7 +1970,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * @return the ratio of synapses in this group that are excitatory.
      */
     public double calculateExcitatoryRatio() {
-        excitatoryRatio = exSynapseSet.size() / (double) size();
+        excitatoryRatio = getExcitatoryRatioPrecise();
         if (Double.isNaN(excitatoryRatio)) {
             return 0;
         }
@@ -1404,11 +2018,11 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
     }
 
     public boolean hasExcitatory() {
-        return !exSynapseSet.isEmpty();
+        return getExcitatoryCount() > 0;
     }
 
     public boolean hasInhibitory() {
-        return !inSynapseSet.isEmpty();
+        return size() > getExcitatoryCount();
     }
 
     public NeuronGroup getSourceNeuronGroup() {
@@ -1518,6 +2132,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
 
     public void setStrength(double strength, Polarity polarity) {
         final double str = polarity.value(strength);
+        if (matrixMode) {
+            matrix.setStrengths(str, polarity);
+        }
         setProperty(s -> s.setStrength(str), polarity);
         if (Polarity.BOTH == polarity) {
             if (strength > 0) {
@@ -1600,6 +2217,14 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
             if (useGroupLevelSettings || inSynapseSet.isEmpty()) {
                 return action.apply(inhibitoryPrototype);
             }
+        } else if (matrixMode) {
+            // The prototypes describe the synapses, as with group level settings above
+            T excitatory = action.apply(excitatoryPrototype);
+            T inhibitory = action.apply(inhibitoryPrototype);
+            if (!hasInhibitory()) {
+                return isEmpty() ? null : excitatory;
+            }
+            return !hasExcitatory() || Objects.equals(excitatory, inhibitory) ? inhibitory : null;
         } else {
             synapses = getAllSynapses();
             if (synapses.isEmpty()) {
@@ -1640,6 +2265,10 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
             action.accept(excitatoryPrototype);
             action.accept(inhibitoryPrototype);
         }
+        // The new synapses get the changed settings from the prototypes
+        if (matrixMode && !canUseMatrixMode()) {
+            setMatrixMode(false);
+        }
     }
 
     /**
@@ -1661,6 +2290,14 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * pre-save init.
      */
     public void preSaveInit() {
+        if (matrixMode) {
+            compressedMatrixRep = GroupSerializer.rowCompMat2CompByteArray(getRowCompressedMatrixRepresentation(),
+                    Precision.FLOAT_32);
+            // The weights are saved in the compressed rep
+            matrixTemp = matrix;
+            matrix = null;
+            return;
+        }
         if (isUseFullRepOnSave()) {
             preSaveInitFull();
             return;
@@ -1690,30 +2327,20 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * The pre-save init to be used when {@link #fullSynapseRep} is set to true.
      */
     public void preSaveInitFull() {
-        Map<Neuron, Integer> srcMap = new HashMap<Neuron, Integer>((int) (sourceNeuronGroup.size() / 0.75));
-        Map<Neuron, Integer> tarMap = new HashMap<Neuron, Integer>((int) (targetNeuronGroup.size() / 0.75));
-        int i = 0;
-        for (Neuron n : sourceNeuronGroup.getNeuronList()) {
-            srcMap.put(n, i++);
-        }
-        i = 0;
-        for (Neuron n : targetNeuronGroup.getNeuronList()) {
-            tarMap.put(n, i++);
-        }
+        setMatrixMode(false);
+        SynapseIndex synIndex = getSynapseIndex();
         byte[][] synBytes = new byte[size()][];
-        i = 0;
+        int i = 0;
         int totalBytes = 0;
-        for (Synapse s : this.getAllSynapses()) {
-            byte[] synCode = s.getNumericValuesAsByteArray();
-            ByteBuffer indices = ByteBuffer.allocate(8);
-            indices.putInt(srcMap.get(s.getSource()).intValue());
-            indices.putInt(tarMap.get(s.getTarget()).intValue());
-            int index = synCode.length - 8;
-            for (int j = index, n = synCode.length; j < n; j++) {
-                synCode[j] = indices.array()[j - index];
+        for (int src = 0; src < synIndex.sources.length; src++) {
+            for (int k = synIndex.rowOffsets[src]; k < synIndex.rowOffsets[src + 1]; k++) {
+                byte[] synCode = synIndex.synapses[k].getNumericValuesAsByteArray();
+                ByteBuffer indices = ByteBuffer.wrap(synCode, synCode.length - 8, 8);
+                indices.putInt(src);
+                indices.putInt(synIndex.targetColumns[k]);
+                synBytes[i++] = synCode;
+                totalBytes += synCode.length;
             }
-            synBytes[i++] = synCode;
-            totalBytes += synCode.length;
         }
         ByteBuffer buff = ByteBuffer.allocate(totalBytes);
         for (byte[] synCodes : synBytes) {
@@ -1732,12 +2359,27 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
      * process sets the synapse sets to null.
      */
     public void postSaveReInit() {
-        if (isUseGroupLevelSettings()) {
+        if (matrixMode) {
+            matrix = matrixTemp;
+            matrixTemp = null;
+        } else if (exTemp != null) {
             inSynapseSet = inTemp;
             exSynapseSet = exTemp;
             inTemp = null;
             exTemp = null;
         }
+        clearSavedSynapses();
+    }
+
+    /**
+     * Drop the representations of the synapses made by {@link #preSaveInit()}.
+     * Once the save is done they go stale as soon as the weights change, and a
+     * copy or a later save that found them would rebuild the synapses from
+     * them.
+     */
+    public void clearSavedSynapses() {
+        compressedMatrixRep = null;
+        fullSynapseRep = null;
     }
 
     /**
@@ -1749,10 +2391,19 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
             events = new SynapseGroupEvents(this);
         }
 
+        // Weights saved in matrix mode are read into synapses, which then go back into a matrix
+        boolean restoreMatrixMode = matrixMode && matrix == null;
+        if (restoreMatrixMode) {
+            matrixMode = false;
+        }
+
         // Rebuild weight matrix if needed.
-        if (this.isUseGroupLevelSettings() && compressedMatrixRep != null) {
+        if (matrixMode) {
+            // Copied with its matrix, so there are no synapses to rebuild
+        } else if (this.isUseGroupLevelSettings() && compressedMatrixRep != null) {
             exSynapseSet = new HashSet<Synapse>();
             inSynapseSet = new HashSet<Synapse>();
+            synapsesChanged();
             GroupDeserializer.reconstructCompressedSynapseStrengths(this.compressedMatrixRep, this);
             this.compressedMatrixRep = null;
             setAndConformToTemplate(excitatoryPrototype, Polarity.EXCITATORY);
@@ -1760,6 +2411,7 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         } else if (fullSynapseRep != null) {
             exSynapseSet = new HashSet<Synapse>();
             inSynapseSet = new HashSet<Synapse>();
+            synapsesChanged();
             Map<Integer, Neuron> srcMap = new HashMap<Integer, Neuron>((int) (sourceNeuronGroup.size() / 0.75));
             Map<Integer, Neuron> tarMap = new HashMap<Integer, Neuron>((int) (targetNeuronGroup.size() / 0.75));
             int i = 0;
@@ -1804,6 +2456,9 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         if (connectionManager instanceof Sparse) {
             ((Sparse) connectionManager).setPermitDensityEditing(false);
         }
+        if (restoreMatrixMode && canUseMatrixMode()) {
+            setMatrixMode(true);
+        }
     }
 
     /**
@@ -1874,7 +2529,240 @@ public class SynapseGroup implements NetworkModel, CopyableObject, AttributeCont
         return parentNetwork;
     }
 
+    public int getUpdatePeriod() {
+        return updatePeriod;
+    }
+
+    /**
+     * Set how often this group updates.
+     *
+     * @param updatePeriod number of network updates per update of this group, at least 1
+     */
+    public void setUpdatePeriod(int updatePeriod) {
+        if (updatePeriod < 1) {
+            throw new IllegalArgumentException("Update period must be at least 1");
+        }
+        this.updatePeriod = updatePeriod;
+    }
+
+    /**
+     * @return true if this group should update in the current network update
+     */
+    public boolean isUpdateDue() {
+        return updatePeriod <= 1 || parentNetwork.getUpdateManager().isDue(updatePeriod);
+    }
+
     public SynapseGroupEvents getEvents() {
         return events;
     }
-}
\ No newline at end of file
+
+    /**
+     * Weights of a group in matrix mode, in compressed sparse row form with a
+     * row per target neuron: the weights onto target neuron t are at positions
+     * rowOffsets[t] up to rowOffsets[t + 1] of {@link #weights}, from the
+     * source neurons in {@link #sources}, in increasing order. Neurons are
+     * numbered by their position in the source and target groups. Weights are
+     * excitatory if non-negative and inhibitory if negative.
+     */
+    private static final class MatrixWeights {
+
+        final int sourceCount;
+
+        final int[] rowOffsets;
+
+        final int[] sources;
+
+        final double[] weights;
+
+        MatrixWeights(int sourceCount, int[] rowOffsets, int[] sources, double[] weights) {
+            this.sourceCount = sourceCount;
+            this.rowOffsets = rowOffsets;
+            this.sources = sources;
+            this.weights = weights;
+        }
+
+        /**
+         * Make a matrix from connections given by their source and target
+         * indices and strengths.
+         *
+         * @param sourceOrder the connections in source order, or null if they
+         *                    are already in source order
+         */
+        static MatrixWeights fromConnections(int sourceCount, int targetCount, int[] sourceOf, int[] targetOf,
+                                             double[] strengths, int[] sourceOrder) {
+            // Order by target, and within a target by source
+            int[] order = countingSort(targetOf, sourceOrder, targetCount);
+            int[] rowOffsets = new int[targetCount + 1];
+            for (int target : targetOf) {
+                rowOffsets[target + 1]++;
+            }
+            for (int t = 0; t < targetCount; t++) {
+                rowOffsets[t + 1] += rowOffsets[t];
+            }
+            int[] columns = new int[order.length];
+            double[] weights = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                columns[i] = sourceOf[order[i]];
+                weights[i] = strengths[order[i]];
+            }
+            return new MatrixWeights(sourceCount, rowOffsets, columns, weights);
+        }
+
+        int countExcitatory() {
+            int count = 0;
+            for (double weight : weights) {
+                if (weight >= 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Add the weighted sum of the activations to the input of each target
+         * neuron in a range.
+         */
+        void addProducts(double[] activations, List<Neuron> targets, int fromRow, int toRow) {
+            for (int t = fromRow; t < toRow; t++) {
+                double sum = 0;
+                for (int k = rowOffsets[t], end = rowOffsets[t + 1]; k < end; k++) {
+                    sum += weights[k] * activations[sources[k]];
+                }
+                targets.get(t).addInputValue(sum);
+            }
+        }
+
+        /**
+         * @return the excitatory weights, the inhibitory weights, or the
+         * excitatory followed by the inhibitory weights
+         */
+        double[] getStrengths(Polarity polarity) {
+            int excitatory = countExcitatory();
+            int size = polarity == Polarity.EXCITATORY ? excitatory
+                    : polarity == Polarity.INHIBITORY ? weights.length - excitatory : weights.length;
+            double[] strengths = new double[size];
+            int ex = 0;
+            int in = polarity == Polarity.BOTH ? excitatory : 0;
+            for (double weight : weights) {
+                if (weight >= 0) {
+                    if (polarity != Polarity.INHIBITORY) {
+                        strengths[ex++] = weight;
+                    }
+                } else if (polarity != Polarity.EXCITATORY) {
+                    strengths[in++] = weight;
+                }
+            }
+            return strengths;
+        }
+
+        void setStrengths(double strength, Polarity polarity) {
+            for (int k = 0; k < weights.length; k++) {
+                if (polarity == Polarity.BOTH || (weights[k] >= 0) == (polarity == Polarity.EXCITATORY)) {
+                    weights[k] = strength;
+                }
+            }
+        }
+
+        /**
+         * See {@link SynapseGroup#forEachWeight(WeightVisitor)}.
+         */
+        void forEachWeight(WeightVisitor visitor) {
+            int[] targetOf = new int[weights.length];
+            for (int t = 0; t < rowOffsets.length - 1; t++) {
+                Arrays.fill(targetOf, rowOffsets[t], rowOffsets[t + 1], t);
+            }
+            // Rows are in target order, so ordering by source leaves each source's targets in order
+            for (int k : countingSort(sources, null, sourceCount)) {
+                visitor.visit(sources[k], targetOf[k], weights[k]);
+            }
+        }
+    }
+
+    /**
+     * See {@link #synapseIndex}.
+     */
+    private static final class SynapseIndex {
+
+        final Neuron[] sources;
+
+        final Neuron[] targets;
+
+        final Map<Neuron, Integer> sourceIndex;
+
+        final Map<Neuron, Integer> targetIndex;
+
+        /**
+         * Start of each source's synapses in {@link #synapses}, with the
+         * number of synapses at the end.
+         */
+        int[] rowOffsets;
+
+        /**
+         * Target index of each synapse.
+         */
+        int[] targetColumns;
+
+        /**
+         * The synapses, by source and then target, or null if they must be
+         * sorted again.
+         */
+        Synapse[] synapses;
+
+        SynapseIndex(List<Neuron> sources, List<Neuron> targets) {
+            this.sources = sources.toArray(new Neuron[0]);
+            this.targets = targets.toArray(new Neuron[0]);
+            sourceIndex = indexNeurons(sources);
+            targetIndex = indexNeurons(targets);
+        }
+
+        /**
+         * @return true if the neurons are those indexed, in the same order
+         */
+        boolean indexes(List<Neuron> sources, List<Neuron> targets) {
+            return sameNeurons(this.sources, sources) && sameNeurons(this.targets, targets);
+        }
+
+        private static boolean sameNeurons(Neuron[] indexed, List<Neuron> neurons) {
+            if (indexed.length != neurons.size()) {
+                return false;
+            }
+            int i = 0;
+            for (Neuron neuron : neurons) {
+                if (indexed[i++] != neuron) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void sortSynapses(Set<Synapse> excitatory, Set<Synapse> inhibitory) {
+            int n = excitatory.size() + inhibitory.size();
+            Synapse[] unsorted = new Synapse[n];
+            int[] sourceOf = new int[n];
+            int[] targetOf = new int[n];
+            int k = 0;
+            for (Set<Synapse> set : Arrays.asList(excitatory, inhibitory)) {
+                for (Synapse synapse : set) {
+                    unsorted[k] = synapse;
+                    sourceOf[k] = sourceIndex.get(synapse.getSource());
+                    targetOf[k] = targetIndex.get(synapse.getTarget());
+                    k++;
+                }
+            }
+            int[] order = countingSort(sourceOf, countingSort(targetOf, null, targets.length), sources.length);
+            rowOffsets = new int[sources.length + 1];
+            for (int source : sourceOf) {
+                rowOffsets[source + 1]++;
+            }
+            for (int s = 0; s < sources.length; s++) {
+                rowOffsets[s + 1] += rowOffsets[s];
+            }
+            targetColumns = new int[n];
+            synapses = new Synapse[n];
+            for (int i = 0; i < n; i++) {
+                targetColumns[i] = targetOf[order[i]];
+                synapses[i] = unsorted[order[i]];
+            }
+        }
+    }
+}
@@ -19,13 +19,20 @@
 package org.simbrain.network.neuron_update_rules;
 
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.SimbrainConstants;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.IntegrationMethod;
+import org.simbrain.util.math.OdeSolver;
+import org.simbrain.util.math.OdeSystem;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
 
+import java.util.List;
+
 /**
  * An implementation of adaptive exponential integrate and fire. This version
  * of integrate and fire includes an exponential term as a part of the
@@ -223,8 +230,38 @@ public class AdExIFRule extends SpikingNeuronUpdateRule implements NoisyUpdateRu
      */
     private double refractoryPeriod = 1.0;
 
+    /**
+     * How membrane potential and adaptation are integrated. Euler is the
+     * original scheme.
+     */
+    @UserParameter(
+            label = "Integration Method",
+            description = "Euler is the original scheme. Exponential Euler and Runge-Kutta 4 remain accurate at "
+                    + "larger time steps; adaptive takes substeps to meet the error tolerance.",
+            order = 1, tab = "Integration")
+    private IntegrationMethod integrationMethod = IntegrationMethod.EULER;
+
+    /**
+     * Local error tolerance for adaptive integration.
+     */
+    @UserParameter(
+            label = "Error Tolerance",
+            description = "Local error tolerance used by adaptive integration.",
+            minimumValue = 0, increment = 1E-6, order = 2, tab = "Integration")
+    private double tolerance = OdeSolver.DEFAULT_TOLERANCE;
+
+    /**
+     * Solver state for the methods other than Euler, created when first used.
+     */
+    private transient Dynamics dynamics;
+
     private double[] ei = new double[2];
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
         if (v_mem >= v_Peak) {
@@ -256,6 +293,11 @@ public class AdExIFRule extends SpikingNeuronUpdateRule implements NoisyUpdateRu
                 ei[0] += val;
             }
         }
+        if(neuron.getPolarity() == SimbrainConstants.Polarity.INHIBITORY) {
+            ei[1] += neuron.getDelayedInput();
+        } else {
+            ei[0] += neuron.getDelayedInput();
+        }
 
         // Calculate incoming excitatory and inhibitory voltage changes
         double iSyn_ex = g_e_bar * ei[0] * (exReversal - v_mem);
@@ -268,23 +310,27 @@ public class AdExIFRule extends SpikingNeuronUpdateRule implements NoisyUpdateRu
 
         // Add noise if there is any to be added
         if (addNoise) {
-            ibg += noiseGenerator.getRandom();
+            ibg += noiseGenerator.getRandom(neuron.getRandom());
         }
 
-        // Calc dV/dt for membrane potential
-        double dVdt = (g_L * slopeFactor * Math.exp((v_mem - v_Th) / slopeFactor)) + i_leak + iSyn_ex + iSyn_in + ibg - w;
+        if (integrationMethod != null && integrationMethod != IntegrationMethod.EULER) {
+            integrate(ei[0], ei[1], ibg, dt);
+        } else {
+            // Calc dV/dt for membrane potential
+            double dVdt = (g_L * slopeFactor * Math.exp((v_mem - v_Th) / slopeFactor)) + i_leak + iSyn_ex + iSyn_in + ibg - w;
 
 
-        // Factor in membane capacitance...
-        dVdt /= memCapacitance;
+            // Factor in membane capacitance...
+            dVdt /= memCapacitance;
 
-        // Calculate adaptation change
-        double dwdt = (a * (v_mem - leakReversal) - w) / tauW;
+            // Calculate adaptation change
+            double dwdt = (a * (v_mem - leakReversal) - w) / tauW;
 
-        // Integrate membrane potential and adaptation parameter using
-        // Euler integration
-        v_mem += (dVdt * dt);
-        w += (dwdt * dt);
+            // Integrate membrane potential and adaptation parameter using
+            // Euler integration
+            v_mem += (dVdt * dt);
+            w += (dwdt * dt);
+        }
 
         // Spike?
         if (v_mem >= v_Peak) {
@@ -307,6 +353,177 @@ public class AdExIFRule extends SpikingNeuronUpdateRule implements NoisyUpdateRu
 
     }
 
+    /**
+     * Integrate membrane potential and adaptation with the selected method,
+     * holding the inputs fixed over the time step.
+     */
+    private void integrate(double exInput, double inInput, double background, double dt) {
+        if (dynamics == null) {
+            dynamics = new Dynamics();
+        }
+        dynamics.exInput = exInput;
+        dynamics.inInput = inInput;
+        dynamics.background = background;
+        double[] y = dynamics.state;
+        y[0] = v_mem;
+        y[1] = w;
+        dynamics.solver.step(integrationMethod, dynamics, y, dt, tolerance);
+        v_mem = y[0];
+        w = y[1];
+    }
+
+    /**
+     * The model as a system of equations in (v, w).
+     */
+    private class Dynamics implements OdeSystem {
+
+        private final double[] state = new double[2];
+
+        private final OdeSolver solver = new OdeSolver(2);
+
+        private double exInput;
+
+        private double inInput;
+
+        private double background;
+
+        @Override
+        public void derivatives(double[] y, double[] dydt) {
+            double v = y[0];
+            // Past the peak the exponential only overflows; the spike is handled after the step
+            double spike = g_L * slopeFactor * Math.exp((Math.min(v, v_Peak) - v_Th) / slopeFactor);
+            double iSynEx = g_e_bar * exInput * (exReversal - v);
+            double iSynIn = -g_i_bar * inInput * (inReversal - v);
+            double iLeak = g_L * (leakReversal - v);
+            dydt[0] = (spike + iLeak + iSynEx + iSynIn + background - y[1]) / memCapacitance;
+            dydt[1] = (a * (v - leakReversal) - y[1]) / tauW;
+        }
+
+        @Override
+        public void decayRates(double[] y, double[] rates) {
+            rates[0] = (g_L + g_e_bar * exInput - g_i_bar * inInput) / memCapacitance;
+            rates[1] = 1 / tauW;
+        }
+    }
+
+    @Override
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        if (getClass() != AdExIFRule.class) {
+            super.updateBatch(batch, start, end);
+            return;
+        }
+        Neuron[] neurons = batch.getNeurons();
+        for (int i = start; i < end; i++) {
+            IntegrationMethod method = ((AdExIFRule) neurons[i].getUpdateRule()).integrationMethod;
+            if (method != null && method != IntegrationMethod.EULER) {
+                // The batch kernel only does Euler
+                super.updateBatch(batch, start, end);
+                return;
+            }
+        }
+        boolean[] active = batch.getActive();
+        boolean[] spikes = batch.getSpikes();
+        double[] activations = batch.getActivations();
+        double[] values = batch.getValues();
+        double[] exInputs = batch.getInputs();
+        double[] inInputs = batch.getScratch(0);
+        double[] backgrounds = batch.getScratch(1);
+        double[] ws = batch.getScratch(2);
+        double[] refractory = batch.getScratch(3);
+        double[] gLs = batch.getScratch(4);
+        double[] gEs = batch.getScratch(5);
+        double[] gIs = batch.getScratch(6);
+        double[] exReversals = batch.getScratch(7);
+        double[] inReversals = batch.getScratch(8);
+        double[] leakReversals = batch.getScratch(9);
+        double[] slopeFactors = batch.getScratch(10);
+        double[] thresholds = batch.getScratch(11);
+        double[] peaks = batch.getScratch(12);
+        double[] capacitances = batch.getScratch(13);
+        double[] as = batch.getScratch(14);
+        double[] bs = batch.getScratch(15);
+        double[] tauWs = batch.getScratch(16);
+        double dt = batch.getTimeStep();
+        double time = batch.getTime();
+
+        for (int i = start; i < end; i++) {
+            AdExIFRule rule = (AdExIFRule) neurons[i].getUpdateRule();
+            Neuron neuron = neurons[i];
+            if (active[i]) {
+                if (rule.v_mem >= rule.v_Peak) {
+                    rule.v_mem = rule.v_Reset;
+                    neuron.forceSetActivation(rule.v_Reset);
+                    activations[i] = neuron.getActivation();
+                }
+                double ex = 0;
+                double in = 0;
+                boolean inhibitory = neuron.getPolarity() == SimbrainConstants.Polarity.INHIBITORY;
+                List<Synapse> fanIn = neuron.getFanIn();
+                for (int ii = 0, n = fanIn.size(); ii < n; ii++) {
+                    double val = fanIn.get(ii).calcPSR();
+                    if (inhibitory) {
+                        in += val;
+                    } else {
+                        ex += val;
+                    }
+                }
+                if (inhibitory) {
+                    in += neuron.getDelayedInput();
+                } else {
+                    ex += neuron.getDelayedInput();
+                }
+                exInputs[i] = ex;
+                inInputs[i] = in;
+                backgrounds[i] = rule.addNoise ? rule.i_bg + rule.noiseGenerator.getRandom(neuron.getRandom()) : rule.i_bg;
+            } else {
+                exInputs[i] = 0;
+                inInputs[i] = 0;
+                backgrounds[i] = rule.i_bg;
+            }
+            ws[i] = rule.w;
+            refractory[i] = rule.getLastSpikeTime() + rule.refractoryPeriod >= time ? 1 : 0;
+            gLs[i] = rule.g_L;
+            gEs[i] = rule.g_e_bar;
+            gIs[i] = rule.g_i_bar;
+            exReversals[i] = rule.exReversal;
+            inReversals[i] = rule.inReversal;
+            leakReversals[i] = rule.leakReversal;
+            slopeFactors[i] = rule.slopeFactor;
+            thresholds[i] = rule.v_Th;
+            peaks[i] = rule.v_Peak;
+            capacitances[i] = rule.memCapacitance;
+            as[i] = rule.a;
+            bs[i] = rule.b;
+            tauWs[i] = rule.tauW;
+        }
+        for (int i = start; i < end; i++) {
+            double v = activations[i];
+            double w = ws[i];
+            double iSynEx = gEs[i] * exInputs[i] * (exReversals[i] - v);
+            double iSynIn = -gIs[i] * inInputs[i] * (inReversals[i] - v);
+            double iLeak = gLs[i] * (leakReversals[i] - v);
+            double dVdt = (gLs[i] * slopeFactors[i] * Math.exp((v - thresholds[i]) / slopeFactors[i]))
+                    + iLeak + iSynEx + iSynIn + backgrounds[i] - w;
+            dVdt /= capacitances[i];
+            double dwdt = (as[i] * (v - leakReversals[i]) - w) / tauWs[i];
+            v += (dVdt * dt);
+            w += (dwdt * dt);
+            boolean peaked = v >= peaks[i];
+            values[i] = peaked ? peaks[i] : v;
+            ws[i] = peaked ? w + (bs[i] * CURRENT_CONVERTER) : w;
+            spikes[i] = peaked && refractory[i] == 0;
+        }
+        for (int i = start; i < end; i++) {
+            if (active[i]) {
+                AdExIFRule rule = (AdExIFRule) neurons[i].getUpdateRule();
+                rule.v_mem = values[i];
+                rule.w = ws[i];
+            }
+        }
+        batch.applySpikes(start, end);
+        batch.applyBuffers(start, end);
+    }
+
     @Override
     public AdExIFRule deepCopy() {
         AdExIFRule cpy = new AdExIFRule();
@@ -323,6 +540,8 @@ public class AdExIFRule extends SpikingNeuronUpdateRule implements NoisyUpdateRu
         cpy.v_Reset = this.v_Reset;
         cpy.v_Th = this.v_Th;
         cpy.w = this.w;
+        cpy.integrationMethod = this.integrationMethod;
+        cpy.tolerance = this.tolerance;
         return cpy;
     }
 
@@ -508,4 +727,20 @@ public class AdExIFRule extends SpikingNeuronUpdateRule implements NoisyUpdateRu
         this.refractoryPeriod = refractoryPeriod;
     }
 
+    public IntegrationMethod getIntegrationMethod() {
+        return integrationMethod;
+    }
+
+    public void setIntegrationMethod(IntegrationMethod integrationMethod) {
+        this.integrationMethod = integrationMethod;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
 }
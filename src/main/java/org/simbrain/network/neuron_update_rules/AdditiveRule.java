@@ -69,6 +69,11 @@ public class AdditiveRule extends NeuronUpdateRule implements NoisyUpdateRule {
         return an;
     }
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
 
@@ -85,7 +90,7 @@ public class AdditiveRule extends NeuronUpdateRule implements NoisyUpdateRule {
         double val = neuron.getActivation() + neuron.getNetwork().getTimeStep() * (-neuron.getActivation() / resistance + wtdSum);
 
         if (addNoise) {
-            val += noiseGenerator.getRandom();
+            val += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         neuron.setBuffer(val);
@@ -21,6 +21,7 @@ package org.simbrain.network.neuron_update_rules;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
 import org.simbrain.util.math.SquashingFunctionEnum;
@@ -125,7 +126,7 @@ public class ContinuousSigmoidalRule extends AbstractSigmoidalRule {
         double dt = neuron.getNetwork().getTimeStep();
 
         if (addNoise) {
-            inputTerm = (dt / tau) * (neuron.getInput() + bias + noiseGenerator.getRandom());
+            inputTerm = (dt / tau) * (neuron.getInput() + bias + noiseGenerator.getRandom(neuron.getRandom()));
         } else {
             inputTerm = (dt / tau) * (neuron.getInput() + bias);
         }
@@ -138,6 +139,67 @@ public class ContinuousSigmoidalRule extends AbstractSigmoidalRule {
 
     }
 
+    @Override
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        if (getClass() != ContinuousSigmoidalRule.class) {
+            super.updateBatch(batch, start, end);
+            return;
+        }
+        Neuron[] neurons = batch.getNeurons();
+        boolean[] active = batch.getActive();
+        double[] inputs = batch.getInputs();
+        double[] values = batch.getValues();
+        double[] taus = batch.getScratch(0);
+        double[] leaks = batch.getScratch(1);
+        double[] netActivations = batch.getScratch(2);
+        double[] inputTerms = batch.getScratch(3);
+        double[] slopes = batch.getScratch(4);
+        double[] lower = batch.getScratch(5);
+        double[] upper = batch.getScratch(6);
+        double dt = batch.getTimeStep();
+
+        batch.gatherInputs(start, end);
+        SquashingFunctionEnum function = sFunction;
+        boolean sameFunction = true;
+        for (int i = start; i < end; i++) {
+            ContinuousSigmoidalRule rule = (ContinuousSigmoidalRule) neurons[i].getUpdateRule();
+            double val = inputs[i] + rule.bias;
+            if (rule.addNoise && active[i]) {
+                val += rule.noiseGenerator.getRandom(neurons[i].getRandom());
+            }
+            inputs[i] = val;
+            taus[i] = rule.tau;
+            leaks[i] = rule.leak;
+            netActivations[i] = rule.netActivation;
+            slopes[i] = rule.slope;
+            lower[i] = rule.lowerBound;
+            upper[i] = rule.upperBound;
+            sameFunction &= rule.sFunction == function;
+        }
+        for (int i = start; i < end; i++) {
+            inputTerms[i] = (dt / taus[i]) * inputs[i];
+            netActivations[i] = netActivations[i] * (1 - (leaks[i] * dt / taus[i])) + inputTerms[i];
+        }
+        if (sameFunction) {
+            for (int i = start; i < end; i++) {
+                values[i] = function.valueOf(netActivations[i], upper[i], lower[i], slopes[i]);
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                SquashingFunctionEnum f = ((ContinuousSigmoidalRule) neurons[i].getUpdateRule()).sFunction;
+                values[i] = f.valueOf(netActivations[i], upper[i], lower[i], slopes[i]);
+            }
+        }
+        for (int i = start; i < end; i++) {
+            if (active[i]) {
+                ContinuousSigmoidalRule rule = (ContinuousSigmoidalRule) neurons[i].getUpdateRule();
+                rule.inputTerm = inputTerms[i];
+                rule.netActivation = netActivations[i];
+            }
+        }
+        batch.applyBuffers(start, end);
+    }
+
     public int getNoBytes() { // bump to interface...
         // [ buff | netInp | netAct | leak | tau | UB | LB | slope ]
         return 56 + 8; // Do some reflection here... 8 is for buffer
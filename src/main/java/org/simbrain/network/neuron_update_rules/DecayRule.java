@@ -136,7 +136,7 @@ public class DecayRule extends NeuronUpdateRule implements BoundedUpdateRule, Cl
         }
 
         if (addNoise) {
-            val += noiseGenerator.getRandom();
+            val += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         if (clipping) {
@@ -22,8 +22,12 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.IntegrationMethod;
+import org.simbrain.util.math.OdeSolver;
+import org.simbrain.util.math.OdeSystem;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 
 
 public class FitzhughNagumo extends SpikingNeuronUpdateRule implements NoisyUpdateRule {
@@ -98,6 +102,31 @@ public class FitzhughNagumo extends SpikingNeuronUpdateRule implements NoisyUpda
             order = 3)
     private double c = 0.8;
 
+    /**
+     * How the model is integrated. Euler is the original scheme, which steps
+     * the recovery variable before the membrane potential.
+     */
+    @UserParameter(
+            label = "Integration Method",
+            description = "Euler is the original scheme. Exponential Euler and Runge-Kutta 4 remain accurate at "
+                    + "larger time steps; adaptive takes substeps to meet the error tolerance.",
+            order = 6)
+    private IntegrationMethod integrationMethod = IntegrationMethod.EULER;
+
+    /**
+     * Local error tolerance for adaptive integration.
+     */
+    @UserParameter(
+            label = "Error Tolerance",
+            description = "Local error tolerance used by adaptive integration.",
+            minimumValue = 0, increment = 1E-6, order = 7)
+    private double tolerance = OdeSolver.DEFAULT_TOLERANCE;
+
+    /**
+     * Solver state for the methods other than Euler, created when first used.
+     */
+    private transient Dynamics dynamics;
+
     @Override
     public FitzhughNagumo deepCopy() {
         FitzhughNagumo in = new FitzhughNagumo();
@@ -109,6 +138,8 @@ public class FitzhughNagumo extends SpikingNeuronUpdateRule implements NoisyUpda
         in.setThreshold(getThreshold());
         in.setAddNoise(getAddNoise());
         in.setNoiseGenerator(noiseGenerator.deepCopy());
+        in.setIntegrationMethod(getIntegrationMethod());
+        in.setTolerance(getTolerance());
         return in;
     }
 
@@ -121,13 +152,17 @@ public class FitzhughNagumo extends SpikingNeuronUpdateRule implements NoisyUpda
         double inputs = 0;
         inputs = neuron.getInput();
         if (addNoise) {
-            inputs += noiseGenerator.getRandom();
+            inputs += noiseGenerator.getRandom(neuron.getRandom());
         }
         inputs += iBg;
         v = neuron.getActivation();
-        w += (timeStep * (a * (b * v + 0.7 - (c * w))));
+        if (integrationMethod != null && integrationMethod != IntegrationMethod.EULER) {
+            integrate(inputs, timeStep);
+        } else {
+            w += (timeStep * (a * (b * v + 0.7 - (c * w))));
 
-        v += timeStep * (v - (v * v * v) / 3 - w + inputs);
+            v += timeStep * (v - (v * v * v) / 3 - w + inputs);
+        }
 
         // v = activation + (timeStep * (activation - (Math.pow(activation, 3)/3) - w + inputs) );
         // You want this
@@ -142,11 +177,53 @@ public class FitzhughNagumo extends SpikingNeuronUpdateRule implements NoisyUpda
         neuron.setBuffer(v);
     }
 
+    /**
+     * Integrate with the selected method, with the inputs held fixed over the
+     * time step.
+     */
+    private void integrate(double inputs, double timeStep) {
+        if (dynamics == null) {
+            dynamics = new Dynamics();
+        }
+        dynamics.inputs = inputs;
+        double[] y = dynamics.state;
+        y[0] = v;
+        y[1] = w;
+        dynamics.solver.step(integrationMethod, dynamics, y, timeStep, tolerance);
+        v = y[0];
+        w = y[1];
+    }
+
+    /**
+     * The model as a system of equations in (v, w).
+     */
+    private class Dynamics implements OdeSystem {
+
+        private final double[] state = new double[2];
+
+        private final OdeSolver solver = new OdeSolver(2);
+
+        private double inputs;
+
+        @Override
+        public void derivatives(double[] y, double[] dydt) {
+            dydt[0] = y[0] - (y[0] * y[0] * y[0]) / 3 - y[1] + inputs;
+            dydt[1] = a * (b * y[0] + 0.7 - (c * y[1]));
+        }
+
+        @Override
+        public void decayRates(double[] y, double[] rates) {
+            // Slope of v - v^3 / 3, negated
+            rates[0] = y[0] * y[0] - 1;
+            rates[1] = a * c;
+        }
+    }
+
     @Override
     public double getRandomValue() {
         // Equal chance of spiking or not spiking, taking on any value between
         // the resting potential and the threshold if not.
-        return 2 * (threshold - c) * Math.random() + c;
+        return 2 * (threshold - c) * SimbrainRandom.current().nextDouble() + c;
     }
 
     public double getW() {
@@ -227,4 +304,20 @@ public class FitzhughNagumo extends SpikingNeuronUpdateRule implements NoisyUpda
     public void setC(double c) {
         this.c = c;
     }
+
+    public IntegrationMethod getIntegrationMethod() {
+        return integrationMethod;
+    }
+
+    public void setIntegrationMethod(IntegrationMethod integrationMethod) {
+        this.integrationMethod = integrationMethod;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
 }
\ No newline at end of file
@@ -23,6 +23,9 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.IntegrationMethod;
+import org.simbrain.util.math.OdeSolver;
+import org.simbrain.util.math.OdeSystem;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
 
@@ -53,6 +56,31 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
             order = 2)
     private float perKChannels = 100f;
 
+    /**
+     * How the model is integrated. Euler is the original scheme; exponential
+     * Euler and the Runge-Kutta methods allow larger time steps.
+     */
+    @UserParameter(
+            label = "Integration Method",
+            description = "Euler needs time steps of about .01 ms. Exponential Euler (exact for the gating variables) "
+                    + "and Runge-Kutta 4 remain stable at larger steps; adaptive takes substeps to meet the tolerance.",
+            order = 3)
+    private IntegrationMethod integrationMethod = IntegrationMethod.EULER;
+
+    /**
+     * Local error tolerance for adaptive integration.
+     */
+    @UserParameter(
+            label = "Error Tolerance",
+            description = "Local error tolerance used by adaptive integration.",
+            minimumValue = 0, increment = 1E-6, order = 4)
+    private double tolerance = OdeSolver.DEFAULT_TOLERANCE;
+
+    /**
+     * Solver state for the methods other than Euler, created when first used.
+     */
+    private transient Dynamics dynamics;
+
     /**
      * Resting Membrane Potential
      */
@@ -128,6 +156,10 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
 
     @Override
     public void update(Neuron neuron) {
+        if (integrationMethod != null && integrationMethod != IntegrationMethod.EULER) {
+            integrate(neuron);
+            return;
+        }
 
         // Advances the model by dt and returns the new voltage
 
@@ -162,6 +194,72 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
 
     }
 
+    /**
+     * Update using the selected integration method.
+     */
+    private void integrate(Neuron neuron) {
+        if (dynamics == null) {
+            dynamics = new Dynamics();
+        }
+        double[] y = dynamics.state;
+        y[0] = neuron.getInput();
+        y[1] = m;
+        y[2] = h;
+        y[3] = n;
+        dynamics.solver.step(integrationMethod, dynamics, y, neuron.getNetwork().getTimeStep(), tolerance);
+        m = y[1];
+        h = y[2];
+        n = y[3];
+
+        n4 = n * n * n * n;
+        m3h = m * m * m * h;
+        na_current = gna * m3h * (y[0] - vna);
+        k_current = gk * n4 * (y[0] - vk);
+
+        neuron.setBuffer(-1 * (y[0] + resting_v));
+    }
+
+    /**
+     * The model as a system of equations in (v, m, h, n).
+     */
+    private class Dynamics implements OdeSystem {
+
+        private final double[] state = new double[4];
+
+        private final OdeSolver solver = new OdeSolver(4);
+
+        @Override
+        public void derivatives(double[] y, double[] dydt) {
+            double v = y[0];
+            double m = y[1];
+            double h = y[2];
+            double n = y[3];
+            double ah = 0.07 * Math.exp(v / 20);
+            double bh = 1 / (Math.exp((v + 30) / 10) + 1);
+            double am = 0.1 * (v + 25) / (Math.exp((v + 25) / 10) - 1);
+            double bm = 4 * Math.exp(v / 18);
+            double an = 0.01 * (v + 10) / (Math.exp((v + 10) / 10) - 1);
+            double bn = 0.125 * Math.exp(v / 80);
+            double current = gk * n * n * n * n * (v - vk) + gna * m * m * m * h * (v - vna) + gl * (v - vl);
+            dydt[0] = -current / cm;
+            dydt[1] = am * (1 - m) - bm * m;
+            dydt[2] = ah * (1 - h) - bh * h;
+            dydt[3] = an * (1 - n) - bn * n;
+        }
+
+        @Override
+        public void decayRates(double[] y, double[] rates) {
+            double v = y[0];
+            double m = y[1];
+            double h = y[2];
+            double n = y[3];
+            rates[0] = (gk * n * n * n * n + gna * m * m * m * h + gl) / cm;
+            rates[1] = 0.1 * (v + 25) / (Math.exp((v + 25) / 10) - 1) + 4 * Math.exp(v / 18);
+            rates[2] = 0.07 * Math.exp(v / 20) + 1 / (Math.exp((v + 30) / 10) + 1);
+            rates[3] = 0.01 * (v + 10) / (Math.exp((v + 10) / 10) - 1) + 0.125 * Math.exp(v / 80);
+        }
+    }
+
     // Initializer quickly hacked from old init. Zoë this is in your hands to fix! :)
     {
         cm = 1.0;
@@ -309,6 +407,22 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
         this.vClampValue = convertV(vClampValue);
     }
 
+    public IntegrationMethod getIntegrationMethod() {
+        return integrationMethod;
+    }
+
+    public void setIntegrationMethod(IntegrationMethod integrationMethod) {
+        this.integrationMethod = integrationMethod;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
     public double getTemp() {
         return temp;
     }
@@ -330,6 +444,8 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
         hhr.setPerNaChannels(this.getPerNaChannels());
         hhr.setTemp(this.getTemp());
         hhr.setVClampOn(this.getVClampOn());
+        hhr.setIntegrationMethod(this.getIntegrationMethod());
+        hhr.setTolerance(this.getTolerance());
         return hhr;
     }
 
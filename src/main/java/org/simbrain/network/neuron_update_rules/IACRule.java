@@ -112,6 +112,11 @@ public class IACRule extends NeuronUpdateRule implements BoundedUpdateRule, Clip
         return iac;
     }
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
 
@@ -138,7 +143,7 @@ public class IACRule extends NeuronUpdateRule implements BoundedUpdateRule, Clip
         act = neuron.getActivation() + neuron.getNetwork().getTimeStep() * (effect - decay * (neuron.getActivation() - rest));
 
         if (addNoise) {
-            act += noiseGenerator.getRandom();
+            act += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         if (clipping) {
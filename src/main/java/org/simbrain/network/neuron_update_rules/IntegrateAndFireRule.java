@@ -19,13 +19,14 @@
 package org.simbrain.network.neuron_update_rules;
 
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Linear <b>IntegrateAndFireNeuron</b> implements an integrate and fire neuron.
@@ -167,7 +168,7 @@ public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements Noi
         double synCurrent = neuron.getNetwork().getTime() < (getLastSpikeTime() + refractoryPeriod) ? 0 : neuron.getInput() + backgroundCurrent;
 
         if (addNoise) {
-            synCurrent += noiseGenerator.getRandom();
+            synCurrent += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         double timeStep = neuron.getNetwork().getTimeStep();
@@ -189,7 +190,7 @@ public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements Noi
 
         memPotential += dVm;
 
-        if(ThreadLocalRandom.current().nextDouble() < randSpkChance*neuron.getNetwork().getTimeStep()) {
+        if(neuron.getRandom().nextDouble() < randSpkChance*neuron.getNetwork().getTimeStep()) {
             memPotential = threshold+1;
         }
 
@@ -205,11 +206,72 @@ public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements Noi
         neuron.setBuffer(memPotential);
     }
 
+    @Override
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        if (getClass() != IntegrateAndFireRule.class) {
+            super.updateBatch(batch, start, end);
+            return;
+        }
+        Neuron[] neurons = batch.getNeurons();
+        boolean[] active = batch.getActive();
+        boolean[] spikes = batch.getSpikes();
+        double[] activations = batch.getActivations();
+        double[] currents = batch.getInputs();
+        double[] values = batch.getValues();
+        double[] refractoryEnds = batch.getScratch(0);
+        double[] restingPotentials = batch.getScratch(1);
+        double[] resistances = batch.getScratch(2);
+        double[] timeConstants = batch.getScratch(3);
+        double[] thresholds = batch.getScratch(4);
+        double[] resetPotentials = batch.getScratch(5);
+        double[] forcedSpikes = batch.getScratch(6);
+        double dt = batch.getTimeStep();
+        double time = batch.getTime();
+
+        // Input is only read outside the refractory period, so it is gathered here rather than with gatherInputs
+        for (int i = start; i < end; i++) {
+            IntegrateAndFireRule rule = (IntegrateAndFireRule) neurons[i].getUpdateRule();
+            refractoryEnds[i] = rule.getLastSpikeTime() + rule.refractoryPeriod;
+            restingPotentials[i] = rule.restingPotential;
+            resistances[i] = rule.resistance;
+            timeConstants[i] = rule.timeConstant;
+            thresholds[i] = rule.threshold;
+            resetPotentials[i] = rule.resetPotential;
+            if (!active[i]) {
+                currents[i] = 0;
+                forcedSpikes[i] = 0;
+                continue;
+            }
+            double synCurrent = time < refractoryEnds[i] ? 0 : neurons[i].getInput() + rule.backgroundCurrent;
+            if (rule.addNoise) {
+                synCurrent += rule.noiseGenerator.getRandom(neurons[i].getRandom());
+            }
+            currents[i] = synCurrent;
+            forcedSpikes[i] = neurons[i].getRandom().nextDouble() < rule.randSpkChance * dt ? 1 : 0;
+        }
+        for (int i = start; i < end; i++) {
+            double v = activations[i];
+            double dVm = dt * (-(v - restingPotentials[i]) + resistances[i] * currents[i]) / timeConstants[i];
+            v += dVm;
+            v = forcedSpikes[i] != 0 ? thresholds[i] + 1 : v;
+            boolean spike = (v >= thresholds[i]) && (time > refractoryEnds[i]);
+            values[i] = spike ? resetPotentials[i] : v;
+            spikes[i] = spike;
+        }
+        for (int i = start; i < end; i++) {
+            if (active[i]) {
+                ((IntegrateAndFireRule) neurons[i].getUpdateRule()).memPotential = values[i];
+            }
+        }
+        batch.applySpikes(start, end);
+        batch.applyBuffers(start, end);
+    }
+
     @Override
     public double getRandomValue() {
         // Equal chance of spiking or not spiking, taking on any value between
         // the resting potential and the threshold if not.
-        return 2 * (threshold - restingPotential) * Math.random() + restingPotential;
+        return 2 * (threshold - restingPotential) * SimbrainRandom.current().nextDouble() + restingPotential;
     }
 
     public double getRestingPotential() {
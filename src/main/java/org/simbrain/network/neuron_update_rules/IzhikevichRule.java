@@ -19,11 +19,16 @@
 package org.simbrain.network.neuron_update_rules;
 
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * <b>IzhikevichNeuron</b>. Default values correspond to "tonic spiking". TODO:
@@ -34,8 +39,17 @@ import org.simbrain.util.math.ProbabilityDistribution;
 public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpdateRule {
 
     /**
-     * Recovery.
+     * Index of the recovery variable in {@link Neuron#getRuleState()}.
+     */
+    private static final int RECOVERY = LAST_SPIKE_TIME + 1;
+
+    /**
+     * Recovery, as stored by older versions. It now lives on each neuron so
+     * that the rule can be shared; a non-zero value read from an old file is
+     * moved to the neurons when the network is opened. See {@link
+     * #migrateLegacyRecovery(List)}.
      */
+    @Deprecated
     private double recovery;
 
     /**
@@ -117,9 +131,6 @@ public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpda
      */
     private double refractoryPeriod = 0.0; //ms
 
-    //TODO
-    private double timeStep;
-    private double val;
 
     @Override
     public IzhikevichRule deepCopy() {
@@ -136,21 +147,23 @@ public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpda
 
     @Override
     public void update(final Neuron neuron) {
-        timeStep = neuron.getNetwork().getTimeStep();
+        final double timeStep = neuron.getNetwork().getTimeStep();
         final double activation = neuron.getActivation();
+        final double[] state = neuron.getRuleState();
+        double u = state[RECOVERY];
         double inputs = 0;
         inputs = neuron.getInput();
         if (addNoise) {
-            inputs += noiseGenerator.getRandom();
+            inputs += noiseGenerator.getRandom(neuron.getRandom());
         }
         inputs += iBg;
-        recovery += (timeStep * (a * ((b * activation) - recovery)));
+        u += (timeStep * (a * ((b * activation) - u)));
 
-        val = activation + (timeStep * (((.04 * (activation * activation)) + (5 * activation) + 140) - recovery + inputs));
+        double val = activation + (timeStep * (((.04 * (activation * activation)) + (5 * activation) + 140) - u + inputs));
 
         if (val >= threshold) {
             val = c;
-            recovery += d;
+            u += d;
             neuron.setSpkBuffer(true);
             setHasSpiked(true, neuron);
         } else {
@@ -158,14 +171,101 @@ public class IzhikevichRule extends SpikingNeuronUpdateRule implements NoisyUpda
             setHasSpiked(false, neuron);
         }
 
+        state[RECOVERY] = u;
         neuron.setBuffer(val);
     }
 
+    /**
+     * Move recovery values loaded from an older file, where they were kept in
+     * the rule, into the state of the neurons using the rules. Every neuron
+     * using a rule is given its value before the value is cleared, since one
+     * rule may be used by several neurons.
+     *
+     * @param neurons all neurons of a network that has just been opened
+     */
+    public static void migrateLegacyRecovery(List<Neuron> neurons) {
+        List<IzhikevichRule> migrated = new ArrayList<>();
+        for (Neuron neuron : neurons) {
+            if (neuron.getUpdateRule() instanceof IzhikevichRule) {
+                IzhikevichRule rule = (IzhikevichRule) neuron.getUpdateRule();
+                if (rule.recovery != 0) {
+                    neuron.getRuleState()[RECOVERY] = rule.recovery;
+                    migrated.add(rule);
+                }
+            }
+        }
+        for (IzhikevichRule rule : migrated) {
+            rule.recovery = 0;
+        }
+    }
+
+    @Override
+    public boolean isShareable() {
+        return getClass() == IzhikevichRule.class;
+    }
+
+    @Override
+    public int getStateSize() {
+        return RECOVERY + 1;
+    }
+
+    @Override
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        if (getClass() != IzhikevichRule.class) {
+            super.updateBatch(batch, start, end);
+            return;
+        }
+        Neuron[] neurons = batch.getNeurons();
+        boolean[] active = batch.getActive();
+        boolean[] spikes = batch.getSpikes();
+        double[] activations = batch.getActivations();
+        double[] inputs = batch.getInputs();
+        double[] values = batch.getValues();
+        double[] as = batch.getScratch(0);
+        double[] bs = batch.getScratch(1);
+        double[] cs = batch.getScratch(2);
+        double[] ds = batch.getScratch(3);
+        double[] thresholds = batch.getScratch(4);
+        double[] recoveries = batch.getScratch(5);
+        double dt = batch.getTimeStep();
+
+        batch.gatherInputs(start, end);
+        for (int i = start; i < end; i++) {
+            IzhikevichRule rule = (IzhikevichRule) neurons[i].getUpdateRule();
+            if (rule.addNoise && active[i]) {
+                inputs[i] += rule.noiseGenerator.getRandom(neurons[i].getRandom());
+            }
+            inputs[i] += rule.iBg;
+            as[i] = rule.a;
+            bs[i] = rule.b;
+            cs[i] = rule.c;
+            ds[i] = rule.d;
+            thresholds[i] = rule.threshold;
+            recoveries[i] = neurons[i].getRuleState()[RECOVERY];
+        }
+        for (int i = start; i < end; i++) {
+            double v = activations[i];
+            double u = recoveries[i] + (dt * (as[i] * ((bs[i] * v) - recoveries[i])));
+            double next = v + (dt * (((.04 * (v * v)) + (5 * v) + 140) - u + inputs[i]));
+            boolean spike = next >= thresholds[i];
+            values[i] = spike ? cs[i] : next;
+            recoveries[i] = spike ? u + ds[i] : u;
+            spikes[i] = spike;
+        }
+        for (int i = start; i < end; i++) {
+            if (active[i]) {
+                neurons[i].getRuleState()[RECOVERY] = recoveries[i];
+            }
+        }
+        batch.applySpikes(start, end);
+        batch.applyBuffers(start, end);
+    }
+
     @Override
     public double getRandomValue() {
         // Equal chance of spiking or not spiking, taking on any value between
         // the resting potential and the threshold if not.
-        return 2 * (threshold - c) * Math.random() + c;
+        return 2 * (threshold - c) * SimbrainRandom.current().nextDouble() + c;
     }
 
     public double getA() {
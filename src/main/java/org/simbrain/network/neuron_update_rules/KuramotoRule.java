@@ -79,6 +79,11 @@ public class KuramotoRule extends NeuronUpdateRule implements BiasedUpdateRule,
     ///// NEW STUFF ////
     private double timeStep;
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
 
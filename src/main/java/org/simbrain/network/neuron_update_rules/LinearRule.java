@@ -21,6 +21,7 @@ package org.simbrain.network.neuron_update_rules;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.*;
 import org.simbrain.util.UserParameter;
@@ -93,7 +94,7 @@ public class LinearRule extends NeuronUpdateRule implements BiasedUpdateRule, Di
         double val = (slope * wtdInput) + bias;
 
         if (addNoise) {
-            val += noiseGenerator.getRandom();
+            val += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         if (clipping) {
@@ -103,6 +104,42 @@ public class LinearRule extends NeuronUpdateRule implements BiasedUpdateRule, Di
         neuron.setBuffer(val);
     }
 
+    @Override
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        if (getClass() != LinearRule.class) {
+            super.updateBatch(batch, start, end);
+            return;
+        }
+        Neuron[] neurons = batch.getNeurons();
+        boolean[] active = batch.getActive();
+        double[] inputs = batch.getInputs();
+        double[] values = batch.getValues();
+        double[] slopes = batch.getScratch(0);
+        double[] biases = batch.getScratch(1);
+        double[] noise = batch.getScratch(2);
+        double[] lower = batch.getScratch(3);
+        double[] upper = batch.getScratch(4);
+
+        batch.gatherInputs(start, end);
+        for (int i = start; i < end; i++) {
+            LinearRule rule = (LinearRule) neurons[i].getUpdateRule();
+            slopes[i] = rule.slope;
+            biases[i] = rule.bias;
+            noise[i] = rule.addNoise && active[i] ? rule.noiseGenerator.getRandom(neurons[i].getRandom()) : 0;
+            lower[i] = rule.clipping ? rule.lowerBound : Double.NEGATIVE_INFINITY;
+            upper[i] = rule.clipping ? rule.upperBound : Double.POSITIVE_INFINITY;
+        }
+        for (int i = start; i < end; i++) {
+            values[i] = Math.min(Math.max((slopes[i] * inputs[i]) + biases[i] + noise[i], lower[i]), upper[i]);
+        }
+        batch.applyBuffers(start, end);
+    }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
+
     @Override
     public double clip(double val) {
         if (val > getUpperBound()) {
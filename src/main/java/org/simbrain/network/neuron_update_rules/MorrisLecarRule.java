@@ -9,8 +9,12 @@ import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.IntegrationMethod;
+import org.simbrain.util.math.OdeSolver;
+import org.simbrain.util.math.OdeSystem;
 import org.simbrain.util.math.ProbDistributions.NormalDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 
 public class MorrisLecarRule extends SpikingNeuronUpdateRule implements NoisyUpdateRule {
 
@@ -174,6 +178,31 @@ public class MorrisLecarRule extends SpikingNeuronUpdateRule implements NoisyUpd
                 .standardDeviation(1)
                 .build();
 
+    /**
+     * How membrane potential and potassium channels are integrated. Heun
+     * (second order Runge-Kutta) is the original scheme.
+     */
+    @UserParameter(
+            label = "Integration Method",
+            description = "Heun is the original scheme. Exponential Euler and Runge-Kutta 4 remain accurate at "
+                    + "larger time steps; adaptive takes substeps to meet the error tolerance.",
+            order = 16, tab = "Integration")
+    private IntegrationMethod integrationMethod = IntegrationMethod.HEUN;
+
+    /**
+     * Local error tolerance for adaptive integration.
+     */
+    @UserParameter(
+            label = "Error Tolerance",
+            description = "Local error tolerance used by adaptive integration.",
+            minimumValue = 0, increment = 1E-6, order = 17, tab = "Integration")
+    private double tolerance = OdeSolver.DEFAULT_TOLERANCE;
+
+    /**
+     * Solver state for the methods other than Heun, created when first used.
+     */
+    private transient Dynamics dynamics;
+
     @Override
     public void update(Neuron neuron) {
         double dt = neuron.getNetwork().getTimeStep();
@@ -181,13 +210,18 @@ public class MorrisLecarRule extends SpikingNeuronUpdateRule implements NoisyUpd
         // Under normal circumstances this will cause no change.
         double vMembrane = neuron.getActivation();
 
-        double dVdt = dVdt(vMembrane, i_syn);
-        double dWdt = dWdt(vMembrane, w_K);
-
-        double vmFut = vMembrane + dt * dVdt;
-        double wKFut = w_K + dt * dWdt;
-        vMembrane = vMembrane + (dt / 2) * ((dVdt) + dVdt(vmFut, i_syn));
-        w_K = w_K + (dt / 2) * ((dWdt) + dWdt(vMembrane, wKFut));
+        SimbrainRandom random = neuron.getRandom();
+        if (integrationMethod != null && integrationMethod != IntegrationMethod.HEUN) {
+            vMembrane = integrate(vMembrane, i_syn, random, dt);
+        } else {
+            double dVdt = dVdt(vMembrane, i_syn, random);
+            double dWdt = dWdt(vMembrane, w_K);
+
+            double vmFut = vMembrane + dt * dVdt;
+            double wKFut = w_K + dt * dWdt;
+            vMembrane = vMembrane + (dt / 2) * ((dVdt) + dVdt(vmFut, i_syn, random));
+            w_K = w_K + (dt / 2) * ((dWdt) + dWdt(vMembrane, wKFut));
+        }
 
         neuron.setSpkBuffer(vMembrane > threshold);
         setHasSpiked(vMembrane > threshold, neuron);
@@ -196,14 +230,61 @@ public class MorrisLecarRule extends SpikingNeuronUpdateRule implements NoisyUpd
 
     }
 
-    private double dVdt(double vMembrane, double i_syn) {
+    /**
+     * Integrate with the selected method, with the input and noise held fixed
+     * over the time step.
+     *
+     * @return the new membrane potential
+     */
+    private double integrate(double vMembrane, double i_syn, SimbrainRandom random, double dt) {
+        if (dynamics == null) {
+            dynamics = new Dynamics();
+        }
+        dynamics.input = i_syn + (getAddNoise() ? noiseGenerator.getRandom(random) : 0);
+        double[] y = dynamics.state;
+        y[0] = vMembrane;
+        y[1] = w_K;
+        dynamics.solver.step(integrationMethod, dynamics, y, dt, tolerance);
+        w_K = y[1];
+        return y[0];
+    }
+
+    /**
+     * The model as a system of equations in (v, w).
+     */
+    private class Dynamics implements OdeSystem {
+
+        private final double[] state = new double[2];
+
+        private final OdeSolver solver = new OdeSolver(2);
+
+        private double input;
+
+        @Override
+        public void derivatives(double[] y, double[] dydt) {
+            double v = y[0];
+            double i_ion = g_Ca * membraneFunction(v) * (v - vRest_Ca) + g_K * y[1] * (v - vRest_k)
+                    + g_L * (v - vRest_L);
+            dydt[0] = (i_bg - i_ion + input) / cMembrane;
+            dydt[1] = dWdt(v, y[1]);
+        }
+
+        @Override
+        public void decayRates(double[] y, double[] rates) {
+            double v = y[0];
+            rates[0] = (g_Ca * membraneFunction(v) + g_K * y[1] + g_L) / cMembrane;
+            rates[1] = phi * lambdaFunction(v);
+        }
+    }
+
+    private double dVdt(double vMembrane, double i_syn, SimbrainRandom random) {
         double i_Ca = g_Ca * membraneFunction(vMembrane) * (vMembrane - vRest_Ca);
         double i_K = g_K * w_K * (vMembrane - vRest_k);
         double i_L = g_L * (vMembrane - vRest_L);
         double i_ion = i_Ca + i_K + i_L;
         double i_noise = 0;
         if (getAddNoise()) {
-            i_noise = noiseGenerator.getRandom();
+            i_noise = noiseGenerator.getRandom(random);
         }
         return ((i_bg - i_ion + i_syn + i_noise) / cMembrane);
     }
@@ -244,6 +325,8 @@ public class MorrisLecarRule extends SpikingNeuronUpdateRule implements NoisyUpd
         cpy.vRest_L = this.vRest_L;
         cpy.w_K = this.w_K;
         cpy.noiseGenerator = noiseGenerator.deepCopy();
+        cpy.integrationMethod = this.integrationMethod;
+        cpy.tolerance = this.tolerance;
 
         return cpy;
     }
@@ -389,4 +472,20 @@ public class MorrisLecarRule extends SpikingNeuronUpdateRule implements NoisyUpd
         this.threshold = threshold;
     }
 
+    public IntegrationMethod getIntegrationMethod() {
+        return integrationMethod;
+    }
+
+    public void setIntegrationMethod(IntegrationMethod integrationMethod) {
+        this.integrationMethod = integrationMethod;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
 }
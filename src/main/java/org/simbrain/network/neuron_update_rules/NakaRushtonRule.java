@@ -178,7 +178,7 @@ public class NakaRushtonRule extends NeuronUpdateRule implements BoundedUpdateRu
         }
 
         if (addNoise) {
-            val += (neuron.getNetwork().getTimeStep() * (((1 / timeConstant) * (-val + s)) + noiseGenerator.getRandom()));
+            val += (neuron.getNetwork().getTimeStep() * (((1 / timeConstant) * (-val + s)) + noiseGenerator.getRandom(neuron.getRandom())));
         } else {
             val += (neuron.getNetwork().getTimeStep() * ((1 / timeConstant) * (-val + s)));
         }
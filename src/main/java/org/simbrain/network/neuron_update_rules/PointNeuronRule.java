@@ -25,6 +25,7 @@ import org.simbrain.network.core.Synapse;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
 import org.simbrain.util.math.SimbrainMath;
+import org.simbrain.util.math.SimbrainRandom;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -299,6 +300,11 @@ public class PointNeuronRule extends NeuronUpdateRule implements BiasedUpdateRul
         // updated by pressing "clear"
     }
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
 
@@ -351,7 +357,7 @@ public class PointNeuronRule extends NeuronUpdateRule implements BiasedUpdateRul
 
     @Override
     public double getRandomValue() {
-        Random rand = new Random();
+        Random rand = SimbrainRandom.current();
         if (outputFunction == OutputFunction.DISCRETE_SPIKING) {
             return rand.nextBoolean() ? 1.0 : 0.0;
         } else if (outputFunction == OutputFunction.RATE_CODE) {
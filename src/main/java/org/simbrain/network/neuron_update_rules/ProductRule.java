@@ -57,6 +57,11 @@ public class ProductRule extends LinearRule {
         return pr;
     }
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
 
@@ -76,7 +81,7 @@ public class ProductRule extends LinearRule {
         }
 
         if (this.getAddNoise()) {
-            val += getNoiseGenerator().getRandom();
+            val += getNoiseGenerator().getRandom(neuron.getRandom());
         }
 
         if (this.isClipped()) {
@@ -21,6 +21,7 @@ package org.simbrain.network.neuron_update_rules;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronBatch;
 import org.simbrain.util.math.SquashingFunctionEnum;
 
 /**
@@ -62,7 +63,7 @@ public class SigmoidalRule extends AbstractSigmoidalRule implements TransferFunc
         double val = neuron.getInput() + bias;
 
         if (addNoise) {
-            val += noiseGenerator.getRandom();
+            val += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         val = sFunction.valueOf(val, getUpperBound(), getLowerBound(), getSlope());
@@ -70,6 +71,53 @@ public class SigmoidalRule extends AbstractSigmoidalRule implements TransferFunc
         neuron.setBuffer(val);
     }
 
+    @Override
+    public void updateBatch(NeuronBatch batch, int start, int end) {
+        if (getClass() != SigmoidalRule.class) {
+            super.updateBatch(batch, start, end);
+            return;
+        }
+        Neuron[] neurons = batch.getNeurons();
+        boolean[] active = batch.getActive();
+        double[] inputs = batch.getInputs();
+        double[] values = batch.getValues();
+        double[] slopes = batch.getScratch(0);
+        double[] lower = batch.getScratch(1);
+        double[] upper = batch.getScratch(2);
+
+        batch.gatherInputs(start, end);
+        SquashingFunctionEnum function = sFunction;
+        boolean sameFunction = true;
+        for (int i = start; i < end; i++) {
+            SigmoidalRule rule = (SigmoidalRule) neurons[i].getUpdateRule();
+            double val = inputs[i] + rule.bias;
+            if (rule.addNoise && active[i]) {
+                val += rule.noiseGenerator.getRandom(neurons[i].getRandom());
+            }
+            inputs[i] = val;
+            slopes[i] = rule.slope;
+            lower[i] = rule.lowerBound;
+            upper[i] = rule.upperBound;
+            sameFunction &= rule.sFunction == function;
+        }
+        if (sameFunction) {
+            for (int i = start; i < end; i++) {
+                values[i] = function.valueOf(inputs[i], upper[i], lower[i], slopes[i]);
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                SquashingFunctionEnum f = ((SigmoidalRule) neurons[i].getUpdateRule()).sFunction;
+                values[i] = f.valueOf(inputs[i], upper[i], lower[i], slopes[i]);
+            }
+        }
+        batch.applyBuffers(start, end);
+    }
+
+    @Override
+    public boolean isShareable() {
+        return true;
+    }
+
     @Override
     public final SigmoidalRule deepCopy() {
         SigmoidalRule sr = new SigmoidalRule();
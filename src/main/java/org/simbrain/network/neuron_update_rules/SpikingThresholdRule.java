@@ -24,8 +24,7 @@ import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
-
-import java.util.Random;
+import org.simbrain.util.math.SimbrainRandom;
 
 /**
  * A simple spiking neuron that fires when weighted inputs exceed a threshold.
@@ -62,7 +61,7 @@ public class SpikingThresholdRule extends SpikingNeuronUpdateRule implements Noi
 
     @Override
     public void update(Neuron neuron) {
-        final double input = neuron.getInput() + (addNoise ? noiseGenerator.getRandom() : 0);
+        final double input = neuron.getInput() + (addNoise ? noiseGenerator.getRandom(neuron.getRandom()) : 0);
         if (input >= threshold) {
             neuron.setSpkBuffer(true);
             setHasSpiked(true, neuron);
@@ -80,8 +79,7 @@ public class SpikingThresholdRule extends SpikingNeuronUpdateRule implements Noi
      */
     @Override
     public double getRandomValue() {
-        Random rand = new Random();
-        return rand.nextBoolean() ? 1 : 0;
+        return SimbrainRandom.current().nextBoolean() ? 1 : 0;
     }
 
     /**
@@ -5,7 +5,6 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.util.UserParameter;
 
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A stochastic spiking neuron often used in cortical branching simulations. The timed accumulator normalizes its inputs
@@ -98,6 +97,11 @@ public class TimedAccumulatorRule extends SpikingThresholdRule {
         return TimeType.DISCRETE;
     }
 
+    @Override
+    public boolean readsFanIn() {
+        return true;
+    }
+
     @Override
     public void update(Neuron neuron) {
         if (currentState >= 1) {
@@ -110,7 +114,7 @@ public class TimedAccumulatorRule extends SpikingThresholdRule {
             setHasSpiked(false, neuron);
             return;
         }
-        if (ThreadLocalRandom.current().nextDouble() < baseProb) {
+        if (neuron.getRandom().nextDouble() < baseProb) {
             currentState++;
             neuron.setBuffer(1);
             neuron.setSpkBuffer(true);
@@ -128,7 +132,7 @@ public class TimedAccumulatorRule extends SpikingThresholdRule {
                 // Using the exp weight value stored in the PSR from before
                 // divide that by the exp sum to get the softmax value
                 // then set this to a 1 state from a 0 with that probability.
-                if (ThreadLocalRandom.current().nextDouble() < kappa * neuron.getFanInUnsafe().get(ii).getPsr() / expSum) {
+                if (neuron.getRandom().nextDouble() < kappa * neuron.getFanInUnsafe().get(ii).getPsr() / expSum) {
                     currentState++;
                     neuron.setBuffer(1);
                     neuron.setSpkBuffer(true);
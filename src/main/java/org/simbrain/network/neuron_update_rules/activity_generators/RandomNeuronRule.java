@@ -64,7 +64,7 @@ public class RandomNeuronRule extends NeuronUpdateRule implements ActivityGenera
 
     @Override
     public void update(Neuron neuron) {
-        neuron.setBuffer(randomizer.getRandom());
+        neuron.setBuffer(randomizer.getRandom(neuron.getRandom()));
     }
 
     @Override
@@ -77,6 +77,11 @@ public class RandomNeuronRule extends NeuronUpdateRule implements ActivityGenera
         return randomizer.getRandom();
     }
 
+    @Override
+    public double getRandomValue(Neuron neuron) {
+        return randomizer.getRandom(neuron.getRandom());
+    }
+
     @Override
     public double getUpperBound() {
         return ceiling;
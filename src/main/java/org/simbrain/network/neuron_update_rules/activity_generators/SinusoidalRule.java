@@ -27,6 +27,7 @@ import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbDistributions.UniformDistribution;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 
 /**
  * <b>SinusoidalNeuron</b> produces a sine wave.
@@ -95,7 +96,7 @@ public class SinusoidalRule extends NeuronUpdateRule implements ActivityGenerato
         double val = ((range / 2) * Math.sin(frequency * neuron.getNetwork().getTime() + phase)) + ((upperBound + lowerBound) / 2);
 
         if (addNoise) {
-            val += noiseGenerator.getRandom();
+            val += noiseGenerator.getRandom(neuron.getRandom());
         }
 
         neuron.setBuffer(val);
@@ -152,7 +153,7 @@ public class SinusoidalRule extends NeuronUpdateRule implements ActivityGenerato
 
     @Override
     public double getRandomValue() {
-        double rand = (2 * Math.PI) * Math.random();
+        double rand = (2 * Math.PI) * SimbrainRandom.current().nextDouble();
         double range = getUpperBound() - getLowerBound();
         return ((range / 2) * Math.sin(frequency * rand + phase)) + ((getUpperBound() + getLowerBound()) / 2);
     }
@@ -62,7 +62,7 @@ public class StochasticRule extends SpikingNeuronUpdateRule implements ActivityG
 
     @Override
     public void update(Neuron neuron) {
-        double rand = Math.random();
+        double rand = neuron.getRandom().nextDouble();
         if (rand > 1 - firingProbability) {
             neuron.setSpkBuffer(true);
             setHasSpiked(true, neuron);
@@ -32,7 +32,6 @@ import org.simbrain.network.util.Direction;
 import java.awt.geom.Point2D;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 import static org.simbrain.network.util.NetworkLayoutManagerKt.offsetNeuronGroup;
 
@@ -128,7 +127,7 @@ public class BoltzmannMachine extends Subnetwork implements Trainable {
         //hiddenUnits.clearActivations();
 
         // Choose randomly
-        Neuron chosenNode = hiddenUnits.getNeuronList().get(ThreadLocalRandom.current().nextInt(0, hiddenUnits.getNeuronList().size()));
+        Neuron chosenNode = hiddenUnits.getNeuronList().get(hiddenUnits.getRandom().nextInt(hiddenUnits.getNeuronList().size()));
 
         int summedFanIn = 0;
 
@@ -139,7 +138,7 @@ public class BoltzmannMachine extends Subnetwork implements Trainable {
         double delta_c = 1 - 2 * chosenNode.getActivation() + summedFanIn;
         double acceptChangeProb = 1 / (1 + Math.exp(-delta_c / temperature));
 
-        if (Math.random() < acceptChangeProb) {
+        if (chosenNode.getRandom().nextDouble() < acceptChangeProb) {
             chosenNode.setActivation(1 - chosenNode.getActivation());
             this.temperature = .95 * temperature;
         }
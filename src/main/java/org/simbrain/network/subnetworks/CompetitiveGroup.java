@@ -170,6 +170,15 @@ public class CompetitiveGroup extends NeuronGroup {
         return "Competitive Group";
     }
 
+    /**
+     * Trains the winner's incoming synapses, so cannot take input from synapse
+     * groups in matrix mode.
+     */
+    @Override
+    public boolean acceptsMatrixInput() {
+        return false;
+    }
+
     @Override
     public void update() {
 
@@ -171,6 +171,15 @@ public class SOMGroup extends NeuronGroup {
         return "Self Organizing Map";
     }
 
+    /**
+     * Finds the winner and trains from the neurons' incoming synapses, so
+     * cannot take input from synapse groups in matrix mode.
+     */
+    @Override
+    public boolean acceptsMatrixInput() {
+        return false;
+    }
+
     /**
      * Randomize all weights coming in to this network. The weights will be
      * between 0 and the upper bound of each synapse.
@@ -179,7 +188,7 @@ public class SOMGroup extends NeuronGroup {
         for (Neuron n : getNeuronList()) {
             for (Synapse s : n.getFanIn()) {
                 s.setLowerBound(0);
-                s.setStrength(s.getUpperBound() * Math.random());
+                s.setStrength(s.getUpperBound() * s.getSource().getRandom().nextDouble());
             }
         }
     }
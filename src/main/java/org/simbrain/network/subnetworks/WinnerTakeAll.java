@@ -23,10 +23,10 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.groups.NeuronGroup;
 import org.simbrain.network.neuron_update_rules.LinearRule;
 import org.simbrain.util.UserParameter;
+import org.simbrain.util.math.SimbrainRandom;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * <b>WinnerTakeAll</b>.The neuron with the highest weighted input in a
@@ -71,11 +71,6 @@ public class WinnerTakeAll extends NeuronGroup {
     private double randomProb = .1;
     // todo; conditonal on userandom
 
-    /**
-     * Random number generator.
-     */
-    private static Random rand = new Random();
-
     /**
      * Copy constructor.
      *
@@ -118,10 +113,11 @@ public class WinnerTakeAll extends NeuronGroup {
 
     @Override
     public void update() {
+        addMatrixInputs();
         Neuron winner = getWinner();
         if (useRandom) {
-            if (Math.random() < randomProb) {
-                winner = getNeuronList().get(rand.nextInt(getNeuronList().size()));
+            if (getRandom().nextDouble() < randomProb) {
+                winner = getNeuronList().get(getRandom().nextInt(getNeuronList().size()));
             }
         }
         for (Neuron neuron : getNeuronList()) {
@@ -130,6 +126,7 @@ public class WinnerTakeAll extends NeuronGroup {
             } else {
                 neuron.setActivation(loseValue);
             }
+            neuron.advanceDelayedInput();
         }
     }
 
@@ -139,7 +136,7 @@ public class WinnerTakeAll extends NeuronGroup {
      * @return winning neuron
      */
     public Neuron getWinner() {
-        return getWinner(getNeuronList());
+        return getWinner(getNeuronList(), false, getRandom());
     }
 
     /**
@@ -155,7 +152,8 @@ public class WinnerTakeAll extends NeuronGroup {
 
     /**
      * Returns the neuron in the provided list with the greatest net input or
-     * activation (or a randomly chosen neuron among those that "win").
+     * activation (or a randomly chosen neuron among those that "win",
+     * drawn from {@link SimbrainRandom#current()}).
      *
      * @param neuronList     the list to check
      * @param useActivations if true, use activations instead of net input to
@@ -163,6 +161,20 @@ public class WinnerTakeAll extends NeuronGroup {
      * @return the neuron with the highest net input
      */
     public static Neuron getWinner(List<Neuron> neuronList, boolean useActivations) {
+        return getWinner(neuronList, useActivations, SimbrainRandom.current());
+    }
+
+    /**
+     * Returns the neuron in the provided list with the greatest net input or
+     * activation, breaking ties with the given random stream.
+     *
+     * @param neuronList     the list to check
+     * @param useActivations if true, use activations instead of net input to
+     *                       determine winner
+     * @param random         stream used to choose among tied neurons
+     * @return the neuron with the highest net input
+     */
+    public static Neuron getWinner(List<Neuron> neuronList, boolean useActivations, SimbrainRandom random) {
 
         if (neuronList.isEmpty()) {
             return null;
@@ -185,7 +197,7 @@ public class WinnerTakeAll extends NeuronGroup {
         if (winners.size() == 1) {
             return winner;
         } else {
-            return winners.get(rand.nextInt(winners.size()));
+            return winners.get(random.nextInt(winners.size()));
         }
 
     }
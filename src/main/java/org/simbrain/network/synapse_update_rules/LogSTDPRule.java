@@ -94,7 +94,7 @@ public class LogSTDPRule extends STDPRule {
         final double timeStep = synapse.getNetwork().getTimeStep();
         //        final double delay = synapse.getDelay() * timeStep;
         //        if (synapse.getStrength() >= 0) {
-        delta_t = (src.getLastSpikeTime()) - (tar.getLastSpikeTime());
+        delta_t = (src.getLastSpikeTime(synapse.getSource())) - (tar.getLastSpikeTime(synapse.getTarget()));
         //        } else {
         //        	delta_t = tar.getLastSpikeTime()
         //        			- (src.getLastSpikeTime());
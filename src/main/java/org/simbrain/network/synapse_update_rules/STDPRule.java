@@ -121,8 +121,8 @@ public class STDPRule extends SynapseUpdateRule {
             try {
 
                 final double delta_t = ((((SpikingNeuronUpdateRule) synapse.getSource().getUpdateRule())
-                        .getLastSpikeTime())
-                        - ((SpikingNeuronUpdateRule) synapse.getTarget().getUpdateRule()).getLastSpikeTime())
+                        .getLastSpikeTime(synapse.getSource()))
+                        - ((SpikingNeuronUpdateRule) synapse.getTarget().getUpdateRule()).getLastSpikeTime(synapse.getTarget()))
                         * (hebbian ? 1 : -1);
                 if (delta_t < 0) {
                     delta_w = W_plus * Math.exp(delta_t / tau_plus) * learningRate;
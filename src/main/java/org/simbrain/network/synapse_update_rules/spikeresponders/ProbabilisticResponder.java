@@ -58,7 +58,7 @@ public class ProbabilisticResponder extends SpikeResponder {
     @Override
     public void update(Synapse s) {
         if (s.getSource().isSpike()) {
-            if (Math.random() > (1 - activationProbability)) {
+            if (s.getTarget().getRandom().nextDouble() > (1 - activationProbability)) {
                 value = responseValue * s.getStrength();
             } else {
                 value = 0;
@@ -28,10 +28,10 @@ import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
 import org.simbrain.network.subnetworks.BackpropNetwork;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.Utils;
+import org.simbrain.util.math.SimbrainRandom;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 /**
@@ -231,7 +231,7 @@ public class BackpropTrainer extends IterableTrainer {
         if (updateMethod == UpdateMethod.EPOCH) {
             mse = trainRows(0, numTrainingExamples);
         } else if (updateMethod == UpdateMethod.STOCHASTIC) {
-            int rowNum = ThreadLocalRandom.current().nextInt(numTrainingExamples);
+            int rowNum = SimbrainRandom.current().nextInt(numTrainingExamples);
             mse = trainRow(rowNum);
         } else if (updateMethod == UpdateMethod.SINGLE) {
             mse = trainRow(getIteration() % numTrainingExamples);
@@ -405,9 +405,10 @@ public class BackpropTrainer extends IterableTrainer {
         net.getWeightMatrixList().forEach(WeightMatrix::randomize);
         // Randomize biases
         // TODO: Move randomization of ndarrays to utility method
+        SimbrainRandom random = SimbrainRandom.current();
         for (int kk = 0; kk < biases.size(); ++kk) {
             for (int ii = 0; ii < biases.get(kk).length(); ii++) {
-                biases.get(kk).putScalar(ii, (Math.random() * 0.1) - 0.05);
+                biases.get(kk).putScalar(ii, (random.nextDouble() * 0.1) - 0.05);
             }
         }
     }
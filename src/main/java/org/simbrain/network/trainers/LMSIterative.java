@@ -84,7 +84,7 @@ public class LMSIterative extends IterableTrainer {
         for (Neuron neuron : outputs) {
             neuron.clear(); // Cleared output nodes look nicer in the GUI
             if (neuron.getUpdateRule() instanceof BiasedUpdateRule) {
-                ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(Math.random());
+                ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(neuron.getRandom().nextDouble());
             }
         }
         // network.getWeightMatrixList().forEach(WeightMatrix::randomize);
@@ -0,0 +1,577 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.events.NetworkEvents;
+import org.simbrain.network.groups.NeuronCollection;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule;
+import org.simbrain.network.synapse_update_rules.spikeresponders.NonResponder;
+import org.simbrain.util.math.SquashingFunctionEnum;
+
+import java.beans.PropertyChangeListener;
+import java.util.*;
+
+/**
+ * A buffered update that runs on a flat, array-based copy of the network
+ * instead of walking the object graph. The first time it is invoked (and
+ * whenever the structure of the network changes) neurons are laid out in
+ * contiguous arrays and every fan-in is stored in compressed sparse row form,
+ * so that one update is a tight loop over primitive arrays.
+ * <p>
+ * Only networks made of loose neurons and plain {@link NeuronGroup}s using
+ * noiseless {@link LinearRule} or {@link SigmoidalRule} neurons, connected by
+ * static (or frozen), undelayed, non-spiking synapses can be compiled. Anything
+ * else (spiking rules, delays, learning, neuron arrays, weight matrices,
+ * subnetworks, input mode or recording) causes this action to fall back to
+ * {@link Network#bufferedUpdate()}, so it always produces the same results as
+ * {@link BufferedUpdate}, including the order in which neuron groups are
+ * applied.
+ * <p>
+ * Activations are written back to the neurons after every update by default,
+ * so couplings and the GUI see current values. Headless runs can turn that off
+ * with {@link #setSyncEveryUpdate(boolean)}, in which case values are only
+ * written back when the network is about to be redrawn.
+ * <p>
+ * Structural changes, new update rules and changed weights are detected
+ * automatically. Edits that fire no events (e.g. changing the slope of a rule
+ * in place) require a call to {@link #invalidate()}. The listeners this relies
+ * on are removed when the action is removed from the network.
+ */
+public class CompiledBufferedUpdate implements NetworkUpdateAction {
+
+    /**
+     * Rule code for {@link LinearRule} neurons.
+     */
+    private static final byte LINEAR = 0;
+
+    /**
+     * Rule code for {@link SigmoidalRule} neurons.
+     */
+    private static final byte SIGMOIDAL = 1;
+
+    /**
+     * Reference to network to update.
+     */
+    private final Network network;
+
+    /**
+     * If true activations are copied back into the neurons after every update,
+     * otherwise only when the network is redrawn.
+     */
+    private boolean syncEveryUpdate = true;
+
+    /**
+     * False when the compiled representation must be rebuilt before the next
+     * update.
+     */
+    private transient volatile boolean compiled;
+
+    /**
+     * True if the current network cannot be compiled, in which case the
+     * ordinary buffered update is used.
+     */
+    private transient boolean fallback;
+
+    /**
+     * True if the last compile fell back because a group was in input mode or
+     * recording.
+     */
+    private transient boolean dynamicFallback;
+
+    /**
+     * True when the arrays hold values the neurons have not seen yet.
+     */
+    private transient boolean dirty;
+
+    /**
+     * Network listeners registered by this action, or null if it is not
+     * listening (e.g. after being removed from the network).
+     */
+    private transient List<PropertyChangeListener> networkListeners;
+
+    /**
+     * Neurons and synapses whose events are being listened to, with the
+     * listeners, so they can be removed again.
+     */
+    private transient Map<Neuron, PropertyChangeListener> neuronListeners;
+    private transient Map<Synapse, PropertyChangeListener[]> synapseListeners;
+
+    /**
+     * Cheap summary of the network structure at compile time, used to catch
+     * changes that do not fire network level events.
+     */
+    private transient long structureSignature;
+
+    /**
+     * Neurons in compiled order: loose neurons first, then each neuron group.
+     */
+    private transient Neuron[] neurons;
+
+    /**
+     * Loose neurons occupy [0, looseEnd).
+     */
+    private transient int looseEnd;
+
+    /**
+     * End index (exclusive) of each neuron group, in update order.
+     */
+    private transient int[] groupEnds;
+
+    private transient double[] activations;
+    private transient double[] buffers;
+    private transient double[] inputs;
+    private transient boolean[] clamped;
+
+    private transient byte[] ruleCodes;
+    private transient double[] slopes;
+    private transient double[] biases;
+    private transient double[] upperBounds;
+    private transient double[] lowerBounds;
+    private transient boolean[] clipping;
+    private transient SquashingFunctionEnum[] squashFunctions;
+
+    /**
+     * Fan-in of neuron i is stored at [rowPointers[i], rowPointers[i+1]).
+     */
+    private transient int[] rowPointers;
+    private transient int[] sourceIndices;
+    private transient double[] weights;
+
+    /**
+     * Construct the update action.
+     *
+     * @param network the network to update
+     */
+    public CompiledBufferedUpdate(Network network) {
+        this.network = network;
+        init();
+    }
+
+    /**
+     * Listen for structural changes. Called on construction and after
+     * deserialization.
+     */
+    public void init() {
+        compiled = false;
+        neuronListeners = new WeakHashMap<>();
+        synapseListeners = new WeakHashMap<>();
+        attach();
+    }
+
+    /**
+     * Start listening to the network. When this action is removed from the
+     * network (or replaced), pending values are written back and all
+     * listeners are removed; they are added again if the action is invoked
+     * after that.
+     */
+    private void attach() {
+        NetworkEvents events = network.getEvents();
+        networkListeners = Arrays.asList(
+                events.onModelAdded(m -> invalidate()),
+                events.onModelRemoved(m -> invalidate()),
+                events.onUpdateActionsChanged(() -> {
+                    if (!network.getUpdateManager().getActionList().contains(this)) {
+                        detach();
+                    }
+                }));
+    }
+
+    /**
+     * Write back pending values and remove every listener this action has
+     * registered.
+     */
+    private void detach() {
+        if (networkListeners == null) {
+            return;
+        }
+        if (dirty) {
+            writeBack();
+        }
+        for (PropertyChangeListener listener : networkListeners) {
+            network.getEvents().removeHandler(listener);
+        }
+        networkListeners = null;
+        neuronListeners.forEach((neuron, listener) -> neuron.getEvents().removeHandler(listener));
+        neuronListeners.clear();
+        synapseListeners.forEach((synapse, listeners) -> {
+            for (PropertyChangeListener listener : listeners) {
+                synapse.getEvents().removeHandler(listener);
+            }
+        });
+        synapseListeners.clear();
+        compiled = false;
+    }
+
+    /**
+     * Force the network to be recompiled before the next update.
+     */
+    public void invalidate() {
+        compiled = false;
+    }
+
+    @Override
+    public void invoke() {
+        if (networkListeners == null) {
+            attach();
+        }
+        if (!compiled || structureSignature != computeSignature()
+                || dynamicFallback != hasDynamicFallbackCondition()) {
+            if (dirty) {
+                writeBack();
+            }
+            compile();
+        }
+        if (fallback) {
+            network.bufferedUpdate();
+            network.clearInputs();
+            return;
+        }
+        gather();
+        compute();
+        dirty = true;
+        if (syncEveryUpdate || network.isRedrawTime()) {
+            writeBack();
+        }
+    }
+
+    /**
+     * Copy external state (inputs, clamping and, if the neurons are
+     * authoritative, activations) from the neurons into the arrays, and clear
+     * the neuron inputs as {@link BufferedUpdate} does.
+     */
+    private void gather() {
+        for (int i = 0; i < neurons.length; i++) {
+            Neuron neuron = neurons[i];
+            clamped[i] = neuron.isClamped();
+            // Clamped neurons are never written back, so their own value is always current
+            if (!dirty || clamped[i]) {
+                activations[i] = neuron.getActivation();
+            }
+            inputs[i] = neuron.getInputValue();
+            neuron.setInputValue(0);
+        }
+    }
+
+    /**
+     * One buffered update. Loose neurons see the old values of everything and
+     * are applied last; each neuron group is applied as soon as it is
+     * computed, matching {@link Network#bufferedUpdate()}.
+     */
+    private void compute() {
+        computeRange(0, looseEnd);
+        int start = looseEnd;
+        for (int end : groupEnds) {
+            computeRange(start, end);
+            applyRange(start, end);
+            start = end;
+        }
+        applyRange(0, looseEnd);
+    }
+
+    private void computeRange(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (clamped[i]) {
+                continue;
+            }
+            double sum = inputs[i];
+            for (int k = rowPointers[i], last = rowPointers[i + 1]; k < last; k++) {
+                sum += weights[k] * activations[sourceIndices[k]];
+            }
+            if (ruleCodes[i] == LINEAR) {
+                double val = slopes[i] * sum + biases[i];
+                if (clipping[i]) {
+                    val = clip(val, i);
+                }
+                buffers[i] = val;
+            } else {
+                buffers[i] = squashFunctions[i].valueOf(sum + biases[i], upperBounds[i], lowerBounds[i], slopes[i]);
+            }
+        }
+    }
+
+    private void applyRange(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (clamped[i]) {
+                continue;
+            }
+            // Linear neurons are clippable, so Neuron#setActivation always clips them
+            activations[i] = ruleCodes[i] == LINEAR ? clip(buffers[i], i) : buffers[i];
+        }
+    }
+
+    private double clip(double val, int i) {
+        if (val > upperBounds[i]) {
+            return upperBounds[i];
+        } else if (val < lowerBounds[i]) {
+            return lowerBounds[i];
+        }
+        return val;
+    }
+
+    /**
+     * Copy buffers and activations back into the neurons, firing the usual
+     * activation change events.
+     */
+    private void writeBack() {
+        for (int i = 0; i < neurons.length; i++) {
+            if (clamped[i]) {
+                continue;
+            }
+            neurons[i].setBuffer(buffers[i]);
+            neurons[i].setActivation(activations[i]);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Conditions that can change without any event being fired. These are
+     * checked on every update and are cheap (proportional to the number of
+     * groups).
+     */
+    private boolean hasDynamicFallbackCondition() {
+        // Input from matrix mode synapse groups is not in the fan-ins
+        if (network.getUpdateManager().hasMatrixSynapseGroups()) {
+            return true;
+        }
+        for (NeuronGroup ng : network.getNeuronGroups()) {
+            if (ng.isInputMode() || ng.getActivationRecorder().isRecording() || ng.getUpdatePeriod() > 1) {
+                return true;
+            }
+        }
+        for (NeuronCollection nc : network.getNeuronCollectionSet()) {
+            if (nc.isInputMode() || nc.getActivationRecorder().isRecording()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long computeSignature() {
+        long signature = network.getLooseNeurons().size();
+        signature = signature * 31 + network.getLooseSynapses().size();
+        for (NeuronGroup ng : network.getNeuronGroups()) {
+            signature = signature * 31 + ng.size();
+        }
+        for (SynapseGroup sg : network.getSynapseGroups()) {
+            signature = signature * 31 + sg.size();
+        }
+        return signature;
+    }
+
+    /**
+     * Lay the network out in arrays, or decide that it can't be compiled.
+     */
+    private void compile() {
+        compiled = true;
+        structureSignature = computeSignature();
+        dynamicFallback = hasDynamicFallbackCondition();
+        fallback = dynamicFallback || !canCompileModels();
+        if (!fallback) {
+            fallback = !buildArrays();
+        }
+        if (fallback) {
+            neurons = null;
+            activations = null;
+            buffers = null;
+            inputs = null;
+            clamped = null;
+            ruleCodes = null;
+            slopes = null;
+            biases = null;
+            upperBounds = null;
+            lowerBounds = null;
+            clipping = null;
+            squashFunctions = null;
+            rowPointers = null;
+            sourceIndices = null;
+            weights = null;
+        }
+    }
+
+    private boolean canCompileModels() {
+        if (!network.getNeuronArrays().isEmpty() || !network.getWeightMatrices().isEmpty()
+                || !network.getMultiLayerNetworks().isEmpty() || !network.getSubnetworks().isEmpty()) {
+            return false;
+        }
+        for (NeuronGroup ng : network.getNeuronGroups()) {
+            // Subclasses (winner take all, SOM, etc.) have their own dynamics
+            if (ng.getClass() != NeuronGroup.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean buildArrays() {
+        List<Neuron> flat = new ArrayList<>(network.getLooseNeurons());
+        looseEnd = flat.size();
+        groupEnds = new int[network.getNeuronGroups().size()];
+        int g = 0;
+        for (NeuronGroup ng : network.getNeuronGroups()) {
+            flat.addAll(ng.getNeuronList());
+            groupEnds[g++] = flat.size();
+        }
+        int n = flat.size();
+        neurons = flat.toArray(new Neuron[0]);
+        Map<Neuron, Integer> index = new IdentityHashMap<>(n);
+        for (int i = 0; i < n; i++) {
+            index.put(neurons[i], i);
+        }
+
+        activations = new double[n];
+        buffers = new double[n];
+        inputs = new double[n];
+        clamped = new boolean[n];
+        ruleCodes = new byte[n];
+        slopes = new double[n];
+        biases = new double[n];
+        upperBounds = new double[n];
+        lowerBounds = new double[n];
+        clipping = new boolean[n];
+        squashFunctions = new SquashingFunctionEnum[n];
+        rowPointers = new int[n + 1];
+
+        int numSynapses = 0;
+        for (int i = 0; i < n; i++) {
+            Neuron neuron = neurons[i];
+            if (!compileRule(neuron.getUpdateRule(), i)) {
+                return false;
+            }
+            activations[i] = neuron.getActivation();
+            buffers[i] = neuron.getBuffer();
+            watch(neuron);
+            for (Synapse s : neuron.getFanIn()) {
+                if (!canCompile(s) || !index.containsKey(s.getSource())) {
+                    return false;
+                }
+                watch(s);
+                numSynapses++;
+            }
+        }
+
+        sourceIndices = new int[numSynapses];
+        weights = new double[numSynapses];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            rowPointers[i] = k;
+            for (Synapse s : neurons[i].getFanIn()) {
+                // Disabled synapses contribute nothing, just like in Synapse#calcPSR
+                if (s.isEnabled()) {
+                    sourceIndices[k] = index.get(s.getSource());
+                    weights[k] = s.getStrength();
+                    k++;
+                }
+            }
+        }
+        rowPointers[n] = k;
+        dirty = false;
+        return true;
+    }
+
+    private boolean compileRule(NeuronUpdateRule rule, int i) {
+        if (rule.getClass() == LinearRule.class) {
+            LinearRule linear = (LinearRule) rule;
+            if (linear.getAddNoise()) {
+                return false;
+            }
+            ruleCodes[i] = LINEAR;
+            slopes[i] = linear.getSlope();
+            biases[i] = linear.getBias();
+            upperBounds[i] = linear.getUpperBound();
+            lowerBounds[i] = linear.getLowerBound();
+            clipping[i] = linear.isClipped();
+            return true;
+        } else if (rule.getClass() == SigmoidalRule.class) {
+            SigmoidalRule sigmoidal = (SigmoidalRule) rule;
+            if (sigmoidal.getAddNoise()) {
+                return false;
+            }
+            ruleCodes[i] = SIGMOIDAL;
+            slopes[i] = sigmoidal.getSlope();
+            biases[i] = sigmoidal.getBias();
+            upperBounds[i] = sigmoidal.getUpperBound();
+            lowerBounds[i] = sigmoidal.getLowerBound();
+            squashFunctions[i] = sigmoidal.getSquashFunctionType();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean canCompile(Synapse s) {
+        return s.getDelay() == 0
+                && s.getSpikeResponder() instanceof NonResponder
+                && (s.isFrozen() || s.getLearningRule() instanceof StaticSynapseRule);
+    }
+
+    private void watch(Neuron neuron) {
+        if (!neuronListeners.containsKey(neuron)) {
+            neuronListeners.put(neuron, neuron.getEvents().onUpdateRuleChange((o, n) -> invalidate()));
+        }
+    }
+
+    private void watch(Synapse synapse) {
+        if (!synapseListeners.containsKey(synapse)) {
+            synapseListeners.put(synapse, new PropertyChangeListener[] {
+                    synapse.getEvents().onStrengthUpdate(this::invalidate),
+                    synapse.getEvents().onLearningRuleUpdate((o, n) -> invalidate())});
+        }
+    }
+
+    /**
+     * @return true if the current network is being updated through the
+     * ordinary buffered update rather than the compiled arrays
+     */
+    public boolean isFallback() {
+        if (!compiled) {
+            compile();
+        }
+        return fallback;
+    }
+
+    public boolean isSyncEveryUpdate() {
+        return syncEveryUpdate;
+    }
+
+    public void setSyncEveryUpdate(boolean syncEveryUpdate) {
+        if (!syncEveryUpdate && dirty) {
+            writeBack();
+        }
+        this.syncEveryUpdate = syncEveryUpdate;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Compiled buffered update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Buffered update of linear and sigmoidal networks using flat arrays";
+    }
+
+}
@@ -297,6 +297,12 @@ public class ConcurrentBufferedUpdate implements NetworkUpdateAction {
 
     @Override
     public void invoke() {
+        if (network.getUpdateManager().requiresGroupUpdates()) {
+            // Groups with their own update period, or with matrix input, are updated by their update method
+            network.bufferedUpdate();
+            network.clearInputs();
+            return;
+        }
         invocationThread = Thread.currentThread();
         // Update input neurons accordingly
         for (int i = 0, n = inputGroups.size(); i < n; i++) {
@@ -0,0 +1,480 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.synapse_update_rules.spikeresponders.ConvolvedJumpAndDecay;
+import org.simbrain.network.synapse_update_rules.spikeresponders.JumpAndDecay;
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Buffered update for spiking networks in which synapses are only touched
+ * when their source neuron spikes.
+ * <p>
+ * Synapses using {@link JumpAndDecay} or {@link ConvolvedJumpAndDecay} decay
+ * toward a baseline by the same factor every step, so the sum of their
+ * post-synaptic responses onto a target can be decayed as a single number.
+ * Each update therefore decays one sum per target (per distinct time constant
+ * and baseline), and then walks only the fan-out of neurons that spiked on
+ * the previous update, correcting the sums for the synapses that jumped. The
+ * value of an individual synapse is computed in closed form from the time of
+ * its last spike when it is needed. Other synapses (other responders,
+ * non-spiking sources, delays, disabled synapses, and all synapses onto
+ * neurons whose rule reads its fan-in itself, see {@link
+ * org.simbrain.network.core.NeuronUpdateRule#readsFanIn()}) are computed
+ * every step as usual.
+ * <p>
+ * All neurons are updated and then all are applied, as in {@link
+ * ForkJoinBufferedUpdate}. Post-synaptic responses keep decaying while a
+ * target is refractory, and {@link Synapse#getPsr()} of an event-driven
+ * synapse is only refreshed when it spikes or when this action is removed.
+ * <p>
+ * Networks with models that have their own update logic (neuron arrays,
+ * weight matrices, subnetworks, winner take all and other neuron group
+ * subclasses) are updated with {@link Network#bufferedUpdate()} instead; see
+ * {@link org.simbrain.network.core.NetworkUpdateManager#hasCustomModelUpdates()}.
+ */
+public class EventDrivenSpikeUpdate implements NetworkUpdateAction {
+
+    /**
+     * Reference to network to update.
+     */
+    private final Network network;
+
+    /**
+     * False when the network must be re-analyzed before the next update.
+     */
+    private transient boolean compiled;
+
+    /**
+     * Structural version of the network when compiled.
+     */
+    private transient long modelVersion;
+
+    /**
+     * Time step when compiled. Decay factors depend on it.
+     */
+    private transient double timeStep;
+
+    /**
+     * Number of updates since compiling.
+     */
+    private transient long step;
+
+    /**
+     * Neurons updated by this action: loose neurons then group neurons.
+     */
+    private transient Neuron[] neurons;
+
+    /**
+     * Supplies each neuron's synaptic input while an update runs.
+     */
+    private transient ToDoubleFunction<Neuron>[] inputSources;
+
+    private transient NeuronGroup[] groups;
+    private transient boolean[] inputModes;
+
+    /**
+     * Whether each neuron's rule read its fan-in when compiled. The synapses
+     * onto those neurons are all passive.
+     */
+    private transient boolean[] fanInReaders;
+
+    /**
+     * Time constant and baseline of each bucket of event-driven synapses, and
+     * per target the summed response and number of synapses in that bucket.
+     */
+    private transient double[] bucketBaseline;
+    private transient double[] bucketDecay;
+    private transient double[][] bucketSums;
+    private transient int[][] bucketCounts;
+
+    /**
+     * Event-driven synapses, with their target index, bucket, whether the
+     * jump is added (convolved) or replaces the response, and their response
+     * value at the step of their last spike.
+     */
+    private transient Synapse[] eventSynapses;
+    private transient int[] eventTargets;
+    private transient int[] eventBuckets;
+    private transient boolean[] convolved;
+    private transient double[] lastValues;
+    private transient long[] lastSteps;
+
+    /**
+     * Event-driven synapses of source neuron i are eventSynapses[fanOut[k]]
+     * for k in [fanOutPointers[i], fanOutPointers[i+1]).
+     */
+    private transient int[] fanOutPointers;
+    private transient int[] fanOut;
+
+    /**
+     * Synapses onto target i that are updated every step are
+     * passiveSynapses[k] for k in [passivePointers[i], passivePointers[i+1]).
+     */
+    private transient int[] passivePointers;
+    private transient Synapse[] passiveSynapses;
+
+    /**
+     * Construct the update action.
+     *
+     * @param network the network to update
+     */
+    public EventDrivenSpikeUpdate(Network network) {
+        this.network = network;
+        init();
+    }
+
+    /**
+     * Initialize after construction or deserialization. When this action is
+     * removed from the network, the responses it has been tracking are written
+     * back to the synapses so that another update action can take over.
+     */
+    public void init() {
+        compiled = false;
+        network.getEvents().onUpdateActionsChanged(() -> {
+            if (compiled && !network.getUpdateManager().getActionList().contains(this)) {
+                materialize();
+                compiled = false;
+            }
+        });
+    }
+
+    @Override
+    public void invoke() {
+        if (network.getUpdateManager().requiresGroupUpdates()
+                || network.getUpdateManager().hasCustomModelUpdates()) {
+            // Models with their own update logic, update period, or matrix input are updated by their update method
+            if (compiled) {
+                materialize();
+                compiled = false;
+            }
+            network.bufferedUpdate();
+            network.clearInputs();
+            return;
+        }
+        if (!compiled || modelVersion != network.getModelVersion() || timeStep != network.getTimeStep()
+                || inputModesChanged() || fanInReadersChanged()) {
+            if (compiled) {
+                materialize();
+            }
+            compile();
+        }
+        propagateSpikes();
+
+        for (int i = 0; i < groups.length; i++) {
+            if (inputModes[i]) {
+                groups[i].updateInputs();
+            }
+        }
+        for (int i = 0; i < neurons.length; i++) {
+            neurons[i].setSynapticInputSource(inputSources[i]);
+        }
+        try {
+            for (Neuron neuron : neurons) {
+                neuron.update();
+            }
+        } finally {
+            for (Neuron neuron : neurons) {
+                neuron.setSynapticInputSource(null);
+            }
+        }
+        for (Neuron neuron : neurons) {
+            neuron.setToBufferVals();
+            neuron.setInputValue(0);
+        }
+        for (NeuronGroup group : groups) {
+            if (group.getActivationRecorder().isRecording()) {
+                group.getActivationRecorder().writeActsToFile();
+            }
+        }
+    }
+
+    /**
+     * Advance all synaptic responses by one step: decay every per-target sum,
+     * then apply the spikes emitted on the previous update.
+     */
+    private void propagateSpikes() {
+        step++;
+        for (int k = 0; k < bucketSums.length; k++) {
+            double decay = bucketDecay[k];
+            double drift = (1 - decay) * bucketBaseline[k];
+            double[] sums = bucketSums[k];
+            int[] counts = bucketCounts[k];
+            for (int j = 0; j < sums.length; j++) {
+                sums[j] = decay * sums[j] + counts[j] * drift;
+            }
+        }
+        for (int i = 0; i < neurons.length; i++) {
+            if (!neurons[i].isSpike()) {
+                continue;
+            }
+            for (int k = fanOutPointers[i]; k < fanOutPointers[i + 1]; k++) {
+                spike(fanOut[k]);
+            }
+        }
+    }
+
+    /**
+     * Apply a spike to event-driven synapse e on the current step.
+     */
+    private void spike(int e) {
+        int k = eventBuckets[e];
+        double decay = bucketDecay[k];
+        double baseline = bucketBaseline[k];
+        double previous = valueAt(e, step - 1);
+        // What the bulk decay above assumed this synapse would do
+        double decayed = decay * previous + (1 - decay) * baseline;
+        Synapse s = eventSynapses[e];
+        double jump = getJumpHeight(s.getSpikeResponder()) * s.getStrength();
+        double next = convolved[e] ? previous + jump : jump;
+        bucketSums[k][eventTargets[e]] += next - decayed;
+        lastValues[e] = next;
+        lastSteps[e] = step;
+        s.setPsr(next);
+    }
+
+    /**
+     * Response of event-driven synapse e at a given step, in closed form from
+     * its value at its last spike.
+     */
+    private double valueAt(int e, long atStep) {
+        int k = eventBuckets[e];
+        double baseline = bucketBaseline[k];
+        return baseline + (lastValues[e] - baseline) * Math.pow(bucketDecay[k], atStep - lastSteps[e]);
+    }
+
+    /**
+     * Synaptic input to neuron i on the current step.
+     */
+    private double synapticInput(int i) {
+        double sum = 0;
+        for (double[] sums : bucketSums) {
+            sum += sums[i];
+        }
+        for (int k = passivePointers[i]; k < passivePointers[i + 1]; k++) {
+            sum += passiveSynapses[k].calcPSR();
+        }
+        return sum;
+    }
+
+    /**
+     * Write the current response of every event-driven synapse back to the
+     * synapse, so that it is correct for code that reads it directly.
+     */
+    public void materialize() {
+        if (!compiled) {
+            return;
+        }
+        for (int e = 0; e < eventSynapses.length; e++) {
+            double value = valueAt(e, step);
+            eventSynapses[e].setPsr(value);
+            lastValues[e] = value;
+            lastSteps[e] = step;
+        }
+    }
+
+    private boolean inputModesChanged() {
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i].isInputMode() != inputModes[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fanInReadersChanged() {
+        for (int i = 0; i < neurons.length; i++) {
+            if (neurons[i].getUpdateRule().readsFanIn() != fanInReaders[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEventDriven(Synapse s) {
+        Class<?> responder = s.getSpikeResponder() == null ? null : s.getSpikeResponder().getClass();
+        return s.isEnabled() && s.getDelay() == 0
+                && (responder == JumpAndDecay.class || responder == ConvolvedJumpAndDecay.class);
+    }
+
+    private static double getJumpHeight(SpikeResponder responder) {
+        if (responder instanceof ConvolvedJumpAndDecay) {
+            return ((ConvolvedJumpAndDecay) responder).getJumpHeight();
+        }
+        return ((JumpAndDecay) responder).getJumpHeight();
+    }
+
+    private static double getTimeConstant(SpikeResponder responder) {
+        if (responder instanceof ConvolvedJumpAndDecay) {
+            return ((ConvolvedJumpAndDecay) responder).getTimeConstant();
+        }
+        return ((JumpAndDecay) responder).getTimeConstant();
+    }
+
+    private static double getBaseLine(SpikeResponder responder) {
+        if (responder instanceof ConvolvedJumpAndDecay) {
+            return ((ConvolvedJumpAndDecay) responder).getBaseLine();
+        }
+        return ((JumpAndDecay) responder).getBaseLine();
+    }
+
+    /**
+     * Analyze the network: lay out neurons, sort synapses into event-driven
+     * and passive ones, and initialize the per-target sums from the current
+     * synapse responses.
+     */
+    @SuppressWarnings("unchecked")
+    private void compile() {
+        compiled = true;
+        modelVersion = network.getModelVersion();
+        timeStep = network.getTimeStep();
+        step = 0;
+
+        groups = network.getFlatNeuronGroupList().toArray(new NeuronGroup[0]);
+        inputModes = new boolean[groups.length];
+        Map<Neuron, Integer> index = new IdentityHashMap<>();
+        List<Neuron> flat = new ArrayList<>();
+        for (Neuron n : network.getLooseNeurons()) {
+            if (!index.containsKey(n)) {
+                index.put(n, flat.size());
+                flat.add(n);
+            }
+        }
+        for (int g = 0; g < groups.length; g++) {
+            inputModes[g] = groups[g].isInputMode();
+            if (inputModes[g]) {
+                continue;
+            }
+            for (Neuron n : groups[g].getNeuronList()) {
+                if (!index.containsKey(n)) {
+                    index.put(n, flat.size());
+                    flat.add(n);
+                }
+            }
+        }
+        neurons = flat.toArray(new Neuron[0]);
+        int n = neurons.length;
+        inputSources = new ToDoubleFunction[n];
+        for (int i = 0; i < n; i++) {
+            final int target = i;
+            inputSources[i] = neuron -> synapticInput(target);
+        }
+
+        // Sort afferent synapses into event-driven and passive ones. A rule that
+        // reads the fan-in computes each synapse's response itself, so none of
+        // its synapses can be event-driven.
+        List<Synapse> events = new ArrayList<>();
+        List<Integer> eventTargetList = new ArrayList<>();
+        List<Synapse> passive = new ArrayList<>();
+        passivePointers = new int[n + 1];
+        fanInReaders = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            passivePointers[i] = passive.size();
+            fanInReaders[i] = neurons[i].getUpdateRule().readsFanIn();
+            for (Synapse s : neurons[i].getFanIn()) {
+                if (!fanInReaders[i] && isEventDriven(s) && index.containsKey(s.getSource())) {
+                    events.add(s);
+                    eventTargetList.add(i);
+                } else {
+                    passive.add(s);
+                }
+            }
+        }
+        passivePointers[n] = passive.size();
+        passiveSynapses = passive.toArray(new Synapse[0]);
+
+        // Buckets of synapses sharing a time constant and baseline
+        int numEvents = events.size();
+        eventSynapses = events.toArray(new Synapse[0]);
+        eventTargets = new int[numEvents];
+        eventBuckets = new int[numEvents];
+        convolved = new boolean[numEvents];
+        lastValues = new double[numEvents];
+        lastSteps = new long[numEvents];
+        List<double[]> buckets = new ArrayList<>();
+        for (int e = 0; e < numEvents; e++) {
+            SpikeResponder responder = eventSynapses[e].getSpikeResponder();
+            double tau = getTimeConstant(responder);
+            double baseline = getBaseLine(responder);
+            int k = 0;
+            while (k < buckets.size() && (buckets.get(k)[0] != tau || buckets.get(k)[1] != baseline)) {
+                k++;
+            }
+            if (k == buckets.size()) {
+                buckets.add(new double[]{tau, baseline});
+            }
+            eventTargets[e] = eventTargetList.get(e);
+            eventBuckets[e] = k;
+            convolved[e] = responder instanceof ConvolvedJumpAndDecay;
+            lastValues[e] = eventSynapses[e].getPsr();
+        }
+        bucketBaseline = new double[buckets.size()];
+        bucketDecay = new double[buckets.size()];
+        bucketSums = new double[buckets.size()][n];
+        bucketCounts = new int[buckets.size()][n];
+        for (int k = 0; k < buckets.size(); k++) {
+            bucketBaseline[k] = buckets.get(k)[1];
+            bucketDecay[k] = 1 - timeStep / buckets.get(k)[0];
+        }
+        for (int e = 0; e < numEvents; e++) {
+            bucketSums[eventBuckets[e]][eventTargets[e]] += lastValues[e];
+            bucketCounts[eventBuckets[e]][eventTargets[e]]++;
+        }
+
+        // Event-driven fan-out of each source, as indices into eventSynapses
+        fanOutPointers = new int[n + 1];
+        for (int e = 0; e < numEvents; e++) {
+            fanOutPointers[index.get(eventSynapses[e].getSource()) + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            fanOutPointers[i + 1] += fanOutPointers[i];
+        }
+        fanOut = new int[numEvents];
+        int[] fill = Arrays.copyOf(fanOutPointers, n);
+        for (int e = 0; e < numEvents; e++) {
+            fanOut[fill[index.get(eventSynapses[e].getSource())]++] = e;
+        }
+    }
+
+    /**
+     * @return number of synapses that are only touched when their source spikes
+     */
+    public int getNumEventDrivenSynapses() {
+        return compiled ? eventSynapses.length : 0;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Event-driven spike update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Buffered update of all neurons, propagating spikes only along the fan-out of neurons that spiked";
+    }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.events.NetworkEvents;
+import org.simbrain.network.groups.NeuronGroup;
+
+import java.beans.PropertyChangeListener;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel buffered update of all neurons in a network on a work-stealing
+ * {@link ForkJoinPool}. Neurons are split into contiguous chunks of roughly
+ * equal cost (one unit per neuron plus one per afferent synapse) and each
+ * update runs in two phases: every chunk computes buffers and updates its
+ * afferent synapses, then, once all chunks are joined, every chunk applies
+ * its buffers and clears its inputs. Joining the first phase is the barrier
+ * that keeps the update deterministic.
+ * <p>
+ * Chunks and tasks are built once and only rebuilt when the network reports
+ * a structural change, so a normal update allocates nothing. Unlike {@link
+ * ConcurrentBufferedUpdate} there is no collector thread and the invoking
+ * thread is never parked with wait/notify.
+ * <p>
+ * Neuron groups in input mode are updated from their input manager before the
+ * parallel phases and recording groups write their activations afterwards.
+ * Networks with models that have their own update logic (neuron arrays,
+ * weight matrices, subnetworks, winner take all and other neuron group
+ * subclasses) are updated with {@link Network#bufferedUpdate()} instead; see
+ * {@link org.simbrain.network.core.NetworkUpdateManager#hasCustomModelUpdates()}.
+ * <p>
+ * When the action is removed from the network its pool is shut down and its
+ * listeners are removed.
+ */
+public class ForkJoinBufferedUpdate implements NetworkUpdateAction {
+
+    /**
+     * Number of chunks per worker thread. More chunks than threads lets idle
+     * workers steal from busy ones when chunks are uneven.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Chunks are never smaller than this, so small networks are not split
+     * into tasks that cost more to schedule than to run.
+     */
+    private static final int MIN_CHUNK_COST = 2048;
+
+    /**
+     * Reference to network to update.
+     */
+    private final Network network;
+
+    /**
+     * Number of worker threads.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pool the chunks run on. Created lazily.
+     */
+    private transient ForkJoinPool pool;
+
+    /**
+     * Set when the network structure has changed and the chunks must be
+     * rebuilt.
+     */
+    private transient volatile boolean stale;
+
+    /**
+     * Number of neurons in groups when the chunks were built. Catches neurons
+     * added to groups, which do not fire network events.
+     */
+    private transient int neuronCount;
+
+    /**
+     * Neuron groups of the network (including those in subnetworks) at the
+     * time the chunks were built.
+     */
+    private transient NeuronGroup[] groups;
+
+    /**
+     * Input mode of each group when the chunks were built. Neurons in input
+     * groups are left out of the chunks.
+     */
+    private transient boolean[] inputModes;
+
+    /**
+     * Root task, which runs both phases.
+     */
+    private transient UpdateRoot root;
+
+    /**
+     * Network listeners registered by this action, or null if it is not
+     * listening (e.g. after being removed from the network).
+     */
+    private transient List<PropertyChangeListener> listeners;
+
+    /**
+     * Construct the update action.
+     *
+     * @param network the network to update
+     */
+    public ForkJoinBufferedUpdate(Network network) {
+        this.network = network;
+        init();
+    }
+
+    /**
+     * Listen for structural changes. Called on construction and after
+     * deserialization.
+     */
+    public void init() {
+        stale = true;
+        attach();
+    }
+
+    /**
+     * Start listening to the network. Listening stops when this action is
+     * removed from the network (or replaced), and starts again if it is
+     * invoked after that.
+     */
+    private void attach() {
+        NetworkEvents events = network.getEvents();
+        listeners = Arrays.asList(
+                events.onModelAdded(m -> stale = true),
+                events.onModelRemoved(m -> stale = true),
+                events.onUpdateActionsChanged(() -> {
+                    if (!network.getUpdateManager().getActionList().contains(this)) {
+                        detach();
+                    }
+                }));
+    }
+
+    /**
+     * Shut down the pool and remove the listeners.
+     */
+    private void detach() {
+        if (listeners == null) {
+            return;
+        }
+        for (PropertyChangeListener listener : listeners) {
+            network.getEvents().removeHandler(listener);
+        }
+        listeners = null;
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        stale = true;
+    }
+
+    @Override
+    public void invoke() {
+        if (listeners == null) {
+            attach();
+        }
+        if (network.getUpdateManager().requiresGroupUpdates()
+                || network.getUpdateManager().hasCustomModelUpdates()) {
+            // Models with their own update logic, update period, or matrix input are updated by their update method
+            network.bufferedUpdate();
+            network.clearInputs();
+            return;
+        }
+        if (stale || inputModesChanged() || neuronCount != countGroupNeurons()) {
+            partition();
+        }
+        for (int i = 0; i < groups.length; i++) {
+            if (inputModes[i]) {
+                groups[i].updateInputs();
+            }
+        }
+        root.reinitialize();
+        getPool().invoke(root);
+        for (NeuronGroup group : groups) {
+            if (group.getActivationRecorder().isRecording()) {
+                group.getActivationRecorder().writeActsToFile();
+            }
+        }
+    }
+
+    private boolean inputModesChanged() {
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i].isInputMode() != inputModes[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countGroupNeurons() {
+        int count = 0;
+        for (NeuronGroup group : groups) {
+            count += group.size();
+        }
+        return count;
+    }
+
+    /**
+     * Rebuild the chunks from the current network.
+     */
+    private void partition() {
+        stale = false;
+        groups = network.getFlatNeuronGroupList().toArray(new NeuronGroup[0]);
+        inputModes = new boolean[groups.length];
+        neuronCount = countGroupNeurons();
+
+        // Loose neurons first, then groups, so that chunks follow the layout of the network
+        Set<Neuron> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Neuron> flat = new ArrayList<>(network.getLooseNeurons().size() + neuronCount);
+        for (Neuron n : network.getLooseNeurons()) {
+            if (seen.add(n)) {
+                flat.add(n);
+            }
+        }
+        for (int i = 0; i < groups.length; i++) {
+            inputModes[i] = groups[i].isInputMode();
+            if (inputModes[i]) {
+                continue;
+            }
+            for (Neuron n : groups[i].getNeuronList()) {
+                if (seen.add(n)) {
+                    flat.add(n);
+                }
+            }
+        }
+        Neuron[] neurons = flat.toArray(new Neuron[0]);
+
+        long totalCost = 0;
+        for (Neuron n : neurons) {
+            totalCost += 1 + n.getFanIn().size();
+        }
+        long targetCost = Math.max(MIN_CHUNK_COST, totalCost / ((long) parallelism * CHUNKS_PER_THREAD) + 1);
+
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        long cost = 0;
+        for (int i = 0; i < neurons.length; i++) {
+            cost += 1 + neurons[i].getFanIn().size();
+            if (cost >= targetCost || i == neurons.length - 1) {
+                chunks.add(new Chunk(neurons, start, i + 1));
+                start = i + 1;
+                cost = 0;
+            }
+        }
+        root = new UpdateRoot(chunks);
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != parallelism) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the number of worker threads. Takes effect on the next update.
+     *
+     * @param parallelism number of threads, at least 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        stale = true;
+    }
+
+    /**
+     * @return the number of chunks the neurons are currently split into
+     */
+    public int getNumChunks() {
+        if (root == null || stale) {
+            partition();
+        }
+        return root.updateTasks.length;
+    }
+
+    @Override
+    public String toString() {
+        return "Fork/Join Buffered Update: " + parallelism + " threads";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Fork/Join Parallel Buffered Update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Parallel Buffered Update (All Neurons, work stealing)";
+    }
+
+    /**
+     * A contiguous range of neurons.
+     */
+    private static final class Chunk {
+
+        private final Neuron[] neurons;
+
+        private final int start;
+
+        private final int end;
+
+        Chunk(Neuron[] neurons, int start, int end) {
+            this.neurons = neurons;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * First phase: compute the buffers of a chunk and update its afferent
+     * synapses.
+     */
+    private static final class UpdateTask extends RecursiveAction {
+
+        private final Chunk chunk;
+
+        UpdateTask(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            Neuron[] neurons = chunk.neurons;
+            for (int i = chunk.start; i < chunk.end; i++) {
+                neurons[i].update();
+                neurons[i].updateFanIn();
+            }
+        }
+    }
+
+    /**
+     * Second phase: apply the buffers of a chunk and clear its inputs.
+     */
+    private static final class ApplyTask extends RecursiveAction {
+
+        private final Chunk chunk;
+
+        ApplyTask(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            Neuron[] neurons = chunk.neurons;
+            for (int i = chunk.start; i < chunk.end; i++) {
+                neurons[i].setToBufferVals();
+                neurons[i].setInputValue(0);
+            }
+        }
+    }
+
+    /**
+     * Runs the two phases, each of which is joined before moving on. All
+     * tasks are reinitialized rather than recreated between updates.
+     */
+    private static final class UpdateRoot extends RecursiveAction {
+
+        private final UpdateTask[] updateTasks;
+
+        private final ApplyTask[] applyTasks;
+
+        UpdateRoot(List<Chunk> chunks) {
+            updateTasks = new UpdateTask[chunks.size()];
+            applyTasks = new ApplyTask[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                updateTasks[i] = new UpdateTask(chunks.get(i));
+                applyTasks[i] = new ApplyTask(chunks.get(i));
+            }
+        }
+
+        @Override
+        protected void compute() {
+            for (UpdateTask task : updateTasks) {
+                task.reinitialize();
+            }
+            ForkJoinTask.invokeAll(updateTasks);
+            for (ApplyTask task : applyTasks) {
+                task.reinitialize();
+            }
+            ForkJoinTask.invokeAll(applyTasks);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.simbrain.network.util;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.groups.AbstractNeuronCollection;
 import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.util.SFileChooser;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -10,7 +11,11 @@ import java.io.IOException;
 import java.io.PrintWriter;
 
 /**
- * Manages recording activations or spike histories.
+ * Manages recording activations or spike histories. Recordings go to a text
+ * file, or, when the file has the extension {@link
+ * BinaryActivationWriter#FORMAT}, to a binary file written on a background
+ * thread (see {@link BinaryActivationWriter}), which is much faster for large
+ * collections and can be read back with {@link ActivationRecording}.
  */
 public class ActivationRecorder {
 
@@ -31,6 +36,16 @@ public class ActivationRecorder {
      */
     private PrintWriter valueWriter;
 
+    /**
+     * Writer used instead of {@link #valueWriter} for binary recordings.
+     */
+    private transient BinaryActivationWriter binaryWriter;
+
+    /**
+     * Whether binary recordings are compressed.
+     */
+    private boolean compressBinary;
+
     /**
      * Whether or not this group is in a state that allows recording.
      */
@@ -79,11 +94,13 @@ public class ActivationRecorder {
         recordAsSpikes = spikeRecord;
         recording = true;
         try {
-            if (valueWriter != null) {
-                valueWriter.close();
+            closeWriters();
+            if (BinaryActivationWriter.FORMAT.equals(SFileChooser.getExtension(outputFile))) {
+                binaryWriter = new BinaryActivationWriter(outputFile, nc.size(), compressBinary);
+            } else {
+                FileWriter fw = new FileWriter(outputFile);
+                valueWriter = new PrintWriter(fw);
             }
-            FileWriter fw = new FileWriter(outputFile);
-            valueWriter = new PrintWriter(fw);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -95,12 +112,25 @@ public class ActivationRecorder {
      * Halts recording of activations. Closes all involved output streams.
      */
     public void stopRecording() {
+        try {
+            closeWriters();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recording = false;
+        nc.getEvents().fireRecordingStopped();
+    }
+
+    private void closeWriters() throws IOException {
         if (valueWriter != null) {
             valueWriter.close();
             valueWriter = null;
         }
-        recording = false;
-        nc.getEvents().fireRecordingStopped();
+        if (binaryWriter != null) {
+            BinaryActivationWriter writer = binaryWriter;
+            binaryWriter = null;
+            writer.close();
+        }
     }
 
     /**
@@ -110,9 +140,14 @@ public class ActivationRecorder {
      * methods writes the activations to a file as spike trains in [neuron
      * id][spk time] couplets. Otherwise it writes the neurons' activation
      * values as a state matrix to the file. Flushes the output stream every
-     * {@link #FLUSH_FREQUENCY} invocations.
+     * {@link #FLUSH_FREQUENCY} invocations. Binary recordings always hold
+     * activations; they are copied and handed to the writer thread.
      */
     public void writeActsToFile() {
+        if (binaryWriter != null) {
+            binaryWriter.record(nc.getParentNetwork().getTime(), nc);
+            return;
+        }
         try {
             if (writeCounter >= FLUSH_FREQUENCY) {
                 valueWriter.flush();
@@ -161,6 +196,21 @@ public class ActivationRecorder {
         this.recording = recording;
     }
 
+    public boolean isCompressBinary() {
+        return compressBinary;
+    }
+
+    /**
+     * Set whether binary recordings started after this are compressed.
+     * Compression makes files smaller but takes more time on the writer
+     * thread.
+     *
+     * @param compressBinary whether to compress
+     */
+    public void setCompressBinary(boolean compressBinary) {
+        this.compressBinary = compressBinary;
+    }
+
     public boolean isRecordAsSpikes() {
         return recordAsSpikes;
     }
@@ -0,0 +1,297 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.simbrain.network.util.BinaryActivationWriter.*;
+
+/**
+ * Reads a recording written by {@link BinaryActivationWriter}. Blocks of an
+ * uncompressed recording are memory-mapped as they are first used, so a
+ * recording much larger than memory can be read, and reading one neuron's
+ * activations over time touches only that neuron's columns. Blocks of a
+ * compressed recording are inflated as needed, one at a time.
+ * <p>
+ * Row times are read when the recording is opened, so rows can be looked up
+ * by time.
+ */
+public class ActivationRecording implements Closeable {
+
+    private final FileChannel channel;
+
+    private final int numNeurons;
+
+    private final boolean compressed;
+
+    private final long[] blockOffsets;
+
+    private final int[] blockLengths;
+
+    /**
+     * First row of each block, with the total number of rows at the end.
+     */
+    private final int[] blockStarts;
+
+    private final double[] times;
+
+    /**
+     * Mapped blocks of an uncompressed recording, as they are used.
+     */
+    private final DoubleBuffer[] mapped;
+
+    /**
+     * The most recently inflated block of a compressed recording.
+     */
+    private int inflatedBlock = -1;
+
+    private DoubleBuffer inflated;
+
+    /**
+     * Open a recording.
+     *
+     * @param path the file
+     * @return the recording
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static ActivationRecording open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ActivationRecording(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ActivationRecording(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < HEADER_BYTES + FOOTER_BYTES) {
+            throw new IOException("Not an activation recording");
+        }
+        ByteBuffer header = read(0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not an activation recording");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+        numNeurons = header.getInt();
+        compressed = (header.getInt() & COMPRESSED) != 0;
+
+        ByteBuffer footer = read(size - FOOTER_BYTES, FOOTER_BYTES);
+        long indexOffset = footer.getLong();
+        int blockCount = footer.getInt();
+        if (footer.getInt() != MAGIC) {
+            throw new IOException("Recording was not closed properly");
+        }
+        ByteBuffer index = read(indexOffset, blockCount * INDEX_ENTRY_BYTES);
+        blockOffsets = new long[blockCount];
+        blockLengths = new int[blockCount];
+        blockStarts = new int[blockCount + 1];
+        for (int b = 0; b < blockCount; b++) {
+            blockOffsets[b] = index.getLong();
+            blockLengths[b] = index.getInt();
+            blockStarts[b + 1] = blockStarts[b] + index.getInt();
+        }
+        mapped = new DoubleBuffer[blockCount];
+
+        times = new double[blockStarts[blockCount]];
+        for (int b = 0; b < blockCount; b++) {
+            get(block(b), 0, times, blockStarts[b], blockStarts[b + 1] - blockStarts[b]);
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Recording is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the values of a block: the times of its rows, then each neuron's
+     * activations over those rows.
+     */
+    private synchronized DoubleBuffer block(int b) {
+        try {
+            if (!compressed) {
+                if (mapped[b] == null) {
+                    mapped[b] = channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[b], blockLengths[b])
+                            .asDoubleBuffer();
+                }
+                return mapped[b];
+            }
+            if (inflatedBlock != b) {
+                int rows = blockStarts[b + 1] - blockStarts[b];
+                byte[] bytes = new byte[Double.BYTES * rows * (numNeurons + 1)];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(read(blockOffsets[b], blockLengths[b]).array());
+                    int n = 0;
+                    while (n < bytes.length && !inflater.finished()) {
+                        n += inflater.inflate(bytes, n, bytes.length - n);
+                    }
+                    if (n != bytes.length) {
+                        throw new IOException("Block " + b + " is truncated");
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException(e);
+                } finally {
+                    inflater.end();
+                }
+                inflated = ByteBuffer.wrap(bytes).asDoubleBuffer();
+                inflatedBlock = b;
+            }
+            return inflated;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Bulk get from a position, without moving the shared buffer's position.
+     */
+    private static void get(DoubleBuffer block, int position, double[] values, int offset, int length) {
+        DoubleBuffer view = block.duplicate();
+        view.position(position);
+        view.get(values, offset, length);
+    }
+
+    private int blockOf(int row) {
+        if (row < 0 || row >= times.length) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + times.length);
+        }
+        int b = Arrays.binarySearch(blockStarts, row);
+        return b >= 0 ? b : -b - 2;
+    }
+
+    public int getNumNeurons() {
+        return numNeurons;
+    }
+
+    public int getNumRows() {
+        return times.length;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @param row the row
+     * @return the network time at which the row was recorded
+     */
+    public double getTime(int row) {
+        return times[row];
+    }
+
+    /**
+     * Returns the last row recorded at or before a time.
+     *
+     * @param time the time
+     * @return the row, or -1 if every row was recorded after the time
+     */
+    public int getRowAt(double time) {
+        int lo = 0;
+        int hi = times.length - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param row    the row
+     * @param neuron index of the neuron in the recorded collection
+     * @return the neuron's activation in the row
+     */
+    public double getActivation(int row, int neuron) {
+        int b = blockOf(row);
+        int rows = blockStarts[b + 1] - blockStarts[b];
+        return block(b).get(rows * (neuron + 1) + row - blockStarts[b]);
+    }
+
+    /**
+     * @param row the row
+     * @return all activations in the row
+     */
+    public double[] getRow(int row) {
+        int b = blockOf(row);
+        int rows = blockStarts[b + 1] - blockStarts[b];
+        DoubleBuffer block = block(b);
+        double[] values = new double[numNeurons];
+        for (int i = 0, position = rows + row - blockStarts[b]; i < numNeurons; i++, position += rows) {
+            values[i] = block.get(position);
+        }
+        return values;
+    }
+
+    /**
+     * Returns one neuron's activations over a range of rows.
+     *
+     * @param neuron  index of the neuron in the recorded collection
+     * @param fromRow first row, inclusive
+     * @param toRow   last row, exclusive
+     * @return the activations
+     */
+    public double[] getActivations(int neuron, int fromRow, int toRow) {
+        if (fromRow > toRow) {
+            throw new IllegalArgumentException("fromRow > toRow");
+        }
+        double[] values = new double[toRow - fromRow];
+        int row = fromRow;
+        while (row < toRow) {
+            int b = blockOf(row);
+            int rows = blockStarts[b + 1] - blockStarts[b];
+            int count = Math.min(toRow, blockStarts[b + 1]) - row;
+            get(block(b), rows * (neuron + 1) + row - blockStarts[b], values, row - fromRow, count);
+            row += count;
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util;
+
+import org.simbrain.network.groups.AbstractNeuronCollection;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Records activations to a binary file on a background thread. The simulation
+ * thread only copies a collection's activations into a pooled buffer and
+ * queues it; a writer thread gathers rows into blocks and writes them. If the
+ * writer falls behind, recording waits for a free buffer rather than using
+ * more memory.
+ * <p>
+ * The file is columnar: each block holds the times of its rows, then, for each
+ * neuron in turn, that neuron's activations over those rows. Blocks can be
+ * compressed. An index of blocks at the end of the file lets {@link
+ * ActivationRecording} find rows by number or time and memory-map the data.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * header: magic, version, neuron count, flags (1 = compressed), rows per block
+ * blocks: double[rows] times, then double[rows] per neuron; deflated if compressed
+ * index:  per block, long offset, int stored length, int rows
+ * footer: long index offset, int block count, magic
+ * </pre>
+ */
+public class BinaryActivationWriter implements Closeable {
+
+    /**
+     * File extension of binary recordings.
+     */
+    public static final String FORMAT = "sba";
+
+    /**
+     * First and last four bytes of a recording ("SBAR").
+     */
+    public static final int MAGIC = 0x53424152;
+
+    public static final int VERSION = 1;
+
+    /**
+     * Flag set in the header when blocks are compressed.
+     */
+    static final int COMPRESSED = 1;
+
+    static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    static final int FOOTER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    static final int INDEX_ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Number of values a block holds by default; rows per block are chosen
+     * from this and the number of neurons.
+     */
+    private static final int DEFAULT_BLOCK_VALUES = 1 << 20;
+
+    /**
+     * Number of rows that can be queued for the writer before recording waits.
+     */
+    private static final int QUEUE_ROWS = 256;
+
+    /**
+     * Queued in place of a row to stop the writer.
+     */
+    private static final double[] END = new double[0];
+
+    private final int numNeurons;
+
+    private final int rowsPerBlock;
+
+    private final boolean compressed;
+
+    private final FileChannel channel;
+
+    /**
+     * Rows waiting to be written. Each holds the activations followed by the
+     * time.
+     */
+    private final BlockingQueue<double[]> pending = new ArrayBlockingQueue<>(QUEUE_ROWS + 1);
+
+    /**
+     * Row buffers ready for reuse.
+     */
+    private final BlockingQueue<double[]> free = new ArrayBlockingQueue<>(QUEUE_ROWS);
+
+    /**
+     * Number of row buffers created so far, at most {@link #QUEUE_ROWS}.
+     */
+    private int allocated;
+
+    private final Thread writerThread;
+
+    /**
+     * The first error on the writer thread.
+     */
+    private volatile IOException failure;
+
+    private boolean closed;
+
+    // Used only on the writer thread
+
+    private final double[] blockTimes;
+
+    /**
+     * Activations of the current block, by neuron and then row.
+     */
+    private final double[] blockValues;
+
+    private int blockRows;
+
+    private ByteBuffer blockBytes;
+
+    private final Deflater deflater;
+
+    private byte[] deflated;
+
+    private ByteBuffer index = ByteBuffer.allocate(64 * INDEX_ENTRY_BYTES);
+
+    private int blockCount;
+
+    /**
+     * Create a recording with the default block size.
+     *
+     * @param file       the file to write
+     * @param numNeurons number of activations per row
+     * @param compressed whether to deflate blocks
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryActivationWriter(File file, int numNeurons, boolean compressed) throws IOException {
+        this(file, numNeurons, compressed, Math.max(1, Math.min(4096, DEFAULT_BLOCK_VALUES / Math.max(1, numNeurons))));
+    }
+
+    /**
+     * Create a recording.
+     *
+     * @param file         the file to write
+     * @param numNeurons   number of activations per row
+     * @param compressed   whether to deflate blocks
+     * @param rowsPerBlock number of rows per block
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryActivationWriter(File file, int numNeurons, boolean compressed, int rowsPerBlock)
+            throws IOException {
+        if (rowsPerBlock < 1) {
+            throw new IllegalArgumentException("rowsPerBlock must be at least 1");
+        }
+        this.numNeurons = numNeurons;
+        this.rowsPerBlock = rowsPerBlock;
+        this.compressed = compressed;
+        blockTimes = new double[rowsPerBlock];
+        blockValues = new double[numNeurons * rowsPerBlock];
+        blockBytes = ByteBuffer.allocate(Double.BYTES * (rowsPerBlock + blockValues.length)).order(ByteOrder.BIG_ENDIAN);
+        deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(numNeurons).putInt(compressed ? COMPRESSED : 0)
+                .putInt(rowsPerBlock).flip();
+        writeFully(header);
+        writerThread = new Thread(this::writeRows, "Activation writer: " + file.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue the current activations of a collection. Called on the simulation
+     * thread; the activations are copied, so the network can go on updating.
+     *
+     * @param time       the time of the row
+     * @param collection the collection, with {@link #getNumNeurons()} neurons
+     */
+    public void record(double time, AbstractNeuronCollection collection) {
+        double[] row = borrowRow();
+        for (int i = 0; i < numNeurons; i++) {
+            row[i] = collection.getNeuron(i).getActivation();
+        }
+        row[numNeurons] = time;
+        queue(row);
+    }
+
+    /**
+     * Queue a row of activations.
+     *
+     * @param time        the time of the row
+     * @param activations the activations, of length at least {@link
+     *                    #getNumNeurons()}; copied
+     */
+    public void record(double time, double[] activations) {
+        double[] row = borrowRow();
+        System.arraycopy(activations, 0, row, 0, numNeurons);
+        row[numNeurons] = time;
+        queue(row);
+    }
+
+    private double[] borrowRow() {
+        checkFailure();
+        if (closed) {
+            throw new IllegalStateException("Recording is closed");
+        }
+        double[] row = free.poll();
+        if (row == null) {
+            if (allocated < QUEUE_ROWS) {
+                allocated++;
+                return new double[numNeurons + 1];
+            }
+            try {
+                row = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        return row;
+    }
+
+    private void queue(double[] row) {
+        try {
+            pending.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Write the remaining rows and the index, and close the file. Waits for
+     * the writer thread to finish.
+     *
+     * @throws IOException if writing failed, now or on the writer thread
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public int getNumNeurons() {
+        return numNeurons;
+    }
+
+    public int getRowsPerBlock() {
+        return rowsPerBlock;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Writer thread loop. After an error, rows are still taken and returned to
+     * the pool, so that recording never blocks forever.
+     */
+    private void writeRows() {
+        try {
+            while (true) {
+                double[] row = pending.take();
+                if (row == END) {
+                    break;
+                }
+                if (failure == null) {
+                    addRow(row);
+                }
+                free.offer(row);
+            }
+            if (failure == null) {
+                writeBlock();
+                writeIndex();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException(e);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void addRow(double[] row) {
+        try {
+            blockTimes[blockRows] = row[numNeurons];
+            for (int i = 0, offset = blockRows; i < numNeurons; i++, offset += rowsPerBlock) {
+                blockValues[offset] = row[i];
+            }
+            blockRows++;
+            if (blockRows == rowsPerBlock) {
+                writeBlock();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockRows == 0) {
+            return;
+        }
+        blockBytes.clear();
+        blockBytes.asDoubleBuffer().put(blockTimes, 0, blockRows);
+        blockBytes.position(Double.BYTES * blockRows);
+        for (int i = 0; i < numNeurons; i++) {
+            blockBytes.asDoubleBuffer().put(blockValues, i * rowsPerBlock, blockRows);
+            blockBytes.position(blockBytes.position() + Double.BYTES * blockRows);
+        }
+        blockBytes.flip();
+
+        long offset = channel.position();
+        int stored;
+        if (compressed) {
+            deflater.reset();
+            deflater.setInput(blockBytes.array(), 0, blockBytes.limit());
+            deflater.finish();
+            if (deflated == null) {
+                deflated = new byte[blockBytes.capacity() / 2 + 64];
+            }
+            stored = 0;
+            while (!deflater.finished()) {
+                if (stored == deflated.length) {
+                    byte[] grown = new byte[deflated.length * 2];
+                    System.arraycopy(deflated, 0, grown, 0, stored);
+                    deflated = grown;
+                }
+                stored += deflater.deflate(deflated, stored, deflated.length - stored);
+            }
+            writeFully(ByteBuffer.wrap(deflated, 0, stored));
+        } else {
+            stored = blockBytes.limit();
+            writeFully(blockBytes);
+        }
+
+        if (index.remaining() < INDEX_ENTRY_BYTES) {
+            ByteBuffer grown = ByteBuffer.allocate(index.capacity() * 2);
+            index.flip();
+            grown.put(index);
+            index = grown;
+        }
+        index.putLong(offset).putInt(stored).putInt(blockRows);
+        blockCount++;
+        blockRows = 0;
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = channel.position();
+        index.flip();
+        writeFully(index);
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        footer.putLong(indexOffset).putInt(blockCount).putInt(MAGIC).flip();
+        writeFully(footer);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
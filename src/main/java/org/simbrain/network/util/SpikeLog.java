@@ -0,0 +1,394 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.simbrain.network.util.SpikeLogger.*;
+
+/**
+ * Reads a spike log written by {@link SpikeLogger}. Spikes are queried by time
+ * window and neuron subset; only the blocks overlapping the window are read
+ * and inflated. A log that was not closed properly is read up to its last
+ * complete block.
+ */
+public class SpikeLog implements Closeable {
+
+    /**
+     * Receives spikes from {@link #forEachSpike}.
+     */
+    @FunctionalInterface
+    public interface SpikeHandler {
+
+        /**
+         * @param time   time of the spike
+         * @param neuron number of the spiking neuron
+         */
+        void spike(double time, int neuron);
+    }
+
+    /**
+     * Spikes returned by {@link #getSpikes}, in time order, and by neuron
+     * within a time.
+     */
+    public static final class Spikes {
+
+        private double[] times = new double[64];
+
+        private int[] neurons = new int[64];
+
+        private int size;
+
+        void add(double time, int neuron) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                neurons = Arrays.copyOf(neurons, size * 2);
+            }
+            times[size] = time;
+            neurons[size] = neuron;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double getTime(int i) {
+            return times[i];
+        }
+
+        public int getNeuron(int i) {
+            return neurons[i];
+        }
+
+        /**
+         * @return the spike times
+         */
+        public double[] getTimes() {
+            return Arrays.copyOf(times, size);
+        }
+
+        /**
+         * @return the spiking neurons, matching {@link #getTimes()}
+         */
+        public int[] getNeurons() {
+            return Arrays.copyOf(neurons, size);
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final String[] neuronIds;
+
+    private final long[] blockOffsets;
+
+    private final double[] blockFirstTimes;
+
+    private final double[] blockLastTimes;
+
+    private final long spikeCount;
+
+    private final boolean complete;
+
+    /**
+     * Open a spike log.
+     *
+     * @param path the file
+     * @return the log
+     * @throws IOException if the file cannot be read or is not a spike log
+     */
+    public static SpikeLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new SpikeLog(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private SpikeLog(FileChannel channel) throws IOException {
+        this.channel = channel;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a spike log");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported spike log version " + version);
+        }
+        neuronIds = new String[in.readInt()];
+        long position = 3 * Integer.BYTES;
+        for (int i = 0; i < neuronIds.length; i++) {
+            neuronIds[i] = in.readUTF();
+            position += 2 + utfLength(neuronIds[i]);
+        }
+
+        // Use the index if the log was closed, or else find the blocks one by one
+        long size = channel.size();
+        ByteBuffer footer = size - position >= FOOTER_BYTES ? read(size - FOOTER_BYTES, FOOTER_BYTES) : null;
+        if (footer != null && footer.getInt(FOOTER_BYTES - Integer.BYTES) == MAGIC) {
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            ByteBuffer index = read(indexOffset, blockCount * INDEX_ENTRY_BYTES);
+            blockOffsets = new long[blockCount];
+            blockFirstTimes = new double[blockCount];
+            blockLastTimes = new double[blockCount];
+            long spikes = 0;
+            for (int b = 0; b < blockCount; b++) {
+                blockOffsets[b] = index.getLong();
+                blockFirstTimes[b] = index.getDouble();
+                blockLastTimes[b] = index.getDouble();
+                spikes += index.getInt();
+            }
+            spikeCount = spikes;
+            complete = true;
+        } else {
+            long[] offsets = new long[16];
+            double[] firstTimes = new double[16];
+            double[] lastTimes = new double[16];
+            int blockCount = 0;
+            long spikes = 0;
+            while (size - position >= BLOCK_HEADER_BYTES) {
+                ByteBuffer header = read(position, BLOCK_HEADER_BYTES);
+                int stored = header.getInt();
+                header.getInt();
+                if (stored <= 0 || position + BLOCK_HEADER_BYTES + stored > size) {
+                    break;
+                }
+                if (blockCount == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, blockCount * 2);
+                    firstTimes = Arrays.copyOf(firstTimes, blockCount * 2);
+                    lastTimes = Arrays.copyOf(lastTimes, blockCount * 2);
+                }
+                offsets[blockCount] = position;
+                firstTimes[blockCount] = header.getDouble();
+                lastTimes[blockCount] = header.getDouble();
+                spikes += header.getInt();
+                blockCount++;
+                position += BLOCK_HEADER_BYTES + stored;
+            }
+            blockOffsets = Arrays.copyOf(offsets, blockCount);
+            blockFirstTimes = Arrays.copyOf(firstTimes, blockCount);
+            blockLastTimes = Arrays.copyOf(lastTimes, blockCount);
+            spikeCount = spikes;
+            complete = false;
+        }
+    }
+
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+        }
+        return length;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Spike log is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return number of neurons logged
+     */
+    public int getNumNeurons() {
+        return neuronIds.length;
+    }
+
+    /**
+     * @param neuron number of a neuron in the log
+     * @return the neuron's id in the network it was logged from
+     */
+    public String getNeuronId(int neuron) {
+        return neuronIds[neuron];
+    }
+
+    /**
+     * @return total number of spikes in the log
+     */
+    public long getSpikeCount() {
+        return spikeCount;
+    }
+
+    /**
+     * @return false if the log was not closed, and was read up to its last
+     * complete block
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return time of the first spike, or NaN if there are none
+     */
+    public double getFirstTime() {
+        return blockOffsets.length == 0 ? Double.NaN : blockFirstTimes[0];
+    }
+
+    /**
+     * @return time of the last spike, or NaN if there are none
+     */
+    public double getLastTime() {
+        return blockOffsets.length == 0 ? Double.NaN : blockLastTimes[blockOffsets.length - 1];
+    }
+
+    /**
+     * Pass each spike in a time window to a handler, in time order.
+     *
+     * @param from    start of the window, inclusive
+     * @param to      end of the window, exclusive
+     * @param neurons neurons to include, or null for all
+     * @param handler receives the spikes
+     * @throws IOException if reading fails
+     */
+    public void forEachSpike(double from, double to, BitSet neurons, SpikeHandler handler) throws IOException {
+        // First block that can hold spikes at or after from
+        int lo = 0;
+        int hi = blockOffsets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blockLastTimes[mid] < from) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        Inflater inflater = new Inflater();
+        try {
+            for (int b = lo; b < blockOffsets.length && blockFirstTimes[b] < to; b++) {
+                if (!readBlock(b, inflater, from, to, neurons, handler)) {
+                    break;
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decode a block, passing on the spikes in the window.
+     *
+     * @return false once a time past the window is reached
+     */
+    private boolean readBlock(int b, Inflater inflater, double from, double to, BitSet neurons,
+                              SpikeHandler handler) throws IOException {
+        ByteBuffer header = read(blockOffsets[b], BLOCK_HEADER_BYTES);
+        int stored = header.getInt();
+        int length = header.getInt();
+        byte[] bytes = new byte[length];
+        inflater.reset();
+        inflater.setInput(read(blockOffsets[b] + BLOCK_HEADER_BYTES, stored).array());
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                n += inflater.inflate(bytes, n, length - n);
+            }
+            if (n != length) {
+                throw new IOException("Spike log block " + b + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+
+        int[] position = {0};
+        long timeBits = 0;
+        while (position[0] < length) {
+            long delta = readVarLong(bytes, position);
+            timeBits += delta >>> 1 ^ -(delta & 1);
+            double time = Double.longBitsToDouble(timeBits);
+            int count = (int) readVarLong(bytes, position);
+            if (time >= to) {
+                return false;
+            }
+            boolean inWindow = time >= from;
+            int neuron = -1;
+            for (int i = 0; i < count; i++) {
+                neuron += (int) readVarLong(bytes, position) + 1;
+                if (inWindow && (neurons == null || neurons.get(neuron))) {
+                    handler.spike(time, neuron);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Returns the spikes in a time window.
+     *
+     * @param from    start of the window, inclusive
+     * @param to      end of the window, exclusive
+     * @param neurons neurons to include, or null for all
+     * @return the spikes
+     * @throws IOException if reading fails
+     */
+    public Spikes getSpikes(double from, double to, BitSet neurons) throws IOException {
+        Spikes spikes = new Spikes();
+        forEachSpike(from, to, neurons, spikes::add);
+        return spikes;
+    }
+
+    /**
+     * Returns one neuron's spike times in a time window.
+     *
+     * @param neuron number of the neuron in the log
+     * @param from   start of the window, inclusive
+     * @param to     end of the window, exclusive
+     * @return the spike times
+     * @throws IOException if reading fails
+     */
+    public double[] getSpikeTimes(int neuron, double from, double to) throws IOException {
+        BitSet subset = new BitSet();
+        subset.set(neuron);
+        return getSpikes(from, to, subset).getTimes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
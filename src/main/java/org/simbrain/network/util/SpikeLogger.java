@@ -0,0 +1,408 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+
+import java.beans.PropertyChangeListener;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+
+/**
+ * Logs the spikes of every neuron in a network to an append-only file, for
+ * offline analysis of long runs. Only spikes are stored, as (time, neuron)
+ * events, so a log costs a few bytes per spike however many neurons are
+ * silent. Read logs with {@link SpikeLog}.
+ * <p>
+ * Neurons are numbered by their position in the network's flat neuron list
+ * when logging starts, and their ids are stored in the header. Neurons added
+ * later are not logged.
+ * <p>
+ * Events are encoded per update with spikes: the difference of the time's
+ * bits from the previous logged time's, the number of spikes, and the neuron
+ * numbers as gaps from the previous one, all as variable length integers. The
+ * encoded events are gathered into blocks, each deflated on a background
+ * thread and written with a small header giving its length, time range, and
+ * spike count. On close an index of blocks is written, but a log that was not
+ * closed, e.g. because the simulation crashed, can still be read up to its
+ * last complete block.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * header: magic, version, neuron count, neuron ids (as UTF)
+ * blocks: int stored length, int raw length, double first time, double last time, int spikes, deflated events
+ * index:  per block, long offset, double first time, double last time, int spikes
+ * footer: long index offset, int block count, magic
+ * </pre>
+ */
+public class SpikeLogger implements Closeable {
+
+    /**
+     * File extension of spike logs.
+     */
+    public static final String FORMAT = "spk";
+
+    /**
+     * First and last four bytes of a spike log ("SBSP").
+     */
+    public static final int MAGIC = 0x53425350;
+
+    public static final int VERSION = 1;
+
+    static final int BLOCK_HEADER_BYTES = 3 * Integer.BYTES + 2 * Double.BYTES;
+
+    static final int INDEX_ENTRY_BYTES = Long.BYTES + 2 * Double.BYTES + Integer.BYTES;
+
+    static final int FOOTER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Size at which a block of encoded events is written.
+     */
+    private static final int BLOCK_BYTES = 1 << 18;
+
+    /**
+     * The most bytes one update can add to a block: the time, the count, and
+     * a number per neuron.
+     */
+    private final int maxStepBytes;
+
+    private final Neuron[] neurons;
+
+    private final FileChannel channel;
+
+    /**
+     * Deflates and writes blocks, one at a time.
+     */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Spike log writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The last block handed to {@link #writer}, whose buffer cannot be reused
+     * until it is written.
+     */
+    private Future<?> pendingWrite;
+
+    /**
+     * Block being filled; swapped with {@link #spare} when written.
+     */
+    private Block block = new Block();
+
+    private Block spare = new Block();
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private byte[] deflated = new byte[BLOCK_BYTES];
+
+    /**
+     * Index entries, written by the writer thread.
+     */
+    private ByteArrayOutputStream index = new ByteArrayOutputStream();
+
+    private int blockCount;
+
+    private long spikeCount;
+
+    private boolean closed;
+
+    /**
+     * Network logged after each update, when attached with {@link #attach}.
+     */
+    private Network attachedNetwork;
+
+    /**
+     * Handler registered with the attached network, removed on close.
+     */
+    private PropertyChangeListener updateListener;
+
+    /**
+     * Events of one block, before compression.
+     */
+    private static final class Block {
+
+        byte[] bytes = new byte[BLOCK_BYTES];
+
+        int length;
+
+        long previousTimeBits;
+
+        double firstTime;
+
+        double lastTime;
+
+        int spikes;
+
+        void reset() {
+            length = 0;
+            previousTimeBits = 0;
+            spikes = 0;
+        }
+    }
+
+    /**
+     * Start logging a network's spikes to a file after each update, until the
+     * logger is closed.
+     *
+     * @param network the network
+     * @param file    the file to write
+     * @return the logger
+     * @throws IOException if the file cannot be created
+     */
+    public static SpikeLogger attach(Network network, File file) throws IOException {
+        SpikeLogger logger = new SpikeLogger(network.getFlatNeuronList(), file);
+        logger.attachedNetwork = network;
+        logger.updateListener = network.getEvents().onUpdateCompleted(() -> logger.logIfOpen(network.getTime()));
+        return logger;
+    }
+
+    /**
+     * Create a log of the given neurons' spikes. Call {@link
+     * #logSpikes(double)} after each update, or use {@link #attach}.
+     *
+     * @param neurons the neurons, numbered in this order
+     * @param file    the file to write
+     * @throws IOException if the file cannot be created
+     */
+    public SpikeLogger(List<Neuron> neurons, File file) throws IOException {
+        this.neurons = neurons.toArray(new Neuron[0]);
+        maxStepBytes = 20 + 5 * this.neurons.length;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(this.neurons.length);
+        for (Neuron neuron : this.neurons) {
+            out.writeUTF(neuron.getId() == null ? "" : neuron.getId());
+        }
+        writeFully(ByteBuffer.wrap(header.toByteArray()));
+    }
+
+    /**
+     * Log the neurons that are spiking now. Logging and {@link #close()} are
+     * synchronized, so a logger may be closed from another thread while the
+     * network updates.
+     *
+     * @param time the current time
+     */
+    public synchronized void logSpikes(double time) {
+        if (closed) {
+            throw new IllegalStateException("Spike log is closed");
+        }
+        int first = -1;
+        for (int i = 0; i < neurons.length; i++) {
+            if (neurons[i].isSpike()) {
+                first = i;
+                break;
+            }
+        }
+        if (first < 0) {
+            return;
+        }
+        if (block.bytes.length - block.length < maxStepBytes) {
+            if (block.length > 0) {
+                flushBlock();
+            }
+            if (block.bytes.length < maxStepBytes) {
+                block.bytes = new byte[maxStepBytes];
+            }
+        }
+
+        // Count first, so the count can precede the numbers
+        int count = 0;
+        for (int i = first; i < neurons.length; i++) {
+            if (neurons[i].isSpike()) {
+                count++;
+            }
+        }
+        long timeBits = Double.doubleToLongBits(time);
+        if (block.spikes == 0) {
+            block.firstTime = time;
+        }
+        block.lastTime = time;
+        long timeDelta = timeBits - block.previousTimeBits;
+        putVarLong(timeDelta << 1 ^ timeDelta >> 63);
+        block.previousTimeBits = timeBits;
+        putVarLong(count);
+        int previous = -1;
+        for (int i = first; i < neurons.length; i++) {
+            if (neurons[i].isSpike()) {
+                putVarLong(i - previous - 1);
+                previous = i;
+            }
+        }
+        block.spikes += count;
+        spikeCount += count;
+        if (block.length >= BLOCK_BYTES) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Log spikes after an update of the attached network, unless the logger
+     * was closed meanwhile.
+     */
+    private synchronized void logIfOpen(double time) {
+        if (!closed) {
+            logSpikes(time);
+        }
+    }
+
+    private void putVarLong(long value) {
+        byte[] bytes = block.bytes;
+        int position = block.length;
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        block.length = position;
+    }
+
+    /**
+     * Hand the current block to the writer thread and start another.
+     */
+    private void flushBlock() {
+        awaitPendingWrite();
+        Block full = block;
+        block = spare;
+        spare = full;
+        block.reset();
+        pendingWrite = writer.submit(() -> {
+            writeBlock(full);
+            return null;
+        });
+    }
+
+    private void awaitPendingWrite() {
+        if (pendingWrite == null) {
+            return;
+        }
+        try {
+            pendingWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException(new IOException("Writing spike log failed", e.getCause()));
+        } finally {
+            pendingWrite = null;
+        }
+    }
+
+    private void writeBlock(Block full) throws IOException {
+        deflater.reset();
+        deflater.setInput(full.bytes, 0, full.length);
+        deflater.finish();
+        int stored = 0;
+        while (!deflater.finished()) {
+            if (stored == deflated.length) {
+                byte[] grown = new byte[deflated.length * 2];
+                System.arraycopy(deflated, 0, grown, 0, stored);
+                deflated = grown;
+            }
+            stored += deflater.deflate(deflated, stored, deflated.length - stored);
+        }
+        long offset = channel.position();
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        header.putInt(stored).putInt(full.length).putDouble(full.firstTime).putDouble(full.lastTime)
+                .putInt(full.spikes).flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(deflated, 0, stored));
+
+        DataOutputStream entry = new DataOutputStream(index);
+        entry.writeLong(offset);
+        entry.writeDouble(full.firstTime);
+        entry.writeDouble(full.lastTime);
+        entry.writeInt(full.spikes);
+        blockCount++;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return number of spikes logged so far
+     */
+    public synchronized long getSpikeCount() {
+        return spikeCount;
+    }
+
+    public int getNumNeurons() {
+        return neurons.length;
+    }
+
+    /**
+     * Write the last block and the index, and close the file. A logger made
+     * with {@link #attach} also stops listening to its network. If the
+     * network is logging an update, this waits until it is done.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (attachedNetwork != null) {
+            attachedNetwork.getEvents().removeHandler(updateListener);
+            attachedNetwork = null;
+            updateListener = null;
+        }
+        try {
+            if (block.length > 0) {
+                flushBlock();
+            }
+            awaitPendingWrite();
+            Future<?> finish = writer.submit(() -> {
+                long indexOffset = channel.position();
+                writeFully(ByteBuffer.wrap(index.toByteArray()));
+                ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+                footer.putLong(indexOffset).putInt(blockCount).putInt(MAGIC).flip();
+                writeFully(footer);
+                deflater.end();
+                return null;
+            });
+            finish.get();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("Writing spike log failed", e.getCause());
+        } finally {
+            writer.shutdown();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,947 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util.io_utilities;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.network.util.io_utilities.GroupSerializer.Precision;
+import org.simbrain.util.Utils;
+import org.simbrain.util.nd4j.Nd4jConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A compact binary file format for whole networks, for networks too large to
+ * save quickly as xml.
+ * <p>
+ * The file starts with a small xml header, written with XStream, holding the
+ * structure of the network and every parameter: neurons, groups, rules, and
+ * so on, but no synapses. Synapses are written as columns in compressed
+ * sparse row form, ordered by source neuron: one target index and one weight
+ * per synapse, which is 8 bytes per synapse with single precision weights.
+ * Everything else about a synapse (learning rule, spike responder, bounds,
+ * delay, group) is almost always shared by many synapses, so the header holds
+ * one "prototype" synapse for each distinct combination, and the prototype
+ * of each synapse is written only when there is more than one, usually as
+ * runs, since the synapses of a source neuron are ordered by group. Synapse ids
+ * and post-synaptic responses are stored compactly as well. Neuron
+ * activations and biases are also written as columns, so that tools can read
+ * them, and the weights, straight from a memory-mapped file with
+ * {@link #readColumns(Path)} without building a network.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int magic, int version
+ * int header length, header (UTF-8 xml)
+ * int neuron count N
+ * double[N] activations, double[N] biases (NaN for rules without a bias)
+ * int synapse count M
+ * byte weight bytes (4 or 8), byte prototype encoding (bytes per index: 0,
+ * 1, 2 or 4; or 8 for runs), byte id encoding, byte has post-synaptic
+ * responses
+ * int[N + 1] row offsets, int[M] target indices, float[M] or double[M] weights
+ * prototype indices
+ * ids
+ * double[M] post-synaptic responses, if any are non-zero
+ * </pre>
+ * Neuron indices refer to {@link Network#getFlatNeuronList()}, counting each
+ * neuron once.
+ */
+public final class BinaryNetworkFormat {
+
+    /**
+     * File extension, and the format name used by
+     * {@link org.simbrain.network.NetworkComponent}.
+     */
+    public static final String FORMAT = "snb";
+
+    /**
+     * "SNBF".
+     */
+    private static final int MAGIC = 0x534E4246;
+
+    /**
+     * Current version of the format. Readers reject files with a newer
+     * version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Weight precision used unless another is requested. Single precision
+     * matches the compressed synapse group representation used in xml files.
+     */
+    public static final Precision DEFAULT_PRECISION = Precision.FLOAT_32;
+
+    /**
+     * Ids are runs of consecutive "Synapse_n" ids: int run count, then a start
+     * and a length per run.
+     */
+    private static final byte IDS_RUNS = 0;
+
+    /**
+     * Ids are "Synapse_n": one int n per synapse.
+     */
+    private static final byte IDS_NUMBERED = 1;
+
+    /**
+     * Arbitrary ids: a length-prefixed UTF-8 string per synapse.
+     */
+    private static final byte IDS_STRINGS = 2;
+
+    private static final String ID_PREFIX = "Synapse_";
+
+    /**
+     * Prototype indices are run-length encoded: int run count, then a
+     * prototype and a length per run. Other values of the prototype encoding
+     * are the bytes per index, with 0 for a single prototype.
+     */
+    private static final byte PROTOTYPE_RUNS = 8;
+
+    /**
+     * Which container a synapse was saved from. Synapses in a group go in the
+     * excitatory or inhibitory set by the sign of their weight, as when they
+     * are added to the group, unless they were saved from the other set.
+     */
+    private static final int LOOSE = 0, GROUP = 1, EXCITATORY = 2, INHIBITORY = 3;
+
+    /**
+     * Fields compared to decide whether two rules are the same, or
+     * {@link #BY_IDENTITY} for classes whose fields are not all simple values.
+     */
+    private static final Map<Class<?>, List<Field>> RULE_FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * Marks rule classes whose instances are only the same when they are the
+     * same object.
+     */
+    private static final List<Field> BY_IDENTITY = Collections.unmodifiableList(new ArrayList<>());
+
+    private BinaryNetworkFormat() {
+    }
+
+    /**
+     * What goes into the xml header.
+     */
+    private static final class Header {
+
+        private Network network;
+
+        private List<Synapse> prototypes;
+
+        /**
+         * {@link #LOOSE}, {@link #GROUP}, {@link #EXCITATORY} or
+         * {@link #INHIBITORY} for each prototype.
+         */
+        private int[] sets;
+    }
+
+    /**
+     * Write a network with {@link #DEFAULT_PRECISION}.
+     *
+     * @param network the network to write
+     * @param output  the stream to write to; it is flushed but not closed
+     * @throws IOException if the stream cannot be written, or a synapse
+     *                     connects neurons that are not in the network
+     */
+    public static void write(Network network, OutputStream output) throws IOException {
+        write(network, output, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Write a network.
+     *
+     * @param network   the network to write
+     * @param output    the stream to write to; it is flushed but not closed
+     * @param precision precision of the weights
+     * @throws IOException if the stream cannot be written, or a synapse
+     *                     connects neurons that are not in the network
+     */
+    public static void write(Network network, OutputStream output, Precision precision) throws IOException {
+
+        List<Neuron> neurons = distinctNeurons(network);
+        Map<Neuron, Integer> neuronIndex = new IdentityHashMap<>(neurons.size() * 2);
+        for (int i = 0; i < neurons.size(); i++) {
+            neuronIndex.put(neurons.get(i), i);
+        }
+        int n = neurons.size();
+
+        // Index the synapses and find their prototypes
+        List<Synapse> synapses = network.getFlatSynapseList();
+        int m = synapses.size();
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        int[] prototypeOf = new int[m];
+        Header header = new Header();
+        header.network = network;
+        header.prototypes = new ArrayList<>();
+        List<Integer> sets = new ArrayList<>();
+        Map<List<Object>, Integer> prototypes = new HashMap<>();
+        boolean hasPsr = false;
+        for (int k = 0; k < m; k++) {
+            Synapse s = synapses.get(k);
+            Integer source = neuronIndex.get(s.getSource());
+            Integer target = neuronIndex.get(s.getTarget());
+            if (source == null || target == null) {
+                throw new IOException("Synapse " + s.getId() + " connects neurons that are not in the network");
+            }
+            sources[k] = source;
+            targets[k] = target;
+            int set = LOOSE;
+            if (s.getParentGroup() != null) {
+                set = s.getParentGroup().isInExcitatorySet(s) ? EXCITATORY : INHIBITORY;
+                if ((set == INHIBITORY) == (s.getStrength() < 0)) {
+                    set = GROUP;
+                }
+            }
+            List<Object> key = prototypeKey(s, set);
+            Integer prototype = prototypes.get(key);
+            if (prototype == null) {
+                prototype = header.prototypes.size();
+                prototypes.put(key, prototype);
+                header.prototypes.add(s);
+                sets.add(set);
+            }
+            prototypeOf[k] = prototype;
+            hasPsr |= s.getPsr() != 0;
+        }
+        header.sets = sets.stream().mapToInt(Integer::intValue).toArray();
+
+        // Ids are usually numbered in the order synapses were made, so sort by id first, to leave runs of
+        // consecutive ids within each source neuron
+        String[] flatIds = new String[m];
+        for (int k = 0; k < m; k++) {
+            flatIds[k] = synapses.get(k).getId();
+        }
+        int[] flatNumbers = idNumbers(flatIds);
+        int[] sequence = new int[m];
+        if (flatNumbers != null) {
+            long[] keys = new long[m];
+            for (int k = 0; k < m; k++) {
+                keys[k] = ((long) flatNumbers[k] << 32) | k;
+            }
+            Arrays.sort(keys);
+            for (int k = 0; k < m; k++) {
+                sequence[k] = (int) keys[k];
+            }
+        } else {
+            Arrays.setAll(sequence, k -> k);
+        }
+
+        // Order synapses by source neuron
+        int[] rowOffsets = new int[n + 1];
+        for (int k = 0; k < m; k++) {
+            rowOffsets[sources[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            rowOffsets[i + 1] += rowOffsets[i];
+        }
+        int[] order = new int[m];
+        int[] next = Arrays.copyOf(rowOffsets, n);
+        for (int k : sequence) {
+            order[next[sources[k]]++] = k;
+        }
+
+        String[] ids = new String[m];
+        int[] idNumbers = flatNumbers == null ? null : new int[m];
+        for (int k = 0; k < m; k++) {
+            ids[k] = flatIds[order[k]];
+            if (idNumbers != null) {
+                idNumbers[k] = flatNumbers[order[k]];
+            }
+        }
+        byte idEncoding = idNumbers == null ? IDS_STRINGS
+                : countRuns(idNumbers, 1) * 2L < m ? IDS_RUNS : IDS_NUMBERED;
+        int[] prototypeColumn = new int[m];
+        for (int k = 0; k < m; k++) {
+            prototypeColumn[k] = prototypeOf[order[k]];
+        }
+        int prototypeBytes = header.prototypes.size() <= 1 ? 0
+                : header.prototypes.size() <= 256 ? 1 : header.prototypes.size() <= 65536 ? 2 : 4;
+        if (prototypeBytes > 0 && 8L * countRuns(prototypeColumn, 0) < (long) prototypeBytes * m) {
+            prototypeBytes = PROTOTYPE_RUNS;
+        }
+
+        // Groups in matrix mode have no synapses to write, so their weights go in the header, compressed. Other
+        // groups' synapses are written as columns, so the header must not carry a rep they would be rebuilt from.
+        List<SynapseGroup> matrixGroups = new ArrayList<>();
+        for (SynapseGroup group : network.getFlatSynapseGroupList()) {
+            if (group.isMatrixMode()) {
+                matrixGroups.add(group);
+            } else {
+                group.clearSavedSynapses();
+            }
+        }
+        matrixGroups.forEach(SynapseGroup::preSaveInit);
+        byte[] xml;
+        try {
+            xml = getXStream().toXML(header).getBytes(StandardCharsets.UTF_8);
+        } finally {
+            matrixGroups.forEach(SynapseGroup::postSaveReInit);
+        }
+
+        ChunkWriter out = new ChunkWriter(output);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(xml.length);
+        out.put(xml);
+        out.putInt(n);
+        for (Neuron neuron : neurons) {
+            out.putDouble(neuron.getActivation());
+        }
+        for (Neuron neuron : neurons) {
+            out.putDouble(neuron.getUpdateRule() instanceof BiasedUpdateRule
+                    ? ((BiasedUpdateRule) neuron.getUpdateRule()).getBias() : Double.NaN);
+        }
+        out.putInt(m);
+        out.put((byte) (precision == Precision.FLOAT_64 ? 8 : 4));
+        out.put((byte) prototypeBytes);
+        out.put(idEncoding);
+        out.put((byte) (hasPsr ? 1 : 0));
+        for (int offset : rowOffsets) {
+            out.putInt(offset);
+        }
+        for (int k : order) {
+            out.putInt(targets[k]);
+        }
+        for (int k : order) {
+            double strength = synapses.get(k).getStrength();
+            if (precision == Precision.FLOAT_64) {
+                out.putDouble(strength);
+            } else {
+                out.putFloat((float) strength);
+            }
+        }
+        if (prototypeBytes == PROTOTYPE_RUNS) {
+            writeRuns(out, prototypeColumn, 0);
+        } else if (prototypeBytes > 0) {
+            for (int prototype : prototypeColumn) {
+                out.putIndex(prototype, prototypeBytes);
+            }
+        }
+        writeIds(out, idEncoding, ids, idNumbers);
+        if (hasPsr) {
+            for (int k : order) {
+                out.putDouble(synapses.get(k).getPsr());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a network from a stream.
+     *
+     * @param input the stream to read; it is read to the end but not closed
+     * @return the network
+     * @throws IOException if the stream cannot be read or is not a network
+     *                     file of a supported version
+     */
+    public static Network read(InputStream input) throws IOException {
+        return read(ByteBuffer.wrap(input.readAllBytes()));
+    }
+
+    /**
+     * Read a network from a file, which is memory-mapped rather than copied
+     * into memory.
+     *
+     * @param file the file to read
+     * @return the network
+     * @throws IOException if the file cannot be read or is not a network file
+     *                     of a supported version
+     */
+    public static Network read(Path file) throws IOException {
+        return read(map(file));
+    }
+
+    /**
+     * Map the columns of a network file without reading the xml header or
+     * building a network. The columns are views of the memory-mapped file.
+     *
+     * @param file the file to read
+     * @return the columns
+     * @throws IOException if the file cannot be read or is not a network file
+     *                     of a supported version
+     */
+    public static Columns readColumns(Path file) throws IOException {
+        ByteBuffer buffer = map(file);
+        skipHeader(buffer);
+        return new Columns(buffer);
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Network files over 2GB cannot be mapped: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Check the magic number and version, and return the header bytes.
+     */
+    private static byte[] skipHeader(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary network file");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported binary network file version " + version);
+            }
+            byte[] xml = new byte[buffer.getInt()];
+            buffer.get(xml);
+            return xml;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Truncated binary network file", e);
+        }
+    }
+
+    private static Network read(ByteBuffer buffer) throws IOException {
+        byte[] xml = skipHeader(buffer);
+        Header header = (Header) getXStream().fromXML(new ByteArrayInputStream(xml));
+        Network network = header.network;
+        List<Neuron> neurons = distinctNeurons(network);
+        Columns columns;
+        try {
+            columns = new Columns(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated binary network file", e);
+        }
+        if (columns.getNeuronCount() != neurons.size()) {
+            throw new IOException("Network file has " + columns.getNeuronCount() + " neurons but its header has "
+                    + neurons.size());
+        }
+
+        int m = columns.getSynapseCount();
+        String[] ids = columns.readIds();
+        List<Synapse> loose = new ArrayList<>();
+        Map<SynapseGroup, List<List<Synapse>>> groups = new IdentityHashMap<>();
+        int[] prototypeColumn = columns.readPrototypes();
+        IntBuffer rowOffsets = columns.getRowOffsets();
+        IntBuffer targets = columns.getTargets();
+        int k = 0;
+        for (int i = 0; i < neurons.size(); i++) {
+            Neuron source = neurons.get(i);
+            for (int end = rowOffsets.get(i + 1); k < end; k++) {
+                int p = prototypeColumn[k];
+                Synapse prototype = header.prototypes.get(p);
+                Synapse s = new Synapse(network, source, neurons.get(targets.get(k)),
+                        prototype.getLearningRule(), prototype);
+                s.forceSetStrength(columns.getWeight(k));
+                s.setPsr(columns.getPsr(k));
+                s.setId(ids[k]);
+                int set = header.sets[p];
+                if (set == GROUP) {
+                    set = s.getStrength() < 0 ? INHIBITORY : EXCITATORY;
+                }
+                if (set == LOOSE) {
+                    loose.add(s);
+                } else {
+                    groups.computeIfAbsent(prototype.getParentGroup(),
+                            g -> Arrays.asList(new ArrayList<>(), new ArrayList<>()))
+                            .get(set == EXCITATORY ? 0 : 1).add(s);
+                }
+            }
+        }
+        if (k != m) {
+            throw new IOException("Network file row offsets do not cover its " + m + " synapses");
+        }
+        network.restoreLooseSynapses(loose);
+        groups.forEach((group, sets) -> group.restoreSynapses(sets.get(0), sets.get(1)));
+        neurons.forEach(Neuron::trimFanInOut);
+        return network;
+    }
+
+    /**
+     * The flat neuron list, with neurons that are in it more than once (e.g.
+     * in neuron collections) only at their first position.
+     */
+    private static List<Neuron> distinctNeurons(Network network) {
+        List<Neuron> flat = network.getFlatNeuronList();
+        Set<Neuron> seen = Collections.newSetFromMap(new IdentityHashMap<>(flat.size() * 2));
+        List<Neuron> neurons = new ArrayList<>(flat.size());
+        for (Neuron neuron : flat) {
+            if (seen.add(neuron)) {
+                neurons.add(neuron);
+            }
+        }
+        return neurons;
+    }
+
+    /**
+     * Everything about a synapse that is not stored in a column.
+     */
+    private static List<Object> prototypeKey(Synapse s, int set) {
+        return Arrays.asList(s.getParentGroup(), set, ruleKey(s.getLearningRule()), ruleKey(s.getSpikeResponder()),
+                s.getIncrement(), s.getUpperBound(), s.getLowerBound(), s.getDelay(), s.isEnabled(), s.isFrozen());
+    }
+
+    /**
+     * A key that is equal for rules of the same class with the same
+     * parameters.
+     */
+    private static Object ruleKey(Object rule) {
+        if (rule == null) {
+            return null;
+        }
+        List<Field> fields = RULE_FIELDS.computeIfAbsent(rule.getClass(), BinaryNetworkFormat::findRuleFields);
+        if (fields == BY_IDENTITY) {
+            return rule;
+        }
+        List<Object> key = new ArrayList<>(fields.size() + 1);
+        key.add(rule.getClass());
+        try {
+            for (Field field : fields) {
+                key.add(field.get(rule));
+            }
+        } catch (IllegalAccessException e) {
+            return rule;
+        }
+        return key;
+    }
+
+    private static List<Field> findRuleFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                Class<?> t = field.getType();
+                if (!(t.isPrimitive() || t == String.class || t.isEnum() || Number.class.isAssignableFrom(t)
+                        || t == Boolean.class)) {
+                    return BY_IDENTITY;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    return BY_IDENTITY;
+                }
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the n of each "Synapse_n" id, or null if some id is not of that
+     * form
+     */
+    private static int[] idNumbers(String[] ids) {
+        int[] numbers = new int[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            String id = ids[k];
+            if (id == null || !id.startsWith(ID_PREFIX) || id.length() == ID_PREFIX.length()) {
+                return null;
+            }
+            try {
+                numbers[k] = Integer.parseInt(id.substring(ID_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (!id.equals(ID_PREFIX + numbers[k])) {
+                return null;
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Count runs of values that each differ from the previous by a step.
+     */
+    private static int countRuns(int[] values, int step) {
+        int runs = 0;
+        for (int k = 0; k < values.length; k++) {
+            if (k == 0 || values[k] != values[k - 1] + step) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Write the runs counted by {@link #countRuns}: the run count, then the
+     * first value and length of each run.
+     */
+    private static void writeRuns(ChunkWriter out, int[] values, int step) throws IOException {
+        out.putInt(countRuns(values, step));
+        int start = 0;
+        for (int k = 1; k <= values.length; k++) {
+            if (k == values.length || values[k] != values[k - 1] + step) {
+                out.putInt(values[start]);
+                out.putInt(k - start);
+                start = k;
+            }
+        }
+    }
+
+    /**
+     * Read runs written by {@link #writeRuns}.
+     */
+    private static int[] readRuns(ByteBuffer buffer, int length, int step) {
+        int[] values = new int[length];
+        int runs = buffer.getInt();
+        int k = 0;
+        for (int r = 0; r < runs; r++) {
+            int first = buffer.getInt();
+            int count = buffer.getInt();
+            for (int j = 0; j < count && k < length; j++) {
+                values[k++] = first + j * step;
+            }
+        }
+        return values;
+    }
+
+    private static void writeIds(ChunkWriter out, byte encoding, String[] ids, int[] numbers) throws IOException {
+        if (encoding == IDS_RUNS) {
+            writeRuns(out, numbers, 1);
+        } else if (encoding == IDS_NUMBERED) {
+            for (int number : numbers) {
+                out.putInt(number);
+            }
+        } else {
+            for (String id : ids) {
+                byte[] bytes = id == null ? new byte[0] : id.getBytes(StandardCharsets.UTF_8);
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+        }
+    }
+
+    /**
+     * XStream for the header: the usual network XStream, but synapse
+     * collections are written empty, since synapses are written as columns.
+     */
+    private static XStream getXStream() {
+        XStream xstream = Utils.getSimbrainXStream();
+        xstream.registerConverter(new Nd4jConverter());
+        xstream.registerLocalConverter(Network.class, "looseSynapses", new EmptyCollectionConverter(LinkedHashSet::new));
+        xstream.registerLocalConverter(SynapseGroup.class, "exSynapseSet", new EmptyCollectionConverter(HashSet::new));
+        xstream.registerLocalConverter(SynapseGroup.class, "inSynapseSet", new EmptyCollectionConverter(HashSet::new));
+        return xstream;
+    }
+
+    /**
+     * Writes nothing, and reads an empty collection.
+     */
+    private static final class EmptyCollectionConverter implements Converter {
+
+        private final Supplier<Collection<?>> factory;
+
+        EmptyCollectionConverter(Supplier<Collection<?>> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean canConvert(Class type) {
+            return type != null && Collection.class.isAssignableFrom(type);
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+            return factory.get();
+        }
+    }
+
+    /**
+     * The columns of a network file, as views of its buffer. Neuron indices
+     * refer to {@link Network#getFlatNeuronList()}, counting each neuron once.
+     * Synapses are ordered by source neuron: those from neuron i are numbered
+     * {@code getRowOffsets().get(i)} up to {@code getRowOffsets().get(i + 1)}.
+     */
+    public static final class Columns {
+
+        private final int neuronCount;
+
+        private final int synapseCount;
+
+        private final DoubleBuffer activations;
+
+        private final DoubleBuffer biases;
+
+        private final IntBuffer rowOffsets;
+
+        private final IntBuffer targets;
+
+        /**
+         * Weights, as a FloatBuffer or DoubleBuffer.
+         */
+        private final Buffer weights;
+
+        private final int prototypeBytes;
+
+        private final ByteBuffer prototypes;
+
+        private final byte idEncoding;
+
+        private final ByteBuffer ids;
+
+        private final DoubleBuffer psrs;
+
+        /**
+         * Read the column layout from a buffer positioned after the header.
+         */
+        private Columns(ByteBuffer buffer) throws IOException {
+            neuronCount = buffer.getInt();
+            activations = slice(buffer, 8L * neuronCount).asDoubleBuffer();
+            biases = slice(buffer, 8L * neuronCount).asDoubleBuffer();
+            synapseCount = buffer.getInt();
+            int weightBytes = buffer.get();
+            prototypeBytes = buffer.get();
+            idEncoding = buffer.get();
+            boolean hasPsr = buffer.get() != 0;
+            if ((weightBytes != 4 && weightBytes != 8) || idEncoding < IDS_RUNS || idEncoding > IDS_STRINGS) {
+                throw new IOException("Corrupt binary network file");
+            }
+            rowOffsets = slice(buffer, 4L * (neuronCount + 1)).asIntBuffer();
+            targets = slice(buffer, 4L * synapseCount).asIntBuffer();
+            ByteBuffer weightBuffer = slice(buffer, (long) weightBytes * synapseCount);
+            weights = weightBytes == 8 ? weightBuffer.asDoubleBuffer() : weightBuffer.asFloatBuffer();
+            if (prototypeBytes == PROTOTYPE_RUNS) {
+                prototypes = buffer.slice();
+                slice(buffer, 8L * buffer.getInt());
+            } else if (prototypeBytes == 0 || prototypeBytes == 1 || prototypeBytes == 2 || prototypeBytes == 4) {
+                prototypes = slice(buffer, (long) prototypeBytes * synapseCount);
+            } else {
+                throw new IOException("Corrupt binary network file");
+            }
+            ids = buffer.slice();
+            skipIds(buffer);
+            psrs = hasPsr ? slice(buffer, 8L * synapseCount).asDoubleBuffer() : null;
+        }
+
+        private void skipIds(ByteBuffer buffer) {
+            if (idEncoding == IDS_RUNS) {
+                int runs = buffer.getInt();
+                slice(buffer, 8L * runs);
+            } else if (idEncoding == IDS_NUMBERED) {
+                slice(buffer, 4L * synapseCount);
+            } else {
+                for (int k = 0; k < synapseCount; k++) {
+                    slice(buffer, buffer.getInt());
+                }
+            }
+        }
+
+        /**
+         * Take the next bytes of a buffer as a separate buffer.
+         */
+        private static ByteBuffer slice(ByteBuffer buffer, long length) {
+            if (length < 0 || length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            ByteBuffer slice = buffer.slice();
+            slice.limit((int) length);
+            buffer.position(buffer.position() + (int) length);
+            return slice;
+        }
+
+        public int getNeuronCount() {
+            return neuronCount;
+        }
+
+        public int getSynapseCount() {
+            return synapseCount;
+        }
+
+        /**
+         * @return activation of each neuron
+         */
+        public DoubleBuffer getActivations() {
+            return activations.duplicate();
+        }
+
+        /**
+         * @return bias of each neuron, or NaN for neurons whose rule has no
+         * bias
+         */
+        public DoubleBuffer getBiases() {
+            return biases.duplicate();
+        }
+
+        /**
+         * @return the first synapse of each source neuron, followed by the
+         * synapse count
+         */
+        public IntBuffer getRowOffsets() {
+            return rowOffsets.duplicate();
+        }
+
+        /**
+         * @return target neuron index of each synapse
+         */
+        public IntBuffer getTargets() {
+            return targets.duplicate();
+        }
+
+        /**
+         * @param synapse index of a synapse
+         * @return its weight
+         */
+        public double getWeight(int synapse) {
+            return weights instanceof FloatBuffer ? ((FloatBuffer) weights).get(synapse)
+                    : ((DoubleBuffer) weights).get(synapse);
+        }
+
+        /**
+         * @return true if weights are stored in double precision
+         */
+        public boolean isDoublePrecision() {
+            return weights instanceof DoubleBuffer;
+        }
+
+        /**
+         * @return the prototype of each synapse
+         */
+        private int[] readPrototypes() {
+            if (prototypeBytes == PROTOTYPE_RUNS) {
+                return readRuns(prototypes.duplicate(), synapseCount, 0);
+            }
+            int[] result = new int[synapseCount];
+            for (int k = 0; k < synapseCount && prototypeBytes > 0; k++) {
+                result[k] = prototypeBytes == 1 ? prototypes.get(k) & 0xFF
+                        : prototypeBytes == 2 ? prototypes.getShort(2 * k) & 0xFFFF : prototypes.getInt(4 * k);
+            }
+            return result;
+        }
+
+        private double getPsr(int synapse) {
+            return psrs == null ? 0 : psrs.get(synapse);
+        }
+
+        /**
+         * @return the id of each synapse
+         */
+        public String[] readIds() {
+            ByteBuffer buffer = ids.duplicate();
+            String[] result = new String[synapseCount];
+            if (idEncoding == IDS_RUNS) {
+                int[] numbers = readRuns(buffer, synapseCount, 1);
+                for (int k = 0; k < synapseCount; k++) {
+                    result[k] = ID_PREFIX + numbers[k];
+                }
+            } else if (idEncoding == IDS_NUMBERED) {
+                for (int k = 0; k < synapseCount; k++) {
+                    result[k] = ID_PREFIX + buffer.getInt();
+                }
+            } else {
+                for (int k = 0; k < synapseCount; k++) {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    result[k] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Writes primitives to a stream through a reusable buffer, which is much
+     * faster for large arrays than a DataOutputStream.
+     */
+    private static final class ChunkWriter {
+
+        private final OutputStream output;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        ChunkWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            output.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        void put(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putIndex(int value, int bytes) throws IOException {
+            if (bytes == 1) {
+                put((byte) value);
+            } else if (bytes == 2) {
+                ensure(2);
+                buffer.putShort((short) value);
+            } else {
+                putInt(value);
+            }
+        }
+
+        void put(byte[] bytes) throws IOException {
+            drain();
+            output.write(bytes);
+        }
+
+        void flush() throws IOException {
+            drain();
+            output.flush();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util;
+
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.core.JVM;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Deep copies an object graph field by field, with the same results as
+ * writing it with XStream and reading it back, but without the intermediate
+ * xml. Like XStream, objects are created without running their constructors,
+ * static and transient fields are skipped (so transient fields are left null
+ * or zero), shared references and cycles are preserved, and
+ * {@code readResolve()} is called on each copied object that has one, so that
+ * objects rebuild their transient state just as they do when a file is opened.
+ * <p>
+ * Immutable values (strings, boxed primitives, enums, classes) are shared
+ * rather than copied. Arrays and the jdk's collections and maps are copied
+ * element by element, nd4j arrays are duplicated, and a few other jdk value
+ * types are cloned. Any other jdk object cannot be copied (its fields are not
+ * accessible), and causes an {@link UnsupportedOperationException}; callers
+ * should then fall back to an xml round trip.
+ * <p>
+ * A copier remembers everything it has copied, so one copier can copy
+ * several objects that share references. Copiers are not thread safe.
+ */
+public final class DeepCopier {
+
+    /**
+     * Creates objects without calling constructors, as XStream does.
+     */
+    private static final ReflectionProvider PROVIDER = JVM.newReflectionProvider();
+
+    /**
+     * Copied fields of each class, including inherited fields.
+     */
+    private static final Map<Class<?>, FieldCopy[]> FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * The readResolve method of each class, or null if it has none.
+     */
+    private static final Map<Class<?>, Optional<Method>> READ_RESOLVE = new ConcurrentHashMap<>();
+
+    /**
+     * Immutable types that are shared by the original and the copy.
+     */
+    private static final Set<Class<?>> IMMUTABLE = new HashSet<>(Arrays.asList(String.class, Boolean.class,
+            Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            BigInteger.class, BigDecimal.class, Class.class, File.class, UUID.class, Locale.class,
+            java.awt.Color.class, java.awt.Font.class, java.awt.BasicStroke.class));
+
+    /**
+     * Originals mapped to their copies.
+     */
+    private final Map<Object, Object> copies;
+
+    /**
+     * Construct a copier.
+     */
+    public DeepCopier() {
+        copies = new IdentityHashMap<>();
+    }
+
+    /**
+     * Construct a copier for a graph of about the given size, to avoid
+     * rehashing while copying large graphs.
+     *
+     * @param expectedObjects approximate number of objects to be copied
+     */
+    public DeepCopier(int expectedObjects) {
+        copies = new IdentityHashMap<>(Math.max(32, expectedObjects));
+    }
+
+    /**
+     * Convenience method to deep copy one object graph.
+     *
+     * @param original the object to copy
+     * @param <T>      type of the object
+     * @return the copy
+     * @throws UnsupportedOperationException if the graph contains an object
+     *                                       that cannot be copied
+     */
+    public static <T> T deepCopy(T original) {
+        return new DeepCopier().copy(original);
+    }
+
+    /**
+     * Deep copy an object. Objects already copied by this copier are not
+     * copied again; their existing copies are used.
+     *
+     * @param original the object to copy
+     * @param <T>      type of the object
+     * @return the copy, or the original itself if it is immutable
+     * @throws UnsupportedOperationException if the graph contains an object
+     *                                       that cannot be copied
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T original) {
+        if (original == null) {
+            return null;
+        }
+        Object existing = copies.get(original);
+        if (existing != null) {
+            return (T) existing;
+        }
+        Class<?> type = original.getClass();
+        if (isImmutable(type)) {
+            return original;
+        }
+        if (type.isArray()) {
+            return (T) copyArray(original, type);
+        }
+        if (original instanceof INDArray) {
+            Object copy = ((INDArray) original).dup();
+            copies.put(original, copy);
+            return (T) copy;
+        }
+        if (isJdk(type)) {
+            return (T) copyJdkObject(original, type);
+        }
+        return (T) copyObject(original, type);
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return IMMUTABLE.contains(type) || Enum.class.isAssignableFrom(type);
+    }
+
+    private static boolean isJdk(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")
+                || name.startsWith("jdk.") || name.startsWith("com.sun.");
+    }
+
+    private Object copyArray(Object original, Class<?> type) {
+        int length = Array.getLength(original);
+        Class<?> component = type.getComponentType();
+        Object copy = Array.newInstance(component, length);
+        copies.put(original, copy);
+        if (component.isPrimitive()) {
+            System.arraycopy(original, 0, copy, 0, length);
+        } else {
+            Object[] from = (Object[]) original;
+            Object[] to = (Object[]) copy;
+            for (int i = 0; i < length; i++) {
+                to[i] = copy(from[i]);
+            }
+        }
+        return copy;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object copyJdkObject(Object original, Class<?> type) {
+        if (original instanceof EnumSet || original instanceof EnumMap) {
+            // Keys are enums, which are shared; values of an EnumMap are not
+            Object copy = original instanceof EnumSet ? ((EnumSet) original).clone() : ((EnumMap) original).clone();
+            copies.put(original, copy);
+            if (copy instanceof EnumMap) {
+                ((EnumMap<?, Object>) copy).replaceAll((k, v) -> copy(v));
+            }
+            return copy;
+        }
+        if (original instanceof Collection) {
+            Collection<Object> copy = (Collection<Object>) newContainer(original, type);
+            copies.put(original, copy);
+            for (Object element : (Collection<?>) original) {
+                copy.add(copy(element));
+            }
+            return copy;
+        }
+        if (original instanceof Map) {
+            Map<Object, Object> copy = (Map<Object, Object>) newContainer(original, type);
+            copies.put(original, copy);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) original).entrySet()) {
+                copy.put(copy(entry.getKey()), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        Object copy;
+        if (original instanceof AtomicBoolean) {
+            copy = new AtomicBoolean(((AtomicBoolean) original).get());
+        } else if (original instanceof AtomicInteger) {
+            copy = new AtomicInteger(((AtomicInteger) original).get());
+        } else if (original instanceof AtomicLong) {
+            copy = new AtomicLong(((AtomicLong) original).get());
+        } else if (original instanceof AtomicReference) {
+            AtomicReference<Object> reference = new AtomicReference<>();
+            copies.put(original, reference);
+            reference.set(copy(((AtomicReference<?>) original).get()));
+            return reference;
+        } else if (original instanceof Cloneable && Modifier.isPublic(type.getModifiers())) {
+            // Value types like points, rectangles, dates and bit sets
+            try {
+                copy = type.getMethod("clone").invoke(original);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new UnsupportedOperationException("Cannot copy " + type.getName(), e);
+            }
+        } else {
+            throw new UnsupportedOperationException("Cannot copy " + type.getName());
+        }
+        copies.put(original, copy);
+        return copy;
+    }
+
+    /**
+     * Create an empty collection or map like the original. Sorted containers
+     * keep their comparator. Containers that cannot be created directly, like
+     * unmodifiable views or the lists from {@link Arrays#asList}, are replaced
+     * by the closest general purpose container.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object newContainer(Object original, Class<?> type) {
+        if (original instanceof SortedSet) {
+            return new TreeSet<>((Comparator) copy(((SortedSet<?>) original).comparator()));
+        }
+        if (original instanceof SortedMap) {
+            return new TreeMap<>((Comparator) copy(((SortedMap<?, ?>) original).comparator()));
+        }
+        if (original instanceof PriorityQueue) {
+            return new PriorityQueue<>((Comparator) copy(((PriorityQueue<?>) original).comparator()));
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                return type.getConstructor().newInstance();
+            } catch (NoSuchMethodException e) {
+                // Fall through to a general purpose container
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new UnsupportedOperationException("Cannot copy " + type.getName(), e);
+            }
+        }
+        if (original instanceof List) {
+            return new ArrayList<>(((List<?>) original).size());
+        } else if (original instanceof Set) {
+            return new LinkedHashSet<>();
+        } else if (original instanceof Map) {
+            return new LinkedHashMap<>();
+        } else if (original instanceof Queue) {
+            return new ArrayDeque<>();
+        }
+        throw new UnsupportedOperationException("Cannot copy " + type.getName());
+    }
+
+    private Object copyObject(Object original, Class<?> type) {
+        FieldCopy[] fields = FIELDS.computeIfAbsent(type, DeepCopier::findFields);
+        Object copy = PROVIDER.newInstance(type);
+        copies.put(original, copy);
+        try {
+            for (FieldCopy field : fields) {
+                field.copy(original, copy, this);
+            }
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException("Cannot copy " + type.getName(), e);
+        }
+        Method readResolve = READ_RESOLVE.computeIfAbsent(type, DeepCopier::findReadResolve).orElse(null);
+        if (readResolve == null) {
+            return copy;
+        }
+        try {
+            Object resolved = readResolve.invoke(copy);
+            copies.put(original, resolved);
+            return resolved;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("readResolve failed for " + type.getName(), cause);
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException("Cannot copy " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Find the fields of a class that XStream would write: all non-static,
+     * non-transient fields, including inherited ones.
+     */
+    private static FieldCopy[] findFields(Class<?> type) {
+        if (type.isSynthetic() && type.getName().contains("$$Lambda")) {
+            throw new UnsupportedOperationException("Cannot copy lambda " + type.getName());
+        }
+        List<FieldCopy> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                if (isJdk(c)) {
+                    throw new UnsupportedOperationException("Cannot copy " + type.getName()
+                            + ": it inherits fields from " + c.getName());
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    throw new UnsupportedOperationException("Cannot copy " + type.getName(), e);
+                }
+                fields.add(new FieldCopy(field));
+            }
+        }
+        return fields.toArray(new FieldCopy[0]);
+    }
+
+    /**
+     * Find the readResolve method that serialization would call: one declared
+     * by the class itself, or a non-private one it inherits.
+     */
+    private static Optional<Method> findReadResolve(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Method method = c.getDeclaredMethod("readResolve");
+                if (c != type && Modifier.isPrivate(method.getModifiers())) {
+                    return Optional.empty();
+                }
+                method.setAccessible(true);
+                return Optional.of(method);
+            } catch (NoSuchMethodException e) {
+                // Try the superclass
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Copies one field, without boxing primitives.
+     */
+    private static final class FieldCopy {
+
+        private final Field field;
+
+        private final Class<?> type;
+
+        FieldCopy(Field field) {
+            this.field = field;
+            this.type = field.getType();
+        }
+
+        void copy(Object from, Object to, DeepCopier copier) throws IllegalAccessException {
+            if (!type.isPrimitive()) {
+                field.set(to, copier.copy(field.get(from)));
+            } else if (type == double.class) {
+                field.setDouble(to, field.getDouble(from));
+            } else if (type == int.class) {
+                field.setInt(to, field.getInt(from));
+            } else if (type == boolean.class) {
+                field.setBoolean(to, field.getBoolean(from));
+            } else if (type == long.class) {
+                field.setLong(to, field.getLong(from));
+            } else if (type == float.class) {
+                field.setFloat(to, field.getFloat(from));
+            } else if (type == short.class) {
+                field.setShort(to, field.getShort(from));
+            } else if (type == byte.class) {
+                field.setByte(to, field.getByte(from));
+            } else {
+                field.setChar(to, field.getChar(from));
+            }
+        }
+    }
+}
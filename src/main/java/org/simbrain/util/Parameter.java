@@ -26,6 +26,7 @@ import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -68,9 +69,11 @@ public class Parameter implements Comparable<Parameter> {
 
     /**
      *  Static cache of annotated fields for a class.
-     *  Avoids multiple runs of expensive reflection code.
+     *  Avoids multiple runs of expensive reflection code. Concurrent since
+     *  workspaces may be configured on several threads at once, e.g. in
+     *  parameter sweeps.
      */
-    private static Map<Class<?>, Set<Parameter>> classParameters = new HashMap<>();
+    private static Map<Class<?>, Set<Parameter>> classParameters = new ConcurrentHashMap<>();
 
     /**
      * Construct a parameter object from a field.
@@ -515,8 +518,10 @@ public class Parameter implements Comparable<Parameter> {
 
     /**
      * Abstract over methods and fields.
+     *
+     * @return the name of the annotated field or getter
      */
-    private String getName() {
+    public String getName() {
         return isFieldAnnotation() ? field.getName() : getter.getName();
     }
 
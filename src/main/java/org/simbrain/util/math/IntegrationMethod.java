@@ -0,0 +1,65 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.math;
+
+/**
+ * Schemes for integrating an {@link OdeSystem} over one time step.
+ */
+public enum IntegrationMethod {
+
+    /**
+     * Forward Euler. Cheap, but needs small time steps for stiff models.
+     */
+    EULER("Euler"),
+
+    /**
+     * Second order Runge-Kutta (Heun's method).
+     */
+    HEUN("Heun (RK2)"),
+
+    /**
+     * Exponential Euler: each variable relaxes exponentially toward its
+     * steady state under the rates in {@link OdeSystem#decayRates}. Exact for
+     * gating variables with fixed voltage, and stable at much larger time steps
+     * than forward Euler.
+     */
+    EXPONENTIAL_EULER("Exponential Euler"),
+
+    /**
+     * Classical fourth order Runge-Kutta.
+     */
+    RK4("Runge-Kutta 4"),
+
+    /**
+     * Dormand-Prince 5(4) with substeps sized to keep the local error below a
+     * tolerance.
+     */
+    ADAPTIVE("Adaptive (RK45)");
+
+    private final String description;
+
+    IntegrationMethod(String description) {
+        this.description = description;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.math;
+
+import java.util.Arrays;
+
+/**
+ * Steps an {@link OdeSystem} of fixed dimension with any {@link
+ * IntegrationMethod}. A solver keeps its own work arrays, so steps allocate
+ * nothing; use one solver per system (e.g. one per neuron update rule), since
+ * solvers are not thread safe.
+ * <p>
+ * With {@link IntegrationMethod#ADAPTIVE} a time step is split into as many
+ * substeps as needed to keep the local error of every variable below {@code
+ * tolerance * (1 + |y|)}, and the substep size that last worked is remembered
+ * for the next step.
+ */
+public class OdeSolver {
+
+    /**
+     * Default error tolerance for adaptive integration.
+     */
+    public static final double DEFAULT_TOLERANCE = 1E-6;
+
+    /**
+     * Most substeps taken in one adaptive step.
+     */
+    private static final int MAX_SUBSTEPS = 100_000;
+
+    /**
+     * Smallest substep, as a fraction of the time step.
+     */
+    private static final double MIN_SUBSTEP = 1E-9;
+
+    // Dormand-Prince coefficients
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187, A53 = 64448.0 / 6561,
+            A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247, A64 = 49.0 / 176,
+            A65 = -5103.0 / 18656;
+    private static final double B1 = 35.0 / 384, B3 = 500.0 / 1113, B4 = 125.0 / 192, B5 = -2187.0 / 6784,
+            B6 = 11.0 / 84;
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920, E5 = -17253.0 / 339200,
+            E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+    private final int dimension;
+
+    private final double[] k1, k2, k3, k4, k5, k6, k7, temp;
+
+    /**
+     * Substep size last used by the adaptive method, or 0 before its first
+     * step.
+     */
+    private double substep;
+
+    /**
+     * Number of substeps taken by the last step.
+     */
+    private int lastSubsteps;
+
+    /**
+     * Construct a solver.
+     *
+     * @param dimension number of state variables
+     */
+    public OdeSolver(int dimension) {
+        this.dimension = dimension;
+        k1 = new double[dimension];
+        k2 = new double[dimension];
+        k3 = new double[dimension];
+        k4 = new double[dimension];
+        k5 = new double[dimension];
+        k6 = new double[dimension];
+        k7 = new double[dimension];
+        temp = new double[dimension];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return number of substeps taken by the last call to {@link #step}; 1
+     * except for adaptive integration
+     */
+    public int getLastSubsteps() {
+        return lastSubsteps;
+    }
+
+    /**
+     * Advance the state by one time step, in place.
+     *
+     * @param method    the integration method
+     * @param system    the equations
+     * @param y         the state, overwritten with the new state
+     * @param dt        the time step
+     * @param tolerance local error tolerance, used only by adaptive
+     *                  integration; {@link #DEFAULT_TOLERANCE} is used if it
+     *                  is not positive
+     */
+    public void step(IntegrationMethod method, OdeSystem system, double[] y, double dt, double tolerance) {
+        lastSubsteps = 1;
+        if (!(tolerance > 0)) {
+            tolerance = DEFAULT_TOLERANCE;
+        }
+        switch (method) {
+            case EULER:
+                euler(system, y, dt);
+                break;
+            case HEUN:
+                heun(system, y, dt);
+                break;
+            case EXPONENTIAL_EULER:
+                exponentialEuler(system, y, dt);
+                break;
+            case RK4:
+                rk4(system, y, dt);
+                break;
+            case ADAPTIVE:
+                adaptive(system, y, dt, tolerance);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown integration method " + method);
+        }
+    }
+
+    private void euler(OdeSystem system, double[] y, double dt) {
+        system.derivatives(y, k1);
+        for (int i = 0; i < dimension; i++) {
+            y[i] += dt * k1[i];
+        }
+    }
+
+    private void heun(OdeSystem system, double[] y, double dt) {
+        system.derivatives(y, k1);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + dt * k1[i];
+        }
+        system.derivatives(temp, k2);
+        for (int i = 0; i < dimension; i++) {
+            y[i] += dt / 2 * (k1[i] + k2[i]);
+        }
+    }
+
+    private void exponentialEuler(OdeSystem system, double[] y, double dt) {
+        system.derivatives(y, k1);
+        Arrays.fill(k2, 0);
+        system.decayRates(y, k2);
+        for (int i = 0; i < dimension; i++) {
+            // y + f * (1 - exp(-b dt)) / b, which is forward Euler as b goes to 0
+            double z = k2[i] * dt;
+            double factor = Math.abs(z) < 1E-10 ? dt : -Math.expm1(-z) / k2[i];
+            y[i] += factor * k1[i];
+        }
+    }
+
+    private void rk4(OdeSystem system, double[] y, double dt) {
+        system.derivatives(y, k1);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + dt / 2 * k1[i];
+        }
+        system.derivatives(temp, k2);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + dt / 2 * k2[i];
+        }
+        system.derivatives(temp, k3);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + dt * k3[i];
+        }
+        system.derivatives(temp, k4);
+        for (int i = 0; i < dimension; i++) {
+            y[i] += dt / 6 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]);
+        }
+    }
+
+    private void adaptive(OdeSystem system, double[] y, double dt, double tolerance) {
+        double remaining = dt;
+        double h = substep > 0 ? Math.min(substep, dt) : dt;
+        int steps = 0;
+        while (remaining > 0) {
+            boolean last = h >= remaining;
+            if (last) {
+                h = remaining;
+            }
+            double error = dormandPrince(system, y, h, tolerance);
+            steps++;
+            boolean minimal = h <= dt * MIN_SUBSTEP || steps >= MAX_SUBSTEPS;
+            if (error <= 1 || minimal) {
+                // Accept: the 5th order solution is in temp
+                System.arraycopy(temp, 0, y, 0, dimension);
+                remaining = last ? 0 : remaining - h;
+                if (!last) {
+                    // Remember the substep for the next time step, unless it was cut short to land on dt
+                    substep = h * growth(error);
+                }
+                h = h * growth(error);
+            } else {
+                h = h * Math.max(0.2, 0.9 * Math.pow(error, -0.2));
+            }
+            if (steps >= MAX_SUBSTEPS && remaining > 0) {
+                // Give up on accuracy rather than stall the simulation
+                h = remaining;
+            }
+        }
+        lastSubsteps = steps;
+    }
+
+    private static double growth(double error) {
+        return error == 0 ? 5 : Math.min(5, Math.max(0.2, 0.9 * Math.pow(error, -0.2)));
+    }
+
+    /**
+     * Take one Dormand-Prince step of size h from y, leaving the result in
+     * {@link #temp}.
+     *
+     * @return the error norm relative to the tolerance; at most 1 if the step
+     * is acceptable
+     */
+    private double dormandPrince(OdeSystem system, double[] y, double h, double tolerance) {
+        system.derivatives(y, k1);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + h * A21 * k1[i];
+        }
+        system.derivatives(temp, k2);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + h * (A31 * k1[i] + A32 * k2[i]);
+        }
+        system.derivatives(temp, k3);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+        }
+        system.derivatives(temp, k4);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+        }
+        system.derivatives(temp, k5);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+        }
+        system.derivatives(temp, k6);
+        for (int i = 0; i < dimension; i++) {
+            temp[i] = y[i] + h * (B1 * k1[i] + B3 * k3[i] + B4 * k4[i] + B5 * k5[i] + B6 * k6[i]);
+        }
+        system.derivatives(temp, k7);
+        double error = 0;
+        for (int i = 0; i < dimension; i++) {
+            double e = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+            double scale = tolerance * (1 + Math.max(Math.abs(y[i]), Math.abs(temp[i])));
+            error = Math.max(error, Math.abs(e) / scale);
+        }
+        // NaN (e.g. from an overflowing exponential) counts as a failed step
+        return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+    }
+}
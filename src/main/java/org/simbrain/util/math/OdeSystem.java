@@ -0,0 +1,48 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.math;
+
+/**
+ * A system of ordinary differential equations dy/dt = f(y), stepped by an
+ * {@link OdeSolver}. Inputs to the system (synaptic current, noise) are held
+ * constant over a step.
+ */
+public interface OdeSystem {
+
+    /**
+     * Compute the derivatives of the state.
+     *
+     * @param y    the state
+     * @param dydt array in which to write dy/dt
+     */
+    void derivatives(double[] y, double[] dydt);
+
+    /**
+     * Linear decay rates used by {@link IntegrationMethod#EXPONENTIAL_EULER}:
+     * for each variable, the rate b such that dy/dt = a - b * y with a and b
+     * treated as constant over a step (for a gating variable, alpha + beta; for
+     * a membrane potential, total conductance over capacitance). Variables
+     * left at zero are stepped with forward Euler. By default all are zero.
+     *
+     * @param y     the state
+     * @param rates array, filled with zeros, in which to write the rates
+     */
+    default void decayRates(double[] y, double[] rates) {
+    }
+}
@@ -3,6 +3,7 @@ package org.simbrain.util.math.ProbDistributions;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import umontreal.ssj.probdist.Distribution;
 import umontreal.ssj.probdist.ExponentialDist;
 import umontreal.ssj.randvar.ExponentialGen;
@@ -54,9 +55,9 @@ public class ExponentialDistribution extends ProbabilityDistribution {
     }
 
     @Override
-    public double nextRand() {
-        return clipping(this,
-                ExponentialGen.nextDouble(DEFAULT_RANDOM_STREAM, lambda),
+    public double nextRand(SimbrainRandom random) {
+        return clipping(this, random,
+                ExponentialGen.nextDouble(random.asRandomStream(), lambda),
                 floor,
                 ceil
                 );
@@ -3,6 +3,7 @@ package org.simbrain.util.math.ProbDistributions;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import umontreal.ssj.probdist.Distribution;
 import umontreal.ssj.probdist.GammaDist;
 import umontreal.ssj.randvar.GammaGen;
@@ -60,9 +61,9 @@ public class GammaDistribution extends ProbabilityDistribution {
     }
 
     @Override
-    public double nextRand() {
-        return clipping(this,
-                GammaGen.nextDouble(DEFAULT_RANDOM_STREAM, shape, scale),
+    public double nextRand(SimbrainRandom random) {
+        return clipping(this, random,
+                GammaGen.nextDouble(random.asRandomStream(), shape, scale),
                 floor,
                 ceil
                 );
@@ -3,6 +3,7 @@ package org.simbrain.util.math.ProbDistributions;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import umontreal.ssj.randvar.LognormalGen;
 
 public class LogNormalDistribution extends ProbabilityDistribution {
@@ -57,9 +58,9 @@ public class LogNormalDistribution extends ProbabilityDistribution {
     }
 
     @Override
-    public double nextRand() {
-        return clipping(this,
-                LognormalGen.nextDouble(DEFAULT_RANDOM_STREAM, location, scale),
+    public double nextRand(SimbrainRandom random) {
+        return clipping(this, random,
+                LognormalGen.nextDouble(random.asRandomStream(), location, scale),
                 floor,
                 ceil
                 );
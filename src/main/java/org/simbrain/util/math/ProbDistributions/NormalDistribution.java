@@ -3,11 +3,10 @@ package org.simbrain.util.math.ProbDistributions;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import umontreal.ssj.probdist.Distribution;
 import umontreal.ssj.probdist.NormalDist;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class NormalDistribution extends ProbabilityDistribution {
 
     @UserParameter(
@@ -61,9 +60,9 @@ public class NormalDistribution extends ProbabilityDistribution {
     public NormalDistribution() {
     }
 
-    public double nextRand() {
-        return clipping(this,
-                (ThreadLocalRandom.current().nextGaussian() * standardDeviation) + mean,
+    public double nextRand(SimbrainRandom random) {
+        return clipping(this, random,
+                (random.nextGaussian() * standardDeviation) + mean,
                 floor,
                 ceil
                 );
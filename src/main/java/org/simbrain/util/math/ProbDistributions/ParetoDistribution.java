@@ -3,6 +3,7 @@ package org.simbrain.util.math.ProbDistributions;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import umontreal.ssj.randvar.ParetoGen;
 
 public class ParetoDistribution extends ProbabilityDistribution{
@@ -58,9 +59,9 @@ public class ParetoDistribution extends ProbabilityDistribution{
     }
 
     @Override
-    public double nextRand() {
-        return clipping(this,
-                ParetoGen.nextDouble(DEFAULT_RANDOM_STREAM, slope, min),
+    public double nextRand(SimbrainRandom random) {
+        return clipping(this, random,
+                ParetoGen.nextDouble(random.asRandomStream(), slope, min),
                 floor,
                 ceil
                 );
@@ -3,10 +3,9 @@ package org.simbrain.util.math.ProbDistributions;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.math.ProbabilityDistribution;
+import org.simbrain.util.math.SimbrainRandom;
 import umontreal.ssj.probdist.UniformDist;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class UniformDistribution extends ProbabilityDistribution {
 
     /**
@@ -40,8 +39,8 @@ public class UniformDistribution extends ProbabilityDistribution {
     public UniformDistribution() {
     }
 
-    public double nextRand() {
-        return ThreadLocalRandom.current().nextDouble(this.floor, this.ceil);
+    public double nextRand(SimbrainRandom random) {
+        return random.nextDouble(this.floor, this.ceil);
     }
 
     public int nextRandInt() {
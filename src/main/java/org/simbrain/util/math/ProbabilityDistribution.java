@@ -11,8 +11,6 @@ import umontreal.ssj.rng.RandomStream;
 import java.util.Arrays;
 import java.util.List;
 
-//TODO: Allow seed to be set
-
 /**
  * Base class for all ProbabilityDistribution.
  */
@@ -33,14 +31,31 @@ public abstract class ProbabilityDistribution implements CopyableObject {
         return DIST_LIST;
     }
 
+    /**
+     * @deprecated shared by all threads and unseeded; distributions now draw
+     * from a {@link SimbrainRandom}
+     */
+    @Deprecated
     public static final RandomStream DEFAULT_RANDOM_STREAM = new LFSR113();
 
     /**
-     * Get a random double number from a probability distribution
+     * Get a random double number from a probability distribution, drawn from
+     * {@link SimbrainRandom#current()}.
+     *
+     * @return a random number
+     */
+    public double nextRand() {
+        return nextRand(SimbrainRandom.current());
+    }
+
+    /**
+     * Get a random double number from a probability distribution, drawn from
+     * the given stream.
      *
+     * @param random the stream to draw from
      * @return a random number
      */
-    public abstract double nextRand();
+    public abstract double nextRand(SimbrainRandom random);
 
     /**
      * Get a random integer number from a probability distribution
@@ -77,12 +92,13 @@ public abstract class ProbabilityDistribution implements CopyableObject {
      * depending upon which is closer and returns it. If the value is already
      * within the interval, does nothing, returns the value.
      *
+     * @param random     the stream to re-draw from
      * @param value      the value to be clipped
      * @param lowerBound lower bound of the interval
      * @param upperBound upper bound of the interval
      * @return the clipped value
      */
-    protected static double clipping(ProbabilityDistribution dist, double value,
+    protected static double clipping(ProbabilityDistribution dist, SimbrainRandom random, double value,
                                      double lowerBound, double upperBound) {
         if(value >= lowerBound && value <= upperBound) {
             return value;
@@ -93,7 +109,7 @@ public abstract class ProbabilityDistribution implements CopyableObject {
             //TODO: Parameterize 20, so it's not a magic number
             if (cnt >= 20)
                 break;
-            result = dist.nextRand();
+            result = dist.nextRand(random);
             cnt++;
         } while(result < lowerBound || result > upperBound);
 
@@ -114,6 +130,17 @@ public abstract class ProbabilityDistribution implements CopyableObject {
         return getPolarity().value(nextRand());
     }
 
+    /**
+     * Return the next sampled value from this probability distribution, drawn
+     * from the given stream.
+     *
+     * @param random the stream to draw from
+     * @return the value
+     */
+    public double getRandom(SimbrainRandom random) {
+        return getPolarity().value(nextRand(random));
+    }
+
     /**
      * Helper class to return a builder for a specified type of distribution.
      *
@@ -299,6 +326,17 @@ public abstract class ProbabilityDistribution implements CopyableObject {
             return probabilityDistribution.nextRand();
         }
 
+        /**
+         * Returns a random number from the underlying probability
+         * distribution, drawn from the given stream.
+         *
+         * @param random the stream to draw from
+         * @return the random number
+         */
+        public double getRandom(SimbrainRandom random) {
+            return probabilityDistribution.nextRand(random);
+        }
+
         @Override
         public String getName() {
             return "Randomizer";
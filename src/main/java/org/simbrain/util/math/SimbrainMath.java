@@ -39,7 +39,11 @@ public class SimbrainMath {
     /**
      * A default random stream that can be used by any calls to SSJ
      * classes/functions.
+     *
+     * @deprecated shared by all threads and unseeded; use {@link
+     * SimbrainRandom#asRandomStream()}
      */
+    @Deprecated
     public static final RandomStream DEFAULT_RANDOM_STREAM = new LFSR258();
 
     public static final double log10of2 = Math.log10(2);
@@ -81,8 +85,15 @@ public class SimbrainMath {
      * (inclusive) and ceil (exclusive).
      */
     public static int[] randPermute(int floor, int ceil) {
+        return randPermute(floor, ceil, SimbrainRandom.current());
+    }
+
+    /**
+     * Returns a random permutation of all the integers between floor
+     * (inclusive) and ceil (exclusive), drawn from the given generator.
+     */
+    public static int[] randPermute(int floor, int ceil, Random randi) {
         int[] permute = new int[ceil - floor];
-        Random randi = new Random();
         for (int i = floor; i < ceil; i++) {
             int j = randi.nextInt(i - floor + 1);
             if (j != i - floor) {
@@ -101,8 +112,15 @@ public class SimbrainMath {
      * This method will fail if excluded
      */
     public static int[] randPermuteWithExclusion(int floor, int ceil, int excluded) {
+        return randPermuteWithExclusion(floor, ceil, excluded, SimbrainRandom.current());
+    }
+
+    /**
+     * Like {@link #randPermuteWithExclusion(int, int, int)}, drawing from the
+     * given generator.
+     */
+    public static int[] randPermuteWithExclusion(int floor, int ceil, int excluded, Random randi) {
         int[] permute = new int[ceil - floor - 1];
-        Random randi = new Random();
         int k = floor - 1;
         for (int i = floor; i < ceil; i++) {
             if (i == excluded) {
@@ -612,7 +630,7 @@ public class SimbrainMath {
         double sqrt2 = Math.sqrt(2);
 
         for (int i = 0; i < vector.length; i++) {
-            randUniform = Math.random();
+            randUniform = SimbrainRandom.current().nextDouble();
             vector[i] += (sigma * sqrt2 * SimbrainMath.inverf(randUniform));
         }
     }
@@ -631,7 +649,7 @@ public class SimbrainMath {
         double[] returnVector = new double[vector.length];
 
         for (int i = 0; i < vector.length; i++) {
-            randUniform = Math.random();
+            randUniform = SimbrainRandom.current().nextDouble();
             returnVector[i] = vector[i] + (sigma * sqrt2 * SimbrainMath.inverf(randUniform));
         }
         return returnVector;
@@ -645,8 +663,9 @@ public class SimbrainMath {
      */
     public static double[] randomVector(int length) {
         double[] returnVector = new double[length];
+        SimbrainRandom random = SimbrainRandom.current();
         for (int i = 0; i < returnVector.length; i++) {
-            returnVector[i] = Math.random();
+            returnVector[i] = random.nextDouble();
         }
         return returnVector;
     }
@@ -661,8 +680,9 @@ public class SimbrainMath {
      */
     public static double[] randomVector(final int length, final double min, final double max) {
         double[] returnVector = new double[length];
+        SimbrainRandom random = SimbrainRandom.current();
         for (int i = 0; i < returnVector.length; i++) {
-            returnVector[i] = min + Math.random() * Math.abs(max - min);
+            returnVector[i] = min + random.nextDouble() * Math.abs(max - min);
         }
         return returnVector;
     }
@@ -0,0 +1,346 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.math;
+
+import umontreal.ssj.rng.RandomStream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * A seeded stream of random numbers that can be split into independent child
+ * streams. Networks, groups, and neurons each draw from their own stream,
+ * derived from a single seed, so a simulation gives the same results every
+ * time it is run from that seed, no matter how its updates are spread over
+ * threads.
+ * <p>
+ * Numbers are generated with the SplitMix64 algorithm (the one behind {@link
+ * java.util.SplittableRandom}). Unlike {@link Random}, a stream is not
+ * synchronized: each stream should be used by one thread at a time, which is
+ * what makes generation contention free.
+ * <p>
+ * Code that has no stream of its own draws from {@link #current()}: the stream
+ * bound to the calling thread with {@link #bind}, or else a private,
+ * unseeded stream for the thread.
+ */
+public final class SimbrainRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Odd constant added to the state for each number (the golden ratio).
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Streams bound with {@link #bind}.
+     */
+    private static final ThreadLocal<SimbrainRandom> BOUND = new ThreadLocal<>();
+
+    /**
+     * Fallback streams for threads with nothing bound.
+     */
+    private static final ThreadLocal<SimbrainRandom> UNSEEDED =
+        ThreadLocal.withInitial(() -> new SimbrainRandom(mix64(System.nanoTime() ^ Thread.currentThread().getId())));
+
+    /**
+     * Seed the stream was created with. Child streams made by {@link #fork}
+     * depend only on this, not on how many numbers have been drawn.
+     */
+    private final long seed;
+
+    /**
+     * Current state.
+     */
+    private long state;
+
+    /**
+     * Second normal deviate from the last call to {@link #nextGaussian()}.
+     */
+    private double nextGaussian;
+
+    private boolean haveNextGaussian;
+
+    /**
+     * False while the superclass constructor runs.
+     */
+    private final boolean constructed;
+
+    /**
+     * View of this stream for SSJ generators, created on demand.
+     */
+    private transient RandomStream ssjStream;
+
+    /**
+     * Create a stream.
+     *
+     * @param seed the seed
+     */
+    public SimbrainRandom(long seed) {
+        super(0);
+        this.seed = seed;
+        this.state = seed;
+        constructed = true;
+    }
+
+    /**
+     * @return the stream bound to the calling thread, or the thread's own
+     * unseeded stream if none is bound
+     */
+    public static SimbrainRandom current() {
+        SimbrainRandom random = BOUND.get();
+        return random != null ? random : UNSEEDED.get();
+    }
+
+    /**
+     * Make {@link #current()} return the given stream on the calling thread.
+     * Callers should restore the returned stream when they are done:
+     * <pre>
+     * SimbrainRandom previous = SimbrainRandom.bind(stream);
+     * try {
+     *     ...
+     * } finally {
+     *     SimbrainRandom.bind(previous);
+     * }
+     * </pre>
+     *
+     * @param random the stream to bind, or null to unbind
+     * @return the stream previously bound, possibly null
+     */
+    public static SimbrainRandom bind(SimbrainRandom random) {
+        SimbrainRandom previous = BOUND.get();
+        if (random == null) {
+            BOUND.remove();
+        } else {
+            BOUND.set(random);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns a child stream determined by this stream's seed and the given
+     * key. The same key always gives the same stream, whatever has been drawn
+     * from this one, so objects can derive their streams in any order.
+     *
+     * @param key key identifying the child, e.g. a hash of an id
+     * @return the child stream
+     */
+    public SimbrainRandom fork(long key) {
+        return new SimbrainRandom(mix64(seed ^ mix64(key + GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Returns a child stream seeded from the next number of this one, for
+     * handing out streams in a fixed order, e.g. one per task.
+     *
+     * @return the child stream
+     */
+    public SimbrainRandom split() {
+        return new SimbrainRandom(nextLong());
+    }
+
+    /**
+     * @return the seed this stream was created with
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Restart the stream from its seed.
+     */
+    public void reset() {
+        state = seed;
+        haveNextGaussian = false;
+    }
+
+    /**
+     * Write the stream's position, so that it can later continue from here
+     * with {@link #readState}.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(state);
+        out.writeBoolean(haveNextGaussian);
+        out.writeDouble(nextGaussian);
+    }
+
+    /**
+     * Continue the stream from a position written by {@link #writeState}.
+     *
+     * @param in the input
+     * @throws IOException if reading fails
+     */
+    public void readState(DataInput in) throws IOException {
+        state = in.readLong();
+        haveNextGaussian = in.readBoolean();
+        nextGaussian = in.readDouble();
+    }
+
+    /**
+     * Restarting from a new seed is not supported; create a new stream
+     * instead. Called by the superclass constructor, where it is ignored.
+     */
+    @Override
+    public void setSeed(long seed) {
+        if (constructed) {
+            throw new UnsupportedOperationException("Create a new SimbrainRandom instead");
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Same polar method as {@link Random#nextGaussian()}, without the
+     * synchronization.
+     */
+    @Override
+    public double nextGaussian() {
+        if (haveNextGaussian) {
+            haveNextGaussian = false;
+            return nextGaussian;
+        }
+        double v1;
+        double v2;
+        double s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextGaussian = v2 * multiplier;
+        haveNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    /**
+     * Returns a uniformly distributed value between the given bounds.
+     *
+     * @param floor   lower bound, inclusive
+     * @param ceiling upper bound, exclusive
+     * @return the value
+     */
+    public double nextDouble(double floor, double ceiling) {
+        return floor + nextDouble() * (ceiling - floor);
+    }
+
+    /**
+     * @return this stream as an SSJ {@link RandomStream}, for use with SSJ's
+     * random variate generators
+     */
+    public RandomStream asRandomStream() {
+        if (ssjStream == null) {
+            ssjStream = new SsjStream();
+        }
+        return ssjStream;
+    }
+
+    /**
+     * The SplitMix64 finalizer: a bijective scrambling of 64 bits.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Adapts the stream to SSJ. Substreams are not supported; resetting goes
+     * back to the seed.
+     */
+    private final class SsjStream implements RandomStream {
+
+        @Override
+        public void resetStartStream() {
+            reset();
+        }
+
+        @Override
+        public void resetStartSubstream() {
+            reset();
+        }
+
+        @Override
+        public void resetNextSubstream() {
+        }
+
+        @Override
+        public double nextDouble() {
+            // SSJ generators expect values in (0,1)
+            double u;
+            do {
+                u = SimbrainRandom.this.nextDouble();
+            } while (u == 0);
+            return u;
+        }
+
+        @Override
+        public void nextArrayOfDouble(double[] u, int start, int n) {
+            for (int i = start; i < start + n; i++) {
+                u[i] = nextDouble();
+            }
+        }
+
+        @Override
+        public int nextInt(int i, int j) {
+            return i + (int) (nextDouble() * (j - i + 1.0));
+        }
+
+        @Override
+        public void nextArrayOfInt(int i, int j, int[] u, int start, int n) {
+            for (int k = start; k < start + n; k++) {
+                u[k] = nextInt(i, j);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "SimbrainRandom stream, seed " + seed;
+        }
+    }
+}
@@ -4,11 +4,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Extends java randomizer with convenience functions to, e.g. get numbers in a range.
- * If called using the static instance, threadsafe random numbers are returned. If created
+ * If called using the static instance, numbers come from {@link SimbrainRandom#current()}. If created
  * using the constructor,a deterministic sequence of random numbers from an initial seed
  * are returned.
  *
@@ -29,7 +28,7 @@ public class SimbrainRandomizer extends Random {
     private boolean useSeed = true;
 
     /**
-     * Threadsafe non-seeded randomizer for general use.
+     * Randomizer for general use, backed by {@link SimbrainRandom#current()}.
      */
     public static SimbrainRandomizer rand = new SimbrainRandomizer(System.nanoTime());
 
@@ -59,7 +58,7 @@ public class SimbrainRandomizer extends Random {
         if (useSeed) {
             return (nextDouble() * range) + floor;
         } else {
-            return (ThreadLocalRandom.current().nextDouble() * range) + floor;
+            return (SimbrainRandom.current().nextDouble() * range) + floor;
         }
     }
 
@@ -76,7 +75,7 @@ public class SimbrainRandomizer extends Random {
             int range = ceiling - floor;
             return (nextInt(range) + floor);
         } else  {
-            return ThreadLocalRandom.current().nextInt(floor, ceiling+ 1);
+            return SimbrainRandom.current().nextInt(ceiling - floor + 1) + floor;
         }
     }
 
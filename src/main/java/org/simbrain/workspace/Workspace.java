@@ -32,6 +32,7 @@ import org.simbrain.workspace.updater.WorkspaceUpdater;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.IntPredicate;
 
 /**
  * A collection of components which interact via couplings. Neural networks,
@@ -251,6 +252,29 @@ public class Workspace {
         stop();
     }
 
+    /**
+     * Iterate until a condition holds, or for at most a set number of
+     * iterations. See {@link WorkspaceUpdater#iterateUntil(int, IntPredicate)}.
+     *
+     * @param maxIterations the most iterations to run, or a negative number
+     *                      for no limit
+     * @param stopCondition called after each iteration with the current time;
+     *                      iteration stops when it returns true
+     * @return the number of iterations run
+     */
+    public int iterateUntil(int maxIterations, IntPredicate stopCondition) {
+        for (WorkspaceComponent wc : getComponentList()) {
+            wc.start();
+        }
+        try {
+            synchronized (updaterLock) {
+                return updater.iterateUntil(maxIterations, stopCondition);
+            }
+        } finally {
+            stop();
+        }
+    }
+
     /**
      * Simple non-synchronized updater for non-GUI applications running
      * in a single thread.
@@ -495,7 +519,7 @@ public class Workspace {
         try {
             if (theFile != null) {
                 clearWorkspace();
-                serializer.deserialize(new FileInputStream(theFile));
+                serializer.deserialize(theFile);
                 setCurrentFile(theFile);
                 setWorkspaceChanged(false);
                 events.fireNewWorkspaceOpened();
@@ -24,7 +24,10 @@ import org.simbrain.workspace.events.WorkspaceComponentEvents;
 import org.simbrain.workspace.gui.ComponentPanel;
 import org.simbrain.workspace.gui.GuiComponent;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -110,6 +113,41 @@ public abstract class WorkspaceComponent {
      */
     public abstract void save(OutputStream output, String format);
 
+    /**
+     * Write the state that changes while the simulation runs, but not the
+     * structure or parameters saved by {@link #save}, for a {@link
+     * org.simbrain.workspace.serialization.WorkspaceCheckpoint}. By default
+     * nothing is written.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+    }
+
+    /**
+     * Restore state written by {@link #writeState} into this component, which
+     * should have the structure it had when the state was written.
+     *
+     * @param in the input, holding exactly what {@link #writeState} wrote
+     * @throws IOException if reading fails or the state does not fit
+     */
+    public void readState(DataInput in) throws IOException {
+    }
+
+    /**
+     * Check that state written by {@link #writeState} fits this component,
+     * without changing anything. Called on every component's state before
+     * any of it is restored, so that a checkpoint that does not fit is
+     * rejected as a whole. By default any state is accepted.
+     *
+     * @param in the input, holding what {@link #writeState} wrote; need not
+     *           be read to the end
+     * @throws IOException if reading fails or the state does not fit
+     */
+    public void checkState(DataInput in) throws IOException {
+    }
+
     /**
      * Returns a list of the formats that this component supports. The default
      * behavior is to return a list containing the default format.
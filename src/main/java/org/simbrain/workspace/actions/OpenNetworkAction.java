@@ -19,6 +19,7 @@
 package org.simbrain.workspace.actions;
 
 import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.util.io_utilities.BinaryNetworkFormat;
 import org.simbrain.util.ResourceManager;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.SimbrainPreferences;
@@ -54,6 +55,7 @@ public final class OpenNetworkAction extends WorkspaceAction {
     public void actionPerformed(final ActionEvent event) {
         String defaultDirectory = SimbrainPreferences.getString("workspaceNetworkDirectory");
         SFileChooser chooser = new SFileChooser(defaultDirectory, "xml file", "xml");
+        chooser.addExtension("binary network file", BinaryNetworkFormat.FORMAT);
         File theFile = chooser.showOpenDialog();
         if (theFile != null) {
             WorkspaceComponent component = WorkspaceSerializer.open(NetworkComponent.class, theFile);
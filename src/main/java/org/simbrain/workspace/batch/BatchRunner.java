@@ -0,0 +1,571 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.workspace.Producer;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a saved workspace from the command line without a desktop. The
+ * workspace is loaded, run for a number of iterations or until a condition on
+ * one of its producers holds, and the values of selected producers are written
+ * to a CSV or binary file as it runs. No gui components are created, so this
+ * works on machines without a display.
+ * <p>
+ * Producers are named by their description, e.g. {@code
+ * Neuron_1:getActivation}, and selected with regular expressions over these
+ * names. Run with {@code --list} to see the names in a workspace. Usage:
+ * <pre>
+ * BatchRunner workspace.zip [options]
+ *   -n, --iterations N    iterations to run (default 1000; -1 for no limit)
+ *   -u, --until COND      stop once COND holds, e.g. "Neuron_1:getActivation>0.9"
+ *   -r, --record REGEX    record producers whose names match; may be repeated
+ *   -o, --out FILE        output file; CSV if it ends in .csv, else binary
+ *   -e, --every K         record every K iterations (default 1)
+ *   -s, --seed S          seed the random streams of every network
+ *   -l, --list            print the names of all producers and exit
+ * </pre>
+ * The binary format is a big-endian {@link DataOutputStream}: the number of
+ * columns, the name of each column (as modified UTF-8), and then for each
+ * recorded iteration the workspace time as an int followed by one double per
+ * column. Array producers contribute one column per element, with names
+ * suffixed by the element index.
+ */
+public class BatchRunner {
+
+    /**
+     * Form of a stop condition: producer name, comparison, value.
+     */
+    private static final Pattern CONDITION = Pattern.compile("(.+?)\\s*(>=|<=|==|!=|>|<)\\s*(\\S+)");
+
+    /**
+     * The workspace being run.
+     */
+    private final Workspace workspace;
+
+    /**
+     * Producers whose values are recorded.
+     */
+    private final List<Producer> recorded = new ArrayList<>();
+
+    /**
+     * Number of columns each recorded producer contributes, fixed by the first
+     * recording.
+     */
+    private int[] widths;
+
+    /**
+     * Current values of the recorded producers.
+     */
+    private double[] row;
+
+    /**
+     * Producer tested by the stop condition, or null to run all iterations.
+     */
+    private Producer conditionProducer;
+
+    /**
+     * Test applied to the value of {@link #conditionProducer}.
+     */
+    private DoublePredicate condition;
+
+    /**
+     * Record values every this many iterations.
+     */
+    private int recordInterval = 1;
+
+    /**
+     * Create a runner for a workspace.
+     *
+     * @param workspace the workspace to run
+     */
+    public BatchRunner(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Load a workspace from a file without creating a desktop for it.
+     *
+     * @param file the workspace zip file
+     * @return the loaded workspace
+     * @throws IOException if the file cannot be read
+     */
+    public static Workspace loadWorkspace(File file) throws IOException {
+        Workspace workspace = new Workspace();
+        new WorkspaceSerializer(workspace).deserialize(file);
+        workspace.setCurrentFile(file);
+        return workspace;
+    }
+
+    /**
+     * Load a workspace from a zip compressed stream without creating a desktop
+     * for it.
+     *
+     * @param stream the stream to read from
+     * @return the loaded workspace
+     * @throws IOException if the stream cannot be read
+     */
+    public static Workspace loadWorkspace(InputStream stream) throws IOException {
+        Workspace workspace = new Workspace();
+        new WorkspaceSerializer(workspace).deserialize(stream);
+        return workspace;
+    }
+
+    /**
+     * @return all visible producers in the workspace, in component order
+     */
+    public List<Producer> getProducers() {
+        List<Producer> producers = new ArrayList<>();
+        for (WorkspaceComponent component : workspace.getComponentList()) {
+            producers.addAll(workspace.getCouplingManager().getVisibleProducers(component));
+        }
+        return producers;
+    }
+
+    /**
+     * Record the producers whose descriptions match a regular expression.
+     *
+     * @param regex pattern the whole description must match
+     * @return the number of producers added
+     * @throws IllegalArgumentException if no numeric producer matches
+     */
+    public int addRecorded(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        int added = 0;
+        for (Producer producer : getProducers()) {
+            if (isNumeric(producer) && pattern.matcher(producer.getDescription()).matches()
+                    && !recorded.contains(producer)) {
+                recorded.add(producer);
+                added++;
+            }
+        }
+        if (added == 0) {
+            throw new IllegalArgumentException("No numeric producer matches " + regex);
+        }
+        return added;
+    }
+
+    /**
+     * Stop the run once a condition on a producer holds. The condition has the
+     * form {@code name op value}, where name is a producer description and op
+     * is one of {@code > >= < <= == !=}.
+     *
+     * @param expression the condition
+     * @throws IllegalArgumentException if the condition cannot be parsed or
+     *                                  names no scalar numeric producer
+     */
+    public void setStopCondition(String expression) {
+        Matcher matcher = CONDITION.matcher(expression.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Cannot parse condition " + expression);
+        }
+        String name = matcher.group(1);
+        double value = Double.parseDouble(matcher.group(3));
+        conditionProducer = null;
+        for (Producer producer : getProducers()) {
+            if (producer.getDescription().equals(name) && isNumeric(producer)
+                    && !((Class<?>) producer.getType()).isArray()) {
+                conditionProducer = producer;
+                break;
+            }
+        }
+        if (conditionProducer == null) {
+            throw new IllegalArgumentException("No scalar numeric producer named " + name);
+        }
+        switch (matcher.group(2)) {
+            case ">":
+                condition = v -> v > value;
+                break;
+            case ">=":
+                condition = v -> v >= value;
+                break;
+            case "<":
+                condition = v -> v < value;
+                break;
+            case "<=":
+                condition = v -> v <= value;
+                break;
+            case "==":
+                condition = v -> v == value;
+                break;
+            default:
+                condition = v -> v != value;
+        }
+    }
+
+    public void setRecordInterval(int recordInterval) {
+        if (recordInterval < 1) {
+            throw new IllegalArgumentException("Record interval must be positive");
+        }
+        this.recordInterval = recordInterval;
+    }
+
+    /**
+     * Seed the random streams of every network in the workspace, so that runs
+     * can be repeated.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        for (WorkspaceComponent component : workspace.getComponentList(NetworkComponent.class)) {
+            ((NetworkComponent) component).getNetwork().setRandomSeed(seed);
+        }
+    }
+
+    public List<Producer> getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Run the workspace, passing the recorded values to a sink.
+     *
+     * @param iterations the most iterations to run, or a negative number for no
+     *                   limit (in which case a stop condition should be set)
+     * @param sink       receives recorded values; may be null
+     * @return the number of iterations run
+     * @throws IOException if the sink fails
+     */
+    public int run(int iterations, Sink sink) throws IOException {
+        if (sink != null) {
+            sink.start(columnNames());
+        }
+        int[] count = {0};
+        try {
+            workspace.iterateUntil(iterations, time -> {
+                count[0]++;
+                try {
+                    if (sink != null && count[0] % recordInterval == 0) {
+                        sink.write(time, readRow());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return condition != null && condition.test(toDouble(conditionProducer.getValue()));
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        if (sink != null) {
+            sink.finish();
+        }
+        return count[0];
+    }
+
+    /**
+     * Names of the output columns. Reads the recorded producers once to find
+     * the lengths of any arrays.
+     */
+    private List<String> columnNames() {
+        List<String> names = new ArrayList<>();
+        widths = new int[recorded.size()];
+        for (int i = 0; i < widths.length; i++) {
+            Producer producer = recorded.get(i);
+            Object value = producer.getValue();
+            if (value instanceof double[]) {
+                widths[i] = ((double[]) value).length;
+                for (int j = 0; j < widths[i]; j++) {
+                    names.add(producer.getDescription() + "[" + j + "]");
+                }
+            } else {
+                widths[i] = 1;
+                names.add(producer.getDescription());
+            }
+        }
+        row = new double[names.size()];
+        return names;
+    }
+
+    /**
+     * Read the current values of the recorded producers into {@link #row}.
+     */
+    private double[] readRow() {
+        int column = 0;
+        for (int i = 0; i < widths.length; i++) {
+            Object value = recorded.get(i).getValue();
+            if (value instanceof double[]) {
+                double[] array = (double[]) value;
+                if (array.length != widths[i]) {
+                    throw new IllegalStateException(recorded.get(i).getDescription()
+                            + " changed length from " + widths[i] + " to " + array.length);
+                }
+                System.arraycopy(array, 0, row, column, array.length);
+                column += array.length;
+            } else {
+                row[column++] = toDouble(value);
+            }
+        }
+        return row;
+    }
+
+    private static boolean isNumeric(Producer producer) {
+        Class<?> type = (Class<?>) producer.getType();
+        return type == double[].class || type == boolean.class || type == Boolean.class
+                || (type.isPrimitive() && type != void.class && type != char.class)
+                || Number.class.isAssignableFrom(type);
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        return value == null ? Double.NaN : ((Number) value).doubleValue();
+    }
+
+    /**
+     * Receives the values recorded during a run.
+     */
+    public interface Sink {
+
+        /**
+         * Called once before the run.
+         *
+         * @param columns names of the columns
+         * @throws IOException if the sink fails
+         */
+        void start(List<String> columns) throws IOException;
+
+        /**
+         * Called with each recorded row. The array is reused between calls.
+         *
+         * @param time   the workspace time
+         * @param values one value per column
+         * @throws IOException if the sink fails
+         */
+        void write(int time, double[] values) throws IOException;
+
+        /**
+         * Called once after the run.
+         *
+         * @throws IOException if the sink fails
+         */
+        void finish() throws IOException;
+    }
+
+    /**
+     * Writes rows as comma separated values, with a header row.
+     */
+    public static class CsvSink implements Sink {
+
+        private final Writer writer;
+
+        private final StringBuilder line = new StringBuilder();
+
+        public CsvSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start(List<String> columns) throws IOException {
+            writer.write("time");
+            for (String column : columns) {
+                writer.write(",");
+                writer.write(column);
+            }
+            writer.write("\n");
+        }
+
+        @Override
+        public void write(int time, double[] values) throws IOException {
+            line.setLength(0);
+            line.append(time);
+            for (double value : values) {
+                line.append(',').append(value);
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes rows in the binary format described in {@link BatchRunner}.
+     */
+    public static class BinarySink implements Sink {
+
+        private final DataOutputStream out;
+
+        public BinarySink(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public void start(List<String> columns) throws IOException {
+            out.writeInt(columns.size());
+            for (String column : columns) {
+                out.writeUTF(column);
+            }
+        }
+
+        @Override
+        public void write(int time, double[] values) throws IOException {
+            out.writeInt(time);
+            for (double value : values) {
+                out.writeDouble(value);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Run a workspace from the command line. See {@link BatchRunner} for the
+     * options.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int status;
+        try {
+            status = runCommandLine(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            status = 1;
+        }
+        // The workspace's update threads would otherwise keep the vm alive
+        System.exit(status);
+    }
+
+    /**
+     * Parse the arguments and run.
+     *
+     * @return the exit status
+     */
+    private static int runCommandLine(String[] args) throws IOException {
+        File file = null;
+        int iterations = 1000;
+        String until = null;
+        List<String> records = new ArrayList<>();
+        String out = null;
+        int every = 1;
+        Long seed = null;
+        boolean list = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n":
+                case "--iterations":
+                    iterations = Integer.parseInt(argument(args, ++i));
+                    break;
+                case "-u":
+                case "--until":
+                    until = argument(args, ++i);
+                    break;
+                case "-r":
+                case "--record":
+                    records.add(argument(args, ++i));
+                    break;
+                case "-o":
+                case "--out":
+                    out = argument(args, ++i);
+                    break;
+                case "-e":
+                case "--every":
+                    every = Integer.parseInt(argument(args, ++i));
+                    break;
+                case "-s":
+                case "--seed":
+                    seed = Long.parseLong(argument(args, ++i));
+                    break;
+                case "-l":
+                case "--list":
+                    list = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-") || file != null) {
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                    }
+                    file = new File(args[i]);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Usage: BatchRunner workspace.zip [--iterations N] [--until COND] "
+                    + "[--record REGEX]... [--out FILE] [--every K] [--seed S] [--list]");
+        }
+
+        BatchRunner runner = new BatchRunner(loadWorkspace(file));
+        if (list) {
+            for (Producer producer : runner.getProducers()) {
+                System.out.println(producer.getDescription() + " (" + producer.getTypeName() + ")");
+            }
+            return 0;
+        }
+        if (seed != null) {
+            runner.setSeed(seed);
+        }
+        for (String regex : records) {
+            runner.addRecorded(regex);
+        }
+        if (until != null) {
+            runner.setStopCondition(until);
+        }
+        runner.setRecordInterval(every);
+
+        int count;
+        if (runner.getRecorded().isEmpty()) {
+            count = runner.run(iterations, null);
+        } else if (out == null) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+            count = runner.run(iterations, new CsvSink(writer));
+        } else if (out.toLowerCase().endsWith(".csv")) {
+            try (Writer writer = new BufferedWriter(new FileWriter(out))) {
+                count = runner.run(iterations, new CsvSink(writer));
+            }
+        } else {
+            try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(out))) {
+                count = runner.run(iterations, new BinarySink(stream));
+            }
+        }
+        System.err.println("Ran " + count + " iterations");
+        return 0;
+    }
+
+    /**
+     * The value of a command line option.
+     *
+     * @param args command line arguments
+     * @param i    index of the value
+     * @return the value
+     */
+    static String argument(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
@@ -0,0 +1,549 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import org.simbrain.util.math.SimbrainRandom;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs many variants of a workspace at once, each with its own assignment of
+ * parameter values, and writes the results of all of them to one CSV file.
+ * Every variant is loaded from the same saved workspace into its own {@link
+ * Workspace}, so variants share nothing, and they are run on a pool with a
+ * bounded number of threads. Parameters are named as described in {@link
+ * WorkspaceParameter}, and recording and stop conditions work as in {@link
+ * BatchRunner}.
+ * <p>
+ * Each row of the results holds the variant's index, its parameter values,
+ * the workspace time, and the recorded values. By default only the state at
+ * the end of each run is written, when the variant finishes; set a record
+ * interval to get time series. Time series rows are written as they are
+ * recorded, so a sweep does not hold its results in memory, but the rows of
+ * variants running at once are interleaved and variants may appear out of
+ * order. Usage:
+ * <pre>
+ * ParameterSweep workspace.zip [options]
+ *   -g, --grid NAME=V1,V2,...   values of a parameter; grid parameters are crossed
+ *   -R, --range NAME=MIN:MAX    sample a parameter uniformly instead
+ *   -m, --samples N             number of random samples (default 100)
+ *   -t, --threads T             number of variants run at once
+ *   -s, --seed S                seed for samples and network random streams
+ *   ...                         plus --iterations, --until, --record, --every,
+ *                               and --out as in BatchRunner
+ * </pre>
+ */
+public class ParameterSweep {
+
+    /**
+     * The saved workspace each variant is loaded from.
+     */
+    private final byte[] workspaceZip;
+
+    /**
+     * Patterns naming the producers to record.
+     */
+    private final List<String> recordPatterns = new ArrayList<>();
+
+    /**
+     * Stop condition, or null to run all iterations.
+     */
+    private String stopCondition;
+
+    /**
+     * Most iterations to run per variant.
+     */
+    private int iterations = 1000;
+
+    /**
+     * Record every this many iterations, or 0 to record the end state only.
+     */
+    private int recordInterval = 0;
+
+    /**
+     * Seed for the variants' network random streams, or null to leave them as
+     * saved.
+     */
+    private Long seed;
+
+    /**
+     * Number of variants run at once.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Create a sweep over a saved workspace.
+     *
+     * @param workspaceZip the zipped workspace, as written by {@link
+     *                     WorkspaceSerializer}
+     */
+    public ParameterSweep(byte[] workspaceZip) {
+        this.workspaceZip = workspaceZip;
+    }
+
+    /**
+     * Create a sweep over a workspace file.
+     *
+     * @param file the workspace zip file
+     * @return the sweep
+     * @throws IOException if the file cannot be read
+     */
+    public static ParameterSweep fromFile(File file) throws IOException {
+        return new ParameterSweep(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Create a sweep over the current state of a workspace.
+     *
+     * @param workspace the workspace
+     * @return the sweep
+     * @throws IOException if the workspace cannot be serialized
+     */
+    public static ParameterSweep fromWorkspace(Workspace workspace) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new WorkspaceSerializer(workspace).serialize(bytes);
+        return new ParameterSweep(bytes.toByteArray());
+    }
+
+    /**
+     * Every combination of the given parameter values.
+     *
+     * @param values values of each parameter, by name
+     * @return one assignment per combination; the first parameter varies
+     * slowest
+     */
+    public static List<Map<String, Double>> grid(Map<String, double[]> values) {
+        List<Map<String, Double>> assignments = new ArrayList<>();
+        assignments.add(new LinkedHashMap<>());
+        for (Map.Entry<String, double[]> entry : values.entrySet()) {
+            List<Map<String, Double>> crossed = new ArrayList<>();
+            for (Map<String, Double> assignment : assignments) {
+                for (double value : entry.getValue()) {
+                    Map<String, Double> next = new LinkedHashMap<>(assignment);
+                    next.put(entry.getKey(), value);
+                    crossed.add(next);
+                }
+            }
+            assignments = crossed;
+        }
+        return assignments;
+    }
+
+    /**
+     * Random parameter values, each drawn uniformly from its range.
+     *
+     * @param ranges lower and upper bound of each parameter, by name
+     * @param count  number of assignments
+     * @param seed   seed for the draws
+     * @return the assignments
+     */
+    public static List<Map<String, Double>> random(Map<String, double[]> ranges, int count, long seed) {
+        SimbrainRandom random = new SimbrainRandom(seed);
+        List<Map<String, Double>> assignments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Double> assignment = new LinkedHashMap<>();
+            for (Map.Entry<String, double[]> entry : ranges.entrySet()) {
+                assignment.put(entry.getKey(), random.nextDouble(entry.getValue()[0], entry.getValue()[1]));
+            }
+            assignments.add(assignment);
+        }
+        return assignments;
+    }
+
+    /**
+     * Record the producers whose descriptions match a regular expression. See
+     * {@link BatchRunner#addRecorded(String)}.
+     *
+     * @param regex pattern the whole description must match
+     */
+    public void addRecorded(String regex) {
+        recordPatterns.add(regex);
+    }
+
+    /**
+     * See {@link BatchRunner#setStopCondition(String)}.
+     *
+     * @param stopCondition the condition, or null to run all iterations
+     */
+    public void setStopCondition(String stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param recordInterval record every this many iterations, or 0 to record
+     *                       the end state only
+     */
+    public void setRecordInterval(int recordInterval) {
+        if (recordInterval < 0) {
+            throw new IllegalArgumentException("Record interval cannot be negative");
+        }
+        this.recordInterval = recordInterval;
+    }
+
+    /**
+     * Seed the network random streams of each variant. Variants get different
+     * streams, derived from this seed and their index, so a sweep can be
+     * repeated exactly.
+     *
+     * @param seed the seed, or null to use the streams saved in the workspace
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Run a variant for each assignment and write the results. Variants that
+     * fail are reported on standard error and skipped.
+     *
+     * @param assignments parameter values of each variant
+     * @param out         where the results are written
+     * @return the number of variants that completed
+     * @throws InterruptedException if interrupted while waiting for variants
+     */
+    public int run(List<Map<String, Double>> assignments, Writer out) throws InterruptedException {
+        ResultWriter results = new ResultWriter(out, assignments.isEmpty()
+                ? Collections.emptySet() : assignments.get(0).keySet());
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "Parameter sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int completed = 0;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < assignments.size(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    runVariant(index, assignments.get(index), results);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                    completed++;
+                } catch (ExecutionException e) {
+                    System.err.println("Variant " + i + " " + assignments.get(i) + " failed: " + e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return completed;
+    }
+
+    /**
+     * Load, configure, and run one variant.
+     */
+    private void runVariant(int index, Map<String, Double> assignment, ResultWriter results) throws IOException {
+        Workspace workspace = BatchRunner.loadWorkspace(new ByteArrayInputStream(workspaceZip));
+        try {
+            for (Map.Entry<String, Double> entry : assignment.entrySet()) {
+                WorkspaceParameter.set(workspace, entry.getKey(), entry.getValue());
+            }
+            BatchRunner runner = new BatchRunner(workspace);
+            if (seed != null) {
+                runner.setSeed(new SimbrainRandom(seed).fork(index).getSeed());
+            }
+            for (String regex : recordPatterns) {
+                runner.addRecorded(regex);
+            }
+            if (stopCondition != null) {
+                runner.setStopCondition(stopCondition);
+            }
+            runner.setRecordInterval(Math.max(1, recordInterval));
+            VariantSink sink = new VariantSink(index, assignment, results);
+            runner.run(iterations, sink);
+        } finally {
+            workspace.getUpdater().shutdown();
+        }
+    }
+
+    /**
+     * Passes the rows of one variant to the result writer as they are
+     * recorded, or only the last one if just the end state is wanted.
+     */
+    private class VariantSink implements BatchRunner.Sink {
+
+        private final String prefix;
+
+        private final ResultWriter results;
+
+        private final StringBuilder row = new StringBuilder();
+
+        /**
+         * The latest row, when only the end state is written.
+         */
+        private int lastTime;
+
+        private double[] lastValues;
+
+        VariantSink(int index, Map<String, Double> assignment, ResultWriter results) {
+            StringBuilder builder = new StringBuilder().append(index);
+            for (double value : assignment.values()) {
+                builder.append(',').append(value);
+            }
+            this.prefix = builder.toString();
+            this.results = results;
+        }
+
+        @Override
+        public void start(List<String> columns) throws IOException {
+            results.start(columns);
+        }
+
+        @Override
+        public void write(int time, double[] values) throws IOException {
+            if (recordInterval == 0) {
+                lastTime = time;
+                lastValues = values.clone();
+            } else {
+                writeRow(time, values);
+            }
+        }
+
+        private void writeRow(int time, double[] values) throws IOException {
+            row.setLength(0);
+            row.append(prefix).append(',').append(time);
+            for (double value : values) {
+                row.append(',').append(value);
+            }
+            row.append('\n');
+            results.write(row);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (lastValues != null) {
+                writeRow(lastTime, lastValues);
+            }
+            results.flush();
+        }
+    }
+
+    /**
+     * Writes the header and the rows of the variants to the results.
+     */
+    private static class ResultWriter {
+
+        private final Writer out;
+
+        private final Collection<String> parameterNames;
+
+        /**
+         * Recorded columns, set by the first variant to start.
+         */
+        private List<String> columns;
+
+        ResultWriter(Writer out, Collection<String> parameterNames) {
+            this.out = out;
+            this.parameterNames = parameterNames;
+        }
+
+        /**
+         * Write the header for the first variant to start, and check that
+         * later variants record the same columns.
+         */
+        synchronized void start(List<String> variantColumns) throws IOException {
+            if (columns == null) {
+                columns = variantColumns;
+                out.write("variant");
+                for (String name : parameterNames) {
+                    out.write("," + name);
+                }
+                out.write(",time");
+                for (String column : columns) {
+                    out.write("," + column);
+                }
+                out.write("\n");
+            } else if (!columns.equals(variantColumns)) {
+                throw new IllegalStateException("Variant recorded " + variantColumns + " instead of " + columns);
+            }
+        }
+
+        synchronized void write(CharSequence row) throws IOException {
+            out.append(row);
+        }
+
+        synchronized void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Run a sweep from the command line. See {@link ParameterSweep} for the
+     * options.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int status;
+        try {
+            status = runCommandLine(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            status = 1;
+        } catch (InterruptedException e) {
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Parse the arguments and run.
+     *
+     * @return the exit status
+     */
+    private static int runCommandLine(String[] args) throws IOException, InterruptedException {
+        File file = null;
+        Map<String, double[]> grid = new LinkedHashMap<>();
+        Map<String, double[]> ranges = new LinkedHashMap<>();
+        int samples = 100;
+        String out = null;
+        Integer threads = null;
+        Long seed = null;
+        List<String> records = new ArrayList<>();
+        String until = null;
+        int iterations = 1000;
+        int every = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-g":
+                case "--grid": {
+                    String[] parts = assignment(BatchRunner.argument(args, ++i));
+                    grid.put(parts[0], Arrays.stream(parts[1].split(",")).mapToDouble(Double::parseDouble).toArray());
+                    break;
+                }
+                case "-R":
+                case "--range": {
+                    String[] parts = assignment(BatchRunner.argument(args, ++i));
+                    String[] bounds = parts[1].split(":");
+                    if (bounds.length != 2) {
+                        throw new IllegalArgumentException("Expected NAME=MIN:MAX, got " + args[i]);
+                    }
+                    ranges.put(parts[0], new double[] {Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1])});
+                    break;
+                }
+                case "-m":
+                case "--samples":
+                    samples = Integer.parseInt(BatchRunner.argument(args, ++i));
+                    break;
+                case "-t":
+                case "--threads":
+                    threads = Integer.parseInt(BatchRunner.argument(args, ++i));
+                    break;
+                case "-s":
+                case "--seed":
+                    seed = Long.parseLong(BatchRunner.argument(args, ++i));
+                    break;
+                case "-n":
+                case "--iterations":
+                    iterations = Integer.parseInt(BatchRunner.argument(args, ++i));
+                    break;
+                case "-u":
+                case "--until":
+                    until = BatchRunner.argument(args, ++i);
+                    break;
+                case "-r":
+                case "--record":
+                    records.add(BatchRunner.argument(args, ++i));
+                    break;
+                case "-e":
+                case "--every":
+                    every = Integer.parseInt(BatchRunner.argument(args, ++i));
+                    break;
+                case "-o":
+                case "--out":
+                    out = BatchRunner.argument(args, ++i);
+                    break;
+                default:
+                    if (args[i].startsWith("-") || file != null) {
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                    }
+                    file = new File(args[i]);
+            }
+        }
+        if (file == null || (grid.isEmpty() && ranges.isEmpty())) {
+            throw new IllegalArgumentException("Usage: ParameterSweep workspace.zip [--grid NAME=V1,V2,...]... "
+                    + "[--range NAME=MIN:MAX]... [--samples N] [--threads T] [--seed S] [--iterations N] "
+                    + "[--until COND] [--record REGEX]... [--every K] [--out FILE]");
+        }
+
+        // Random samples are crossed with the grid
+        List<Map<String, Double>> assignments = grid(grid);
+        if (!ranges.isEmpty()) {
+            List<Map<String, Double>> sampled = random(ranges, samples, seed == null ? System.nanoTime() : seed);
+            List<Map<String, Double>> crossed = new ArrayList<>();
+            for (Map<String, Double> gridPoint : assignments) {
+                for (Map<String, Double> sample : sampled) {
+                    Map<String, Double> assignment = new LinkedHashMap<>(gridPoint);
+                    assignment.putAll(sample);
+                    crossed.add(assignment);
+                }
+            }
+            assignments = crossed;
+        }
+
+        ParameterSweep sweep = fromFile(file);
+        records.forEach(sweep::addRecorded);
+        sweep.setStopCondition(until);
+        sweep.setIterations(iterations);
+        sweep.setRecordInterval(every);
+        sweep.setSeed(seed);
+        if (threads != null) {
+            sweep.setParallelism(threads);
+        }
+        int completed;
+        if (out == null) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+            completed = sweep.run(assignments, writer);
+        } else {
+            try (Writer writer = new BufferedWriter(new FileWriter(out))) {
+                completed = sweep.run(assignments, writer);
+            }
+        }
+        System.err.println("Completed " + completed + " of " + assignments.size() + " variants");
+        return completed == assignments.size() ? 0 : 1;
+    }
+
+    private static String[] assignment(String arg) {
+        int equals = arg.indexOf('=');
+        if (equals < 1) {
+            throw new IllegalArgumentException("Expected NAME=VALUES, got " + arg);
+        }
+        return new String[] {arg.substring(0, equals), arg.substring(equals + 1)};
+    }
+}
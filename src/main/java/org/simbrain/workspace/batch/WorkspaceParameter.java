@@ -0,0 +1,160 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import org.simbrain.util.Parameter;
+import org.simbrain.workspace.AttributeContainer;
+import org.simbrain.workspace.Consumer;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+
+/**
+ * A numeric setting of a workspace, addressed by name, that can be set before a
+ * run. Two kinds of names are understood:
+ * <ul>
+ * <li>A {@link Consumer} description, e.g. {@code Neuron_1:setInputValue}. The
+ * consumer is called once with the value.</li>
+ * <li>A path to a {@link org.simbrain.util.UserParameter} property, starting
+ * with the id of an attribute container and followed by property names
+ * separated by dots, e.g. {@code Neuron_1.updateRule.bias}. A property is
+ * named by its field name, its getter name without "get", or its label. The
+ * path may be prefixed by a component name and a slash, e.g. {@code
+ * Net1/Neuron_1.activation}, to pick between containers with the same id in
+ * different components.</li>
+ * </ul>
+ * Note that properties of an update rule shared by a whole neuron group apply
+ * to every neuron in the group.
+ */
+public final class WorkspaceParameter {
+
+    private WorkspaceParameter() {
+    }
+
+    /**
+     * Set a named setting in a workspace.
+     *
+     * @param workspace the workspace
+     * @param name      name of the setting
+     * @param value     the value
+     * @throws IllegalArgumentException if the name does not resolve to a
+     *                                  numeric or boolean setting
+     */
+    public static void set(Workspace workspace, String name, double value) {
+        if (name.contains(":")) {
+            setConsumer(workspace, name, value);
+        } else {
+            setProperty(workspace, name, value);
+        }
+    }
+
+    private static void setConsumer(Workspace workspace, String name, double value) {
+        for (WorkspaceComponent component : workspace.getComponentList()) {
+            for (Consumer consumer : workspace.getCouplingManager().getVisibleConsumers(component)) {
+                if (consumer.getDescription().equals(name)) {
+                    consumer.setValue(convert((Class<?>) consumer.getType(), value, name));
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No consumer named " + name);
+    }
+
+    private static void setProperty(Workspace workspace, String name, double value) {
+        String path = name;
+        String componentName = null;
+        int slash = path.indexOf('/');
+        if (slash >= 0) {
+            componentName = path.substring(0, slash);
+            path = path.substring(slash + 1);
+        }
+        String[] parts = path.split("\\.");
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Expected container.property, got " + name);
+        }
+        Object target = findContainer(workspace, componentName, parts[0]);
+        if (target == null) {
+            throw new IllegalArgumentException("No attribute container with id " + parts[0]);
+        }
+        for (int i = 1; i < parts.length - 1; i++) {
+            target = findParameter(target, parts[i], name).getFieldValue(target);
+            if (target == null) {
+                throw new IllegalArgumentException(parts[i] + " is null in " + name);
+            }
+        }
+        Parameter param = findParameter(target, parts[parts.length - 1], name);
+        param.setFieldValue(target, convert(param.getType(), value, name));
+    }
+
+    private static AttributeContainer findContainer(Workspace workspace, String componentName, String id) {
+        for (WorkspaceComponent component : workspace.getComponentList()) {
+            if (componentName != null && !component.getName().equalsIgnoreCase(componentName)) {
+                continue;
+            }
+            for (AttributeContainer container : component.getAttributeContainers()) {
+                if (id.equals(container.getId())) {
+                    return container;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Parameter findParameter(Object target, String property, String name) {
+        for (Parameter param : Parameter.getParameters(target.getClass())) {
+            if (propertyName(param).equals(property) || param.getAnnotation().label().equals(property)) {
+                return param;
+            }
+        }
+        throw new IllegalArgumentException("No property " + property + " on "
+                + target.getClass().getSimpleName() + " in " + name);
+    }
+
+    /**
+     * Name of a property: the field name, or the getter name without its
+     * prefix, e.g. bias for getBias.
+     */
+    private static String propertyName(Parameter param) {
+        String name = param.getName();
+        int prefix = name.startsWith("get") ? 3 : name.startsWith("is") ? 2 : 0;
+        if (prefix > 0 && name.length() > prefix && Character.isUpperCase(name.charAt(prefix))) {
+            return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+        }
+        return name;
+    }
+
+    /**
+     * Convert a value to a numeric or boolean type.
+     */
+    private static Object convert(Class<?> type, double value, String name) {
+        if (type == double.class || type == Double.class) {
+            return value;
+        } else if (type == float.class || type == Float.class) {
+            return (float) value;
+        } else if (type == int.class || type == Integer.class) {
+            return (int) Math.round(value);
+        } else if (type == long.class || type == Long.class) {
+            return Math.round(value);
+        } else if (type == short.class || type == Short.class) {
+            return (short) Math.round(value);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return value != 0;
+        }
+        throw new IllegalArgumentException(name + " is not numeric");
+    }
+}
@@ -202,8 +202,7 @@ public abstract class GuiComponent<E extends WorkspaceComponent> extends JPanel
 
             try {
                 FileOutputStream stream = new FileOutputStream(theFile);
-                // TODO format?
-                workspaceComponent.save(stream, null);
+                workspaceComponent.save(stream, getFormat(theFile));
             } catch (FileNotFoundException e) {
                 throw new RuntimeException(e);
             }
@@ -227,13 +226,23 @@ public abstract class GuiComponent<E extends WorkspaceComponent> extends JPanel
         } else {
             try {
                 FileOutputStream stream = new FileOutputStream(workspaceComponent.getCurrentFile());
-                workspaceComponent.save(stream, null);
+                workspaceComponent.save(stream, getFormat(workspaceComponent.getCurrentFile()));
             } catch (FileNotFoundException e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
+    /**
+     * @param file a file to save to
+     * @return the file's extension if it is one of the component's formats,
+     * otherwise null, for the component's default format
+     */
+    private String getFormat(File file) {
+        String extension = SFileChooser.getExtension(file);
+        return workspaceComponent.getFormats().contains(extension) ? extension : null;
+    }
+
     /**
      * Writes the bounds of this desktop component to the provided stream.
      *
@@ -0,0 +1,160 @@
+/*
+ * Part of Simbrain--a java-based neural network kit Copyright (C) 2005,2007 The
+ * Authors. See http://www.simbrain.net/credits This program is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version. This program is
+ * distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU General Public License for more details. You
+ * should have received a copy of the GNU General Public License along with this
+ * program; if not, write to the Free Software Foundation, Inc., 59 Temple Place
+ * - Suite 330, Boston, MA 02111-1307, USA.
+ */
+package org.simbrain.workspace.gui;
+
+import org.simbrain.workspace.updater.UpdateMetrics;
+import org.simbrain.workspace.updater.UpdateMetrics.Stats;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table of the timing statistics in {@link UpdateMetrics}, one row per update
+ * action, component, and the couplings, refreshed while recording is on.
+ */
+public class UpdateMetricsPanel extends JPanel {
+
+    /**
+     * Milliseconds between refreshes.
+     */
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private final UpdateMetrics metrics;
+
+    private final MetricsTableModel model = new MetricsTableModel();
+
+    private final Timer timer = new Timer(REFRESH_INTERVAL, e -> refresh());
+
+    /**
+     * Construct the panel.
+     *
+     * @param metrics the metrics to show
+     */
+    public UpdateMetricsPanel(UpdateMetrics metrics) {
+        super(new BorderLayout());
+        this.metrics = metrics;
+        setBorder(BorderFactory.createTitledBorder("Timing"));
+
+        JCheckBox recordBox = new JCheckBox("Record timing", metrics.isEnabled());
+        recordBox.setToolTipText("Record wall time, cpu time, and allocation for each action and component");
+        recordBox.addActionListener(e -> {
+            metrics.setEnabled(recordBox.isSelected());
+            updateTimer();
+        });
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refresh();
+        });
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(recordBox);
+        controls.add(resetButton);
+        add(controls, BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        table.getColumnModel().getColumn(0).setPreferredWidth(240);
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(600, 140));
+        add(scroll, BorderLayout.CENTER);
+
+        refresh();
+        updateTimer();
+    }
+
+    /**
+     * Stop refreshing, e.g. when the containing dialog closes.
+     */
+    public void stopRefreshing() {
+        timer.stop();
+    }
+
+    private void updateTimer() {
+        if (metrics.isEnabled()) {
+            timer.start();
+        } else {
+            timer.stop();
+        }
+    }
+
+    private void refresh() {
+        model.setStats(metrics.getAllStats());
+    }
+
+    /**
+     * Rows of statistics.
+     */
+    private static class MetricsTableModel extends AbstractTableModel {
+
+        private final String[] columns = {"Name", "Updates", "Mean (ms)", "50% (ms)", "90% (ms)", "99% (ms)",
+                "Max (ms)", "CPU (ms)", "CPU 90% (ms)", "Alloc (KB)", "Alloc 90% (KB)"};
+
+        private List<Stats> stats = new ArrayList<>();
+
+        void setStats(List<Stats> stats) {
+            this.stats = stats;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return stats.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Stats s = stats.get(row);
+            switch (column) {
+                case 0:
+                    return s.getName();
+                case 1:
+                    return s.getCount();
+                case 2:
+                    return format(s.getMeanWallMs());
+                case 3:
+                    return format(s.getWallPercentileMs(50));
+                case 4:
+                    return format(s.getWallPercentileMs(90));
+                case 5:
+                    return format(s.getWallPercentileMs(99));
+                case 6:
+                    return format(s.getMaxWallMs());
+                case 7:
+                    return format(s.getMeanCpuMs());
+                case 8:
+                    return format(s.getCpuPercentileMs(90));
+                case 9:
+                    return format(s.getMeanAllocatedBytes() / 1024);
+                default:
+                    return format(s.getAllocatedPercentileBytes(90) / 1024);
+            }
+        }
+
+        private static String format(double value) {
+            return Double.isNaN(value) ? "-" : String.format("%.3f", value);
+        }
+    }
+}
@@ -123,6 +123,11 @@ public class WorkspaceUpdateManagerPanel extends JPanel {
      */
     private UpdateListener listener = new UpdateListener();
 
+    /**
+     * Timing statistics for the actions.
+     */
+    private final UpdateMetricsPanel metricsPanel;
+
     /**
      * Action which deletes selected actions.
      */
@@ -230,7 +235,11 @@ public class WorkspaceUpdateManagerPanel extends JPanel {
         downFullButton.addActionListener(evt -> moveSelectedUpdateAction(currentActionListModel.getSize() - currentActionJList.getSelectedIndex()));
         buttonPanel.add(downFullButton);
 
-        add(buttonPanel, BorderLayout.SOUTH);
+        metricsPanel = new UpdateMetricsPanel(workspace.getUpdater().getMetrics());
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.NORTH);
+        southPanel.add(metricsPanel, BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
 
         // Help button
         if (parentDialog != null) {
@@ -241,6 +250,7 @@ public class WorkspaceUpdateManagerPanel extends JPanel {
                 public void windowClosing(WindowEvent evt) {
                     super.windowClosing(evt);
                     workspace.getUpdater().getUpdateManager().removeListener(listener);
+                    metricsPanel.stopRefreshing();
                 }
             });
         }
@@ -98,7 +98,8 @@ final class ArchivedWorkspaceComponent {
          */
         private ArchivedDesktopComponent(final ArchivedWorkspaceComponent parent, final org.simbrain.workspace.gui.GuiComponent<?> dc) {
             this.className = dc.getClass().getCanonicalName();
-            this.format = dc.getWorkspaceComponent().getDefaultFormat();
+            // Desktop bounds are always written as xml, whatever the component's format
+            this.format = "xml";
             this.uri = "guis/" + parent.id + '_' + parent.name.replaceAll("\\s", "_") + '.' + format;
         }
 
@@ -0,0 +1,178 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.serialization;
+
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves and restores the dynamic state of a running workspace: the workspace
+ * time and whatever each component writes with {@link
+ * WorkspaceComponent#writeState}, e.g. activations, spikes, rule state,
+ * strengths, and delayed input for networks, and entity positions for odor
+ * worlds. Structure, parameters, couplings, and gui state are not written, so
+ * a checkpoint is small and quick to write, and can only be restored into the
+ * workspace it came from, or the same workspace file opened again. Use {@link
+ * WorkspaceSerializer} to save everything.
+ * <p>
+ * The checkpoint is a binary file holding a header, the workspace time, and
+ * then each component's state tagged with its name and class. Components are
+ * matched by name when restoring; components in the workspace but not in the
+ * checkpoint are left alone.
+ * <p>
+ * Save and restore between updates: when the workspace is stopped, or from
+ * the update thread, e.g. in the stop condition passed to {@link
+ * org.simbrain.workspace.updater.WorkspaceUpdater#iterateUntil}.
+ */
+public class WorkspaceCheckpoint {
+
+    /**
+     * First four bytes of a checkpoint ("SBCP").
+     */
+    public static final int MAGIC = 0x53424350;
+
+    /**
+     * Version of the checkpoint format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The workspace to checkpoint.
+     */
+    private final Workspace workspace;
+
+    /**
+     * Construct a checkpointer for a workspace.
+     *
+     * @param workspace the workspace
+     */
+    public WorkspaceCheckpoint(Workspace workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Write a checkpoint of the workspace's current state.
+     *
+     * @param output the stream to write to; not closed
+     * @throws IOException if writing fails
+     */
+    public void save(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        List<? extends WorkspaceComponent> components = workspace.getComponentList();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(workspace.getUpdater().getTime());
+        out.writeInt(components.size());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (WorkspaceComponent component : components) {
+            bytes.reset();
+            DataOutputStream componentOut = new DataOutputStream(bytes);
+            component.writeState(componentOut);
+            componentOut.flush();
+            out.writeUTF(component.getName());
+            out.writeUTF(component.getClass().getName());
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a checkpoint to a file. The checkpoint is written next to the file
+     * and then moved over it, so an earlier checkpoint is not lost if writing
+     * fails partway.
+     *
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (OutputStream output = new FileOutputStream(temp)) {
+            save(output);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Restore a checkpoint written by {@link #save(OutputStream)}. The whole
+     * checkpoint is read, and each component's state is checked with {@link
+     * WorkspaceComponent#checkState}, e.g. that a network has as many neurons
+     * and synapses as when it was saved, before any component is changed.
+     *
+     * @param input the stream to read from; not closed
+     * @throws IOException if reading fails, the checkpoint names a component
+     *                     the workspace does not have, or a component's state
+     *                     does not fit it
+     */
+    public void restore(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a workspace checkpoint");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int time = in.readInt();
+        int count = in.readInt();
+        List<WorkspaceComponent> components = new ArrayList<>(count);
+        List<byte[]> states = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            String className = in.readUTF();
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            WorkspaceComponent component = workspace.getComponent(name);
+            if (component == null || !component.getClass().getName().equals(className)) {
+                throw new IOException("Workspace has no component " + name + " of type " + className);
+            }
+            component.checkState(new DataInputStream(new ByteArrayInputStream(state)));
+            components.add(component);
+            states.add(state);
+        }
+
+        for (int i = 0; i < count; i++) {
+            WorkspaceComponent component = components.get(i);
+            ByteArrayInputStream bytes = new ByteArrayInputStream(states.get(i));
+            component.readState(new DataInputStream(bytes));
+            if (bytes.available() > 0) {
+                throw new IOException("Component " + component.getName() + " did not read all of its state");
+            }
+        }
+        workspace.getUpdater().setTime(time);
+    }
+
+    /**
+     * Restore a checkpoint from a file.
+     *
+     * @param file the file
+     * @throws IOException if reading fails
+     */
+    public void restore(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            restore(input);
+        }
+    }
+}
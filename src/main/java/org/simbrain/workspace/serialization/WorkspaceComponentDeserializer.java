@@ -58,10 +58,21 @@ public class WorkspaceComponentDeserializer {
      */
     WorkspaceComponent deserializeWorkspaceComponent(ArchivedWorkspaceComponent archivedComponent, InputStream input) throws ReflectiveOperationException {
         Class<?> componentClass = Class.forName(archivedComponent.getClassName());
-        WorkspaceComponent wc = deserializeWorkspaceComponent(componentClass, archivedComponent.getName(), input, null);
+        WorkspaceComponent wc = deserializeWorkspaceComponent(componentClass, archivedComponent.getName(), input, archivedComponent.getFormat());
+        register(archivedComponent, wc);
+        return wc;
+    }
+
+    /**
+     * Record a component that was deserialized from an archive entry, so it
+     * can be found by its uri.
+     *
+     * @param archivedComponent the component entry from the archive contents
+     * @param wc                the deserialized component
+     */
+    void register(ArchivedWorkspaceComponent archivedComponent, WorkspaceComponent wc) {
         componentKeys.put(archivedComponent.getUri(), wc);
         wc.setChangedSinceLastSave(false);
-        return wc;
     }
 
     /**
@@ -20,6 +20,7 @@ package org.simbrain.workspace.serialization;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
+import org.simbrain.network.NetworkComponent;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.SimbrainPreferences;
 import org.simbrain.workspace.*;
@@ -35,7 +36,9 @@ import java.io.*;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -65,11 +68,6 @@ import java.util.zip.ZipOutputStream;
  */
 public class WorkspaceSerializer {
 
-    /**
-     * The number of bytes to attempt to read at a time from an InputStream.
-     */
-    private static final int BUFFER_SIZE = 1024;
-
     /**
      * The current workspace.
      */
@@ -80,6 +78,11 @@ public class WorkspaceSerializer {
      */
     private SimbrainDesktop desktop;
 
+    /**
+     * Number of networks opened at the same time when deserializing.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
     /**
      * Creates a new serializer.
      *
@@ -228,90 +231,217 @@ public class WorkspaceSerializer {
     }
 
     /**
-     * Creates a workspace from a zip compressed input stream.
+     * Creates a workspace from a zip compressed input stream. The stream is
+     * read once, keeping one copy of each entry until its component has been
+     * opened. Prefer {@link #deserialize(File)} for files, which does not keep
+     * entries in memory.
      *
      * @param stream The stream to read from. This is expected to be zip compressed.
      * @throws IOException if an IO error occurs.
      */
-    @SuppressWarnings("unchecked")
     public void deserialize(InputStream stream) throws IOException {
-        Map<String, byte[]> byteArrays = processInputStream(stream);
-        ArchivedWorkspace archive = (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(new ByteArrayInputStream(byteArrays.get("contents.xml")));
+        Map<String, byte[]> byteArrays = new ConcurrentHashMap<>();
+        ZipInputStream zip = new ZipInputStream(stream);
+        for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+            byteArrays.put(entry.getName(), zip.readAllBytes());
+        }
+        String prefix = findContentsPrefix(byteArrays.keySet());
+        deserialize(name -> {
+            // Each entry is read once, so let it go as soon as it is opened
+            byte[] bytes = byteArrays.remove(prefix + name);
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        });
+    }
+
+    /**
+     * Creates a workspace from a zip file. Entries are found through the zip
+     * file's central directory and each component is streamed straight from
+     * the file into its deserializer, so the workspace is never held in
+     * memory as bytes.
+     *
+     * @param file the zip file to read
+     * @throws IOException if an IO error occurs.
+     */
+    public void deserialize(File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            List<String> names = new ArrayList<>();
+            zip.stream().forEach(entry -> names.add(entry.getName()));
+            String prefix = findContentsPrefix(names);
+            deserialize(name -> {
+                ZipEntry entry = zip.getEntry(prefix + name);
+                return entry == null ? null : new BufferedInputStream(zip.getInputStream(entry));
+            });
+        }
+    }
+
+    /**
+     * Source of the entries of a workspace zip archive.
+     */
+    private interface EntrySource {
+
+        /**
+         * @param name name of an entry, relative to contents.xml
+         * @return a stream of the entry, or null if there is no such entry
+         */
+        InputStream open(String name) throws IOException;
+    }
+
+    private void deserialize(EntrySource entries) throws IOException {
+        ArchivedWorkspace archive;
+        try (InputStream contents = entries.open("contents.xml")) {
+            if (contents == null) {
+                throw new IOException("Not a workspace file: contents.xml is missing");
+            }
+            archive = (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(contents);
+        }
 
         WorkspaceComponentDeserializer deserializer = new WorkspaceComponentDeserializer();
-        deserializeComponents(archive, deserializer, byteArrays);
+        deserializeComponents(archive, deserializer, entries);
 
         deserializeCouplings(archive);
         deserializeUpdateActions(archive, deserializer);
         deserializeWorkspaceParameters(archive);
-
     }
 
-    private Map<String, byte[]> processInputStream(InputStream stream) throws IOException {
-        // Populate the byte stream BUFFER_SIZE at a time and create a zip input
-        // stream (currently 1 kb at a time).
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        byte[] buffer = new byte[BUFFER_SIZE];
-        for (int read; (read = stream.read(buffer)) >= 0; ) {
-            bytes.write(buffer, 0, read);
-        }
-        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-
-        // Populate a map from zip entries (strings containing path+file info in
-        // zip archive) to the associated data
-        Map<String, byte[]> byteArrays = new HashMap<String, byte[]>();
-        ZipEntry entry = zip.getNextEntry();
-        // Initialize byte arrays
-        for (ZipEntry next; entry != null; entry = next) {
-            next = zip.getNextEntry();
-            byteArrays.put(entry.getName(), new byte[(int) entry.getSize()]);
-        }
-        zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-        // Populate byte arrays
-        while ((entry = zip.getNextEntry()) != null) {
-            byte[] data = byteArrays.get(entry.getName());
-            read(zip, data);
-        }
-
-        // Find the contents.xml file and set the zip entries relative to that
-        Set<String> zipEntries = new HashSet<String>(byteArrays.keySet());
+    /**
+     * Find the folder containing contents.xml, for archives made by zipping a
+     * folder. Entry names are relative to that folder.
+     *
+     * @param names names of all entries
+     * @return the folder path, or the empty string
+     */
+    private static String findContentsPrefix(Collection<String> names) {
         String contentsFile = "contents.xml";
         String contentsPath = "";
-        for (String entryName : zipEntries) {
+        for (String entryName : names) {
             if (entryName.endsWith(contentsFile)) {
                 contentsPath = entryName.substring(0, entryName.length() - contentsFile.length());
             }
         }
+        return contentsPath;
+    }
 
-        // Remove the contents path from all entries that have it
-        if (!contentsPath.isEmpty()) {
-            for (String entryName : zipEntries) {
-                if (entryName.startsWith(contentsPath)) {
-                    byteArrays.put(entryName.replace(contentsPath, ""), byteArrays.get(entryName));
-                    byteArrays.remove(entryName);
-                }
-            }
+    /**
+     * Set the number of networks opened at the same time when deserializing.
+     * Networks are independent until couplings are made, and opening one
+     * touches nothing shared, so they can be opened in parallel. Other
+     * components (worlds, plots, the doc viewer) may not be safe to open off
+     * the calling thread, so they are always opened on it, in turn. All
+     * components are added to the workspace in their saved order.
+     *
+     * @param parallelism number of threads, at least 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
         }
-        return byteArrays;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
     }
 
-    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, Map<String, byte[]> byteArrays) {
-        if (archive.getArchivedComponents() != null) {
-            for (ArchivedWorkspaceComponent archivedComponent : archive.getArchivedComponents()) {
+    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, EntrySource entries) {
+        List<? extends ArchivedWorkspaceComponent> archivedComponents = archive.getArchivedComponents();
+        if (archivedComponents == null || archivedComponents.isEmpty()) {
+            return;
+        }
+
+        // Open networks in parallel, and everything else on this thread
+        int networks = 0;
+        for (ArchivedWorkspaceComponent archivedComponent : archivedComponents) {
+            if (isNetwork(archivedComponent)) {
+                networks++;
+            }
+        }
+        List<Future<WorkspaceComponent>> opened = new ArrayList<>(archivedComponents.size());
+        int threads = Math.min(parallelism, networks);
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Workspace loader");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        for (ArchivedWorkspaceComponent archivedComponent : archivedComponents) {
+            Callable<WorkspaceComponent> open = () -> openComponent(archivedComponent, entries);
+            if (executor != null && isNetwork(archivedComponent)) {
+                opened.add(executor.submit(open));
+            } else {
+                FutureTask<WorkspaceComponent> task = new FutureTask<>(open);
+                task.run();
+                opened.add(task);
+            }
+        }
+
+        // Add them to the workspace in order
+        try {
+            for (int i = 0; i < archivedComponents.size(); i++) {
+                ArchivedWorkspaceComponent archivedComponent = archivedComponents.get(i);
                 try {
-                    WorkspaceComponent wc = deserializer.deserializeWorkspaceComponent(archivedComponent, new ByteArrayInputStream(byteArrays.get(archivedComponent.getUri())));
+                    WorkspaceComponent wc = getOpened(opened.get(i));
+                    deserializer.register(archivedComponent, wc);
                     workspace.addWorkspaceComponent(wc);
-                    if (archivedComponent.getDesktopComponent() != null) {
-                        Rectangle bounds = (Rectangle) new XStream(new DomDriver()).fromXML(new ByteArrayInputStream(byteArrays.get(archivedComponent.getDesktopComponent().getUri())));
+                    // Desktop bounds only apply when there is a desktop, e.g. not in batch runs
+                    if (desktop != null && archivedComponent.getDesktopComponent() != null) {
+                        Rectangle bounds;
+                        try (InputStream input = entries.open(archivedComponent.getDesktopComponent().getUri())) {
+                            bounds = (Rectangle) new XStream(new DomDriver()).fromXML(input);
+                        }
                         GuiComponent<?> desktopComponent = desktop.getDesktopComponent(wc);
                         desktopComponent.getParentFrame().setBounds(bounds);
                     }
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     String message = String.format("Failed to deserialize component %s.", archivedComponent.getName());
-                    JOptionPane.showMessageDialog(null, message);
+                    if (desktop == null || GraphicsEnvironment.isHeadless()) {
+                        System.err.println(message);
+                    } else {
+                        JOptionPane.showMessageDialog(null, message);
+                    }
                 }
             }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return whether a component entry is a network, which can be opened on
+     * a worker thread
+     */
+    private static boolean isNetwork(ArchivedWorkspaceComponent archivedComponent) {
+        return NetworkComponent.class.getCanonicalName().equals(archivedComponent.getClassName());
+    }
+
+    /**
+     * Open one component from its entry. Networks are opened from worker
+     * threads, so this does not touch the workspace.
+     */
+    private static WorkspaceComponent openComponent(ArchivedWorkspaceComponent archivedComponent, EntrySource entries) throws Exception {
+        try (InputStream input = entries.open(archivedComponent.getUri())) {
+            if (input == null) {
+                throw new IOException("Missing entry " + archivedComponent.getUri());
+            }
+            return WorkspaceComponentDeserializer.deserializeWorkspaceComponent(
+                    Class.forName(archivedComponent.getClassName()), archivedComponent.getName(), input,
+                    archivedComponent.getFormat());
+        }
+    }
+
+    /**
+     * Wait for a component to be opened, rethrowing what went wrong.
+     */
+    private static WorkspaceComponent getOpened(Future<WorkspaceComponent> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
         }
     }
 
@@ -345,24 +475,6 @@ public class WorkspaceSerializer {
         }
     }
 
-    /**
-     * Helper method that will read the InputStream repeatedly until the given array is filled.
-     *
-     * @param istream the InputStream to read from.
-     * @param bytes   the array to write to
-     * @throws IOException if there is an IO error
-     */
-    private static void read(InputStream istream, byte[] bytes) throws IOException {
-        int pos = 0;
-        while (pos < bytes.length) {
-            int read = istream.read(bytes, pos, bytes.length - pos);
-            if (read < 0) {
-                throw new RuntimeException("premature EOF");
-            }
-            pos += read;
-        }
-    }
-
     public static <T> WorkspaceComponent showOpenComponentDialog(Class<T> type) {
         String defaultDirectory = SimbrainPreferences.getString("workspace" + type.getSimpleName() + "Directory");
         SFileChooser chooser = new SFileChooser(defaultDirectory, "XML File", "xml");
@@ -385,7 +497,7 @@ public class WorkspaceSerializer {
      * @return the workspace component
      */
     public static WorkspaceComponent open(Class<?> fileClass, File file) {
-        String extension = file.getName().substring(file.getName().indexOf("."));
+        String extension = SFileChooser.getExtension(file);
         try {
             Method method = fileClass.getMethod("open", InputStream.class, String.class, String.class);
             WorkspaceComponent wc = (WorkspaceComponent) method.invoke(null, new FileInputStream(file),
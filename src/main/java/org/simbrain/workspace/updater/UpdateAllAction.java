@@ -106,7 +106,9 @@ public class UpdateAllAction implements UpdateAction {
             try {
                 UpdateThread thread = (UpdateThread) Thread.currentThread();
                 thread.setCurrentTask(component);
+                UpdateMetrics.Sample sample = updater.getMetrics().start();
                 component.update();
+                updater.getMetrics().stop(component, sample);
                 thread.clearCurrentTask(component);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -121,7 +123,9 @@ public class UpdateAllAction implements UpdateAction {
      * Update couplings.
      */
     public void updateCouplings() {
+        UpdateMetrics.Sample sample = updater.getMetrics().start();
         updater.getWorkspace().getCouplingManager().updateCouplings();
+        updater.getMetrics().stop(UpdateMetrics.COUPLINGS, sample);
         Logger.trace("couplings updated");
         updater.notifyCouplingsUpdated();
     }
@@ -54,7 +54,9 @@ public class UpdateComponent implements UpdateAction {
         //        LatchCompletionSignal latch = new LatchCompletionSignal(1);
         //        updater.updateComponent(component, latch);
         //        latch.await();
+        UpdateMetrics.Sample sample = updater.getMetrics().start();
         component.update();
+        updater.getMetrics().stop(component, sample);
     }
 
     /**
@@ -0,0 +1,426 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.updater;
+
+import org.simbrain.workspace.WorkspaceComponent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timing and allocation statistics for workspace updates, kept per update
+ * action, per workspace component, and for coupling updates. For each it
+ * records wall time, cpu time, and bytes allocated by the updating thread
+ * (from {@link ThreadMXBean}), and keeps the most recent samples of each so
+ * that percentiles can be reported.
+ * <p>
+ * Recording is off by default, since reading thread cpu time and allocation
+ * costs about a microsecond per sample. Cpu time and allocation are reported
+ * as NaN when the jvm does not support measuring them. Note that an action's
+ * numbers only cover the update thread: an action that updates components on
+ * other threads (like {@link UpdateAllAction}) mostly waits, and its
+ * components' work shows up in their own entries.
+ */
+public class UpdateMetrics {
+
+    /**
+     * Number of recent samples kept for percentiles.
+     */
+    public static final int WINDOW = 512;
+
+    /**
+     * Key under which coupling updates are recorded.
+     */
+    public static final Object COUPLINGS = "Couplings";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Allocation counter, when the jvm provides one.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATION = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+            ? (com.sun.management.ThreadMXBean) THREADS : null;
+
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private volatile boolean enabled;
+
+    /**
+     * Statistics by action, component, or {@link #COUPLINGS}, in the order
+     * first recorded.
+     */
+    private final Map<Object, Entry> entries = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * Faster lookup of {@link #entries} from worker threads.
+     */
+    private final Map<Object, Entry> lookup = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn recording on or off. Turning it on also enables thread cpu time
+     * measurement in the jvm where that is supported.
+     *
+     * @param enabled whether to record
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled) {
+            if (CPU_TIME && !THREADS.isThreadCpuTimeEnabled()) {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+            if (ALLOCATION != null && !ALLOCATION.isThreadAllocatedMemoryEnabled()) {
+                ALLOCATION.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        synchronized (entries) {
+            entries.clear();
+            lookup.clear();
+        }
+    }
+
+    /**
+     * Start measuring on the calling thread.
+     *
+     * @return a sample to pass to {@link #stop}, or null if recording is off
+     */
+    public Sample start() {
+        return enabled ? new Sample() : null;
+    }
+
+    /**
+     * Finish a measurement on the thread that started it and record it.
+     *
+     * @param key    the action, component, or {@link #COUPLINGS}
+     * @param sample the sample from {@link #start()}; nothing is recorded if
+     *               it is null
+     */
+    public void stop(Object key, Sample sample) {
+        if (sample == null) {
+            return;
+        }
+        long wall = System.nanoTime() - sample.wall;
+        long cpu = sample.cpu < 0 ? -1 : THREADS.getCurrentThreadCpuTime() - sample.cpu;
+        long allocated = sample.allocated < 0 ? -1 : currentAllocated() - sample.allocated;
+        Entry entry = lookup.get(key);
+        if (entry == null) {
+            synchronized (entries) {
+                entry = entries.computeIfAbsent(key, k -> new Entry(nameOf(k)));
+                lookup.put(key, entry);
+            }
+        }
+        entry.add(wall, cpu, allocated);
+    }
+
+    /**
+     * @return statistics for every update action recorded, in order first
+     * recorded
+     */
+    public List<Stats> getActionStats() {
+        return collect(UpdateAction.class);
+    }
+
+    /**
+     * @return statistics for every workspace component recorded, in order
+     * first recorded
+     */
+    public List<Stats> getComponentStats() {
+        return collect(WorkspaceComponent.class);
+    }
+
+    /**
+     * @return statistics for coupling updates, or null if none were recorded
+     */
+    public Stats getCouplingStats() {
+        Entry entry = lookup.get(COUPLINGS);
+        return entry == null ? null : entry.stats();
+    }
+
+    /**
+     * @param key an action, component, or {@link #COUPLINGS}
+     * @return statistics for the key, or null if none were recorded
+     */
+    public Stats getStats(Object key) {
+        Entry entry = lookup.get(key);
+        return entry == null ? null : entry.stats();
+    }
+
+    /**
+     * @return statistics for everything recorded: actions, components, and
+     * couplings, in order first recorded
+     */
+    public List<Stats> getAllStats() {
+        return collect(Object.class);
+    }
+
+    private List<Stats> collect(Class<?> type) {
+        List<Entry> matching = new ArrayList<>();
+        synchronized (entries) {
+            for (Map.Entry<Object, Entry> e : entries.entrySet()) {
+                if (type.isInstance(e.getKey())) {
+                    matching.add(e.getValue());
+                }
+            }
+        }
+        List<Stats> stats = new ArrayList<>(matching.size());
+        for (Entry entry : matching) {
+            stats.add(entry.stats());
+        }
+        return stats;
+    }
+
+    private static String nameOf(Object key) {
+        if (key instanceof UpdateAction) {
+            return "Action: " + ((UpdateAction) key).getDescription();
+        } else if (key instanceof WorkspaceComponent) {
+            return "Component: " + ((WorkspaceComponent) key).getName();
+        }
+        return key.toString();
+    }
+
+    private static long currentAllocated() {
+        return ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Readings taken when a measurement starts.
+     */
+    public static final class Sample {
+
+        private final long wall;
+
+        private final long cpu;
+
+        private final long allocated;
+
+        private Sample() {
+            cpu = CPU_TIME ? THREADS.getCurrentThreadCpuTime() : -1;
+            allocated = ALLOCATION != null ? currentAllocated() : -1;
+            wall = System.nanoTime();
+        }
+    }
+
+    /**
+     * Running statistics for one key.
+     */
+    private static final class Entry {
+
+        private final String name;
+
+        private long count;
+
+        private long totalWall;
+
+        private long maxWall;
+
+        /**
+         * Recent samples, as ring buffers.
+         */
+        private final long[] wall = new long[WINDOW];
+
+        private final long[] cpu = new long[WINDOW];
+
+        private final long[] allocated = new long[WINDOW];
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(long wallNs, long cpuNs, long bytes) {
+            int i = (int) (count % WINDOW);
+            wall[i] = wallNs;
+            cpu[i] = cpuNs;
+            allocated[i] = bytes;
+            count++;
+            totalWall += wallNs;
+            maxWall = Math.max(maxWall, wallNs);
+        }
+
+        synchronized Stats stats() {
+            int n = (int) Math.min(count, WINDOW);
+            return new Stats(name, count, totalWall, maxWall, sorted(wall, n), sorted(cpu, n), sorted(allocated, n));
+        }
+
+        /**
+         * @return the first n values sorted, or no values if they were not
+         * measured
+         */
+        private static long[] sorted(long[] values, int n) {
+            if (n == 0 || values[0] < 0) {
+                return new long[0];
+            }
+            long[] sorted = Arrays.copyOf(values, n);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * A snapshot of the statistics for one action, component, or the
+     * couplings. Percentiles and means of wall time, cpu time, and allocation
+     * are over the last {@link #WINDOW} updates; count, total, and maximum are
+     * over all updates since the last reset.
+     */
+    public static final class Stats {
+
+        private final String name;
+
+        private final long count;
+
+        private final long totalWallNs;
+
+        private final long maxWallNs;
+
+        private final long[] recentWallNs;
+
+        private final long[] recentCpuNs;
+
+        private final long[] recentAllocatedBytes;
+
+        /**
+         * @param recentWallNs         wall times of recent updates, sorted
+         * @param recentCpuNs          cpu times of recent updates, sorted, or
+         *                             empty if not measured
+         * @param recentAllocatedBytes bytes allocated by recent updates,
+         *                             sorted, or empty if not measured
+         */
+        Stats(String name, long count, long totalWallNs, long maxWallNs, long[] recentWallNs,
+              long[] recentCpuNs, long[] recentAllocatedBytes) {
+            this.name = name;
+            this.count = count;
+            this.totalWallNs = totalWallNs;
+            this.maxWallNs = maxWallNs;
+            this.recentWallNs = recentWallNs;
+            this.recentCpuNs = recentCpuNs;
+            this.recentAllocatedBytes = recentAllocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getTotalWallMs() {
+            return totalWallNs / 1e6;
+        }
+
+        public double getMaxWallMs() {
+            return maxWallNs / 1e6;
+        }
+
+        /**
+         * @return mean wall time of recent updates, in milliseconds
+         */
+        public double getMeanWallMs() {
+            return mean(recentWallNs) / 1e6;
+        }
+
+        /**
+         * Wall time percentile of recent updates (nearest rank).
+         *
+         * @param percentile between 0 and 100
+         * @return the percentile in milliseconds, or NaN if nothing was
+         * recorded
+         */
+        public double getWallPercentileMs(double percentile) {
+            return percentile(recentWallNs, percentile) / 1e6;
+        }
+
+        /**
+         * @return mean cpu time of recent updates in milliseconds, or NaN if
+         * not supported
+         */
+        public double getMeanCpuMs() {
+            return mean(recentCpuNs) / 1e6;
+        }
+
+        /**
+         * Cpu time percentile of recent updates (nearest rank).
+         *
+         * @param percentile between 0 and 100
+         * @return the percentile in milliseconds, or NaN if nothing was
+         * recorded or cpu time is not supported
+         */
+        public double getCpuPercentileMs(double percentile) {
+            return percentile(recentCpuNs, percentile) / 1e6;
+        }
+
+        /**
+         * @return mean bytes allocated by recent updates, or NaN if not
+         * supported
+         */
+        public double getMeanAllocatedBytes() {
+            return mean(recentAllocatedBytes);
+        }
+
+        /**
+         * Percentile of bytes allocated by recent updates (nearest rank).
+         *
+         * @param percentile between 0 and 100
+         * @return the percentile in bytes, or NaN if nothing was recorded or
+         * allocation is not supported
+         */
+        public double getAllocatedPercentileBytes(double percentile) {
+            return percentile(recentAllocatedBytes, percentile);
+        }
+
+        private static double mean(long[] values) {
+            if (values.length == 0) {
+                return Double.NaN;
+            }
+            double sum = 0;
+            for (long value : values) {
+                sum += value;
+            }
+            return sum / values.length;
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms"
+                            + " cpu=%.3fms cpu_p90=%.3fms alloc=%.0fB alloc_p90=%.0fB",
+                    name, count, getMeanWallMs(), getWallPercentileMs(50), getWallPercentileMs(90),
+                    getWallPercentileMs(99), getMaxWallMs(), getMeanCpuMs(), getCpuPercentileMs(90),
+                    getMeanAllocatedBytes(), getAllocatedPercentileBytes(90));
+        }
+    }
+}
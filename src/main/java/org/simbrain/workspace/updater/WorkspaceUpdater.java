@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * This class manages workspace updates. "Running" and "Stepping" the simulation
@@ -102,6 +103,11 @@ public class WorkspaceUpdater {
      */
     private UpdateActionManager updateActionManager;
 
+    /**
+     * Timing statistics for actions and components, when enabled.
+     */
+    private final UpdateMetrics metrics = new UpdateMetrics();
+
     /**
      * Constructor for the updater that uses the provided controller and
      * threads.
@@ -267,6 +273,61 @@ public class WorkspaceUpdater {
         }
     }
 
+    /**
+     * Iterate until a condition holds, or for at most a set number of
+     * iterations. The condition is tested on the update thread after each
+     * iteration, so it can also be used to read out results between
+     * iterations. Unlike {@link #iterate(int)}, exceptions thrown during
+     * update stop the run and are passed on to the caller.
+     *
+     * @param maxIterations the most iterations to run, or a negative number
+     *                      for no limit
+     * @param stopCondition called after each iteration with the current time;
+     *                      iteration stops when it returns true
+     * @return the number of iterations run
+     */
+    public int iterateUntil(int maxIterations, IntPredicate stopCondition) {
+        Future<Integer> wait = workspaceUpdateExecutor.submit(() -> {
+            notifyWorkspaceUpdateStarted();
+            syncManager.queueTasks();
+            int count = 0;
+            try {
+                while (maxIterations < 0 || count < maxIterations) {
+                    doUpdate();
+                    count++;
+                    if (stopCondition.test(time)) {
+                        break;
+                    }
+                }
+            } finally {
+                syncManager.releaseTasks();
+                syncManager.runTasks();
+                notifyWorkspaceUpdateCompleted();
+            }
+            return count;
+        });
+        try {
+            return wait.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Stop the update and notification threads once pending work is done. The
+     * updater cannot be used afterwards. For workspaces that are created and
+     * discarded in bulk, e.g. in batch runs, whose threads would otherwise stay
+     * alive.
+     */
+    public void shutdown() {
+        run = false;
+        workspaceUpdateExecutor.shutdown();
+        notificationEvents.shutdown();
+    }
+
     /**
      * Executes the main workspace update.
      */
@@ -275,7 +336,9 @@ public class WorkspaceUpdater {
         Logger.trace("starting: " + time);
         for (UpdateAction action : updateActionManager.getActionList()) {
             notifyBeforeUpdateAction(action);
+            UpdateMetrics.Sample sample = metrics.start();
             action.invoke();
+            metrics.stop(action, sample);
             notifyAfterUpdateAction(action);
         }
         notifyWorkspaceUpdated();
@@ -451,6 +514,16 @@ public class WorkspaceUpdater {
         return updateActionManager;
     }
 
+    /**
+     * Returns the timing statistics for update actions and components. They
+     * are only collected once enabled with {@link UpdateMetrics#setEnabled}.
+     *
+     * @return the metrics
+     */
+    public UpdateMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get a synchronized list of component.
      *
@@ -25,6 +25,9 @@ import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.WorkspaceComponent;
 import org.simbrain.world.odorworld.entities.OdorWorldEntity;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -99,6 +102,44 @@ public class OdorWorldComponent extends WorkspaceComponent {
         xstream.toXML(world, output);
     }
 
+    /**
+     * Writes the state of each entity, by id.
+     */
+    @Override
+    public void writeState(DataOutput out) throws IOException {
+        List<OdorWorldEntity> entities = world.getEntityList();
+        out.writeInt(entities.size());
+        for (OdorWorldEntity entity : entities) {
+            out.writeUTF(entity.getId());
+            entity.writeState(out);
+        }
+    }
+
+    /**
+     * Restores the state of each entity with a matching id. Entities added
+     * since the state was written are left as they are, and the state of
+     * entities removed since then is skipped.
+     */
+    @Override
+    public void readState(DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            OdorWorldEntity entity = null;
+            for (OdorWorldEntity candidate : world.getEntityList()) {
+                if (id.equals(candidate.getId())) {
+                    entity = candidate;
+                    break;
+                }
+            }
+            if (entity != null) {
+                entity.readState(in);
+            } else {
+                in.readFully(new byte[OdorWorldEntity.STATE_BYTES]);
+            }
+        }
+    }
+
     /**
      * Recreates an instance of this class from a saved component.
      *
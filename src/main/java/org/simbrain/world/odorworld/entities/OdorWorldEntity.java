@@ -40,6 +40,9 @@ import org.simbrain.world.odorworld.sensors.Sensor;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -126,6 +129,11 @@ public class OdorWorldEntity implements EditableObject, AttributeContainer, Copy
      */
     private final static double DEFAULT_HEADING = 0;
 
+    /**
+     * Number of bytes written by {@link #writeState}.
+     */
+    public static final int STATE_BYTES = 7 * Double.BYTES;
+
     /**
      * Default location for sensors relative to agent.
      */
@@ -591,6 +599,43 @@ public class OdorWorldEntity implements EditableObject, AttributeContainer, Copy
         }
     }
 
+    /**
+     * Write the entity's position, velocity, heading, and energy, for a
+     * workspace checkpoint.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(dx);
+        out.writeDouble(dy);
+        out.writeDouble(heading);
+        out.writeDouble(dtheta);
+        out.writeDouble(energyLevel);
+    }
+
+    /**
+     * Restore state written by {@link #writeState}. Sensors are updated for
+     * the restored position, but effectors are not applied.
+     *
+     * @param in the input
+     * @throws IOException if reading fails
+     */
+    public void readState(DataInput in) throws IOException {
+        x = in.readDouble();
+        y = in.readDouble();
+        dx = in.readDouble();
+        dy = in.readDouble();
+        heading = in.readDouble();
+        dtheta = in.readDouble();
+        energyLevel = in.readDouble();
+        updateCollisionBound();
+        updateSensors();
+        events.fireMoved();
+    }
+
     public void updateCollisionBound() {
         if (manualMode) {
             collisionBound.setVelocity(manualMovementVelocity.getX(), manualMovementVelocity.getY());
@@ -2,6 +2,7 @@ package org.simbrain.network.events
 
 import org.simbrain.network.NetworkModel
 import org.simbrain.util.Event
+import java.beans.PropertyChangeListener
 import java.beans.PropertyChangeSupport
 
 /**
@@ -12,7 +13,7 @@ abstract class LocationEvents(model: NetworkModel) : NetworkModelEvents(model) {
     /**
      * Handle location change events
      */
-    abstract fun onLocationChange(handler: Runnable)
+    abstract fun onLocationChange(handler: Runnable): PropertyChangeListener
 
     /**
      * Fire a location change events.
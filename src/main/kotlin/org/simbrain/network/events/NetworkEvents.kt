@@ -14,6 +14,7 @@ import org.simbrain.network.groups.Subnetwork
 import org.simbrain.network.groups.SynapseGroup
 import org.simbrain.util.Event
 import java.beans.PropertyChangeSupport
+import java.util.*
 import java.util.function.Consumer
 
 /**
@@ -33,6 +34,14 @@ class NetworkEvents(network: Network) : Event(PropertyChangeSupport(network)) {
     fun onUpdateTimeDisplay(handler: Consumer<Boolean>) = "UpdateTimeDisplay".itemAddedEvent(handler)
     fun fireUpdateTimeDisplay(display: Boolean) = "UpdateTimeDisplay"(new = display)
 
+    /**
+     * Fired once at the end of [Network.update] with the indices (into [Network.getFlatNeuronList]) of neurons whose
+     * activation changed during the update. The bit set is reused, so handlers should not hold on to it.
+     */
+    fun onActivationsChanged(handler: Consumer<BitSet>) = "ActivationsChanged".itemAddedEvent(handler)
+    fun fireActivationsChanged(changed: BitSet) = "ActivationsChanged"(new = changed)
+    fun hasActivationsChangedHandlers() = "ActivationsChanged".hasHandlers()
+
     fun onDebug(handler: Runnable) = "Debug".event(handler)
     fun fireDebug() = "Debug"()
 
@@ -14,6 +14,7 @@ class NeuronEvents(val neuron: Neuron) : LocationEvents(neuron) {
 
     fun onActivationChange(handler: BiConsumer<Double, Double>) = "ActivationChange".itemChangedEvent(handler)
     fun fireActivationChange(old: Double, new: Double) = "ActivationChange"(old = old, new = new)
+    fun hasActivationChangeHandlers() = "ActivationChange".hasHandlers()
 
     override fun onLocationChange(handler: Runnable) = "LocationChange".event(handler)
     override fun fireLocationChange() = "LocationChange"()
@@ -1,6 +1,9 @@
 package org.simbrain.util
 
+import org.pmw.tinylog.Level
 import org.pmw.tinylog.Logger
+import java.beans.PropertyChangeListener
+import java.beans.PropertyChangeListenerProxy
 import java.beans.PropertyChangeSupport
 import java.util.function.BiConsumer
 import java.util.function.Consumer
@@ -32,6 +35,9 @@ import java.util.function.Consumer
  *
  *  They can be used just like other intellij built-in shortcuts, e.g `sout`.
  *
+ *  Each "onX" function returns the listener it registered, which can be passed to [removeHandler] when the handler
+ *  is no longer needed, e.g. when an update action is removed from a network.
+ *
  *  @author Yulin Li
  */
 open class Event(private val changeSupport: PropertyChangeSupport) {
@@ -41,7 +47,7 @@ open class Event(private val changeSupport: PropertyChangeSupport) {
      */
     protected operator fun <T> String.invoke(old: T? = null, new: T? = null) {
         changeSupport.firePropertyChange(this, old, new)
-        Logger.debug("${this}Event")
+        logEvent(this)
     }
 
     /**
@@ -49,57 +55,81 @@ open class Event(private val changeSupport: PropertyChangeSupport) {
      */
     protected operator fun String.invoke() {
         changeSupport.firePropertyChange(this, null, null)
-        Logger.debug("${this}Event")
+        logEvent(this)
     }
 
     /**
-     * No-argument event handler.
+     * Log an event at debug level. The level is checked first so that frequently fired events don't build a log
+     * string that is thrown away.
      */
-    protected fun String.event(handler: Runnable) {
-        changeSupport.addPropertyChangeListener(this) {
-            handler.run()
+    private fun logEvent(name: String) {
+        if (Logger.getLevel() <= Level.DEBUG) {
+            Logger.debug("${name}Event")
         }
     }
 
+    /**
+     * True if at least one handler is registered for this event. Lets hot paths skip building event arguments when
+     * nobody is listening.
+     */
+    protected fun String.hasHandlers() = changeSupport.hasListeners(this)
+
+    /**
+     * Remove a handler registered by one of the "onX" functions.
+     *
+     * @param handler the listener returned when the handler was registered
+     */
+    fun removeHandler(handler: PropertyChangeListener) {
+        changeSupport.removePropertyChangeListener(handler)
+    }
+
+    /**
+     * Register a listener for the named event, wrapped so that [removeHandler] can find it again.
+     */
+    private fun String.addHandler(listener: PropertyChangeListener): PropertyChangeListener {
+        val proxy = PropertyChangeListenerProxy(this, listener)
+        changeSupport.addPropertyChangeListener(proxy)
+        return proxy
+    }
+
+    /**
+     * No-argument event handler.
+     */
+    protected fun String.event(handler: Runnable) = addHandler(PropertyChangeListener {
+        handler.run()
+    })
+
     /**
      * Handle a "new object" event, e.g. adding a neuron.
      */
     @Suppress("UNCHECKED_CAST")
-    protected fun <T> String.itemAddedEvent(handler: Consumer<T>) {
-        changeSupport.addPropertyChangeListener(this) {
-            handler.accept(it.newValue as T)
-        }
-    }
+    protected fun <T> String.itemAddedEvent(handler: Consumer<T>) = addHandler(PropertyChangeListener {
+        handler.accept(it.newValue as T)
+    })
 
     /**
      * Handle a "remove object" event, e.g. removing a neuron.
      */
     @Suppress("UNCHECKED_CAST")
-    protected fun <T> String.itemRemovedEvent(handler: Consumer<T>) {
-        changeSupport.addPropertyChangeListener(this) {
-            handler.accept(it.oldValue as T)
-        }
-    }
+    protected fun <T> String.itemRemovedEvent(handler: Consumer<T>) = addHandler(PropertyChangeListener {
+        handler.accept(it.oldValue as T)
+    })
 
     /**
      * Handle a change event.  If old and new states are the same no action is taken.
      */
     @Suppress("UNCHECKED_CAST")
-    protected fun <T> String.itemChangedEvent(handler: BiConsumer<T, T>) {
-        changeSupport.addPropertyChangeListener(this) {
-            handler.accept(it.oldValue as T, it.newValue as T)
-        }
-    }
+    protected fun <T> String.itemChangedEvent(handler: BiConsumer<T, T>) = addHandler(PropertyChangeListener {
+        handler.accept(it.oldValue as T, it.newValue as T)
+    })
 
     /**
      * Handle a change event.  If old and new states are the same no action is taken.
      * Note: For Kotlin
      */
     @Suppress("UNCHECKED_CAST")
-    protected fun <T> String.itemChangedEvent(handler: (T, T) -> Unit) {
-        changeSupport.addPropertyChangeListener(this) {
-            handler(it.oldValue as T, it.newValue as T)
-        }
-    }
+    protected fun <T> String.itemChangedEvent(handler: (T, T) -> Unit) = addHandler(PropertyChangeListener {
+        handler(it.oldValue as T, it.newValue as T)
+    })
 
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package org.simbrain.network.connections;
+
+import org.junit.Test;
+import org.simbrain.util.math.SimbrainRandom;
+
+import static org.junit.Assert.*;
+
+public class EdgeListTest {
+
+    /**
+     * Targets should be in range, increasing within each source, and never
+     * the source itself when self connections are excluded.
+     */
+    private static void checkTargets(EdgeList edges, boolean excludeSelf) {
+        int[] offsets = edges.getOffsets();
+        int[] targets = edges.getTargets();
+        for (int s = 0; s < edges.getNumSources(); s++) {
+            for (int k = offsets[s]; k < offsets[s + 1]; k++) {
+                assertTrue(targets[k] >= 0 && targets[k] < edges.getNumTargets());
+                assertFalse(excludeSelf && targets[k] == s);
+                assertTrue(k == offsets[s] || targets[k] > targets[k - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void allToAll() {
+        EdgeList edges = EdgeList.allToAll(3, 3, true);
+        assertArrayEquals(new int[]{0, 2, 4, 6}, edges.getOffsets());
+        assertArrayEquals(new int[]{1, 2, 0, 2, 0, 1}, edges.getTargets());
+        assertEquals(12, EdgeList.allToAll(3, 4, false).size());
+    }
+
+    @Test
+    public void randomIsSeededAndNearDensity() {
+        EdgeList edges = EdgeList.random(3000, 500, .1, true, new SimbrainRandom(5));
+        checkTargets(edges, true);
+        assertEquals(3000 * 500 * .1, edges.size(), 3000);
+        EdgeList again = EdgeList.random(3000, 500, .1, true, new SimbrainRandom(5));
+        assertArrayEquals(edges.getTargets(), again.getTargets());
+    }
+
+    @Test
+    public void equalized() {
+        EdgeList edges = EdgeList.equalized(2500, 40, 39, true, new SimbrainRandom(3));
+        checkTargets(edges, true);
+        for (int s = 0; s < 2500; s++) {
+            assertEquals(39, edges.getOffsets()[s + 1] - edges.getOffsets()[s]);
+        }
+    }
+}
@@ -2,10 +2,17 @@ package org.simbrain.network.core;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.simbrain.network.connections.AllToAll;
 import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.util.DeepCopier;
+import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.Utils;
 import org.simbrain.workspace.WorkspaceComponent;
 
+import java.util.BitSet;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class NetworkTest {
@@ -42,6 +49,29 @@ public class NetworkTest {
         assertEquals(ng2, net.getNeuronGroupByLabel("ng2"));
     }
 
+    /**
+     * Label lookups follow relabeling and neurons swapped in groups, and the
+     * first of several neurons with a label is found.
+     */
+    @Test
+    public void getByLabelAfterEdits() {
+        assertEquals(n2, net.getNeuronByLabel("neuron2"));
+        n1.setLabel("neuron2");
+        assertEquals(n1, net.getNeuronByLabel("neuron2"));
+        n1.setLabel("neuron1");
+        assertEquals(n2, net.getNeuronByLabel("neuron2"));
+
+        Neuron first = new Neuron(net);
+        first.setLabel("grouped");
+        ng1.addNeuron(first);
+        assertEquals(first, net.getNeuronByLabel("grouped"));
+        Neuron second = new Neuron(net);
+        second.setLabel("grouped");
+        ng1.removeNeuron(first);
+        ng1.addNeuron(second);
+        assertEquals(second, net.getNeuronByLabel("grouped"));
+    }
+
     @Test
     public void testXML() {
         String xmlRep = Utils.getSimbrainXStream().toXML(net);
@@ -53,4 +83,124 @@ public class NetworkTest {
         assertNotNull(fromXml.getNeuronGroupByLabel("ng2") );
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void flatListsAreCachedUntilStructureChanges() {
+        List<Neuron> flat = net.getFlatNeuronList();
+        assertSame(flat, net.getFlatNeuronList());
+        assertEquals(2 + ng1.size() + ng2.size(), flat.size());
+
+        Neuron n3 = new Neuron(net);
+        net.addLooseNeuron(n3);
+        assertNotSame(flat, net.getFlatNeuronList());
+        assertTrue(net.getFlatNeuronList().contains(n3));
+
+        net.delete(n3);
+        assertFalse(net.getFlatNeuronList().contains(n3));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void flatListsAreReadOnly() {
+        net.getFlatNeuronList().add(new Neuron(net));
+    }
+
+    @Test
+    public void lookupById() {
+        assertSame(n1, net.getLooseNeuron(n1.getId()));
+        Synapse s = new Synapse(n1, n2);
+        net.addLooseSynapse(s);
+        assertSame(s, net.getLooseSynapse(s.getId()));
+        assertSame(s, net.getLooseSynapse(s.getId().toUpperCase()));
+        assertNull(net.getLooseSynapse("no such synapse"));
+    }
+
+    @Test
+    public void lookupByChangedLabel() {
+        n1.setLabel("renamed");
+        assertEquals(n1, net.getNeuronByLabel("renamed"));
+    }
+
+    @Test
+    public void activationEventsAreDeferredDuringUpdate() {
+        int[] neuronEvents = {0};
+        BitSet[] changed = {null};
+        n1.getEvents().onActivationChange((o, n) -> neuronEvents[0]++);
+        net.getEvents().onActivationsChanged(bits -> changed[0] = (BitSet) bits.clone());
+
+        n1.setInputValue(.5);
+        net.update();
+        assertEquals(1, neuronEvents[0]);
+        assertTrue(changed[0].get(net.getFlatNeuronList().indexOf(n1)));
+        assertFalse(changed[0].get(net.getFlatNeuronList().indexOf(n2)));
+
+        // Outside an update events are fired right away
+        n1.forceSetActivation(-.5);
+        assertEquals(2, neuronEvents[0]);
+    }
+
+    @Test
+    public void copyWithoutXml() {
+        Synapse s = new Synapse(n1, n2, .5);
+        net.addLooseSynapse(s);
+        n1.forceSetActivation(1);
+
+        // Everything in this network can be copied directly
+        Network copy = new DeepCopier().copy(net);
+
+        Neuron c1 = copy.getLooseNeuron(n1.getId());
+        Neuron c2 = copy.getLooseNeuron(n2.getId());
+        assertNotSame(n1, c1);
+        assertSame(copy, c1.getNetwork());
+        assertEquals(1, c1.getActivation(), 0);
+        assertEquals(ng1.size(), copy.getNeuronGroupByLabel("neuron_group_1").size());
+
+        // Fan-in and fan-out are rebuilt for the copied synapse
+        Synapse cs = copy.getLooseSynapse(s.getId());
+        assertEquals(.5, cs.getStrength(), 0);
+        assertSame(c1, cs.getSource());
+        assertEquals(1, c2.getFanIn().size());
+        assertSame(cs, c2.getFanIn().get(0));
+
+        // Copies update like the original, independently of it
+        net.update();
+        assertEquals(0, c2.getActivation(), 0);
+        copy.update();
+        assertEquals(n2.getActivation(), c2.getActivation(), 0);
+        cs.forceSetStrength(2);
+        assertEquals(.5, s.getStrength(), 0);
+    }
+
+    @Test
+    public void copyMatchesXmlCopy() {
+        net.addLooseSynapse(new Synapse(n1, n2, -.3));
+        n2.forceSetActivation(.25);
+        NeuronGroup source = new NeuronGroup(net, 3);
+        NeuronGroup target = new NeuronGroup(net, 4);
+        net.addNeuronGroup(source);
+        net.addNeuronGroup(target);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        net.addSynapseGroup(sg);
+
+        // Weights changed after a save must not be replaced by the saved ones
+        net.copyFromXml();
+        sg.setStrength(.75, Polarity.BOTH);
+
+        Network direct = net.copy();
+        Network fromXml = net.copyFromXml();
+        assertEquals(fromXml.getFlatNeuronList().size(), direct.getFlatNeuronList().size());
+        assertEquals(fromXml.getFlatSynapseList().size(), direct.getFlatSynapseList().size());
+        for (Neuron n : fromXml.getLooseNeurons()) {
+            Neuron m = direct.getLooseNeuron(n.getId());
+            assertEquals(n.getActivation(), m.getActivation(), 0);
+            assertEquals(n.getFanIn().size(), m.getFanIn().size());
+            assertEquals(n.getFanOut().size(), m.getFanOut().size());
+        }
+        SynapseGroup directSg = direct.getSynapseGroups().get(0);
+        assertEquals(12, directSg.size());
+        assertArrayEquals(sg.getWeightMatrix(), directSg.getWeightMatrix());
+        assertArrayEquals(sg.getWeightMatrix(), fromXml.getSynapseGroups().get(0).getWeightMatrix());
+        for (Neuron n : directSg.getTargetNeurons()) {
+            assertEquals(3, n.getFanIn().size());
+        }
+    }
+}
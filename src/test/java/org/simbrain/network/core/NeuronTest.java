@@ -1,6 +1,10 @@
 package org.simbrain.network.core;
 
 import org.junit.Test;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+
+import java.lang.reflect.Field;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -15,6 +19,68 @@ public class NeuronTest {
         assert (neuron.getActivation() == 1);
     }
 
+    @Test
+    public void fanOutLookupAndRemoval() {
+        Network net = new Network();
+        Neuron source = new Neuron(net);
+        List<Synapse> synapses = new ArrayList<>();
+        // Enough targets to switch the fan-out to its hash index
+        for (int i = 0; i < 2 * FanOutMap.HASH_THRESHOLD; i++) {
+            Synapse s = new Synapse(source, new Neuron(net), i);
+            source.addEfferent(s);
+            synapses.add(s);
+        }
+        for (Synapse s : synapses) {
+            assertSame(s, source.getFanOut().get(s.getTarget()));
+        }
+        for (int i = 0; i < synapses.size(); i += 2) {
+            source.removeEfferent(synapses.get(i));
+        }
+        assertEquals(synapses.size() / 2, source.getFanOut().size());
+        for (int i = 0; i < synapses.size(); i++) {
+            Synapse expected = i % 2 == 0 ? null : synapses.get(i);
+            assertSame(expected, source.getFanOut().get(synapses.get(i).getTarget()));
+        }
+        Set<Synapse> remaining = new HashSet<>(source.getFanOut().values());
+        assertEquals(synapses.size() / 2, remaining.size());
+    }
+
+    @Test
+    public void newRuleOfSameClassResetsState() {
+        Neuron neuron = new Neuron(new Network(), new IzhikevichRule());
+        neuron.getRuleState()[1] = 5;
+        neuron.setUpdateRule(new IzhikevichRule());
+        assertEquals(0, neuron.getRuleState()[1], 0);
+    }
 
+    @Test
+    public void unsharedRuleReportsLastSpike() {
+        Network net = new Network();
+        Neuron neuron = new Neuron(net, new IzhikevichRule());
+        IzhikevichRule rule = (IzhikevichRule) neuron.getUpdateRule();
+        net.setTime(5);
+        rule.setHasSpiked(true, neuron);
+        assertEquals(5, rule.getLastSpikeTime(), 0);
+        assertEquals(5, rule.getLastSpikeTime(neuron), 0);
+    }
 
-}
\ No newline at end of file
+    @Test
+    public void legacyRecoveryGoesToEveryNeuron() throws Exception {
+        IzhikevichRule rule = new IzhikevichRule();
+        Field recovery = IzhikevichRule.class.getDeclaredField("recovery");
+        recovery.setAccessible(true);
+        recovery.setDouble(rule, 3);
+        Network net = new Network();
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Neuron neuron = new Neuron(net);
+            neuron.setSharedUpdateRule(rule);
+            neurons.add(neuron);
+        }
+        IzhikevichRule.migrateLegacyRecovery(neurons);
+        for (Neuron neuron : neurons) {
+            assertEquals(3, neuron.getRuleState()[1], 0);
+        }
+        assertEquals(0, recovery.getDouble(rule), 0);
+    }
+}
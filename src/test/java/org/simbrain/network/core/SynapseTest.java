@@ -5,6 +5,8 @@ import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
 import org.simbrain.network.neuron_update_rules.LinearRule;
 import org.simbrain.network.synapse_update_rules.spikeresponders.NonResponder;
 
+import java.nio.ByteBuffer;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
@@ -35,4 +37,89 @@ public class SynapseTest {
         assertNotEquals(spikingToNonspiking.getSpikeResponder().getClass(), NonResponder.class);
         assertNotEquals(spikingToSpiking.getSpikeResponder().getClass(), NonResponder.class);
     }
-}
\ No newline at end of file
+
+    /**
+     * A response sent through a synapse with delay d reaches the target d
+     * updates later, and delayed synapses onto the same target add up.
+     */
+    @Test
+    public void delayedInputArrivesOnTime() {
+        Network net = new Network();
+        Neuron source = new Neuron(net);
+        source.setClamped(true);
+        source.forceSetActivation(1);
+        Neuron target = new Neuron(net);
+        net.addLooseNeuron(source);
+        net.addLooseNeuron(target);
+        Synapse slow = new Synapse(source, target, .25);
+        slow.setDelay(3);
+        Synapse fast = new Synapse(source, target, .5);
+        fast.setDelay(1);
+        net.addLooseSynapse(slow);
+        net.addLooseSynapse(fast);
+
+        double[] expected = {0, .5, .5, .75, .75};
+        for (double e : expected) {
+            net.update();
+            assertEquals(e, target.getActivation(), 0);
+        }
+    }
+
+    /**
+     * Reading a neuron's input does not move its delay line, so extra reads
+     * between updates neither consume nor shift delayed input.
+     */
+    @Test
+    public void readingInputDoesNotAdvanceDelay() {
+        Network net = new Network();
+        Neuron source = new Neuron(net);
+        source.setClamped(true);
+        source.forceSetActivation(1);
+        Neuron target = new Neuron(net);
+        net.addLooseNeuron(source);
+        net.addLooseNeuron(target);
+        Synapse synapse = new Synapse(source, target, .5);
+        synapse.setDelay(2);
+        net.addLooseSynapse(synapse);
+
+        double[] expected = {0, 0, .5, .5};
+        for (double e : expected) {
+            target.getInput();
+            target.getWeightedInputs();
+            net.update();
+            assertEquals(e, target.getActivation(), 0);
+        }
+    }
+
+    /**
+     * Queued values stored on the synapse by older versions are moved to the
+     * target when decoded.
+     */
+    @Test
+    public void decodeMovesQueuedValuesToTarget() {
+        Network net = new Network();
+        Neuron source = new Neuron(net);
+        Neuron target = new Neuron(net);
+        Synapse synapse = new Synapse(source, target, 1);
+
+        // Delay 2, next read at index 1, so 5 arrives first and then 7
+        ByteBuffer bBuf = ByteBuffer.allocate(4 + 8 + 8 + 16 + 4 + 1);
+        bBuf.putInt(2);
+        bBuf.putDouble(1);
+        bBuf.putDouble(0);
+        bBuf.putDouble(7);
+        bBuf.putDouble(5);
+        bBuf.putInt(1);
+        bBuf.put((byte) 2);
+        bBuf.flip();
+        synapse.decodeNumericByteArray(bBuf);
+
+        assertEquals(2, synapse.getDelay());
+        assertEquals(5, target.getDelayedInput(), 0);
+        assertEquals(5, target.getDelayedInput(), 0);
+        target.advanceDelayedInput();
+        assertEquals(7, target.getDelayedInput(), 0);
+        target.advanceDelayedInput();
+        assertEquals(0, target.getDelayedInput(), 0);
+    }
+}
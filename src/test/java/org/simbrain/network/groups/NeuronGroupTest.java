@@ -3,8 +3,13 @@ package org.simbrain.network.groups;
 import org.junit.Test;
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
-import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
-import org.simbrain.network.neuron_update_rules.UpdateRuleEnum;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.*;
+import org.simbrain.util.math.SquashingFunctionEnum;
+
+import java.util.List;
+import java.util.function.IntFunction;
 
 import static org.junit.Assert.*;
 
@@ -24,6 +29,29 @@ public class NeuronGroupTest {
         assertNotEquals("test", ng2.getLabel());
     }
 
+    @Test
+    public void testUpdatePeriod() {
+        Network net = new Network();
+        Neuron source = new Neuron(net, new LinearRule());
+        source.forceSetActivation(1);
+        source.setClamped(true);
+        net.addLooseNeuron(source);
+        NeuronGroup ng = new NeuronGroup(net, 1);
+        net.addNeuronGroup(ng);
+        Neuron target = ng.getNeuronList().get(0);
+        net.addLooseSynapse(new Synapse(source, target, .1));
+        ng.setUpdatePeriod(3);
+
+        // Updates on the first network update and every third after that
+        double[] expected = {.1, .1, .1, .3, .3, .3, .3};
+        for (double activation : expected) {
+            net.update();
+            assertEquals(activation, target.getActivation(), 1e-9);
+        }
+        // Input from skipped updates is summed and delivered, then cleared
+        assertEquals(0, target.getInputValue(), 1e-9);
+    }
+
     @Test
     public void testInitSpikeResponder() {
         Network net = new Network();
@@ -38,4 +66,144 @@ public class NeuronGroupTest {
         assertTrue(ng.isSpikingNeuronGroup());
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Build a recurrent network of neurons using the given rules, either in a
+     * neuron group (updated as a batch) or as loose neurons (updated one by
+     * one).
+     */
+    private static List<? extends Neuron> buildNetwork(IntFunction<NeuronUpdateRule> rules, boolean grouped) {
+        int size = 20;
+        Network net = new Network();
+        net.setTimeStep(.1);
+        NeuronGroup ng = new NeuronGroup(net);
+        for (int i = 0; i < size; i++) {
+            Neuron n = new Neuron(net, rules.apply(i));
+            n.forceSetActivation(n.getUpdateRule().isSpikingNeuron() ? -60 + i : (i % 5) / 5.0);
+            if (grouped) {
+                ng.addNeuron(n);
+            } else {
+                net.addLooseNeuron(n);
+            }
+        }
+        if (grouped) {
+            net.addNeuronGroup(ng);
+        }
+        List<? extends Neuron> neurons = grouped ? ng.getNeuronList() : net.getLooseNeurons();
+        for (int i = 0; i < size; i++) {
+            for (int j = 1; j <= 4; j++) {
+                Synapse s = new Synapse(neurons.get(i), neurons.get((i + 3 * j) % size), ((i + j) % 5 - 1) / 4.0);
+                net.addLooseSynapse(s);
+            }
+        }
+        neurons.get(size - 1).setClamped(true);
+        return neurons;
+    }
+
+    private static void assertBatchMatchesSingleUpdates(IntFunction<NeuronUpdateRule> rules) {
+        List<? extends Neuron> batched = buildNetwork(rules, true);
+        List<? extends Neuron> single = buildNetwork(rules, false);
+        for (int t = 0; t < 200; t++) {
+            batched.get(0).getNetwork().update();
+            single.get(0).getNetwork().update();
+            for (int i = 0; i < batched.size(); i++) {
+                assertEquals(single.get(i).getActivation(), batched.get(i).getActivation(), 0);
+                assertEquals(single.get(i).isSpike(), batched.get(i).isSpike());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchLinear() {
+        assertBatchMatchesSingleUpdates(i -> {
+            LinearRule rule = new LinearRule();
+            rule.setSlope(.5 + i / 10.0);
+            rule.setBias(i % 3 / 10.0);
+            rule.setClipped(i % 2 == 0);
+            return rule;
+        });
+    }
+
+    @Test
+    public void testBatchSigmoidal() {
+        assertBatchMatchesSingleUpdates(i -> {
+            SigmoidalRule rule = new SigmoidalRule(i % 4 == 0 ? SquashingFunctionEnum.TANH : SquashingFunctionEnum.LOGISTIC);
+            rule.setSlope(.5 + i / 10.0);
+            rule.setBias(i % 3 / 10.0);
+            return rule;
+        });
+    }
+
+    @Test
+    public void testBatchContinuousSigmoidal() {
+        assertBatchMatchesSingleUpdates(i -> {
+            ContinuousSigmoidalRule rule = new ContinuousSigmoidalRule();
+            rule.setTimeConstant(1 + i);
+            rule.setLeakConstant(i % 2);
+            return rule;
+        });
+    }
+
+    @Test
+    public void testBatchIzhikevich() {
+        assertBatchMatchesSingleUpdates(i -> {
+            IzhikevichRule rule = new IzhikevichRule();
+            rule.setiBg(i);
+            rule.setD(2 + i % 7);
+            return rule;
+        });
+    }
+
+    @Test
+    public void testBatchIntegrateAndFire() {
+        assertBatchMatchesSingleUpdates(i -> {
+            IntegrateAndFireRule rule = new IntegrateAndFireRule();
+            rule.setBackgroundCurrent(10 + i);
+            rule.setRefractoryPeriod(i % 3);
+            return rule;
+        });
+    }
+
+    @Test
+    public void testBatchAdExIF() {
+        assertBatchMatchesSingleUpdates(i -> {
+            AdExIFRule rule = new AdExIFRule();
+            rule.setI_bg(500 + 50 * i);
+            rule.setRefractoryPeriod(i % 3);
+            return rule;
+        });
+    }
+
+    @Test
+    public void testSharedRuleMatchesCopiedRules() {
+        IzhikevichRule prototype = new IzhikevichRule();
+        prototype.setiBg(12);
+        List<? extends Neuron> copied = buildNetwork(i -> prototype, true);
+        List<? extends Neuron> shared = buildNetwork(i -> prototype, true);
+        NeuronGroup group = (NeuronGroup) shared.get(0).getParentGroup();
+        group.setSharedUpdateRule(prototype.deepCopy());
+        assertNotNull(group.getSharedUpdateRule());
+
+        for (int t = 0; t < 200; t++) {
+            copied.get(0).getNetwork().update();
+            shared.get(0).getNetwork().update();
+            for (int i = 0; i < copied.size(); i++) {
+                assertEquals(copied.get(i).getActivation(), shared.get(i).getActivation(), 0);
+            }
+        }
+
+        // One edit changes every neuron
+        ((IzhikevichRule) shared.get(3).getUpdateRule()).setiBg(0);
+        for (Neuron n : shared) {
+            assertEquals(0, ((IzhikevichRule) n.getUpdateRule()).getiBg(), 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStatefulRuleCannotBeShared() {
+        Network net = new Network();
+        NeuronGroup ng = new NeuronGroup(net);
+        ng.addNeuron(new Neuron(net));
+        ng.setSharedUpdateRule(new ContinuousSigmoidalRule());
+    }
+}
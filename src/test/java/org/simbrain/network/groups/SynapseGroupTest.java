@@ -3,11 +3,19 @@ package org.simbrain.network.groups;
 import org.junit.Test;
 import org.simbrain.network.connections.AllToAll;
 import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.AdditiveRule;
 import org.simbrain.network.neuron_update_rules.IntegrateAndFireRule;
+import org.simbrain.network.subnetworks.CompetitiveGroup;
+import org.simbrain.network.subnetworks.SOMGroup;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
 import org.simbrain.network.synapse_update_rules.spikeresponders.NonResponder;
+import org.simbrain.util.SimbrainConstants.Polarity;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
 
 public class SynapseGroupTest {
 
@@ -44,4 +52,142 @@ public class SynapseGroupTest {
         
     }
 
-}
\ No newline at end of file
+    /**
+     * Inputs through a group in matrix mode should match inputs through its
+     * synapses.
+     */
+    @Test
+    public void matrixModeTest() {
+        Network net = new Network();
+        NeuronGroup source = new NeuronGroup(net, 6);
+        NeuronGroup target = new NeuronGroup(net, 4);
+        net.addNeuronGroup(source);
+        net.addNeuronGroup(target);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll(), .5);
+        net.addSynapseGroup(sg);
+        sg.randomizeConnectionWeights();
+        double[][] weights = sg.getWeightMatrix();
+
+        double[] viaSynapses = run(net, source, target);
+        sg.setMatrixMode(true);
+        assertTrue(sg.isMatrixMode());
+        assertEquals(24, sg.size());
+        assertTrue(net.getFlatSynapseList().isEmpty());
+        assertArrayEquals(weights, sg.getWeightMatrix());
+        double[] viaMatrix = run(net, source, target);
+        assertArrayEquals(viaSynapses, viaMatrix, 1e-9);
+
+        // Asking for the synapses turns matrix mode off
+        assertEquals(24, sg.getAllSynapses().size());
+        assertFalse(sg.isMatrixMode());
+        assertArrayEquals(weights, sg.getWeightMatrix());
+        assertEquals(4, source.getNeuron(0).getFanOutList().size());
+    }
+
+    private static double[] run(Network net, NeuronGroup source, NeuronGroup target) {
+        for (int i = 0; i < source.size(); i++) {
+            source.getNeuron(i).forceSetActivation(Math.sin(i + 1));
+        }
+        for (Neuron neuron : target.getNeuronList()) {
+            neuron.forceSetActivation(0);
+        }
+        net.update();
+        return target.getActivations().clone();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void learningGroupCannotUseMatrixMode() {
+        Network net = new Network();
+        NeuronGroup source = new NeuronGroup(net, 2);
+        NeuronGroup target = new NeuronGroup(net, 2);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        sg.setLearningRule(new HebbianRule(), Polarity.BOTH);
+        sg.setMatrixMode(true);
+    }
+
+    /**
+     * Targets that read their neurons' fan-ins would miss the input of a
+     * group in matrix mode.
+     */
+    @Test
+    public void targetsReadingFanInCannotUseMatrixMode() {
+        Network net = new Network();
+        NeuronGroup source = new NeuronGroup(net, 3);
+        for (NeuronGroup target : Arrays.asList(new SOMGroup(net, 3), new CompetitiveGroup(net, 3))) {
+            SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+            assertFalse(sg.canUseMatrixMode());
+        }
+        NeuronGroup target = new NeuronGroup(net, 3);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        sg.setMatrixMode(true);
+
+        // A rule that reads the fan-in turns matrix mode off
+        target.setNeuronType(new AdditiveRule());
+        assertFalse(sg.isMatrixMode());
+        assertFalse(sg.canUseMatrixMode());
+        assertEquals(3, target.getNeuron(0).getFanIn().size());
+    }
+
+    /**
+     * Exports should follow synapses that are added or removed after an
+     * export.
+     */
+    @Test
+    public void exportsFollowChanges() {
+        Network net = new Network();
+        NeuronGroup source = new NeuronGroup(net, 3);
+        NeuronGroup target = new NeuronGroup(net, 2);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        sg.randomizeConnectionWeights();
+
+        double[][] weights = sg.getWeightMatrix();
+        double[][] pairs = sg.getNumericIndices();
+        assertEquals(6, pairs.length);
+        for (int k = 0; k < pairs.length; k++) {
+            assertEquals(k / 2, (int) pairs[k][0]);
+            assertEquals(k % 2, (int) pairs[k][1]);
+            assertEquals(weights[k / 2][k % 2], pairs[k][2], 0);
+        }
+
+        Synapse removed = source.getNeuron(1).getFanOut().get(target.getNeuron(0));
+        sg.removeSynapse(removed);
+        long[] rowCompressed = sg.getRowCompressedMatrixRepresentation();
+        assertArrayEquals(new long[]{5, 0, 1, -1, 1, -1, 0, 1}, Arrays.copyOf(rowCompressed, 8));
+        assertEquals(weights[2][1], Double.longBitsToDouble(rowCompressed[12]), 0);
+        assertEquals(0, sg.getWeightMatrix()[1][0], 0);
+
+        // Strength changes need no new sort
+        removed = source.getNeuron(2).getFanOut().get(target.getNeuron(1));
+        removed.forceSetStrength(.25);
+        assertEquals(.25, sg.getWeightMatrix()[2][1], 0);
+    }
+
+    @Test
+    public void bulkConnections() {
+        Network net = new Network();
+        NeuronGroup ng = new NeuronGroup(net, 5);
+        net.addNeuronGroup(ng);
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(ng, ng, new AllToAll());
+        assertEquals(20, sg.size());
+        assertFalse(sg.isMatrixMode());
+        assertEquals(4, ng.getNeuron(0).getFanOutList().size());
+        assertEquals(4, ng.getNeuron(0).getFanIn().size());
+        assertNull(ng.getNeuron(2).getFanOut().get(ng.getNeuron(2)));
+
+        // Groups built as a matrix go straight into matrix mode
+        NeuronGroup target = new NeuronGroup(net, 4);
+        net.addNeuronGroup(target);
+        SynapseGroup big = SynapseGroup.createSynapseGroup(ng, target, new AllToAll());
+        assertFalse(big.isMatrixMode());
+        big.makeConnections(true);
+        assertTrue(big.isMatrixMode());
+        assertEquals(20, big.size());
+        assertEquals(0, target.getNeuron(0).getFanIn().size());
+
+        // and are rebuilt in matrix mode
+        big.makeConnections();
+        assertTrue(big.isMatrixMode());
+        assertEquals(20, big.getAllSynapses().size());
+    }
+
+}
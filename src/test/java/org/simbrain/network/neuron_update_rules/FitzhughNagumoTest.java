@@ -0,0 +1,43 @@
+package org.simbrain.network.neuron_update_rules;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.util.math.IntegrationMethod;
+
+import static org.junit.Assert.*;
+
+public class FitzhughNagumoTest {
+
+    /**
+     * Membrane potential after 10 time units at the given step size.
+     */
+    private static double simulate(IntegrationMethod method, double timeStep) {
+        Network net = new Network();
+        net.setTimeStep(timeStep);
+        FitzhughNagumo rule = new FitzhughNagumo();
+        rule.setIntegrationMethod(method);
+        Neuron n = new Neuron(net, rule);
+        net.addLooseNeuron(n);
+        int steps = (int) Math.round(10 / timeStep);
+        for (int i = 0; i < steps; i++) {
+            net.bufferedUpdate();
+        }
+        return n.getActivation();
+    }
+
+    @Test
+    public void testLargeStepMatchesSmallEulerStep() {
+        double reference = simulate(IntegrationMethod.EULER, .001);
+        assertEquals(reference, simulate(IntegrationMethod.RK4, .1), 1E-3);
+        assertEquals(reference, simulate(IntegrationMethod.ADAPTIVE, .1), 1E-3);
+        assertEquals(reference, simulate(IntegrationMethod.EXPONENTIAL_EULER, .1), 1E-2);
+    }
+
+    @Test
+    public void testCopyKeepsIntegrationMethod() {
+        FitzhughNagumo rule = new FitzhughNagumo();
+        rule.setIntegrationMethod(IntegrationMethod.RK4);
+        assertEquals(IntegrationMethod.RK4, rule.deepCopy().getIntegrationMethod());
+    }
+}
@@ -0,0 +1,119 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompiledBufferedUpdateTest {
+
+    /**
+     * Loose linear neurons feeding a sigmoidal group which feeds back to the
+     * loose neurons.
+     */
+    private static Network buildNetwork(boolean compiled) {
+        Network net = new Network();
+        Neuron n1 = new Neuron(net);
+        Neuron n2 = new Neuron(net);
+        n1.setClamped(true);
+        n1.forceSetActivation(1);
+        net.addLooseNeuron(n1);
+        net.addLooseNeuron(n2);
+
+        NeuronGroup ng = new NeuronGroup(net, 5);
+        ng.setNeuronType(new SigmoidalRule());
+        net.addNeuronGroup(ng);
+
+        double wt = -1;
+        for (Neuron n : ng.getNeuronList()) {
+            net.addLooseSynapse(new Synapse(n1, n, wt));
+            net.addLooseSynapse(new Synapse(n, n2, .5));
+            wt += .5;
+        }
+        net.addLooseSynapse(new Synapse(n2, n2, .25));
+
+        if (compiled) {
+            net.getUpdateManager().clear();
+            net.getUpdateManager().addAction(new CompiledBufferedUpdate(net));
+        }
+        return net;
+    }
+
+    private static void assertSameActivations(Network expected, Network actual) {
+        List<Neuron> expectedNeurons = expected.getFlatNeuronList();
+        List<Neuron> actualNeurons = actual.getFlatNeuronList();
+        assertEquals(expectedNeurons.size(), actualNeurons.size());
+        for (int i = 0; i < expectedNeurons.size(); i++) {
+            assertEquals(expectedNeurons.get(i).getActivation(), actualNeurons.get(i).getActivation(), 1e-12);
+        }
+    }
+
+    @Test
+    public void matchesBufferedUpdate() {
+        Network buffered = buildNetwork(false);
+        Network compiled = buildNetwork(true);
+        for (int i = 0; i < 20; i++) {
+            buffered.getLooseNeurons().get(1).setInputValue(.1 * i);
+            compiled.getLooseNeurons().get(1).setInputValue(.1 * i);
+            buffered.update();
+            compiled.update();
+            assertSameActivations(buffered, compiled);
+        }
+        assertFalse(((CompiledBufferedUpdate) compiled.getUpdateManager().getActionList().get(0)).isFallback());
+    }
+
+    @Test
+    public void weightChangeIsPickedUp() {
+        Network buffered = buildNetwork(false);
+        Network compiled = buildNetwork(true);
+        buffered.update();
+        compiled.update();
+        buffered.getLooseSynapses().forEach(s -> s.forceSetStrength(2));
+        compiled.getLooseSynapses().forEach(s -> s.forceSetStrength(2));
+        buffered.update();
+        compiled.update();
+        assertSameActivations(buffered, compiled);
+    }
+
+    @Test
+    public void learningSynapsesFallBack() {
+        Network compiled = buildNetwork(true);
+        Neuron n1 = compiled.getLooseNeurons().get(0);
+        Neuron n2 = compiled.getLooseNeurons().get(1);
+        compiled.addLooseSynapse(new Synapse(n1, n2, new HebbianRule()));
+        CompiledBufferedUpdate cbu = (CompiledBufferedUpdate) compiled.getUpdateManager().getActionList().get(0);
+        compiled.update();
+        assertTrue(cbu.isFallback());
+    }
+
+    @Test
+    public void removingWritesBackAndReaddingResumes() {
+        Network buffered = buildNetwork(false);
+        Network compiled = buildNetwork(true);
+        CompiledBufferedUpdate cbu = (CompiledBufferedUpdate) compiled.getUpdateManager().getActionList().get(0);
+        cbu.setSyncEveryUpdate(false);
+        compiled.setUpdateFreq(1000);
+        for (int i = 0; i < 3; i++) {
+            buffered.update();
+            compiled.update();
+        }
+        compiled.getUpdateManager().removeAction(cbu);
+        assertSameActivations(buffered, compiled);
+
+        // Weight changes made while removed are still picked up once added back
+        buffered.getLooseSynapses().forEach(s -> s.forceSetStrength(2));
+        compiled.getLooseSynapses().forEach(s -> s.forceSetStrength(2));
+        compiled.getUpdateManager().addAction(cbu);
+        cbu.setSyncEveryUpdate(true);
+        buffered.update();
+        compiled.update();
+        assertSameActivations(buffered, compiled);
+    }
+}
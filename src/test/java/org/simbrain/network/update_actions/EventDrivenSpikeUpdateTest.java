@@ -0,0 +1,154 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.AdExIFRule;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+import org.simbrain.network.subnetworks.WinnerTakeAll;
+import org.simbrain.network.synapse_update_rules.spikeresponders.ConvolvedJumpAndDecay;
+import org.simbrain.network.synapse_update_rules.spikeresponders.JumpAndDecay;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EventDrivenSpikeUpdateTest {
+
+    /**
+     * Background-driven Izhikevich sources projecting onto quiet targets.
+     */
+    private static Network buildNetwork() {
+        Network net = new Network();
+        net.setTimeStep(.1);
+        for (int i = 0; i < 15; i++) {
+            IzhikevichRule rule = new IzhikevichRule();
+            rule.setiBg(i < 10 ? 5 + i : 0);
+            net.addLooseNeuron(new Neuron(net, rule));
+        }
+        List<? extends Neuron> neurons = net.getLooseNeurons();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 10; j < 15; j++) {
+                net.addLooseSynapse(new Synapse(neurons.get(i), neurons.get(j), 2 + i % 3));
+            }
+        }
+        JumpAndDecay jad = new JumpAndDecay();
+        jad.setTimeConstant(5);
+        Synapse reset = new Synapse(neurons.get(0), neurons.get(14), 3);
+        net.addLooseSynapse(reset);
+        reset.setSpikeResponder(jad);
+        return net;
+    }
+
+    @Test
+    public void matchesBufferedUpdate() {
+        Network buffered = buildNetwork();
+        Network eventDriven = buildNetwork();
+        EventDrivenSpikeUpdate update = new EventDrivenSpikeUpdate(eventDriven);
+        eventDriven.getUpdateManager().clear();
+        eventDriven.getUpdateManager().addAction(update);
+
+        int spikes = 0;
+        for (int t = 0; t < 500; t++) {
+            buffered.update();
+            eventDriven.update();
+            for (int i = 0; i < 15; i++) {
+                Neuron expected = buffered.getLooseNeurons().get(i);
+                Neuron actual = eventDriven.getLooseNeurons().get(i);
+                assertEquals(expected.getActivation(), actual.getActivation(), 1e-6);
+                assertEquals(expected.isSpike(), actual.isSpike());
+                spikes += expected.isSpike() ? 1 : 0;
+            }
+        }
+        assertTrue(spikes > 0);
+        assertEquals(51, update.getNumEventDrivenSynapses());
+    }
+
+    @Test
+    public void synapsesAreRestoredWhenRemoved() {
+        Network buffered = buildNetwork();
+        Network eventDriven = buildNetwork();
+        EventDrivenSpikeUpdate update = new EventDrivenSpikeUpdate(eventDriven);
+        eventDriven.getUpdateManager().clear();
+        eventDriven.getUpdateManager().addAction(update);
+        for (int t = 0; t < 100; t++) {
+            buffered.update();
+            eventDriven.update();
+        }
+        eventDriven.getUpdateManager().removeAction(update);
+        Synapse[] expected = buffered.getLooseSynapses().toArray(new Synapse[0]);
+        Synapse[] actual = eventDriven.getLooseSynapses().toArray(new Synapse[0]);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getPsr(), actual[i].getPsr(), 1e-9);
+        }
+    }
+
+    @Test
+    public void winnerTakeAllFallsBack() {
+        Network buffered = buildNetwork();
+        Network eventDriven = buildNetwork();
+        for (Network net : new Network[] {buffered, eventDriven}) {
+            // Ties are broken at random
+            net.setRandomSeed(1);
+            WinnerTakeAll wta = new WinnerTakeAll(net, 3);
+            net.addNeuronGroup(wta);
+            for (int i = 0; i < wta.size(); i++) {
+                net.addLooseSynapse(new Synapse(net.getLooseNeurons().get(i), wta.getNeuron(i), i + 1));
+            }
+        }
+        EventDrivenSpikeUpdate update = new EventDrivenSpikeUpdate(eventDriven);
+        eventDriven.getUpdateManager().clear();
+        eventDriven.getUpdateManager().addAction(update);
+
+        for (int t = 0; t < 100; t++) {
+            buffered.update();
+            eventDriven.update();
+            List<Neuron> expected = buffered.getFlatNeuronList();
+            List<Neuron> actual = eventDriven.getFlatNeuronList();
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getActivation(), actual.get(i).getActivation(), 1e-12);
+            }
+        }
+    }
+
+    /**
+     * AdEx neurons read their own fan-in, so convolved responses onto them
+     * must not be jumped by the action as well.
+     */
+    @Test
+    public void adExTargetsMatchBufferedUpdate() {
+        Network buffered = buildNetwork();
+        Network eventDriven = buildNetwork();
+        for (Network net : new Network[] {buffered, eventDriven}) {
+            List<? extends Neuron> neurons = net.getLooseNeurons();
+            for (int j = 0; j < 3; j++) {
+                Neuron target = new Neuron(net, new AdExIFRule());
+                net.addLooseNeuron(target);
+                for (int i = 0; i < 10; i++) {
+                    Synapse synapse = new Synapse(neurons.get(i), target, 1 + i % 2);
+                    synapse.setSpikeResponder(new ConvolvedJumpAndDecay(4));
+                    net.addLooseSynapse(synapse);
+                }
+            }
+        }
+        EventDrivenSpikeUpdate update = new EventDrivenSpikeUpdate(eventDriven);
+        eventDriven.getUpdateManager().clear();
+        eventDriven.getUpdateManager().addAction(update);
+
+        double response = 0;
+        for (int t = 0; t < 500; t++) {
+            buffered.update();
+            eventDriven.update();
+            for (int i = 15; i < 18; i++) {
+                Neuron expected = buffered.getLooseNeurons().get(i);
+                Neuron actual = eventDriven.getLooseNeurons().get(i);
+                assertEquals(expected.getActivation(), actual.getActivation(), 1e-6);
+                assertEquals(expected.isSpike(), actual.isSpike());
+                response += expected.getFanIn().get(0).getPsr();
+            }
+        }
+        assertTrue(response > 0);
+        assertEquals(51, update.getNumEventDrivenSynapses());
+    }
+}
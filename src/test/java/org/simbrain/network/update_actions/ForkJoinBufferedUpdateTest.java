@@ -0,0 +1,98 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.subnetworks.WinnerTakeAll;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ForkJoinBufferedUpdateTest {
+
+    private static final int NUM_NEURONS = 300;
+
+    /**
+     * Recurrent loose network with deterministic weights.
+     */
+    private static Network buildNetwork() {
+        Network net = new Network();
+        for (int i = 0; i < NUM_NEURONS; i++) {
+            Neuron n = new Neuron(net);
+            n.forceSetActivation((i % 7) / 7.0);
+            net.addLooseNeuron(n);
+        }
+        List<? extends Neuron> neurons = net.getLooseNeurons();
+        for (int i = 0; i < NUM_NEURONS; i++) {
+            for (int j = 1; j <= 10; j++) {
+                Neuron target = neurons.get((i + j * 13) % NUM_NEURONS);
+                net.addLooseSynapse(new Synapse(neurons.get(i), target, ((i + j) % 5 - 2) / 10.0));
+            }
+        }
+        return net;
+    }
+
+    @Test
+    public void matchesBufferedUpdate() {
+        Network buffered = buildNetwork();
+        Network parallel = buildNetwork();
+        ForkJoinBufferedUpdate fjbu = new ForkJoinBufferedUpdate(parallel);
+        fjbu.setParallelism(4);
+        parallel.getUpdateManager().clear();
+        parallel.getUpdateManager().addAction(fjbu);
+
+        for (int i = 0; i < 10; i++) {
+            buffered.update();
+            parallel.update();
+        }
+        for (int i = 0; i < NUM_NEURONS; i++) {
+            assertEquals(buffered.getLooseNeurons().get(i).getActivation(),
+                    parallel.getLooseNeurons().get(i).getActivation(), 1e-12);
+        }
+    }
+
+    @Test
+    public void repartitionsWhenNeuronsAdded() {
+        Network net = buildNetwork();
+        ForkJoinBufferedUpdate fjbu = new ForkJoinBufferedUpdate(net);
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(fjbu);
+        net.update();
+
+        Neuron extra = new Neuron(net);
+        net.addLooseNeuron(extra);
+        net.addLooseSynapse(new Synapse(net.getLooseNeurons().get(0), extra, 1));
+        net.getLooseNeurons().get(0).forceSetActivation(.5);
+        net.update();
+        assertEquals(.5, extra.getActivation(), 1e-12);
+    }
+
+    @Test
+    public void winnerTakeAllFallsBack() {
+        Network[] nets = {buildNetwork(), buildNetwork()};
+        for (Network net : nets) {
+            // Ties are broken at random
+            net.setRandomSeed(1);
+            WinnerTakeAll wta = new WinnerTakeAll(net, 5);
+            net.addNeuronGroup(wta);
+            for (int i = 0; i < wta.size(); i++) {
+                net.addLooseSynapse(new Synapse(net.getLooseNeurons().get(i), wta.getNeuron(i), i + 1));
+            }
+        }
+        ForkJoinBufferedUpdate fjbu = new ForkJoinBufferedUpdate(nets[1]);
+        nets[1].getUpdateManager().clear();
+        nets[1].getUpdateManager().addAction(fjbu);
+
+        for (int i = 0; i < 5; i++) {
+            nets[0].update();
+            nets[1].update();
+        }
+        List<Neuron> expected = nets[0].getFlatNeuronList();
+        List<Neuron> actual = nets[1].getFlatNeuronList();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getActivation(), actual.get(i).getActivation(), 1e-12);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.Test;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+
+import static org.junit.Assert.*;
+
+public class PriorityUpdateTest {
+
+    /**
+     * A clamped source group feeding a target group, updated by priority.
+     */
+    private static NeuronGroup buildTarget(boolean matrixMode) {
+        Network net = new Network();
+        net.setRandomSeed(5);
+        NeuronGroup source = new NeuronGroup(net, 4);
+        NeuronGroup target = new NeuronGroup(net, 3);
+        net.addNeuronGroup(source);
+        net.addNeuronGroup(target);
+        for (int i = 0; i < source.size(); i++) {
+            source.getNeuron(i).setClamped(true);
+            source.getNeuron(i).forceSetActivation(Math.sin(i + 1));
+        }
+        SynapseGroup sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        net.addSynapseGroup(sg);
+        sg.randomizeConnectionWeights();
+        if (matrixMode) {
+            sg.setMatrixMode(true);
+        }
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(new PriorityUpdate(net));
+        net.update();
+        return target;
+    }
+
+    /**
+     * Input through a synapse group in matrix mode reaches its targets as it
+     * does through the group's synapses.
+     */
+    @Test
+    public void matrixInputMatchesSynapses() {
+        NeuronGroup viaSynapses = buildTarget(false);
+        NeuronGroup viaMatrix = buildTarget(true);
+        double[] expected = viaSynapses.getActivations();
+        assertNotEquals(0, expected[0], 0);
+        assertArrayEquals(expected, viaMatrix.getActivations(), 1e-9);
+    }
+}
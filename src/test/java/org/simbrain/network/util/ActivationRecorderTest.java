@@ -0,0 +1,80 @@
+package org.simbrain.network.util;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.groups.NeuronGroup;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ActivationRecorderTest {
+
+    private static final int NEURONS = 50;
+
+    private static final int ROWS = 1000;
+
+    private static double activation(int row, int neuron) {
+        return Math.sin(row * 0.1 + neuron);
+    }
+
+    private static File record(boolean compressed) throws IOException {
+        Network net = new Network();
+        NeuronGroup group = new NeuronGroup(net, NEURONS);
+        net.addNeuronGroup(group);
+        File file = File.createTempFile("activations", "." + BinaryActivationWriter.FORMAT);
+        file.deleteOnExit();
+
+        ActivationRecorder recorder = group.getActivationRecorder();
+        recorder.setCompressBinary(compressed);
+        recorder.startRecording(file);
+        for (int row = 0; row < ROWS; row++) {
+            for (int i = 0; i < NEURONS; i++) {
+                group.getNeuron(i).forceSetActivation(activation(row, i));
+            }
+            recorder.writeActsToFile();
+            net.setTime(row + 1);
+        }
+        recorder.stopRecording();
+        return file;
+    }
+
+    private static void check(File file, boolean compressed) throws IOException {
+        try (ActivationRecording recording = ActivationRecording.open(file.toPath())) {
+            assertEquals(NEURONS, recording.getNumNeurons());
+            assertEquals(ROWS, recording.getNumRows());
+            assertEquals(compressed, recording.isCompressed());
+            assertEquals(0, recording.getTime(0), 0);
+            assertEquals(ROWS - 1, recording.getTime(ROWS - 1), 0);
+            assertEquals(500, recording.getRowAt(500.5));
+            assertEquals(activation(123, 7), recording.getActivation(123, 7), 0);
+            assertEquals(activation(999, 49), recording.getRow(999)[49], 0);
+            double[] series = recording.getActivations(3, 10, 900);
+            for (int row = 10; row < 900; row++) {
+                assertEquals(activation(row, 3), series[row - 10], 0);
+            }
+        }
+    }
+
+    @Test
+    public void binaryRecording() throws IOException {
+        check(record(false), false);
+    }
+
+    @Test
+    public void compressedRecording() throws IOException {
+        File file = record(true);
+        check(file, true);
+        assertTrue(file.length() < (long) NEURONS * ROWS * Double.BYTES);
+    }
+
+    @Test(expected = IOException.class)
+    public void unclosedRecordingIsRejected() throws IOException {
+        File file = File.createTempFile("activations", "." + BinaryActivationWriter.FORMAT);
+        file.deleteOnExit();
+        BinaryActivationWriter writer = new BinaryActivationWriter(file, NEURONS, false);
+        writer.record(0, new double[NEURONS]);
+        ActivationRecording.open(file.toPath());
+    }
+}
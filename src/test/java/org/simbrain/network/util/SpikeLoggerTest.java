@@ -0,0 +1,116 @@
+package org.simbrain.network.util;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpikeLoggerTest {
+
+    private static Network buildNetwork() {
+        Network net = new Network();
+        net.setTimeStep(.1);
+        for (int i = 0; i < 20; i++) {
+            IzhikevichRule rule = new IzhikevichRule();
+            rule.setiBg(5 + i);
+            net.addLooseNeuron(new Neuron(net, rule));
+        }
+        return net;
+    }
+
+    @Test
+    public void logMatchesSpikes() throws IOException {
+        Network net = buildNetwork();
+        File file = File.createTempFile("spikes", "." + SpikeLogger.FORMAT);
+        file.deleteOnExit();
+
+        List<double[]> expected = new ArrayList<>();
+        List<Neuron> neurons = net.getFlatNeuronList();
+        try (SpikeLogger logger = new SpikeLogger(neurons, file)) {
+            for (int t = 0; t < 2000; t++) {
+                net.update();
+                for (int i = 0; i < neurons.size(); i++) {
+                    if (neurons.get(i).isSpike()) {
+                        expected.add(new double[]{net.getTime(), i});
+                    }
+                }
+                logger.logSpikes(net.getTime());
+            }
+            assertEquals(expected.size(), logger.getSpikeCount());
+        }
+        assertTrue(expected.size() > 100);
+
+        try (SpikeLog log = SpikeLog.open(file.toPath())) {
+            assertTrue(log.isComplete());
+            assertEquals(20, log.getNumNeurons());
+            assertEquals(neurons.get(3).getId(), log.getNeuronId(3));
+            assertEquals(expected.size(), log.getSpikeCount());
+
+            SpikeLog.Spikes all = log.getSpikes(0, Double.POSITIVE_INFINITY, null);
+            assertEquals(expected.size(), all.size());
+            for (int i = 0; i < all.size(); i++) {
+                assertEquals(expected.get(i)[0], all.getTime(i), 0);
+                assertEquals((int) expected.get(i)[1], all.getNeuron(i));
+            }
+
+            BitSet subset = new BitSet();
+            subset.set(2);
+            subset.set(17);
+            SpikeLog.Spikes window = log.getSpikes(50, 150, subset);
+            int count = 0;
+            for (double[] spike : expected) {
+                if (spike[0] >= 50 && spike[0] < 150 && subset.get((int) spike[1])) {
+                    count++;
+                }
+            }
+            assertEquals(count, window.size());
+        }
+    }
+
+    @Test
+    public void attachedLoggerRecordsUpdates() throws IOException {
+        Network net = buildNetwork();
+        File file = File.createTempFile("spikes", "." + SpikeLogger.FORMAT);
+        file.deleteOnExit();
+        SpikeLogger logger = SpikeLogger.attach(net, file);
+        for (int t = 0; t < 500; t++) {
+            net.update();
+        }
+        logger.close();
+        net.update();
+        try (SpikeLog log = SpikeLog.open(file.toPath())) {
+            assertEquals(logger.getSpikeCount(), log.getSpikeCount());
+            assertTrue(log.getLastTime() <= 50);
+        }
+    }
+
+    @Test
+    public void unclosedLogIsReadable() throws IOException {
+        Network net = buildNetwork();
+        File file = File.createTempFile("spikes", "." + SpikeLogger.FORMAT);
+        file.deleteOnExit();
+        try (SpikeLogger logger = SpikeLogger.attach(net, file)) {
+            for (int t = 0; t < 500; t++) {
+                net.update();
+            }
+        }
+        // Cut off the index, as if the run had crashed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - SpikeLogger.FOOTER_BYTES);
+        }
+        try (SpikeLog log = SpikeLog.open(file.toPath())) {
+            assertFalse(log.isComplete());
+            assertTrue(log.getSpikeCount() > 0);
+            assertEquals(log.getSpikeCount(), log.getSpikes(0, Double.POSITIVE_INFINITY, null).size());
+        }
+    }
+}
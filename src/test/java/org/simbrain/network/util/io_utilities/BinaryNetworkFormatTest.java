@@ -0,0 +1,182 @@
+package org.simbrain.network.util.io_utilities;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.util.io_utilities.GroupSerializer.Precision;
+import org.simbrain.util.SimbrainConstants.Polarity;
+import org.simbrain.util.Utils;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class BinaryNetworkFormatTest {
+
+    Network net;
+    Neuron n1, n2;
+    Synapse s1, s2;
+    SynapseGroup sg;
+
+    @Before
+    public void setUpNetwork() {
+        net = new Network();
+        n1 = new Neuron(net, new LinearRule());
+        ((LinearRule) n1.getUpdateRule()).setBias(.25);
+        n1.forceSetActivation(.5);
+        net.addLooseNeuron(n1);
+        n2 = new Neuron(net, new LinearRule());
+        net.addLooseNeuron(n2);
+        s1 = new Synapse(n1, n2, .3);
+        net.addLooseSynapse(s1);
+        s2 = new Synapse(n2, n1, -.7);
+        s2.setUpperBound(5);
+        net.addLooseSynapse(s2);
+
+        NeuronGroup source = new NeuronGroup(net, 3);
+        NeuronGroup target = new NeuronGroup(net, 4);
+        net.addNeuronGroup(source);
+        net.addNeuronGroup(target);
+        sg = SynapseGroup.createSynapseGroup(source, target, new AllToAll(), .5);
+        net.addSynapseGroup(sg);
+    }
+
+    private Network roundTrip(Precision precision) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryNetworkFormat.write(net, out, precision);
+        return BinaryNetworkFormat.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Network read = roundTrip(Precision.FLOAT_64);
+
+        assertEquals(net.getFlatNeuronList().size(), read.getFlatNeuronList().size());
+        assertEquals(net.getFlatSynapseList().size(), read.getFlatSynapseList().size());
+
+        Neuron r1 = read.getLooseNeuron(n1.getId());
+        assertEquals(.5, r1.getActivation(), 0);
+        assertEquals(.25, ((LinearRule) r1.getUpdateRule()).getBias(), 0);
+
+        Synapse r2 = read.getLooseSynapse(s2.getId());
+        assertEquals(-.7, r2.getStrength(), 0);
+        assertEquals(5, r2.getUpperBound(), 0);
+        assertSame(r1, r2.getTarget());
+        assertSame(read, r2.getNetwork());
+        assertEquals(1, r1.getFanIn().size());
+        assertEquals(1, r1.getFanOut().size());
+
+        SynapseGroup rsg = read.getSynapseGroups().get(0);
+        assertEquals(sg.size(), rsg.size());
+        assertEquals(sg.getExcitatorySynapses().size(), rsg.getExcitatorySynapses().size());
+        for (Synapse s : rsg.getAllSynapses()) {
+            assertSame(rsg, s.getParentGroup());
+        }
+
+        // The copy runs like the original
+        net.update();
+        read.update();
+        assertEquals(n2.getActivation(), read.getLooseNeuron(n2.getId()).getActivation(), 0);
+    }
+
+    /**
+     * An xml save must leave nothing in the group that the binary header
+     * would carry, or the group's synapses are rebuilt from it on reading as
+     * well as read from the columns.
+     */
+    @Test
+    public void testWriteAfterXmlSave() throws IOException {
+        new NetworkComponent("Net", net).save(new ByteArrayOutputStream(), "xml");
+        sg.setStrength(.75, Polarity.BOTH);
+        Network read = roundTrip(Precision.FLOAT_64);
+
+        SynapseGroup rsg = read.getSynapseGroups().get(0);
+        assertEquals(sg.size(), rsg.size());
+        assertArrayEquals(sg.getWeightMatrix(), rsg.getWeightMatrix());
+        for (Neuron n : rsg.getTargetNeurons()) {
+            assertEquals(sg.getSourceNeurons().size(), n.getFanIn().size());
+        }
+    }
+
+    @Test
+    public void testSinglePrecisionAndSize() throws IOException {
+        Network read = roundTrip(Precision.FLOAT_32);
+        assertEquals(.3, read.getLooseSynapse(s1.getId()).getStrength(), 1e-7);
+
+        // Synapses cost about 8 bytes each, rather than hundreds in xml
+        NeuronGroup big = new NeuronGroup(net, 100);
+        net.addNeuronGroup(big);
+        net.addSynapseGroup(SynapseGroup.createSynapseGroup(big, big, new AllToAll()));
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        BinaryNetworkFormat.write(net, small);
+        net.getSynapseGroups().get(1).clear();
+        ByteArrayOutputStream without = new ByteArrayOutputStream();
+        BinaryNetworkFormat.write(net, without);
+        int synapses = 100 * 100;
+        assertTrue((small.size() - without.size()) < 9.0 * synapses);
+    }
+
+    @Test
+    public void testMappedColumns() throws IOException {
+        Path file = Files.createTempFile("network", "." + BinaryNetworkFormat.FORMAT);
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                BinaryNetworkFormat.write(net, out, Precision.FLOAT_64);
+            }
+            BinaryNetworkFormat.Columns columns = BinaryNetworkFormat.readColumns(file);
+            int i1 = net.getFlatNeuronList().indexOf(n1);
+            int i2 = net.getFlatNeuronList().indexOf(n2);
+            assertEquals(net.getFlatNeuronList().size(), columns.getNeuronCount());
+            assertEquals(net.getFlatSynapseList().size(), columns.getSynapseCount());
+            assertEquals(.5, columns.getActivations().get(i1), 0);
+            assertEquals(.25, columns.getBiases().get(i1), 0);
+
+            // n1 has one outgoing synapse, to n2
+            int first = columns.getRowOffsets().get(i1);
+            assertEquals(first + 1, columns.getRowOffsets().get(i1 + 1));
+            assertEquals(i2, columns.getTargets().get(first));
+            assertEquals(.3, columns.getWeight(first), 0);
+            assertEquals(s1.getId(), columns.readIds()[first]);
+
+            Network read = BinaryNetworkFormat.read(file);
+            assertEquals(.3, read.getLooseSynapse(s1.getId()).getStrength(), 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testOpenFile() throws IOException {
+        Path file = Files.createTempFile("network.v2", "." + BinaryNetworkFormat.FORMAT);
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                BinaryNetworkFormat.write(net, out);
+            }
+            NetworkComponent component = (NetworkComponent) WorkspaceSerializer.open(NetworkComponent.class,
+                    file.toFile());
+            assertEquals(BinaryNetworkFormat.FORMAT, component.getDefaultFormat());
+            assertEquals(.3, component.getNetwork().getLooseSynapse(s1.getId()).getStrength(), 1e-6);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsXml() throws IOException {
+        String xml = Utils.getSimbrainXStream().toXML(net);
+        BinaryNetworkFormat.read(new ByteArrayInputStream(xml.getBytes()));
+    }
+}
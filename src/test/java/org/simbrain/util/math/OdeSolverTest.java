@@ -0,0 +1,88 @@
+package org.simbrain.util.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OdeSolverTest {
+
+    /**
+     * dy/dt = -2y, with decay rate 2 for exponential Euler.
+     */
+    private final OdeSystem decay = new OdeSystem() {
+        @Override
+        public void derivatives(double[] y, double[] dydt) {
+            dydt[0] = -2 * y[0];
+        }
+
+        @Override
+        public void decayRates(double[] y, double[] rates) {
+            rates[0] = 2;
+        }
+    };
+
+    /**
+     * Harmonic oscillator: x'' = -x.
+     */
+    private final OdeSystem oscillator = (y, dydt) -> {
+        dydt[0] = y[1];
+        dydt[1] = -y[0];
+    };
+
+    @Test
+    public void testExponentialEulerIsExactForLinearDecay() {
+        OdeSolver solver = new OdeSolver(1);
+        double[] y = {1};
+        for (int i = 0; i < 10; i++) {
+            solver.step(IntegrationMethod.EXPONENTIAL_EULER, decay, y, .5, 0);
+        }
+        assertEquals(Math.exp(-10), y[0], 1E-12);
+    }
+
+    @Test
+    public void testOrderOfAccuracy() {
+        // Error after one period of the oscillator
+        double euler = oscillatorError(IntegrationMethod.EULER, .01);
+        double heun = oscillatorError(IntegrationMethod.HEUN, .01);
+        double rk4 = oscillatorError(IntegrationMethod.RK4, .01);
+        assertTrue(heun < euler / 100);
+        assertTrue(rk4 < heun / 1000);
+        assertEquals(0, rk4, 1E-8);
+    }
+
+    @Test
+    public void testAdaptiveMeetsTolerance() {
+        // One huge step, split into substeps internally
+        OdeSolver solver = new OdeSolver(2);
+        double[] y = {1, 0};
+        solver.step(IntegrationMethod.ADAPTIVE, oscillator, y, 2 * Math.PI, 1E-9);
+        assertTrue(solver.getLastSubsteps() > 1);
+        assertEquals(1, y[0], 1E-6);
+        assertEquals(0, y[1], 1E-6);
+    }
+
+    @Test
+    public void testStiffDecayAtLargeStep() {
+        // Forward Euler blows up once dt * rate > 2; exponential Euler does not
+        OdeSolver solver = new OdeSolver(1);
+        double[] euler = {1};
+        double[] exponential = {1};
+        for (int i = 0; i < 20; i++) {
+            solver.step(IntegrationMethod.EULER, decay, euler, 1.5, 0);
+            solver.step(IntegrationMethod.EXPONENTIAL_EULER, decay, exponential, 1.5, 0);
+        }
+        assertTrue(Math.abs(euler[0]) > 1);
+        assertEquals(0, exponential[0], 1E-12);
+    }
+
+    private double oscillatorError(IntegrationMethod method, double dt) {
+        OdeSolver solver = new OdeSolver(2);
+        double[] y = {1, 0};
+        int steps = (int) Math.round(2 * Math.PI / dt);
+        for (int i = 0; i < steps; i++) {
+            solver.step(method, oscillator, y, dt, 0);
+        }
+        double t = steps * dt;
+        return Math.hypot(y[0] - Math.cos(t), y[1] + Math.sin(t));
+    }
+}
@@ -0,0 +1,86 @@
+package org.simbrain.util.math;
+
+import org.junit.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.update_actions.ForkJoinBufferedUpdate;
+import org.simbrain.util.math.ProbDistributions.NormalDistribution;
+
+import static org.junit.Assert.*;
+
+public class SimbrainRandomTest {
+
+    @Test
+    public void testSameSeedSameSequence() {
+        SimbrainRandom r1 = new SimbrainRandom(42);
+        SimbrainRandom r2 = new SimbrainRandom(42);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(r1.nextLong(), r2.nextLong());
+            assertEquals(r1.nextGaussian(), r2.nextGaussian(), 0);
+        }
+        r1.reset();
+        assertEquals(new SimbrainRandom(42).nextDouble(), r1.nextDouble(), 0);
+    }
+
+    @Test
+    public void testForkIgnoresDraws() {
+        SimbrainRandom root = new SimbrainRandom(7);
+        double first = root.fork(3).nextDouble();
+        root.nextLong();
+        assertEquals(first, root.fork(3).nextDouble(), 0);
+        assertNotEquals(first, root.fork(4).nextDouble(), 0);
+    }
+
+    @Test
+    public void testBind() {
+        SimbrainRandom stream = new SimbrainRandom(1);
+        SimbrainRandom previous = SimbrainRandom.bind(stream);
+        try {
+            assertSame(stream, SimbrainRandom.current());
+        } finally {
+            SimbrainRandom.bind(previous);
+        }
+        assertNotSame(stream, SimbrainRandom.current());
+    }
+
+    /**
+     * Noisy neurons, optionally updated in parallel.
+     */
+    private static Network buildNoisyNetwork(long seed, boolean parallel) {
+        Network net = new Network();
+        net.setRandomSeed(seed);
+        for (int i = 0; i < 50; i++) {
+            LinearRule rule = new LinearRule();
+            rule.setAddNoise(true);
+            rule.setNoiseGenerator(NormalDistribution.create());
+            net.addLooseNeuron(new Neuron(net, rule));
+        }
+        if (parallel) {
+            ForkJoinBufferedUpdate update = new ForkJoinBufferedUpdate(net);
+            update.setParallelism(4);
+            net.getUpdateManager().clear();
+            net.getUpdateManager().addAction(update);
+        }
+        return net;
+    }
+
+    @Test
+    public void testNetworkRunsReproducibleFromSeed() {
+        Network sequential = buildNoisyNetwork(123, false);
+        Network parallel = buildNoisyNetwork(123, true);
+        Network other = buildNoisyNetwork(124, false);
+        boolean differs = false;
+        for (int t = 0; t < 20; t++) {
+            sequential.update();
+            parallel.update();
+            other.update();
+            for (int i = 0; i < 50; i++) {
+                double expected = sequential.getLooseNeurons().get(i).getActivation();
+                assertEquals(expected, parallel.getLooseNeurons().get(i).getActivation(), 0);
+                differs |= expected != other.getLooseNeurons().get(i).getActivation();
+            }
+        }
+        assertTrue(differs);
+    }
+}
@@ -11,6 +11,8 @@ import org.simbrain.workspace.serialization.WorkspaceSerializer;
 import org.simbrain.world.odorworld.OdorWorldComponent;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -94,7 +96,50 @@ public class WorkspaceTest {
 
     }
 
+    @Test
+    public void testSerializationFromFile() throws IOException {
+        List<String> names = new ArrayList<>();
+        workspace.getComponentList().forEach(c -> names.add(c.getName()));
+
+        // Save network 1 in the binary format inside the workspace file
+        ((NetworkComponent) workspace.getComponent("Net1")).setFormat("snb");
+        File file = File.createTempFile("workspace", ".zip");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                new WorkspaceSerializer(workspace).serialize(out);
+            }
+            workspace.clearWorkspace();
+
+            new WorkspaceSerializer(workspace).deserialize(file);
+
+            // Networks opened in parallel are added in their saved order, with the rest
+            List<String> loaded = new ArrayList<>();
+            workspace.getComponentList().forEach(c -> loaded.add(c.getName()));
+            assertEquals(names, loaded);
+            assertEquals(1, workspace.getCouplingManager().getCouplings().size());
+            NetworkComponent nc1 = (NetworkComponent) workspace.getComponent("Net1");
+            assertEquals("snb", nc1.getDefaultFormat());
+            Neuron newN1 = nc1.getNetwork().getLooseNeuron(0);
+            Neuron newN2 = ((NetworkComponent) workspace.getComponent("Net2")).getNetwork().getLooseNeuron(0);
+            newN1.forceSetActivation(.8);
+            workspace.simpleIterate();
+            assertEquals(.8, newN2.getActivation(), .0001);
+        } finally {
+            file.delete();
+        }
+    }
 
+    @Test
+    public void testSerialDeserialization() throws IOException {
+        ByteArrayOutputStream bas = new ByteArrayOutputStream();
+        new WorkspaceSerializer(workspace).serialize(bas);
+        workspace.clearWorkspace();
 
+        WorkspaceSerializer serializer = new WorkspaceSerializer(workspace);
+        serializer.setParallelism(1);
+        serializer.deserialize(new ByteArrayInputStream(bas.toByteArray()));
+        assertEquals(4, workspace.getComponentList().size());
+        assertEquals(1, workspace.getCouplingManager().getCouplings().size());
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package org.simbrain.workspace.batch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+
+    File file;
+
+    String neuronId;
+
+    /**
+     * Save a workspace with one neuron whose activation grows by .1 each
+     * iteration.
+     */
+    @Before
+    public void saveWorkspace() throws IOException {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net", net));
+        LinearRule rule = new LinearRule();
+        rule.setBias(.1);
+        Neuron n = new Neuron(net, rule);
+        net.addLooseNeuron(n);
+        net.addLooseSynapse(new Synapse(n, n, 1));
+        neuronId = n.getId();
+
+        file = File.createTempFile("batch", ".zip");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            new WorkspaceSerializer(workspace).serialize(out);
+        }
+    }
+
+    @Test
+    public void testRunUntilCondition() throws IOException {
+        BatchRunner runner = new BatchRunner(BatchRunner.loadWorkspace(file));
+        runner.addRecorded(neuronId + ":getActivation");
+        runner.setStopCondition(neuronId + ":getActivation > .45");
+        StringWriter csv = new StringWriter();
+        int count = runner.run(100, new BatchRunner.CsvSink(csv));
+        assertEquals(5, count);
+        String[] lines = csv.toString().split("\n");
+        assertEquals("time," + neuronId + ":getActivation", lines[0]);
+        assertEquals(6, lines.length);
+        assertEquals(.5, Double.parseDouble(lines[5].split(",")[1]), 1e-9);
+    }
+
+    @Test
+    public void testBinaryOutput() throws IOException {
+        BatchRunner runner = new BatchRunner(BatchRunner.loadWorkspace(file));
+        runner.addRecorded(".*:getActivation");
+        runner.setRecordInterval(2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(4, runner.run(4, new BatchRunner.BinarySink(bytes)));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(1, in.readInt());
+        assertEquals(neuronId + ":getActivation", in.readUTF());
+        in.readInt();
+        assertEquals(.2, in.readDouble(), 1e-9);
+        in.readInt();
+        assertEquals(.4, in.readDouble(), 1e-9);
+        assertEquals(0, in.available());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProducer() throws IOException {
+        new BatchRunner(BatchRunner.loadWorkspace(file)).setStopCondition("Nothing:getActivation > 1");
+    }
+}
@@ -0,0 +1,111 @@
+package org.simbrain.workspace.batch;
+
+import org.junit.Test;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.workspace.Workspace;
+
+import java.io.StringWriter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ParameterSweepTest {
+
+    @Test
+    public void testGrid() {
+        Map<String, double[]> values = new LinkedHashMap<>();
+        values.put("a", new double[] {1, 2});
+        values.put("b", new double[] {3, 4, 5});
+        List<Map<String, Double>> grid = ParameterSweep.grid(values);
+        assertEquals(6, grid.size());
+        assertEquals(1, grid.get(0).get("a"), 0);
+        assertEquals(5, grid.get(2).get("b"), 0);
+        assertEquals(2, grid.get(3).get("a"), 0);
+    }
+
+    /**
+     * A workspace with a neuron whose activation grows by its bias each
+     * iteration.
+     */
+    private static Workspace biasWorkspace() {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("Net", net));
+        Neuron n = new Neuron(net, new LinearRule());
+        net.addLooseNeuron(n);
+        net.addLooseSynapse(new Synapse(n, n, 1));
+        return workspace;
+    }
+
+    private static Neuron biasNeuron(Workspace workspace) {
+        return ((NetworkComponent) workspace.getComponent("Net")).getNetwork().getLooseNeurons().get(0);
+    }
+
+    @Test
+    public void testSweepOverBias() throws Exception {
+        Workspace workspace = biasWorkspace();
+        Neuron n = biasNeuron(workspace);
+        String id = n.getId();
+
+        ParameterSweep sweep = ParameterSweep.fromWorkspace(workspace);
+        sweep.addRecorded(id + ":getActivation");
+        sweep.setIterations(3);
+        sweep.setParallelism(2);
+        Map<String, double[]> values = new LinkedHashMap<>();
+        values.put(id + ".updateRule.bias", new double[] {.1, .2, .3});
+        StringWriter out = new StringWriter();
+        assertEquals(3, sweep.run(ParameterSweep.grid(values), out));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("variant," + id + ".updateRule.bias,time," + id + ":getActivation", lines[0]);
+        assertEquals(4, lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",");
+            double bias = Double.parseDouble(row[1]);
+            assertEquals(3, Integer.parseInt(row[2]));
+            assertEquals(3 * bias, Double.parseDouble(row[3]), 1e-9);
+        }
+
+        // The base workspace is left alone
+        assertEquals(0, ((LinearRule) n.getUpdateRule()).getBias(), 0);
+    }
+
+    /**
+     * With a record interval every recorded row is written, each tagged with
+     * its variant.
+     */
+    @Test
+    public void testTimeSeriesRows() throws Exception {
+        Workspace workspace = biasWorkspace();
+        String id = biasNeuron(workspace).getId();
+
+        ParameterSweep sweep = ParameterSweep.fromWorkspace(workspace);
+        sweep.addRecorded(id + ":getActivation");
+        sweep.setIterations(4);
+        sweep.setRecordInterval(1);
+        sweep.setParallelism(2);
+        Map<String, double[]> values = new LinkedHashMap<>();
+        values.put(id + ".updateRule.bias", new double[] {.1, .2, .3});
+        StringWriter out = new StringWriter();
+        assertEquals(3, sweep.run(ParameterSweep.grid(values), out));
+
+        String[] lines = out.toString().split("\n");
+        Map<Integer, Integer> rowsPerVariant = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",");
+            double bias = Double.parseDouble(row[1]);
+            int time = Integer.parseInt(row[2]);
+            assertEquals(time * bias, Double.parseDouble(row[3]), 1e-9);
+            rowsPerVariant.merge(Integer.parseInt(row[0]), 1, Integer::sum);
+        }
+        assertEquals(3, rowsPerVariant.size());
+        int rows = rowsPerVariant.get(0);
+        assertTrue(rows >= 4);
+        assertEquals(Integer.valueOf(rows), rowsPerVariant.get(1));
+        assertEquals(Integer.valueOf(rows), rowsPerVariant.get(2));
+    }
+}
@@ -0,0 +1,167 @@
+package org.simbrain.workspace.serialization;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.world.odorworld.OdorWorldComponent;
+import org.simbrain.world.odorworld.entities.OdorWorldEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WorkspaceCheckpointTest {
+
+    private Workspace workspace;
+
+    private Network net;
+
+    private OdorWorldEntity entity;
+
+    @Before
+    public void setUp() {
+        workspace = new Workspace();
+        net = new Network();
+        net.setRandomSeed(3);
+        net.setTimeStep(.1);
+        for (int i = 0; i < 10; i++) {
+            IzhikevichRule rule = new IzhikevichRule();
+            rule.setiBg(4 + i);
+            rule.setAddNoise(true);
+            net.addLooseNeuron(new Neuron(net, rule));
+        }
+        List<? extends Neuron> neurons = net.getLooseNeurons();
+        for (int i = 0; i < 10; i++) {
+            Synapse synapse = new Synapse(neurons.get(i), neurons.get((i + 3) % 10), 2);
+            synapse.setDelay(i % 4);
+            net.addLooseSynapse(synapse);
+        }
+        workspace.addWorkspaceComponent(new NetworkComponent("Net", net));
+
+        OdorWorldComponent world = new OdorWorldComponent("World");
+        entity = world.getWorld().addEntity();
+        entity.setLocation(50, 50);
+        entity.setVelocityX(1);
+        workspace.addWorkspaceComponent(world);
+    }
+
+    private double[] activations() {
+        return net.getLooseNeurons().stream().mapToDouble(Neuron::getActivation).toArray();
+    }
+
+    @Test
+    public void restoreRepeatsRun() throws IOException {
+        workspace.iterate(200);
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        new WorkspaceCheckpoint(workspace).save(checkpoint);
+        int time = workspace.getUpdater().getTime();
+        double networkTime = net.getTime();
+
+        workspace.iterate(300);
+        double[] expected = activations();
+        double expectedX = entity.getX();
+
+        new WorkspaceCheckpoint(workspace).restore(new ByteArrayInputStream(checkpoint.toByteArray()));
+        assertEquals(time, workspace.getUpdater().getTime());
+        assertEquals(networkTime, net.getTime(), 0);
+
+        workspace.iterate(300);
+        assertArrayEquals(expected, activations(), 0);
+        assertEquals(expectedX, entity.getX(), 0);
+    }
+
+    /**
+     * The synapses of a group are kept in sets ordered by identity, which
+     * differ once the workspace is opened again, so their state must still
+     * land on the right synapses. The weights of a group in matrix mode are
+     * restored as well.
+     */
+    @Test
+    public void restoreIntoReopenedWorkspace() throws IOException {
+        NeuronGroup source = new NeuronGroup(net, 8);
+        NeuronGroup target = new NeuronGroup(net, 8);
+        net.addNeuronGroup(source);
+        net.addNeuronGroup(target);
+        SynapseGroup synapses = SynapseGroup.createSynapseGroup(source, target, new AllToAll());
+        net.addSynapseGroup(synapses);
+        SynapseGroup matrix = SynapseGroup.createSynapseGroup(target, source, new AllToAll());
+        net.addSynapseGroup(matrix);
+        matrix.setMatrixMode(true);
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        new WorkspaceSerializer(workspace).serialize(zip);
+
+        synapses.randomizeConnectionWeights();
+        matrix.randomizeConnectionWeights();
+        double[][] expected = synapses.getWeightMatrix();
+        double[][] expectedMatrix = matrix.getWeightMatrix();
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        new WorkspaceCheckpoint(workspace).save(checkpoint);
+
+        Workspace reopened = new Workspace();
+        new WorkspaceSerializer(reopened).deserialize(new ByteArrayInputStream(zip.toByteArray()));
+        new WorkspaceCheckpoint(reopened).restore(new ByteArrayInputStream(checkpoint.toByteArray()));
+        Network restored = ((NetworkComponent) reopened.getComponent("Net")).getNetwork();
+        List<SynapseGroup> groups = restored.getFlatSynapseGroupList();
+        List<Neuron> sources = groups.get(0).getSourceNeurons();
+        List<Neuron> targets = groups.get(0).getTargetNeurons();
+        assertEquals(64, groups.get(0).size());
+        for (Synapse synapse : groups.get(0).getAllSynapses()) {
+            int s = sources.indexOf(synapse.getSource());
+            int t = targets.indexOf(synapse.getTarget());
+            assertEquals(expected[s][t], synapse.getStrength(), 0);
+        }
+        assertTrue(groups.get(1).isMatrixMode());
+        assertArrayEquals(expectedMatrix, groups.get(1).getWeightMatrix());
+    }
+
+    @Test
+    public void checkpointIsSmallerThanWorkspace() throws IOException {
+        workspace.iterate(10);
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        new WorkspaceCheckpoint(workspace).save(checkpoint);
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        new WorkspaceSerializer(workspace).serialize(zip);
+        assertTrue(checkpoint.size() < zip.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void restoreRequiresMatchingNetwork() throws IOException {
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        new WorkspaceCheckpoint(workspace).save(checkpoint);
+        net.addLooseNeuron(new Neuron(net));
+        new WorkspaceCheckpoint(workspace).restore(new ByteArrayInputStream(checkpoint.toByteArray()));
+    }
+
+    @Test
+    public void failedRestoreChangesNothing() throws IOException {
+        Network other = new Network();
+        other.addLooseNeuron(new Neuron(other));
+        workspace.addWorkspaceComponent(new NetworkComponent("Other", other));
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        new WorkspaceCheckpoint(workspace).save(checkpoint);
+
+        workspace.iterate(20);
+        double[] before = activations();
+        double networkTime = net.getTime();
+        other.addLooseNeuron(new Neuron(other));
+        try {
+            new WorkspaceCheckpoint(workspace).restore(new ByteArrayInputStream(checkpoint.toByteArray()));
+            fail("Restored a checkpoint that does not fit network Other");
+        } catch (IOException e) {
+            // Net comes before Other, but was left alone
+            assertArrayEquals(before, activations(), 0);
+            assertEquals(networkTime, net.getTime(), 0);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.simbrain.workspace.updater;
+
+import org.junit.Test;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.workspace.Workspace;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UpdateMetricsTest {
+
+    @Test
+    public void testPercentiles() {
+        UpdateMetrics.Stats stats = new UpdateMetrics.Stats("test", 4, 10_000_000, 4_000_000,
+                new long[] {1_000_000, 2_000_000, 3_000_000, 4_000_000},
+                new long[] {500_000, 1_000_000, 1_500_000, 2_000_000}, new long[] {0, 100, 200, 1000});
+        assertEquals(2.5, stats.getMeanWallMs(), 1e-9);
+        assertEquals(2, stats.getWallPercentileMs(50), 1e-9);
+        assertEquals(4, stats.getWallPercentileMs(99), 1e-9);
+        assertEquals(1, stats.getWallPercentileMs(0), 1e-9);
+        assertEquals(1.25, stats.getMeanCpuMs(), 1e-9);
+        assertEquals(1, stats.getCpuPercentileMs(50), 1e-9);
+        assertEquals(2, stats.getCpuPercentileMs(99), 1e-9);
+        assertEquals(325, stats.getMeanAllocatedBytes(), 1e-9);
+        assertEquals(100, stats.getAllocatedPercentileBytes(50), 1e-9);
+        assertEquals(1000, stats.getAllocatedPercentileBytes(99), 1e-9);
+    }
+
+    @Test
+    public void testUnmeasuredPercentilesAreNaN() {
+        UpdateMetrics.Stats stats = new UpdateMetrics.Stats("test", 1, 1_000_000, 1_000_000,
+                new long[] {1_000_000}, new long[0], new long[0]);
+        assertTrue(Double.isNaN(stats.getMeanCpuMs()));
+        assertTrue(Double.isNaN(stats.getCpuPercentileMs(90)));
+        assertTrue(Double.isNaN(stats.getAllocatedPercentileBytes(90)));
+    }
+
+    @Test
+    public void testRecordsActionsAndComponents() {
+        Workspace workspace = new Workspace();
+        Network net = new Network();
+        net.addLooseNeuron(new Neuron(net));
+        NetworkComponent nc = new NetworkComponent("Net", net);
+        workspace.addWorkspaceComponent(nc);
+
+        UpdateMetrics metrics = workspace.getUpdater().getMetrics();
+        workspace.iterate(3);
+        assertTrue(metrics.getAllStats().isEmpty());
+
+        metrics.setEnabled(true);
+        workspace.iterate(5);
+        List<UpdateMetrics.Stats> actions = metrics.getActionStats();
+        assertFalse(actions.isEmpty());
+        for (UpdateMetrics.Stats stats : actions) {
+            assertEquals(5, stats.getCount());
+            assertTrue(stats.getMaxWallMs() >= stats.getWallPercentileMs(50));
+        }
+        assertEquals(5, metrics.getStats(nc).getCount());
+        assertEquals(5, metrics.getCouplingStats().getCount());
+
+        metrics.reset();
+        assertTrue(metrics.getAllStats().isEmpty());
+    }
+}